@@ -0,0 +1,152 @@
+package org.snomed.otf.owltoolkit.benchmark;
+
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomyEntry;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.util.*;
+
+import static java.lang.Long.parseLong;
+
+/**
+ * Synthetic content for the benchmarks.
+ * Concepts form a tree below the root with each concept defined by an is-a and two role groups of attributes
+ * whose values are earlier concepts, so the shape is close to a clinical finding hierarchy.
+ * The same size always gives the same content.
+ */
+public final class BenchmarkData {
+
+	public static final long MODULE_ID = parseLong(Concepts.SNOMED_CT_CORE_MODULE);
+	public static final long STATED_RELATIONSHIP_ID = parseLong(Concepts.STATED_RELATIONSHIP);
+	public static final long INFERRED_RELATIONSHIP_ID = parseLong(Concepts.INFERRED_RELATIONSHIP);
+
+	public static final long FINDING_SITE = 363698007L;
+	public static final long ASSOCIATED_MORPHOLOGY = 116676008L;
+	public static final long CAUSATIVE_AGENT = 246075003L;
+	public static final long[] ATTRIBUTE_IDS = {FINDING_SITE, ASSOCIATED_MORPHOLOGY, CAUSATIVE_AGENT, Concepts.LATERALITY_LONG};
+
+	private static final long FIRST_CONCEPT_ID = 1_000_000_000L;
+	private static final int FAN_OUT = 10;
+
+	private BenchmarkData() {
+	}
+
+	public static long conceptId(int index) {
+		return FIRST_CONCEPT_ID + index;
+	}
+
+	public static long parentId(int index) {
+		return index == 0 ? Concepts.ROOT_LONG : conceptId((index - 1) / FAN_OUT);
+	}
+
+	/**
+	 * Attribute value of a concept, always an earlier concept so the hierarchy has no cycles.
+	 */
+	private static long valueId(int index, int attribute) {
+		return index == 0 ? Concepts.ROOT_LONG : conceptId((index * 7 + attribute * 13) % index);
+	}
+
+	public static boolean isFullyDefined(int index) {
+		return index % 3 == 0;
+	}
+
+	/**
+	 * @return the stated relationships of a concept, an is-a in group 0 and attributes in groups 1 and 2.
+	 */
+	public static List<Relationship> createRelationships(int index, long characteristicTypeId) {
+		List<Relationship> relationships = new ArrayList<>();
+		long relationshipId = conceptId(index) * 100;
+		relationships.add(new Relationship(relationshipId++, 20200131, MODULE_ID, Concepts.IS_A_LONG, parentId(index), 0, 0, false, characteristicTypeId));
+		for (int attribute = 0; attribute < ATTRIBUTE_IDS.length; attribute++) {
+			int group = 1 + attribute / 2;
+			relationships.add(new Relationship(relationshipId++, 20200131, MODULE_ID, ATTRIBUTE_IDS[attribute], valueId(index, attribute), group, 0, false, characteristicTypeId));
+		}
+		return relationships;
+	}
+
+	/**
+	 * @return a taxonomy holding the concept model attributes and {@code size} concepts with their stated relationships.
+	 */
+	public static SnomedTaxonomy createTaxonomy(int size) {
+		SnomedTaxonomy taxonomy = new SnomedTaxonomy();
+		addConcept(taxonomy, Concepts.ROOT_LONG);
+		addConcept(taxonomy, Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG);
+		addIsA(taxonomy, Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG, Concepts.ROOT_LONG);
+		addConcept(taxonomy, Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG);
+		addIsA(taxonomy, Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG, Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG);
+		for (long attributeId : ATTRIBUTE_IDS) {
+			addConcept(taxonomy, attributeId);
+			addIsA(taxonomy, attributeId, Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG);
+		}
+		for (int i = 0; i < size; i++) {
+			long conceptId = conceptId(i);
+			addConcept(taxonomy, conceptId);
+			if (isFullyDefined(i)) {
+				taxonomy.getFullyDefinedConceptIds().add(conceptId);
+			}
+			for (Relationship relationship : createRelationships(i, STATED_RELATIONSHIP_ID)) {
+				taxonomy.addOrModifyRelationship(true, conceptId, relationship);
+			}
+		}
+		return taxonomy;
+	}
+
+	private static void addConcept(SnomedTaxonomy taxonomy, long conceptId) {
+		taxonomy.getAllConceptIds().add(conceptId);
+		taxonomy.getConceptModuleMap().put(conceptId, MODULE_ID);
+	}
+
+	private static void addIsA(SnomedTaxonomy taxonomy, long conceptId, long parentId) {
+		taxonomy.addOrModifyRelationship(true, conceptId,
+				new Relationship(conceptId * 100, 20200131, MODULE_ID, Concepts.IS_A_LONG, parentId, 0, 0, false, STATED_RELATIONSHIP_ID));
+	}
+
+	/**
+	 * @return the inferred hierarchy of the taxonomy, the same as the stated one because all concepts are in a tree.
+	 */
+	public static ReasonerTaxonomy createReasonerTaxonomy(SnomedTaxonomy taxonomy) {
+		ReasonerTaxonomy reasonerTaxonomy = new ReasonerTaxonomy(taxonomy.getConceptIndex());
+		// Parents are added before their children
+		List<Long> conceptIds = new ArrayList<>(taxonomy.getAllConceptIds());
+		Collections.sort(conceptIds);
+		reasonerTaxonomy.addEntry(new ReasonerTaxonomyEntry(Concepts.ROOT_LONG, Collections.emptySet()));
+		reasonerTaxonomy.addEntry(new ReasonerTaxonomyEntry(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG, Collections.singleton(Concepts.ROOT_LONG)));
+		reasonerTaxonomy.addEntry(new ReasonerTaxonomyEntry(Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG, Collections.singleton(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG)));
+		for (long attributeId : ATTRIBUTE_IDS) {
+			reasonerTaxonomy.addEntry(new ReasonerTaxonomyEntry(attributeId, Collections.singleton(Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG)));
+		}
+		for (Long conceptId : conceptIds) {
+			if (conceptId >= FIRST_CONCEPT_ID) {
+				reasonerTaxonomy.addEntry(new ReasonerTaxonomyEntry(conceptId, taxonomy.getSuperTypeIds(conceptId)));
+			}
+		}
+		return reasonerTaxonomy;
+	}
+
+	/**
+	 * @return axioms in the form stored in the OWL axiom reference set, a mix of primitive and fully defined concepts.
+	 */
+	public static List<String> createAxiomExpressions(int size) {
+		List<String> expressions = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			List<Relationship> relationships = createRelationships(i, STATED_RELATIONSHIP_ID);
+			StringBuilder definition = new StringBuilder("ObjectIntersectionOf(:").append(parentId(i));
+			for (int group = 1; group <= 2; group++) {
+				definition.append(" ObjectSomeValuesFrom(:609096000 ObjectIntersectionOf(");
+				for (Relationship relationship : relationships) {
+					if (relationship.getGroup() == group) {
+						definition.append("ObjectSomeValuesFrom(:").append(relationship.getTypeId())
+								.append(" :").append(relationship.getDestinationId()).append(") ");
+					}
+				}
+				definition.setLength(definition.length() - 1);
+				definition.append("))");
+			}
+			definition.append(")");
+			expressions.add((isFullyDefined(i) ? "EquivalentClasses(:" : "SubClassOf(:") + conceptId(i) + " " + definition + ")");
+		}
+		return expressions;
+	}
+}
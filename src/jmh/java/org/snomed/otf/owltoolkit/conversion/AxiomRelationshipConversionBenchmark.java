@@ -0,0 +1,37 @@
+package org.snomed.otf.owltoolkit.conversion;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.snomed.otf.owltoolkit.benchmark.BenchmarkData;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AxiomRelationshipConversionBenchmark {
+
+	@Param({"1000", "10000"})
+	private int size;
+
+	private List<String> expressions;
+	private AxiomRelationshipConversionService conversionService;
+
+	@Setup
+	public void setup() {
+		expressions = BenchmarkData.createAxiomExpressions(size);
+		conversionService = new AxiomRelationshipConversionService(SnomedTaxonomy.DEFAULT_NEVER_GROUPED_ROLE_IDS);
+	}
+
+	@Benchmark
+	public void convertAxiomToRelationships(Blackhole blackhole) throws ConversionException {
+		for (String expression : expressions) {
+			blackhole.consume(conversionService.convertAxiomToRelationships(expression));
+		}
+	}
+}
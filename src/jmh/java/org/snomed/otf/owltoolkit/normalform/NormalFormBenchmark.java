@@ -0,0 +1,105 @@
+package org.snomed.otf.owltoolkit.normalform;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomyWalker;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.conversion.AxiomRelationshipConversionService;
+import org.snomed.otf.owltoolkit.conversion.ConversionException;
+import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.ontology.PropertyChain;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.testutil.SyntheticRf2Generator;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Long.parseLong;
+
+/**
+ * Normal form generation of synthetic releases, from the inferred hierarchy to the relationship changes.
+ * The release is loaded and classified once per trial so only the normal form is measured.
+ * Larger sizes need a larger heap, for example -Djmh.args="NormalFormBenchmark -p size=1000000 -jvmArgs -Xmx16g".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx8g", "--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+public class NormalFormBenchmark {
+
+	@Param({"10000", "100000"})
+	private int size;
+
+	@Param({"1", "4"})
+	private int parallelism;
+
+	private SnomedTaxonomy snomedTaxonomy;
+	private ReasonerTaxonomy reasonerTaxonomy;
+	private Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap;
+	private Set<PropertyChain> propertyChains;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, ReleaseImportException, OWLOntologyCreationException, ConversionException {
+		File directory = Files.createTempDirectory("normal-form-benchmark").toFile();
+		File snapshotArchive = new File(directory, "snapshot.zip");
+		File deltaArchive = new File(directory, "delta.zip");
+		try {
+			SyntheticRf2Generator generator = new SyntheticRf2Generator().setConcepts(size);
+			generator.writeSnapshotArchive(snapshotArchive);
+			generator.writeDeltaArchive(deltaArchive, size / 100, size / 100);
+			try (FileInputStream deltaStream = new FileInputStream(deltaArchive)) {
+				snomedTaxonomy = new SnomedTaxonomyBuilder().build(new InputStreamSet(new FileInputStream(snapshotArchive)), deltaStream, false);
+			}
+		} finally {
+			snapshotArchive.delete();
+			deltaArchive.delete();
+			directory.delete();
+		}
+
+		Set<Long> ungroupedRoles = snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
+		OntologyService ontologyService = new OntologyService(ungroupedRoles);
+		OWLOntology owlOntology = ontologyService.createOntology(snomedTaxonomy);
+		propertyChains = ontologyService.getPropertyChains(owlOntology);
+		OWLReasoner reasoner = new ElkReasonerFactory().createReasoner(owlOntology);
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		reasonerTaxonomy = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy(snomedTaxonomy.getConceptIndex())).walk();
+		reasoner.dispose();
+		conceptAxiomStatementMap = new AxiomRelationshipConversionService(ungroupedRoles)
+				.convertAxiomsToRelationships(snomedTaxonomy.getConceptAxiomMap(), true);
+		pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	@Benchmark
+	public RelationshipChangeProcessor collectNormalFormChanges() {
+		RelationshipNormalFormGenerator generator = new RelationshipNormalFormGenerator(reasonerTaxonomy, snomedTaxonomy,
+				conceptAxiomStatementMap, propertyChains);
+		RelationshipChangeProcessor processor = new RelationshipChangeProcessor();
+		generator.collectNormalFormChanges(processor, pool);
+		return processor;
+	}
+}
@@ -0,0 +1,52 @@
+package org.snomed.otf.owltoolkit.normalform;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.BenchmarkData;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the existing inferred relationships of each concept with the new normal form.
+ * Every fourth concept has one attribute moved to a different group, so it has an update as well as unchanged rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RelationshipChangeProcessorBenchmark {
+
+	@Param({"1000", "10000"})
+	private int size;
+
+	private List<List<Relationship>> existingRelationships;
+	private List<List<Relationship>> newRelationships;
+
+	@Setup
+	public void setup() {
+		existingRelationships = new ArrayList<>(size);
+		newRelationships = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			existingRelationships.add(BenchmarkData.createRelationships(i, BenchmarkData.INFERRED_RELATIONSHIP_ID));
+			List<Relationship> normalForm = new ArrayList<>();
+			for (Relationship relationship : BenchmarkData.createRelationships(i, BenchmarkData.INFERRED_RELATIONSHIP_ID)) {
+				boolean moved = i % 4 == 0 && relationship.getGroup() == 2;
+				normalForm.add(new Relationship(moved ? 3 : relationship.getGroup(), relationship.getTypeId(), relationship.getDestinationId()));
+			}
+			newRelationships.add(normalForm);
+		}
+	}
+
+	@Benchmark
+	public RelationshipChangeProcessor apply() {
+		RelationshipChangeProcessor processor = new RelationshipChangeProcessor();
+		for (int i = 0; i < size; i++) {
+			processor.apply(BenchmarkData.conceptId(i), existingRelationships.get(i), newRelationships.get(i));
+		}
+		return processor;
+	}
+}
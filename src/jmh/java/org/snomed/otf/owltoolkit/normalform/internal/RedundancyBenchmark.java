@@ -0,0 +1,103 @@
+package org.snomed.otf.owltoolkit.normalform.internal;
+
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.snomed.otf.owltoolkit.benchmark.BenchmarkData;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redundancy checks of normal form generation. Each concept is compared with the attributes it inherits from its parent,
+ * which is the comparison made for every concept when the normal form is generated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RedundancyBenchmark {
+
+	@Param({"1000", "10000"})
+	private int size;
+
+	private List<List<Group>> conceptGroups;
+	private List<RelationshipFragment[]> conceptFragments;
+	private List<RelationshipFragment[]> parentFragments;
+
+	@Setup
+	public void setup() {
+		SnomedTaxonomy snomedTaxonomy = BenchmarkData.createTaxonomy(size);
+		RelationshipNormalFormGenerator generator = new RelationshipNormalFormGenerator(BenchmarkData.createReasonerTaxonomy(snomedTaxonomy),
+				snomedTaxonomy, Collections.emptyMap(), Collections.emptySet());
+
+		conceptGroups = new ArrayList<>(size);
+		conceptFragments = new ArrayList<>(size);
+		parentFragments = new ArrayList<>(size);
+		Map<Integer, List<Group>> groupsByIndex = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			List<Group> ownGroups = createGroups(generator, i);
+			groupsByIndex.put(i, ownGroups);
+			List<Group> groups = new ArrayList<>(ownGroups);
+			if (i > 0) {
+				groups.addAll(groupsByIndex.get((int) (BenchmarkData.parentId(i) - BenchmarkData.conceptId(0))));
+			}
+			conceptGroups.add(groups);
+			conceptFragments.add(createFragments(generator, i));
+			parentFragments.add(i > 0 ? createFragments(generator, (int) (BenchmarkData.parentId(i) - BenchmarkData.conceptId(0))) : new RelationshipFragment[0]);
+		}
+	}
+
+	private static List<Group> createGroups(RelationshipNormalFormGenerator generator, int index) {
+		Map<Integer, List<UnionGroup>> unionGroups = new TreeMap<>();
+		for (Relationship relationship : BenchmarkData.createRelationships(index, BenchmarkData.INFERRED_RELATIONSHIP_ID)) {
+			if (relationship.getTypeId() != Concepts.IS_A_LONG) {
+				UnionGroup unionGroup = new UnionGroup(ImmutableList.of(new RelationshipFragment(generator, relationship)));
+				unionGroup.setUnionGroupNumber(0);
+				unionGroups.computeIfAbsent(relationship.getGroup(), g -> new ArrayList<>()).add(unionGroup);
+			}
+		}
+		List<Group> groups = new ArrayList<>();
+		unionGroups.forEach((groupNumber, groupUnionGroups) -> {
+			Group group = new Group(groupUnionGroups);
+			group.setGroupNumber(groupNumber);
+			groups.add(group);
+		});
+		return groups;
+	}
+
+	private static RelationshipFragment[] createFragments(RelationshipNormalFormGenerator generator, int index) {
+		return BenchmarkData.createRelationships(index, BenchmarkData.INFERRED_RELATIONSHIP_ID).stream()
+				.filter(relationship -> relationship.getTypeId() != Concepts.IS_A_LONG)
+				.map(relationship -> new RelationshipFragment(generator, relationship))
+				.toArray(RelationshipFragment[]::new);
+	}
+
+	@Benchmark
+	public void groupSetAdd(Blackhole blackhole) {
+		for (List<Group> groups : conceptGroups) {
+			GroupSet groupSet = new GroupSet();
+			for (Group group : groups) {
+				groupSet.add(group);
+			}
+			blackhole.consume(groupSet);
+		}
+	}
+
+	@Benchmark
+	public void isSameOrStrongerThan(Blackhole blackhole) {
+		for (int i = 0; i < conceptFragments.size(); i++) {
+			for (RelationshipFragment fragment : conceptFragments.get(i)) {
+				for (RelationshipFragment inherited : parentFragments.get(i)) {
+					blackhole.consume(fragment.isSameOrStrongerThan(inherited));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package org.snomed.otf.owltoolkit.ontology;
+
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.snomed.otf.owltoolkit.benchmark.BenchmarkData;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OntologyServiceBenchmark {
+
+	@Param({"1000", "10000"})
+	private int size;
+
+	private SnomedTaxonomy snomedTaxonomy;
+	private OntologyService ontologyService;
+
+	@Setup
+	public void setup() {
+		snomedTaxonomy = BenchmarkData.createTaxonomy(size);
+		ontologyService = new OntologyService(SnomedTaxonomy.DEFAULT_NEVER_GROUPED_ROLE_IDS);
+	}
+
+	@Benchmark
+	public Map<Long, Set<OWLAxiom>> createAxiomsFromStatedRelationships() {
+		return ontologyService.createAxiomsFromStatedRelationships(snomedTaxonomy);
+	}
+}
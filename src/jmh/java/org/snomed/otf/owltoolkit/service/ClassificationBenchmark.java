@@ -0,0 +1,70 @@
+package org.snomed.otf.owltoolkit.service;
+
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.testutil.SyntheticRf2Generator;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and classification of synthetic releases, end to end from the RF2 archives.
+ * Larger sizes need a larger heap, for example -Djmh.args="ClassificationBenchmark -p size=1000000 -jvmArgs -Xmx16g".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx8g", "--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+public class ClassificationBenchmark {
+
+	@Param({"10000", "100000"})
+	private int size;
+
+	private File directory;
+	private File snapshotArchive;
+	private File deltaArchive;
+	private File resultsArchive;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("classification-benchmark").toFile();
+		snapshotArchive = new File(directory, "snapshot.zip");
+		deltaArchive = new File(directory, "delta.zip");
+		resultsArchive = new File(directory, "results.zip");
+		SyntheticRf2Generator generator = new SyntheticRf2Generator().setConcepts(size);
+		generator.writeSnapshotArchive(snapshotArchive);
+		generator.writeDeltaArchive(deltaArchive, size / 100, size / 100);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Benchmark
+	public SnomedTaxonomy loadSnapshot() throws IOException, ReleaseImportException {
+		try (InputStreamSet snapshotArchives = SnomedTaxonomyBuilder.openSnapshotArchives(Collections.singleton(snapshotArchive), false)) {
+			return new SnomedTaxonomyBuilder().build(snapshotArchives, false);
+		}
+	}
+
+	@Benchmark
+	public void classify() throws ReasonerServiceException {
+		new SnomedReasonerService().classify("benchmark", snapshotArchive, deltaArchive, resultsArchive,
+				SnomedReasonerService.ELK_REASONER_FACTORY, false);
+	}
+}
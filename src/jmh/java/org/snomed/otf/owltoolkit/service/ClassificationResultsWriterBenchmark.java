@@ -0,0 +1,55 @@
+package org.snomed.otf.owltoolkit.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.snomed.otf.owltoolkit.benchmark.BenchmarkData;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
+
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a results archive where every concept has new inferred relationships and one existing relationship
+ * made redundant, with a small number of equivalent concept sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassificationResultsWriterBenchmark {
+
+	@Param({"1000", "10000"})
+	private int size;
+
+	private RelationshipChangeProcessor changeProcessor;
+	private List<Set<Long>> equivalentConceptIdSets;
+	private ClassificationResultsWriter resultsWriter;
+	private Date startDate;
+
+	@Setup
+	public void setup() {
+		changeProcessor = new RelationshipChangeProcessor();
+		equivalentConceptIdSets = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			List<Relationship> existing = BenchmarkData.createRelationships(i, BenchmarkData.INFERRED_RELATIONSHIP_ID);
+			List<Relationship> normalForm = new ArrayList<>();
+			for (Relationship relationship : existing.subList(1, existing.size())) {
+				normalForm.add(new Relationship(relationship.getGroup() + 2, relationship.getTypeId(), relationship.getDestinationId()));
+			}
+			changeProcessor.apply(BenchmarkData.conceptId(i), existing.subList(0, 1), normalForm);
+			if (i % 100 == 1) {
+				equivalentConceptIdSets.add(new HashSet<>(Arrays.asList(BenchmarkData.conceptId(i), BenchmarkData.conceptId(i + 1))));
+			}
+		}
+		resultsWriter = new ClassificationResultsWriter();
+		startDate = new Date();
+	}
+
+	@Benchmark
+	public void writeResultsRf2Archive() throws ReasonerServiceException {
+		resultsWriter.writeResultsRf2Archive(changeProcessor, equivalentConceptIdSets, OutputStream.nullOutputStream(), startDate);
+	}
+}
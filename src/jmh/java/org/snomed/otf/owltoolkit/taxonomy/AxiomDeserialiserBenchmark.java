@@ -0,0 +1,37 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.snomed.otf.owltoolkit.benchmark.BenchmarkData;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AxiomDeserialiserBenchmark {
+
+	@Param({"1000", "10000"})
+	private int size;
+
+	private List<String> expressions;
+	private AxiomDeserialiser axiomDeserialiser;
+
+	@Setup
+	public void setup() {
+		expressions = BenchmarkData.createAxiomExpressions(size);
+		axiomDeserialiser = new AxiomDeserialiser();
+	}
+
+	@Benchmark
+	public void deserialiseAxiom(Blackhole blackhole) throws OWLOntologyCreationException {
+		for (String expression : expressions) {
+			blackhole.consume(axiomDeserialiser.deserialiseAxiom(expression, null));
+		}
+	}
+}
@@ -7,9 +7,12 @@ import org.snomed.otf.owltoolkit.conversion.ConversionException;
 import org.snomed.otf.owltoolkit.conversion.OWLAxiomToStatedRelationshipService;
 import org.snomed.otf.owltoolkit.conversion.RF2ToOWLService;
 import org.snomed.otf.owltoolkit.conversion.StatedRelationshipToOwlRefsetService;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
 import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.service.ClassificationServer;
 import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
 import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
 import org.snomed.otf.owltoolkit.util.InputStreamSet;
 import org.snomed.otf.owltoolkit.util.OptionalFileInputStream;
 
@@ -34,16 +37,24 @@ public class Application {
 	private static final String ARG_DEBUG = "-debug";
 	private static final String ARG_RF2_TO_OWL = "-rf2-to-owl";
 	private static final String ARG_CLASSIFY = "-classify";
+	private static final String ARG_SERVER = "-server";
+	private static final String ARG_SERVER_JOBS = "-server-jobs";
 	private static final String ARG_RF2_STATED_TO_COMPLETE_OWL = "-rf2-stated-to-complete-owl";
 	private static final String ARG_RF2_OWL_TO_STATED = "-rf2-owl-to-stated";
 	private static final String ARG_RF2_SNAPSHOT_ARCHIVES = "-rf2-snapshot-archives";
 	private static final String ARG_RF2_AUTHORING_DELTA_ARCHIVE = "-rf2-authoring-delta-archive";
 	private static final String ARG_RF2_STATED_TO_COMPLETE_OWL_RECONCILE = "-rf2-stated-to-complete-owl-reconcile";
+	private static final String ARG_SNAPSHOT_CACHE_DIR = "-snapshot-cache-dir";
+	private static final String ARG_NORMAL_FORM_THREADS = "-normal-form-threads";
+	private static final String ARG_NORMAL_FORM_STATE = "-normal-form-state";
+	private static final String ARG_ELK_NATIVE_LOADING = "-elk-native-loading";
+	private static final String ARG_LOW_MEMORY = "-low-memory";
 	private static final String ARG_URI = "-uri";
 	private static final String ARG_VERSION = "-version";
 	private static final String ARG_WITHOUT_ANNOTATIONS = "-without-annotations";
 	private static final SimpleDateFormat DATETIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
 	private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyyMMdd");
+	private static final String DEFAULT_EDITION = "default";
 	private static final String STATED_RELATIONSHIP_SNAPSHOT = "sct2_StatedRelationship_Snapshot.txt";
 
 	private boolean deleteOntologyFileOnExit;
@@ -71,7 +82,10 @@ public class Application {
 				assertTrue("When specifying multiple archives please include no whitespace before or after the comma.",
 						!arg.startsWith(",") && !arg.endsWith(","));
 			}
-			if (args.contains(ARG_CLASSIFY)) {
+			if (args.contains(ARG_SERVER)) {
+				modeFound = true;
+				runServer(args);
+			} else if (args.contains(ARG_CLASSIFY)) {
 				modeFound = true;
 				classify(args);
 			} else if (args.contains(ARG_RF2_STATED_TO_COMPLETE_OWL)) {
@@ -94,8 +108,18 @@ public class Application {
 		Set<File> snapshotFiles = getSnapshotFiles(args);
 		File deltaFile = getDeltaFiles(args);
 
+		String snapshotCacheDir = getParameterValue(ARG_SNAPSHOT_CACHE_DIR, args);
+		String normalFormThreads = getParameterValue(ARG_NORMAL_FORM_THREADS, args);
+		String normalFormState = getParameterValue(ARG_NORMAL_FORM_STATE, args);
+
 		File resultsFile = new File("classification-results-" + DATETIME_FORMAT.format(new Date()) + ZIP);
-		new SnomedReasonerService().classify(
+		new SnomedReasonerService()
+				.setSnapshotCacheDirectory(snapshotCacheDir != null ? new File(snapshotCacheDir) : null)
+				.setNormalFormParallelism(normalFormThreads != null ? Integer.parseInt(normalFormThreads) : 1)
+				.setNormalFormStateFile(normalFormState != null ? new File(normalFormState) : null)
+				.setElkNativeLoading(args.contains(ARG_ELK_NATIVE_LOADING))
+				.setLowMemory(args.contains(ARG_LOW_MEMORY))
+				.classify(
 				"command-line",
 				snapshotFiles,
 				deltaFile,
@@ -107,6 +131,35 @@ public class Application {
 		System.out.println("Classification results written to " + resultsFile.getAbsolutePath());
 	}
 
+	private void runServer(List<String> args) throws IOException, ReleaseImportException {
+		Set<File> snapshotFiles = getSnapshotFiles(args);
+		int port = Integer.parseInt(getRequiredParameterValue(ARG_SERVER, args));
+
+		String snapshotCacheDir = getParameterValue(ARG_SNAPSHOT_CACHE_DIR, args);
+		String normalFormThreads = getParameterValue(ARG_NORMAL_FORM_THREADS, args);
+		String serverJobs = getParameterValue(ARG_SERVER_JOBS, args);
+
+		File cacheDirectory = snapshotCacheDir != null ? new File(snapshotCacheDir) : new File(System.getProperty("java.io.tmpdir"), "snomed-snapshot-cache");
+		int normalFormParallelism = normalFormThreads != null ? Integer.parseInt(normalFormThreads) : 1;
+		boolean elkNativeLoading = args.contains(ARG_ELK_NATIVE_LOADING);
+		boolean lowMemory = args.contains(ARG_LOW_MEMORY);
+		ClassificationServer server = new ClassificationServer(() -> new SnomedReasonerService()
+				.setNormalFormParallelism(normalFormParallelism)
+				.setElkNativeLoading(elkNativeLoading)
+				.setLowMemory(lowMemory),
+				cacheDirectory, serverJobs != null ? Integer.parseInt(serverJobs) : 1);
+		server.addEdition(DEFAULT_EDITION, snapshotFiles);
+		server.start(port);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+
+		System.out.println("Classification server listening on port " + port + ". POST RF2 delta archives to /classify/" + DEFAULT_EDITION);
+		try {
+			server.awaitStop();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	// RF2 to OWL
 	private void rf2ToOwl(List<String> args) throws ConversionException, IOException {
 		// Parameter validation
@@ -138,11 +191,17 @@ public class Application {
 		if (deleteOntologyFileOnExit) {
 			ontologyOutputFile.deleteOnExit();
 		}
-		try (InputStreamSet snapshotStreams = new InputStreamSet(snapshotFiles);
+		try (InputStreamSet snapshotStreams = SnomedTaxonomyBuilder.openSnapshotArchives(snapshotFiles, includeDescriptions);
 			 OptionalFileInputStream deltaStream = new OptionalFileInputStream(deltaFile);
 			 FileOutputStream outputStream = new FileOutputStream(ontologyOutputFile)) {
 
-			new RF2ToOWLService().convertRF2ArchiveToOWL(ontologyUri, versionDate, includeDescriptions, snapshotStreams, deltaStream, outputStream);
+			RF2ToOWLService rf2ToOWLService = new RF2ToOWLService();
+			rf2ToOWLService.convertRF2ArchiveToOWL(ontologyUri, versionDate, includeDescriptions, snapshotStreams, deltaStream, outputStream);
+			File metricsReportFile = MetricsRegistry.getReportFile(ontologyOutputFile);
+			if (deleteOntologyFileOnExit) {
+				metricsReportFile.deleteOnExit();
+			}
+			rf2ToOWLService.getMetricsRegistry().getLatest(RF2ToOWLService.CONVERSION_PIPELINE).writeJson(metricsReportFile);
 		} catch (IOException e) {
 			System.err.println("Failed to close input or output stream.");
 			e.printStackTrace();
@@ -273,6 +332,12 @@ public class Application {
 						pad("") + "Results are written to an RF2 delta archive.\n" +
 						"\n" +
 
+						pad(ARG_SERVER + " <port>") +
+						"Run as a classification server on the local port.\n" +
+						pad("") + "The Snapshots are loaded into memory once and shared as the base of every classification.\n" +
+						pad("") + "POST an RF2 delta archive to /classify/" + DEFAULT_EDITION + ", the response is the results archive.\n" +
+						"\n" +
+
 						pad(ARG_RF2_TO_OWL) +
 						"(Default mode) Convert RF2 to OWL Functional Syntax.\n" +
 						pad("") + "Results are written to an .owl file.\n" +
@@ -306,6 +371,30 @@ public class Application {
 						"(Optional) Path to a zip file containing RF2 Delta files to be applied on top \n" +
 						pad("") + "of the Snapshots. This is helpful during an authoring cycle.\n" +
 						"\n" +
+						pad(ARG_SNAPSHOT_CACHE_DIR + " <path>") +
+						"(Optional) Directory for a binary cache of the loaded Snapshot archives. \n" +
+						pad("") + "Classifications using the same Snapshots will read the cache instead of RF2.\n" +
+						"\n" +
+						pad(ARG_NORMAL_FORM_THREADS + " <count>") +
+						"(Optional) Number of threads used to generate the relationship normal form. \n" +
+						pad("") + "Defaults to 1.\n" +
+						"\n" +
+						pad(ARG_NORMAL_FORM_STATE + " <path>") +
+						"(Optional) File to keep normal form results between classifications. \n" +
+						pad("") + "Later classifications only normalise concepts affected by changes since the previous one.\n" +
+						"\n" +
+						pad(ARG_ELK_NATIVE_LOADING) +
+						"(Optional) Load axioms straight into the ELK reasoner without creating an OWL API ontology. \n" +
+						pad("") + "Uses less memory and time for large editions.\n" +
+						"\n" +
+						pad(ARG_LOW_MEMORY) +
+						"(Optional) Release each classification stage as soon as it is consumed. \n" +
+						pad("") + "Lowers peak heap at the cost of a full garbage collection between stages.\n" +
+						"\n" +
+						pad(ARG_SERVER_JOBS + " <count>") +
+						"(Optional) Number of classifications the server runs at once. \n" +
+						pad("") + "Defaults to 1.\n" +
+						"\n" +
 						pad(ARG_DEBUG) +
 						"Additional output for debugging.\n" +
 						"\n" +
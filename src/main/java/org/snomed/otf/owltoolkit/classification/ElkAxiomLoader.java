@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.classification;
+
+import org.semanticweb.elk.loading.AbstractAxiomLoader;
+import org.semanticweb.elk.loading.ElkLoadingException;
+import org.semanticweb.elk.owl.visitors.ElkAxiomProcessor;
+import org.semanticweb.elk.owlapi.wrapper.OwlConverter;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the axioms of a taxonomy straight into the ELK reasoner without creating an OWL API ontology.
+ * Axioms are converted to ELK one at a time while ELK loads them, so no set of all axioms is held in memory
+ * and the ontology indexes of the OWL API are not built.
+ * Property axioms are kept because the property hierarchy and property chains are read from them after classification.
+ */
+public class ElkAxiomLoader extends AbstractAxiomLoader {
+
+	private final OntologyService ontologyService;
+	private final SnomedTaxonomy snomedTaxonomy;
+	private final List<OWLAxiom> propertyAxioms = new ArrayList<>();
+	private long axiomCount;
+	private boolean loadingFinished;
+
+	public ElkAxiomLoader(OntologyService ontologyService, SnomedTaxonomy snomedTaxonomy) {
+		this.ontologyService = ontologyService;
+		this.snomedTaxonomy = snomedTaxonomy;
+	}
+
+	@Override
+	public void load(ElkAxiomProcessor axiomInserter, ElkAxiomProcessor axiomDeleter) throws ElkLoadingException {
+		if (loadingFinished) {
+			return;
+		}
+		OwlConverter converter = OwlConverter.getInstance();
+		ontologyService.forEachAxiom(snomedTaxonomy, axiom -> {
+			if (isPropertyAxiom(axiom)) {
+				propertyAxioms.add(axiom);
+			}
+			// Annotations do not affect the class hierarchy
+			if (axiom.isLogicalAxiom()) {
+				axiomInserter.visit(converter.convert(axiom));
+				axiomCount++;
+			}
+		});
+		loadingFinished = true;
+	}
+
+	private static boolean isPropertyAxiom(OWLAxiom axiom) {
+		return axiom.isOfType(AxiomType.RBoxAxiomTypes) || axiom.isOfType(AxiomType.SUB_ANNOTATION_PROPERTY_OF);
+	}
+
+	@Override
+	public boolean isLoadingFinished() {
+		return loadingFinished;
+	}
+
+	/**
+	 * @return the property axioms, complete once ELK has loaded the axioms.
+	 */
+	public List<OWLAxiom> getPropertyAxioms() {
+		return propertyAxioms;
+	}
+
+	public long getAxiomCount() {
+		return axiomCount;
+	}
+}
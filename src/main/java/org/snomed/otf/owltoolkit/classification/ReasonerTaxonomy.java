@@ -16,10 +16,10 @@
  */
 package org.snomed.otf.owltoolkit.classification;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.taxonomy.ConceptIndex;
 
 import java.io.Serializable;
 import java.util.*;
@@ -27,15 +27,29 @@ import java.util.*;
 public class ReasonerTaxonomy implements Serializable {
 
 	private static final long serialVersionUID = 1L;
+	private static final int[] EMPTY_ORDINALS = new int[0];
 	
+	private final ConceptIndex conceptIndex;
 	private final List<Set<Long>> equivalentConceptIds = new ArrayList<>();
 	private final Set<Long> unsatisfiableConceptIds = new LongOpenHashSet();
-	private final Map<Long, Set<Long>> parentIds = new Long2ObjectOpenHashMap<>();
-	private final Map<Long, Set<Long>> ancestorIds = new Long2ObjectOpenHashMap<>();
+	// Parent sets indexed by concept ordinal
+	private Set<Long>[] parentIds;
+	// Sorted ordinals of all ancestors indexed by concept ordinal, far smaller than a set of ids per concept
+	private int[][] ancestorOrdinals;
 	private final List<Long> insertionOrderedIds = new LongArrayList();
 	private final List<Long> insertionOrderedAttributeIds = new LongArrayList();
 
 	public ReasonerTaxonomy() {
+		this(new ConceptIndex());
+	}
+
+	/**
+	 * @param conceptIndex ordinal mapping to share with the SnomedTaxonomy, concepts not yet in the index are added.
+	 */
+	public ReasonerTaxonomy(final ConceptIndex conceptIndex) {
+		this.conceptIndex = conceptIndex;
+		this.parentIds = newSetArray(conceptIndex.size());
+		this.ancestorOrdinals = new int[parentIds.length][];
 	}
 	
 	public void addEquivalentConceptIds(final Set<Long> conceptIds) {
@@ -56,37 +70,118 @@ public class ReasonerTaxonomy implements Serializable {
 
 	public void addEntry(final ReasonerTaxonomyEntry entry) {
 		insertionOrderedIds.add(entry.getSourceId());
-		getOrCreateSet(parentIds, entry.getSourceId()).addAll(entry.getParentIds());
-		getOrCreateSet(ancestorIds, entry.getSourceId()).addAll(entry.getParentIds());
-		for (Long parentId : entry.getParentIds()) {
-			getOrCreateSet(ancestorIds, entry.getSourceId()).addAll(getOrCreateSet(ancestorIds, parentId));
+		final int ordinal = conceptIndex.add(entry.getSourceId());
+		ensureCapacity(ordinal);
+		getOrCreateSet(parentIds, ordinal).addAll(entry.getParentIds());
+		ancestorOrdinals[ordinal] = mergeAncestors(ancestorOrdinals[ordinal], entry.getParentIds());
+	}
+
+	private int[] mergeAncestors(final int[] existingAncestors, final Set<Long> parents) {
+		int length = existingAncestors != null ? existingAncestors.length : 0;
+		final int[] parentOrdinals = new int[parents.size()];
+		int p = 0;
+		for (Long parentId : parents) {
+			final int parentOrdinal = conceptIndex.add(parentId);
+			parentOrdinals[p++] = parentOrdinal;
+			length += 1 + getAncestorOrdinals(parentOrdinal).length;
+		}
+
+		final int[] merged = new int[length];
+		int size = 0;
+		if (existingAncestors != null) {
+			System.arraycopy(existingAncestors, 0, merged, 0, existingAncestors.length);
+			size = existingAncestors.length;
+		}
+		for (int parentOrdinal : parentOrdinals) {
+			merged[size++] = parentOrdinal;
+			final int[] parentAncestors = getAncestorOrdinals(parentOrdinal);
+			System.arraycopy(parentAncestors, 0, merged, size, parentAncestors.length);
+			size += parentAncestors.length;
 		}
+
+		// Sort and remove duplicates
+		Arrays.sort(merged);
+		int unique = 0;
+		for (int i = 0; i < merged.length; i++) {
+			if (i == 0 || merged[i] != merged[i - 1]) {
+				merged[unique++] = merged[i];
+			}
+		}
+		return unique == merged.length ? merged : Arrays.copyOf(merged, unique);
 	}
 
-	private Set<Long> getOrCreateSet(final Map<Long, Set<Long>> map, final long key) {
-		if (map.containsKey(key)) {
-			return map.get(key);
-		} else {
-			final Set<Long> newSet = new LongOpenHashSet();
-			map.put(key, newSet);
-			return newSet;
+	private int[] getAncestorOrdinals(final int ordinal) {
+		if (ordinal < ancestorOrdinals.length && ancestorOrdinals[ordinal] != null) {
+			return ancestorOrdinals[ordinal];
 		}
+		return EMPTY_ORDINALS;
 	}
 
-	private Set<Long> getOrReturnEmptySet(final Map<Long, Set<Long>> map, final long key) {
-		if (map.containsKey(key)) {
-			return map.get(key);
+	private void ensureCapacity(final int ordinal) {
+		if (ordinal >= parentIds.length) {
+			final int length = Math.max(ordinal + 1, Math.max(conceptIndex.size(), parentIds.length * 2));
+			parentIds = Arrays.copyOf(parentIds, length);
+			ancestorOrdinals = Arrays.copyOf(ancestorOrdinals, length);
+		}
+	}
+
+	private Set<Long> getOrCreateSet(final Set<Long>[] sets, final int ordinal) {
+		Set<Long> set = sets[ordinal];
+		if (set == null) {
+			set = new LongOpenHashSet();
+			sets[ordinal] = set;
+		}
+		return set;
+	}
+
+	private Set<Long> getOrReturnEmptySet(final Set<Long>[] sets, final long conceptId) {
+		final int ordinal = conceptIndex.indexOf(conceptId);
+		if (ordinal != ConceptIndex.NOT_FOUND && ordinal < sets.length && sets[ordinal] != null) {
+			return sets[ordinal];
 		} else {
 			return Collections.emptySet();
 		}
 	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<Long>[] newSetArray(final int length) {
+		return new Set[Math.max(length, 16)];
+	}
 	
 	public Set<Long> getParents(final long sourceId) {
 		return getOrReturnEmptySet(parentIds, sourceId);
 	}
 	
+	/**
+	 * @return a read only view of the ancestors of the concept.
+	 */
 	public Set<Long> getAncestors(final long sourceId) {
-		return getOrReturnEmptySet(ancestorIds, sourceId);
+		final int ordinal = conceptIndex.indexOf(sourceId);
+		if (ordinal == ConceptIndex.NOT_FOUND) {
+			return Collections.emptySet();
+		}
+		return new AncestorSet(getAncestorOrdinals(ordinal));
+	}
+
+	/**
+	 * @return true if ancestorId is a proper ancestor of conceptId, answered by binary search without building a set.
+	 */
+	public boolean isAncestor(final long ancestorId, final long conceptId) {
+		final int ordinal = conceptIndex.indexOf(conceptId);
+		final int ancestorOrdinal = conceptIndex.indexOf(ancestorId);
+		return ordinal != ConceptIndex.NOT_FOUND && ancestorOrdinal != ConceptIndex.NOT_FOUND
+				&& Arrays.binarySearch(getAncestorOrdinals(ordinal), ancestorOrdinal) >= 0;
+	}
+
+	/**
+	 * @return true if ancestorId is the same as conceptId or one of its ancestors.
+	 */
+	public boolean isSameOrAncestor(final long ancestorId, final long conceptId) {
+		return ancestorId == conceptId || isAncestor(ancestorId, conceptId);
+	}
+
+	public ConceptIndex getConceptIndex() {
+		return conceptIndex;
 	}
 	
 	public List<Long> getConceptIds() {
@@ -100,4 +195,47 @@ public class ReasonerTaxonomy implements Serializable {
 	public Collection<Relationship> getNonIsAFragments(long conceptId) {
 		return null;
 	}
+
+	private final class AncestorSet extends AbstractSet<Long> {
+
+		private final int[] ordinals;
+
+		private AncestorSet(final int[] ordinals) {
+			this.ordinals = ordinals;
+		}
+
+		@Override
+		public boolean contains(final Object o) {
+			if (!(o instanceof Long)) {
+				return false;
+			}
+			final int ordinal = conceptIndex.indexOf((Long) o);
+			return ordinal != ConceptIndex.NOT_FOUND && Arrays.binarySearch(ordinals, ordinal) >= 0;
+		}
+
+		@Override
+		public Iterator<Long> iterator() {
+			return new Iterator<Long>() {
+				private int position;
+
+				@Override
+				public boolean hasNext() {
+					return position < ordinals.length;
+				}
+
+				@Override
+				public Long next() {
+					if (position >= ordinals.length) {
+						throw new NoSuchElementException();
+					}
+					return conceptIndex.getConceptId(ordinals[position++]);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return ordinals.length;
+		}
+	}
 }
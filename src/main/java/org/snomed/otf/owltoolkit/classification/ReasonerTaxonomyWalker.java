@@ -17,64 +17,70 @@
 package org.snomed.otf.owltoolkit.classification;
 
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.semanticweb.elk.owl.interfaces.ElkClass;
+import org.semanticweb.elk.reasoner.taxonomy.model.Taxonomy;
+import org.semanticweb.elk.reasoner.taxonomy.model.TaxonomyNode;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.reasoner.Node;
-import org.semanticweb.owlapi.reasoner.NodeSet;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
-import org.semanticweb.owlapi.reasoner.impl.OWLClassNodeSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.metrics.TaxonomyWalkEvent;
 import org.snomed.otf.owltoolkit.ontology.OntologyHelper;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.taxonomy.ConceptIndex;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class ReasonerTaxonomyWalker {
 
-	private static final NodeSet<OWLClass> EMPTY_NODE_SET = new OWLClassNodeSet();
-
-	private final OWLReasoner reasoner;
+	private final ClassHierarchy<?> classHierarchy;
 
 	private final ReasonerTaxonomy taxonomy;
 	private final OWLOntology owlOntology;
 
-	private Set<Long> processedConceptIds;
+	private final ConceptIndex conceptIndex;
+
+	// Concept ordinals of processed nodes
+	private BitSet processedConceptOrdinals;
 
 	private boolean nothingProcessed;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ReasonerTaxonomyWalker.class);
 
 	public ReasonerTaxonomyWalker(final OWLReasoner reasoner, final ReasonerTaxonomy changeSet) {
-		this.reasoner = reasoner;
-		this.owlOntology = reasoner.getRootOntology();
+		this(new OwlReasonerClassHierarchy(reasoner), reasoner.getRootOntology(), changeSet);
+	}
+
+	/**
+	 * Walks the class taxonomy computed by ELK from axioms loaded directly, see {@link ElkAxiomLoader}.
+	 * @param propertyOntology ontology holding at least the property axioms, the property hierarchy is extracted from it.
+	 */
+	public ReasonerTaxonomyWalker(final Taxonomy<ElkClass> elkTaxonomy, final OWLOntology propertyOntology, final ReasonerTaxonomy changeSet) {
+		this(new ElkClassHierarchy(elkTaxonomy), propertyOntology, changeSet);
+	}
+
+	private ReasonerTaxonomyWalker(final ClassHierarchy<?> classHierarchy, final OWLOntology owlOntology, final ReasonerTaxonomy changeSet) {
+		this.classHierarchy = classHierarchy;
+		this.owlOntology = owlOntology;
 		this.taxonomy = changeSet;
-		this.processedConceptIds = new LongOpenHashSet(600000);
+		this.conceptIndex = changeSet.getConceptIndex();
+		this.processedConceptOrdinals = new BitSet(conceptIndex.size());
 	}
 
 	public ReasonerTaxonomy walk() {
 		LOGGER.info(">>> SnomedTaxonomy extraction");
+		TaxonomyWalkEvent event = new TaxonomyWalkEvent();
+		event.begin();
 
 		extractProperties();
 
 		// Now process the concepts
-		final Deque<Node<OWLClass>> nodesToProcess = new LinkedList<>();
-		nodesToProcess.add(reasoner.getTopClassNode());
-
-		// Breadth-first walk through the class hierarchy
-		while (!nodesToProcess.isEmpty()) {
-
-			final Node<OWLClass> currentNode = nodesToProcess.removeFirst();
-			final NodeSet<OWLClass> nextNodeSet = walkClasses(currentNode);
+		walkClassHierarchy(classHierarchy);
 
-			if (!nextNodeSet.isEmpty()) {
-				nodesToProcess.addAll(nextNodeSet.getNodes());
-			}
-
-		}
-
-		processedConceptIds.clear();
-		processedConceptIds = null;
+		processedConceptOrdinals = null;
 
 		// Move attribute ids to after 'Concept model attribute' concept so they are processed in the correct order.
 		List<Long> attributeIds = taxonomy.getAttributeIds();
@@ -83,6 +89,13 @@ public class ReasonerTaxonomyWalker {
 		conceptIds.removeAll(attributeIds);
 		conceptIds.addAll(conceptIds.indexOf(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG) + 1, attributeIds);
 
+		event.end();
+		if (event.shouldCommit()) {
+			event.concepts = conceptIds.size();
+			event.attributes = attributeIds.size();
+			event.equivalentConceptSets = taxonomy.getEquivalentConceptIds().size();
+			event.commit();
+		}
 		LOGGER.info("<<< taxonomy extraction");
 		return taxonomy;
 	}
@@ -172,30 +185,47 @@ public class ReasonerTaxonomyWalker {
 		}
 	}
 
-	private NodeSet<OWLClass> walkClasses(final Node<OWLClass> node) {
+	private <N> void walkClassHierarchy(final ClassHierarchy<N> hierarchy) {
+		final Deque<N> nodesToProcess = new LinkedList<>();
+		nodesToProcess.add(hierarchy.getTopNode());
+
+		// Breadth-first walk through the class hierarchy
+		while (!nodesToProcess.isEmpty()) {
+
+			final N currentNode = nodesToProcess.removeFirst();
+			final Collection<N> nextNodeSet = walkClasses(hierarchy, currentNode);
 
-		if (isNodeProcessed(node)) {
-			return reasoner.getSubClasses(node.getRepresentativeElement(), true);
+			if (!nextNodeSet.isEmpty()) {
+				nodesToProcess.addAll(nextNodeSet);
+			}
+
+		}
+	}
+
+	private <N> Collection<N> walkClasses(final ClassHierarchy<N> hierarchy, final N node) {
+
+		if (isNodeProcessed(hierarchy, node)) {
+			return hierarchy.getDirectSubNodes(node);
 		}
 
 		// Check first if we are at the bottom node, as all OWL classes are superclasses of Nothing
-		final boolean unsatisfiable = node.isBottomNode();
+		final boolean unsatisfiable = hierarchy.isBottomNode(node);
 		final Set<Long> conceptIds = new LongOpenHashSet();
-		final long representativeConceptId = getConceptIds(node, conceptIds);
+		final long representativeConceptId = getConceptIds(hierarchy, node, conceptIds);
 
 		if (unsatisfiable) {
 			registerEquivalentConceptIds(conceptIds, true);
-			processedConceptIds.addAll(conceptIds);
-			return EMPTY_NODE_SET;
+			markProcessed(conceptIds);
+			return Collections.emptySet();
 		}
 
 		// Check if all parents have already been visited earlier
-		final NodeSet<OWLClass> parentNodeSet = reasoner.getSuperClasses(node.getRepresentativeElement(), true);
+		final Collection<N> parentNodeSet = hierarchy.getDirectSuperNodes(node);
 
-		for (final Node<OWLClass> parentNode : parentNodeSet) {
+		for (final N parentNode : parentNodeSet) {
 
-			if (!isNodeProcessed(parentNode)) {
-				return EMPTY_NODE_SET;
+			if (!isNodeProcessed(hierarchy, parentNode)) {
+				return Collections.emptySet();
 			}
 		}
 
@@ -205,20 +235,20 @@ public class ReasonerTaxonomyWalker {
 
 		final Set<Long> parentConceptIds = new LongOpenHashSet();
 
-		for (final Node<OWLClass> parentNode : parentNodeSet) {
+		for (final N parentNode : parentNodeSet) {
 
 			// No parents if we found the Top node
-			if (parentNode.isTopNode()) {
+			if (hierarchy.isTopNode(parentNode)) {
 				break;
 			}
 
-			final long parentConceptId = getConceptIds(parentNode, new LongOpenHashSet());
+			final long parentConceptId = getConceptIds(hierarchy, parentNode, new LongOpenHashSet());
 			parentConceptIds.add(parentConceptId);
 		}
 
 		registerParentConceptIds(representativeConceptId, parentConceptIds);
 
-		processedConceptIds.addAll(conceptIds);
+		markProcessed(conceptIds);
 
 		conceptIds.remove(representativeConceptId);
 		parentConceptIds.clear();
@@ -228,18 +258,18 @@ public class ReasonerTaxonomyWalker {
 			registerParentConceptIds(conceptId, parentConceptIds);
 		}
 
-		return computeNextNodeSet(node);
+		return computeNextNodeSet(hierarchy, node);
 	}
 
-	private NodeSet<OWLClass> computeNextNodeSet(final Node<OWLClass> node) {
-		final NodeSet<OWLClass> subClasses = reasoner.getSubClasses(node.getRepresentativeElement(), true);
+	private <N> Collection<N> computeNextNodeSet(final ClassHierarchy<N> hierarchy, final N node) {
+		final Collection<N> subClasses = hierarchy.getDirectSubNodes(node);
 
-		if (!subClasses.isBottomSingleton()) {
+		if (subClasses.size() != 1 || !hierarchy.isBottomNode(subClasses.iterator().next())) {
 			return subClasses;
 		}
 
 		if (nothingProcessed) {
-			return EMPTY_NODE_SET;
+			return Collections.emptySet();
 		} else {
 			nothingProcessed = true;
 			return subClasses;
@@ -250,14 +280,12 @@ public class ReasonerTaxonomyWalker {
 		taxonomy.addEntry(new ReasonerTaxonomyEntry(child, parents));
 	}
 
-	private boolean isNodeProcessed(final Node<OWLClass> node) {
-		for (final OWLClass owlClass : node) {
-			if (!OntologyHelper.isConceptClass(owlClass)) {
-				continue;
-			}
-
-			final long storageKey = OntologyHelper.getConceptId(owlClass);
-			if (!processedConceptIds.contains(storageKey)) {
+	private <N> boolean isNodeProcessed(final ClassHierarchy<N> hierarchy, final N node) {
+		final Set<Long> conceptIds = new LongOpenHashSet();
+		hierarchy.addConceptIds(node, conceptIds);
+		for (final Long conceptId : conceptIds) {
+			final int ordinal = conceptIndex.indexOf(conceptId);
+			if (ordinal == ConceptIndex.NOT_FOUND || !processedConceptOrdinals.get(ordinal)) {
 				return false;
 			}
 		}
@@ -265,16 +293,14 @@ public class ReasonerTaxonomyWalker {
 		return true;
 	}
 
-	private long getConceptIds(final Node<OWLClass> node, final Set<Long> conceptIds) {
-		for (final OWLClass owlClass : node) {
-			if (!OntologyHelper.isConceptClass(owlClass)) {
-				continue;
-			}
-
-			final long conceptId = OntologyHelper.getConceptId(owlClass);
-			conceptIds.add(conceptId);
+	private void markProcessed(final Set<Long> conceptIds) {
+		for (Long conceptId : conceptIds) {
+			processedConceptOrdinals.set(conceptIndex.add(conceptId));
 		}
+	}
 
+	private <N> long getConceptIds(final ClassHierarchy<N> hierarchy, final N node, final Set<Long> conceptIds) {
+		hierarchy.addConceptIds(node, conceptIds);
 		return conceptIds.iterator().next();
 	}
 
@@ -286,4 +312,119 @@ public class ReasonerTaxonomyWalker {
 		}
 	}
 
+	/**
+	 * Class hierarchy computed by a reasoner, nodes are sets of equivalent classes.
+	 */
+	private interface ClassHierarchy<N> {
+
+		N getTopNode();
+
+		boolean isTopNode(N node);
+
+		boolean isBottomNode(N node);
+
+		/**
+		 * @return the direct sub nodes, the bottom node if there are no others.
+		 */
+		Collection<N> getDirectSubNodes(N node);
+
+		Collection<N> getDirectSuperNodes(N node);
+
+		/**
+		 * Adds the ids of the SNOMED CT concepts in the node, other classes such as owl:Thing are skipped.
+		 */
+		void addConceptIds(N node, Set<Long> conceptIds);
+	}
+
+	private static final class OwlReasonerClassHierarchy implements ClassHierarchy<Node<OWLClass>> {
+
+		private final OWLReasoner reasoner;
+
+		private OwlReasonerClassHierarchy(OWLReasoner reasoner) {
+			this.reasoner = reasoner;
+		}
+
+		@Override
+		public Node<OWLClass> getTopNode() {
+			return reasoner.getTopClassNode();
+		}
+
+		@Override
+		public boolean isTopNode(Node<OWLClass> node) {
+			return node.isTopNode();
+		}
+
+		@Override
+		public boolean isBottomNode(Node<OWLClass> node) {
+			return node.isBottomNode();
+		}
+
+		@Override
+		public Collection<Node<OWLClass>> getDirectSubNodes(Node<OWLClass> node) {
+			return reasoner.getSubClasses(node.getRepresentativeElement(), true).getNodes();
+		}
+
+		@Override
+		public Collection<Node<OWLClass>> getDirectSuperNodes(Node<OWLClass> node) {
+			return reasoner.getSuperClasses(node.getRepresentativeElement(), true).getNodes();
+		}
+
+		@Override
+		public void addConceptIds(Node<OWLClass> node, Set<Long> conceptIds) {
+			for (final OWLClass owlClass : node) {
+				if (OntologyHelper.isConceptClass(owlClass)) {
+					conceptIds.add(OntologyHelper.getConceptId(owlClass));
+				}
+			}
+		}
+	}
+
+	private static final class ElkClassHierarchy implements ClassHierarchy<TaxonomyNode<ElkClass>> {
+
+		private final Taxonomy<ElkClass> taxonomy;
+
+		private ElkClassHierarchy(Taxonomy<ElkClass> taxonomy) {
+			this.taxonomy = taxonomy;
+		}
+
+		@Override
+		public TaxonomyNode<ElkClass> getTopNode() {
+			return taxonomy.getTopNode();
+		}
+
+		@Override
+		public boolean isTopNode(TaxonomyNode<ElkClass> node) {
+			return node == taxonomy.getTopNode();
+		}
+
+		@Override
+		public boolean isBottomNode(TaxonomyNode<ElkClass> node) {
+			return node == taxonomy.getBottomNode();
+		}
+
+		@Override
+		public Collection<TaxonomyNode<ElkClass>> getDirectSubNodes(TaxonomyNode<ElkClass> node) {
+			if (isBottomNode(node)) {
+				return Collections.emptySet();
+			}
+			Collection<TaxonomyNode<ElkClass>> subNodes = new ArrayList<>(node.getDirectSubNodes());
+			// Same as the OWL API, leaf classes have the bottom node as their sub class
+			return subNodes.isEmpty() ? Collections.singleton(taxonomy.getBottomNode()) : subNodes;
+		}
+
+		@Override
+		public Collection<TaxonomyNode<ElkClass>> getDirectSuperNodes(TaxonomyNode<ElkClass> node) {
+			return new ArrayList<>(node.getDirectSuperNodes());
+		}
+
+		@Override
+		public void addConceptIds(TaxonomyNode<ElkClass> node, Set<Long> conceptIds) {
+			for (ElkClass elkClass : node.getMembers()) {
+				String iri = elkClass.getIri().getFullIriAsString();
+				if (iri.startsWith(OntologyService.SNOMED_CORE_COMPONENTS_URI)) {
+					conceptIds.add(Long.parseLong(iri.substring(OntologyService.SNOMED_CORE_COMPONENTS_URI.length())));
+				}
+			}
+		}
+	}
 }
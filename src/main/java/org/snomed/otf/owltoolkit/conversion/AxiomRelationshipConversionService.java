@@ -143,11 +143,11 @@ public class AxiomRelationshipConversionService {
 
 			OWLObjectPropertyExpression subProperty = subObjectPropertyOfAxiom.getSubProperty();
 			OWLObjectProperty namedProperty = subProperty.getNamedProperty();
-			long subAttributeConceptId = OntologyHelper.getConceptId(namedProperty);
+			long subAttributeConceptId = getConceptId(namedProperty);
 
 			OWLObjectPropertyExpression superProperty = subObjectPropertyOfAxiom.getSuperProperty();
 			OWLObjectProperty superPropertyNamedProperty = superProperty.getNamedProperty();
-			long superAttributeConceptId = OntologyHelper.getConceptId(superPropertyNamedProperty);
+			long superAttributeConceptId = getConceptId(superPropertyNamedProperty);
 
 			representation.setLeftHandSideNamedConcept(subAttributeConceptId);
 			representation.setRightHandSideRelationships(newSingleIsARelationship(superAttributeConceptId));
@@ -160,11 +160,11 @@ public class AxiomRelationshipConversionService {
 
 			OWLDataPropertyExpression subProperty = subDataPropertyOfAxiom.getSubProperty();
 			OWLDataProperty namedProperty = subProperty.getDataPropertiesInSignature().iterator().next();
-			long subAttributeConceptId = OntologyHelper.getConceptId(namedProperty);
+			long subAttributeConceptId = getConceptId(namedProperty);
 
 			OWLDataPropertyExpression superProperty = subDataPropertyOfAxiom.getSuperProperty();
 			OWLDataProperty superPropertyNamedProperty = superProperty.getDataPropertiesInSignature().iterator().next();
-			long superAttributeConceptId = OntologyHelper.getConceptId(superPropertyNamedProperty);
+			long superAttributeConceptId = getConceptId(superPropertyNamedProperty);
 
 			representation.setLeftHandSideNamedConcept(subAttributeConceptId);
 			representation.setRightHandSideRelationships(newSingleIsARelationship(superAttributeConceptId));
@@ -177,11 +177,11 @@ public class AxiomRelationshipConversionService {
 
 			OWLAnnotationProperty subProperty = subAnnotationPropertyOfAxiom.getSubProperty();
 			OWLAnnotationProperty namedProperty = subProperty.getAnnotationPropertiesInSignature().iterator().next();
-			long subAttributeConceptId = OntologyHelper.getConceptId(namedProperty);
+			long subAttributeConceptId = getConceptId(namedProperty);
 
 			OWLAnnotationProperty superProperty = subAnnotationPropertyOfAxiom.getSuperProperty();
 			OWLAnnotationProperty superPropertyNamedProperty = superProperty.getAnnotationPropertiesInSignature().iterator().next();
-			long superAttributeConceptId = OntologyHelper.getConceptId(superPropertyNamedProperty);
+			long superAttributeConceptId = getConceptId(superPropertyNamedProperty);
 
 			representation.setLeftHandSideNamedConcept(subAttributeConceptId);
 			representation.setRightHandSideRelationships(newSingleIsARelationship(superAttributeConceptId));
@@ -249,7 +249,7 @@ public class AxiomRelationshipConversionService {
 					if (!ignore) {
 						AxiomRepresentation axiomRepresentation = convertAxiomToRelationships(axiom, groupOffset);
 						if (axiomRepresentation != null) {
-							conceptAxiomStatements.computeIfAbsent(conceptId, id -> new HashSet<>()).add(axiomRepresentation);
+							conceptAxiomStatements.computeIfAbsent(conceptId, id -> new LinkedHashSet<>()).add(axiomRepresentation);
 						}
 					}
 				}
@@ -308,7 +308,7 @@ public class AxiomRelationshipConversionService {
 	 */
 	public Set<Long> getIdsOfConceptsNamedInAxiom(String axiomExpression) throws ConversionException {
 		OWLAxiom owlAxiom = convertOwlExpressionToOWLAxiom(axiomExpression);
-		return owlAxiom.getSignature().stream().filter(OntologyHelper::isNamedConcept).map(OntologyHelper::getConceptId).collect(Collectors.toSet());
+		return owlAxiom.getSignature().stream().filter(OntologyHelper::isNamedConcept).map(this::getConceptId).collect(Collectors.toSet());
 	}
 
 	private OWLAxiom convertOwlExpressionToOWLAxiom(String axiomExpression) throws ConversionException {
@@ -332,7 +332,7 @@ public class AxiomRelationshipConversionService {
 
 		if (classesInSignature.size() == 1) {
 			OWLClass namedClass = classesInSignature.iterator().next();
-			return OntologyHelper.getConceptId(namedClass);
+			return getConceptId(namedClass);
 		}
 		return null;
 	}
@@ -350,7 +350,7 @@ public class AxiomRelationshipConversionService {
 			ClassExpressionType operandClassExpressionType = operand.getClassExpressionType();
 			if (operandClassExpressionType == ClassExpressionType.OWL_CLASS) {
 				// Is-a relationship
-				relationshipGroups.computeIfAbsent(0, key -> new ArrayList<>()).add(new Relationship(0, Concepts.IS_A_LONG, OntologyHelper.getConceptId(operand.asOWLClass())));
+				relationshipGroups.computeIfAbsent(0, key -> new ArrayList<>()).add(new Relationship(0, Concepts.IS_A_LONG, getConceptId(operand.asOWLClass())));
 
 			} else if (operandClassExpressionType == ClassExpressionType.OBJECT_SOME_VALUES_FROM) {
 				// Either start of attribute or role group
@@ -403,7 +403,7 @@ public class AxiomRelationshipConversionService {
 	private Relationship extractRelationshipConcreteValue(OWLDataHasValue dataHasValue, int groupNumber) throws ConversionException {
 		OWLDataPropertyExpression property = dataHasValue.getProperty();
 		OWLDataProperty dataProperty = property.asOWLDataProperty();
-		long typeId = OntologyHelper.getConceptId(dataProperty);
+		long typeId = getConceptId(dataProperty);
 
 		OWLLiteral filler = dataHasValue.getFiller();
 		OWLDatatype datatype = filler.getDatatype();
@@ -433,18 +433,22 @@ public class AxiomRelationshipConversionService {
 	private Relationship extractRelationship(OWLObjectSomeValuesFrom someValuesFrom, int groupNumber) throws ConversionException {
 		OWLObjectPropertyExpression property = someValuesFrom.getProperty();
 		OWLObjectProperty namedProperty = property.getNamedProperty();
-		long type = OntologyHelper.getConceptId(namedProperty);
+		long type = getConceptId(namedProperty);
 
 		OWLClassExpression filler = someValuesFrom.getFiller();
 		ClassExpressionType classExpressionType = filler.getClassExpressionType();
 		if (classExpressionType != ClassExpressionType.OWL_CLASS) {
 			throw new ConversionException("Expecting right hand side of ObjectSomeValuesFrom to be type Class, got " + classExpressionType + ".");
 		}
-		long value = OntologyHelper.getConceptId(filler.asOWLClass());
+		long value = getConceptId(filler.asOWLClass());
 
 		return new Relationship(groupNumber, type, value);
 	}
 
+	private long getConceptId(OWLNamedObject owlNamedObject) {
+		return ontologyService.getEntityCache().getConceptId(owlNamedObject);
+	}
+
 	private boolean isRoleGroup(OWLObjectPropertyExpression expression) {
 		OWLObjectProperty namedProperty = expression.getNamedProperty();
 		return SNOMED_ROLE_GROUP_FULL_URI.equals(namedProperty.getIRI().toString());
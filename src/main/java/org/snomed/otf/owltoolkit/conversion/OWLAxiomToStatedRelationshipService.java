@@ -2,6 +2,7 @@ package org.snomed.otf.owltoolkit.conversion;
 
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
 import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
 import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.constants.RF2Headers;
 import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
@@ -26,7 +27,7 @@ public class OWLAxiomToStatedRelationshipService {
 	private static final String TAB = "\t";
 
 	public void convertAxiomsToStatedRelationships(InputStreamSet snapshotFiles, InputStream deltaFile, OutputStream statedRelationshipOutputStream) throws ReleaseImportException, ConversionException, IOException {
-		SnomedTaxonomy snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotFiles, deltaFile, false);
+		SnomedTaxonomy snomedTaxonomy = new SnomedTaxonomyBuilder().setLazyAxiomDeserialisation(true).build(snapshotFiles, deltaFile, false);
 
 		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(statedRelationshipOutputStream))) {
 
@@ -37,11 +38,17 @@ public class OWLAxiomToStatedRelationshipService {
 			Long dummyRelationshipId = 1_000_000L;
 
 			AxiomRelationshipConversionService conversionService = new AxiomRelationshipConversionService(Collections.emptySet());
-			Map<Long, List<OWLAxiom>> conceptAxiomMap = snomedTaxonomy.getConceptAxiomMap();
-			for (Long conceptId : conceptAxiomMap.keySet()) {
+			// Axioms are deserialised concept by concept as they are converted
+			for (Long conceptId : snomedTaxonomy.getConceptAxiomMap().keySet()) {
 				Map<Integer, List<Relationship>> conceptRelationships = new HashMap<>();
 
-				for (OWLAxiom axiom : conceptAxiomMap.get(conceptId)) {
+				List<OWLAxiom> conceptAxioms;
+				try {
+					conceptAxioms = snomedTaxonomy.getAxiomsForConcept(conceptId);
+				} catch (OWLRuntimeException e) {
+					throw new ConversionException("Failed to deserialise axioms.", e);
+				}
+				for (OWLAxiom axiom : conceptAxioms) {
 					AxiomRepresentation axiomRepresentation = conversionService.convertAxiomToRelationships(axiom);
 					if (axiomRepresentation != null) {// Property behaviours and chains will come back null.
 						if (conceptId.equals(axiomRepresentation.getLeftHandSideNamedConcept())) {// Check axiom is not a GCI, these can't be represented as stated relationships.
@@ -2,12 +2,13 @@ package org.snomed.otf.owltoolkit.conversion;
 
 import com.google.common.collect.Sets;
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
-import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
-import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
+import org.snomed.otf.owltoolkit.metrics.PipelineMetrics;
 import org.snomed.otf.owltoolkit.ontology.OntologyService;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
@@ -18,6 +19,7 @@ import org.springframework.util.FileCopyUtils;
 import java.io.*;
 import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class RF2ToOWLService {
@@ -34,15 +36,35 @@ public class RF2ToOWLService {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	public static final String HEADER_PREFIX = "Ontology(<";
 	public static final String HEADER_SUFFIX = ">)";
+	public static final String CONVERSION_PIPELINE = "rf2-to-owl";
+
+	private MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+	/**
+	 * Sets the registry which keeps per phase metrics of conversions, by default each service has its own.
+	 */
+	public RF2ToOWLService setMetricsRegistry(MetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+		return this;
+	}
+
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
 
 	public void convertRF2ArchiveToOWL(String ontologyUriOverride, String versionDate, boolean includeDescriptions, InputStreamSet snomedRf2SnapshotArchives,
 			OptionalFileInputStream deltaStream, OutputStream owlFileOutputStream) throws ConversionException {
 
+		PipelineMetrics metrics = metricsRegistry.start(CONVERSION_PIPELINE, UUID.randomUUID().toString());
+
 		// Load required parts of RF2 into memory
 		logger.info("Loading RF2 files");
 		SnomedTaxonomy snomedTaxonomy;
 		try {
-			snomedTaxonomy = new SnomedTaxonomyBuilder().build(snomedRf2SnapshotArchives, deltaStream.getInputStream().orElse(null), includeDescriptions);
+			snomedTaxonomy = new SnomedTaxonomyBuilder()
+					.setLazyAxiomDeserialisation(true)
+					.setMetrics(metrics)
+					.build(snomedRf2SnapshotArchives, deltaStream.getInputStream().orElse(null), includeDescriptions);
 		} catch (ReleaseImportException e) {
 			throw new ConversionException("Failed to load RF2 archive.", e);
 		}
@@ -75,17 +97,6 @@ public class RF2ToOWLService {
 		// Fetch attributes which are not grouped within the MRCM Attribute Domain International reference set.
 		Set<Long> neverGroupedRoles = snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(Long.parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
 
-		// Create OWL Ontology from stated relationships and OWL Axiom reference set
-		// using list of never grouped roles during relationship to axiom conversion
-		logger.info("Building Ontology");
-		OntologyService ontologyService = new OntologyService(neverGroupedRoles);
-		OWLOntology ontology;
-		try {
-			ontology = ontologyService.createOntology(snomedTaxonomy, ontologyUri, versionDate, includeDescriptions);
-		} catch (OWLOntologyCreationException e) {
-			throw new ConversionException("Failed to build OWL Ontology from SNOMED taxonomy.", e);
-		}
-
 		// Write to any non-default namespaces to OutputStream
 		Set<String> extraOntologyNamespaces = snomedTaxonomy.getOntologyNamespaces().values().stream()
 				.filter(namespace -> !DEFAULT_NAMESPACES.contains(namespace)).collect(Collectors.toSet());
@@ -104,13 +115,21 @@ public class RF2ToOWLService {
 			}
 		}
 
-		// Write ontology to OutputStream
+		// Write ontology to OutputStream from stated relationships and OWL Axiom reference set,
+		// using list of never grouped roles during relationship to axiom conversion.
+		// The ontology is written concept by concept rather than built in memory first,
+		// the axioms of each concept are deserialised as the concept is written.
+		logger.info("Writing Ontology");
+		OntologyService ontologyService = new OntologyService(neverGroupedRoles);
+		long axiomCount;
 		try {
-			ontologyService.saveOntology(ontology, owlFileOutputStream);
-		} catch (OWLOntologyStorageException e) {
+			axiomCount = ontologyService.writeOntology(snomedTaxonomy, ontologyUri, versionDate, includeDescriptions, owlFileOutputStream);
+		} catch (OWLOntologyCreationException | OWLRuntimeException | IOException e) {
 			throw new ConversionException("Failed to serialise and write OWL Ontology to output stream.", e);
 		}
 
+		metrics.checkpoint("Write ontology").count("axioms", axiomCount);
+		metrics.finish();
 		logger.info("RF2 to OWL Ontology conversion complete.");
 	}
 
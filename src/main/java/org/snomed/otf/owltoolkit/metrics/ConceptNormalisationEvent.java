@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for one normalisation pass of one concept. Only concepts slower than the threshold are recorded by default.
+ */
+@Name("org.snomed.otf.owltoolkit.ConceptNormalisation")
+@Label("Concept Normalisation")
+@Category({"SNOMED OWL Toolkit"})
+@Threshold("1 ms")
+@StackTrace(false)
+public final class ConceptNormalisationEvent extends Event {
+
+	@Label("Concept Id")
+	public long conceptId;
+
+	@Label("Pass")
+	public int pass;
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Keeps the metrics of the most recent pipeline runs, including runs still in progress.
+ * Thread safe.
+ */
+public class MetricsRegistry {
+
+	public static final int DEFAULT_CAPACITY = 100;
+
+	private final int capacity;
+	private final LinkedList<PipelineMetrics> runs = new LinkedList<>();
+
+	public MetricsRegistry() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the number of runs kept, older runs are dropped.
+	 */
+	public MetricsRegistry(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Starts recording a new run.
+	 */
+	public synchronized PipelineMetrics start(String pipeline, String runId) {
+		PipelineMetrics metrics = new PipelineMetrics(pipeline, runId);
+		runs.addLast(metrics);
+		if (runs.size() > capacity) {
+			runs.removeFirst();
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return the most recent run with this id or null if none is kept.
+	 */
+	public synchronized PipelineMetrics getMetrics(String runId) {
+		for (Iterator<PipelineMetrics> iterator = runs.descendingIterator(); iterator.hasNext(); ) {
+			PipelineMetrics metrics = iterator.next();
+			if (runId.equals(metrics.getRunId())) {
+				return metrics;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the most recent run of this pipeline or null if none is kept.
+	 */
+	public synchronized PipelineMetrics getLatest(String pipeline) {
+		for (Iterator<PipelineMetrics> iterator = runs.descendingIterator(); iterator.hasNext(); ) {
+			PipelineMetrics metrics = iterator.next();
+			if (pipeline.equals(metrics.getPipeline())) {
+				return metrics;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the runs kept, oldest first.
+	 */
+	public synchronized List<PipelineMetrics> getAll() {
+		return new ArrayList<>(runs);
+	}
+
+	/**
+	 * @return the file to write the metrics report of a run to, next to the output file of the run.
+	 */
+	public static File getReportFile(File outputFile) {
+		String name = outputFile.getName();
+		int extension = name.lastIndexOf('.');
+		String baseName = extension > 0 ? name.substring(0, extension) : name;
+		return new File(outputFile.getAbsoluteFile().getParentFile(), baseName + "-metrics.json");
+	}
+}
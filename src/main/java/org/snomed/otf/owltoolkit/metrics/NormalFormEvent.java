@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event spanning relationship normal form generation.
+ */
+@Name("org.snomed.otf.owltoolkit.NormalForm")
+@Label("Normal Form Generation")
+@Category({"SNOMED OWL Toolkit"})
+public final class NormalFormEvent extends Event {
+
+	@Label("Concepts")
+	public int concepts;
+
+	@Label("Levels")
+	@Description("Number of hierarchy levels when generating in parallel, otherwise 0")
+	public int levels;
+
+	@Label("Parallelism")
+	public int parallelism;
+
+	@Label("Incremental")
+	public boolean incremental;
+
+	@Label("Peak Cached Concepts")
+	@Description("Most concepts whose first pass results were held in the cache at the same time")
+	public int peakCachedConcepts;
+}
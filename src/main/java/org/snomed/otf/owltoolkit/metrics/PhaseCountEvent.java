@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for a count recorded against a pipeline phase, for example the number of axioms loaded.
+ */
+@Name("org.snomed.otf.owltoolkit.PhaseCount")
+@Label("Pipeline Phase Count")
+@Category({"SNOMED OWL Toolkit"})
+@StackTrace(false)
+public final class PhaseCountEvent extends Event {
+
+	@Label("Pipeline")
+	public String pipeline;
+
+	@Label("Run Id")
+	public String runId;
+
+	@Label("Phase")
+	public String phase;
+
+	@Label("Name")
+	public String name;
+
+	@Label("Value")
+	public long value;
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event spanning one phase of a pipeline, committed when {@link PipelineMetrics#checkpoint(String)} ends the phase.
+ */
+@Name("org.snomed.otf.owltoolkit.Phase")
+@Label("Pipeline Phase")
+@Category({"SNOMED OWL Toolkit"})
+public final class PhaseEvent extends Event {
+
+	@Label("Pipeline")
+	public String pipeline;
+
+	@Label("Run Id")
+	public String runId;
+
+	@Label("Phase")
+	public String phase;
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resources used by one phase of a pipeline, from the end of the previous phase to the end of this one.
+ * CPU time, allocated bytes and garbage collection are measured for the whole JVM, so they include other work
+ * running at the same time, for example concurrent classifications in the same server.
+ */
+public class PhaseMetrics {
+
+	private final String pipeline;
+	private final String runId;
+	private final String name;
+	private final long wallTimeMillis;
+	private final long cpuTimeMillis;
+	private final long allocatedBytes;
+	private final long peakHeapBytes;
+	private final long gcCount;
+	private final long gcTimeMillis;
+	private final Map<String, Long> counts = new LinkedHashMap<>();
+
+	PhaseMetrics(String pipeline, String runId, String name, long wallTimeMillis, long cpuTimeMillis, long allocatedBytes, long peakHeapBytes, long gcCount, long gcTimeMillis) {
+		this.pipeline = pipeline;
+		this.runId = runId;
+		this.name = name;
+		this.wallTimeMillis = wallTimeMillis;
+		this.cpuTimeMillis = cpuTimeMillis;
+		this.allocatedBytes = allocatedBytes;
+		this.peakHeapBytes = peakHeapBytes;
+		this.gcCount = gcCount;
+		this.gcTimeMillis = gcTimeMillis;
+	}
+
+	/**
+	 * Records a number of rows, axioms, concepts or other items handled by the phase.
+	 */
+	public synchronized PhaseMetrics count(String countName, long value) {
+		counts.put(countName, value);
+		PhaseCountEvent event = new PhaseCountEvent();
+		if (event.shouldCommit()) {
+			event.pipeline = pipeline;
+			event.runId = runId;
+			event.phase = name;
+			event.name = countName;
+			event.value = value;
+			event.commit();
+		}
+		return this;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getWallTimeMillis() {
+		return wallTimeMillis;
+	}
+
+	/**
+	 * @return CPU time of the whole process during the phase, including the threads of other runs, or -1 if not supported by the JVM.
+	 */
+	public long getCpuTimeMillis() {
+		return cpuTimeMillis;
+	}
+
+	/**
+	 * @return bytes allocated during the phase by all threads of the process, including the threads of other runs.
+	 * Counts the threads alive at the end of the phase and the threads which reported their allocation as they ended,
+	 * see {@link ResourceMonitor#threadEnding()}, or -1 if not supported by the JVM.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return the highest heap use of the process seen before a garbage collection or at the end of the phase.
+	 */
+	public long getPeakHeapBytes() {
+		return peakHeapBytes;
+	}
+
+	/**
+	 * @return garbage collections of the process during the phase.
+	 */
+	public long getGcCount() {
+		return gcCount;
+	}
+
+	/**
+	 * @return time spent in garbage collections of the process during the phase.
+	 */
+	public long getGcTimeMillis() {
+		return gcTimeMillis;
+	}
+
+	public synchronized Map<String, Long> getCounts() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(counts));
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the resources used by each phase of a classification or conversion run.
+ * Each checkpoint ends the current phase, in the same way as {@link org.snomed.otf.owltoolkit.util.TimerUtil}.
+ * The report can be read programmatically or written as JSON for tracking performance between releases.
+ * Only wall time belongs to the run alone. CPU time, allocation, heap and garbage collection are measured for the whole
+ * process, the JSON names them with a "process" prefix, so they include any other run in progress at the same time.
+ */
+public class PipelineMetrics {
+
+	private final String pipeline;
+	private final String runId;
+	private final Date startDate;
+	private final List<PhaseMetrics> phases = new ArrayList<>();
+	private final long start;
+	private ResourceSnapshot lastCheck;
+	// Highest heap use seen during the current phase
+	private long phasePeakHeapBytes;
+	// Memory allocated during the current phase by threads which have ended, by thread id
+	private final Map<Long, Long> endedThreadAllocatedBytes = new HashMap<>();
+	private PhaseEvent phaseEvent;
+	private long finishedWallTimeMillis = -1;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * @param pipeline the kind of run, for example "classification".
+	 * @param runId the id of the run, for example the classification id.
+	 */
+	public PipelineMetrics(String pipeline, String runId) {
+		this.pipeline = pipeline;
+		this.runId = runId;
+		startDate = new Date();
+		lastCheck = ResourceSnapshot.take();
+		start = lastCheck.nanoTime;
+		phasePeakHeapBytes = lastCheck.heapUsedBytes;
+		phaseEvent = beginPhaseEvent();
+		ResourceMonitor.register(this);
+	}
+
+	/**
+	 * Ends the current phase and starts the next one.
+	 * @return the metrics of the ended phase, counts can be added to it.
+	 */
+	public synchronized PhaseMetrics checkpoint(String phaseName) {
+		phaseEvent.end();
+		if (phaseEvent.shouldCommit()) {
+			phaseEvent.pipeline = pipeline;
+			phaseEvent.runId = runId;
+			phaseEvent.phase = phaseName;
+			phaseEvent.commit();
+		}
+		ResourceSnapshot now = ResourceSnapshot.take();
+		PhaseMetrics phase = now.since(pipeline, runId, phaseName, lastCheck, Math.max(phasePeakHeapBytes, now.heapUsedBytes), endedThreadAllocatedBytes);
+		phases.add(phase);
+		lastCheck = now;
+		phasePeakHeapBytes = now.heapUsedBytes;
+		endedThreadAllocatedBytes.clear();
+		phaseEvent = beginPhaseEvent();
+		logger.info("Timer {}: {} took {} seconds", pipeline, phaseName, phase.getWallTimeMillis() / 1000f);
+		return phase;
+	}
+
+	synchronized void recordHeapUsed(long heapUsedBytes) {
+		phasePeakHeapBytes = Math.max(phasePeakHeapBytes, heapUsedBytes);
+	}
+
+	synchronized void recordThreadEnded(long threadId, long allocatedBytes) {
+		if (lastCheck.threadAllocatedBytes != null) {
+			endedThreadAllocatedBytes.put(threadId, allocatedBytes - lastCheck.threadAllocatedBytes.getOrDefault(threadId, 0L));
+		}
+	}
+
+	private static PhaseEvent beginPhaseEvent() {
+		PhaseEvent event = new PhaseEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * @return the last phase recorded, for adding counts to a phase ended elsewhere, or null if there is none.
+	 */
+	public synchronized PhaseMetrics getLastPhase() {
+		return phases.isEmpty() ? null : phases.get(phases.size() - 1);
+	}
+
+	public synchronized void finish() {
+		ResourceMonitor.unregister(this);
+		finishedWallTimeMillis = (System.nanoTime() - start) / 1_000_000;
+		logger.info("Timer {}: total took {} seconds", pipeline, finishedWallTimeMillis / 1000f);
+	}
+
+	public String getPipeline() {
+		return pipeline;
+	}
+
+	public String getRunId() {
+		return runId;
+	}
+
+	public Date getStartDate() {
+		return startDate;
+	}
+
+	public synchronized List<PhaseMetrics> getPhases() {
+		return Collections.unmodifiableList(new ArrayList<>(phases));
+	}
+
+	/**
+	 * @return total wall time or -1 if the run has not finished.
+	 */
+	public synchronized long getWallTimeMillis() {
+		return finishedWallTimeMillis;
+	}
+
+	public void writeJson(File file) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write(toJson());
+		}
+	}
+
+	public synchronized String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"pipeline\": ").append(quote(pipeline)).append(",\n");
+		json.append("  \"runId\": ").append(quote(runId)).append(",\n");
+		json.append("  \"startTime\": ").append(startDate.getTime()).append(",\n");
+		json.append("  \"wallTimeMillis\": ").append(finishedWallTimeMillis).append(",\n");
+		json.append("  \"phases\": [");
+		for (int i = 0; i < phases.size(); i++) {
+			PhaseMetrics phase = phases.get(i);
+			json.append(i == 0 ? "\n" : ",\n");
+			json.append("    {\"name\": ").append(quote(phase.getName()))
+					.append(", \"wallTimeMillis\": ").append(phase.getWallTimeMillis())
+					.append(", \"processCpuTimeMillis\": ").append(phase.getCpuTimeMillis())
+					.append(", \"processAllocatedBytes\": ").append(phase.getAllocatedBytes())
+					.append(", \"processPeakHeapBytes\": ").append(phase.getPeakHeapBytes())
+					.append(", \"processGcCount\": ").append(phase.getGcCount())
+					.append(", \"processGcTimeMillis\": ").append(phase.getGcTimeMillis())
+					.append(", \"counts\": {");
+			boolean first = true;
+			for (Map.Entry<String, Long> count : phase.getCounts().entrySet()) {
+				json.append(first ? "" : ", ").append(quote(count.getKey())).append(": ").append(count.getValue());
+				first = false;
+			}
+			json.append("}}");
+		}
+		json.append(phases.isEmpty() ? "]\n" : "\n  ]\n");
+		json.append("}\n");
+		return json.toString();
+	}
+
+	private static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	private static final class ResourceSnapshot {
+
+		private final long nanoTime;
+		private final long cpuTimeNanos;
+		private final Map<Long, Long> threadAllocatedBytes;
+		private final long gcCount;
+		private final long gcTimeMillis;
+		private final long heapUsedBytes;
+
+		private ResourceSnapshot(long nanoTime, long cpuTimeNanos, Map<Long, Long> threadAllocatedBytes, long gcCount, long gcTimeMillis, long heapUsedBytes) {
+			this.nanoTime = nanoTime;
+			this.cpuTimeNanos = cpuTimeNanos;
+			this.threadAllocatedBytes = threadAllocatedBytes;
+			this.gcCount = gcCount;
+			this.gcTimeMillis = gcTimeMillis;
+			this.heapUsedBytes = heapUsedBytes;
+		}
+
+		private static ResourceSnapshot take() {
+			long gcCount = 0;
+			long gcTimeMillis = 0;
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				gcCount += Math.max(collector.getCollectionCount(), 0);
+				gcTimeMillis += Math.max(collector.getCollectionTime(), 0);
+			}
+			long cpuTimeNanos = -1;
+			OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+			if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+				cpuTimeNanos = ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuTime();
+			}
+			Map<Long, Long> threadAllocatedBytes = null;
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+				long[] threadIds = threads.getAllThreadIds();
+				long[] allocatedBytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadIds);
+				threadAllocatedBytes = new HashMap<>();
+				for (int i = 0; i < threadIds.length; i++) {
+					if (allocatedBytes[i] >= 0) {
+						threadAllocatedBytes.put(threadIds[i], allocatedBytes[i]);
+					}
+				}
+			}
+			return new ResourceSnapshot(System.nanoTime(), cpuTimeNanos, threadAllocatedBytes, gcCount, gcTimeMillis, ResourceMonitor.getHeapUsedBytes());
+		}
+
+		/**
+		 * @param endedThreadAllocatedBytes allocation of threads which ended during the phase, only threads which
+		 * report their allocation as they end are included.
+		 */
+		private PhaseMetrics since(String pipeline, String runId, String phaseName, ResourceSnapshot previous, long peakHeapBytes,
+				Map<Long, Long> endedThreadAllocatedBytes) {
+			long allocatedBytes = -1;
+			if (threadAllocatedBytes != null && previous.threadAllocatedBytes != null) {
+				allocatedBytes = 0;
+				for (Map.Entry<Long, Long> entry : threadAllocatedBytes.entrySet()) {
+					// An ending thread may still be listed, its reported allocation is used instead
+					if (!endedThreadAllocatedBytes.containsKey(entry.getKey())) {
+						allocatedBytes += entry.getValue() - previous.threadAllocatedBytes.getOrDefault(entry.getKey(), 0L);
+					}
+				}
+				for (long endedAllocatedBytes : endedThreadAllocatedBytes.values()) {
+					allocatedBytes += endedAllocatedBytes;
+				}
+			}
+			return new PhaseMetrics(
+					pipeline,
+					runId,
+					phaseName,
+					(nanoTime - previous.nanoTime) / 1_000_000,
+					cpuTimeNanos >= 0 && previous.cpuTimeNanos >= 0 ? (cpuTimeNanos - previous.cpuTimeNanos) / 1_000_000 : -1,
+					allocatedBytes,
+					peakHeapBytes,
+					gcCount - previous.gcCount,
+					gcTimeMillis - previous.gcTimeMillis);
+		}
+	}
+}
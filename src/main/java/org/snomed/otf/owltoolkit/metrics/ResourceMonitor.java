@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Passes heap use seen by the garbage collectors and the allocation of ending threads to the runs in progress.
+ * JVM wide state, such as the peak usage of memory pools, is only read so one run does not reset another run's state.
+ * The figures are for the whole process: the heap peak, allocation and CPU time of a phase include the work of other
+ * runs in progress at the same time.
+ */
+public final class ResourceMonitor {
+
+	// Weak so runs which are never finished are not kept
+	private static final Set<PipelineMetrics> RUNS = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+	private static final Set<String> HEAP_POOL_NAMES = new HashSet<>();
+
+	static {
+		for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPool.getType() == MemoryType.HEAP) {
+				HEAP_POOL_NAMES.add(memoryPool.getName());
+			}
+		}
+		// Heap use only falls during a collection so the use before each collection and at each checkpoint are the peaks
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				((NotificationEmitter) collector).addNotificationListener(ResourceMonitor::handleCollection, null, null);
+			}
+		}
+	}
+
+	private ResourceMonitor() {
+	}
+
+	/**
+	 * Passes the memory allocated by the current thread to the runs in progress. Called by pool threads as their
+	 * last action, the allocation of threads which end during a phase is otherwise lost.
+	 */
+	public static void threadEnding() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+		long threadId = Thread.currentThread().getId();
+		long allocatedBytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId);
+		if (allocatedBytes >= 0) {
+			for (PipelineMetrics run : getRuns()) {
+				run.recordThreadEnded(threadId, allocatedBytes);
+			}
+		}
+	}
+
+	/**
+	 * @return the runnable followed by {@link #threadEnding()}, for threads which may end during a run.
+	 */
+	public static Runnable recordingAllocation(Runnable runnable) {
+		return () -> {
+			try {
+				runnable.run();
+			} finally {
+				threadEnding();
+			}
+		};
+	}
+
+	static void register(PipelineMetrics run) {
+		RUNS.add(run);
+	}
+
+	static void unregister(PipelineMetrics run) {
+		RUNS.remove(run);
+	}
+
+	static long getHeapUsedBytes() {
+		long usedBytes = 0;
+		for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPool.getType() == MemoryType.HEAP) {
+				usedBytes += memoryPool.getUsage().getUsed();
+			}
+		}
+		return usedBytes;
+	}
+
+	private static List<PipelineMetrics> getRuns() {
+		synchronized (RUNS) {
+			return new ArrayList<>(RUNS);
+		}
+	}
+
+	private static void handleCollection(Notification notification, Object handback) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+		long usedBytes = 0;
+		for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+			if (HEAP_POOL_NAMES.contains(pool.getKey())) {
+				usedBytes += pool.getValue().getUsed();
+			}
+		}
+		for (PipelineMetrics run : getRuns()) {
+			run.recordHeapUsed(usedBytes);
+		}
+	}
+}
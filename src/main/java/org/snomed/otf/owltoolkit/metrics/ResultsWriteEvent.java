@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event spanning the write of the classification results archive.
+ */
+@Name("org.snomed.otf.owltoolkit.ResultsWrite")
+@Label("Classification Results Write")
+@Category({"SNOMED OWL Toolkit"})
+public final class ResultsWriteEvent extends Event {
+
+	@Label("Relationship Rows")
+	public int relationshipRows;
+
+	@Label("Concrete Relationship Rows")
+	public int concreteRelationshipRows;
+
+	@Label("Equivalent Concept Rows")
+	public int equivalentConceptRows;
+}
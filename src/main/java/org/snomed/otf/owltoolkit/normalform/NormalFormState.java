@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.normalform;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.ontology.PropertyChain;
+import org.snomed.otf.owltoolkit.util.BinaryCodec;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The result of the first normal form pass of a classification, kept so that a later classification can reuse it for
+ * concepts which are not affected by the changes made in between.
+ * For each concept this holds the inferred parents, a hash of the stated and inferred relationships that were normalised
+ * and the generated non is-a relationships.
+ */
+public class NormalFormState {
+
+	// Increment when the layout of this file changes so that old state files are ignored, relationships are encoded by BinaryCodec
+	private static final int FORMAT_VERSION = 1;
+	private static final int MAGIC = 0x534E4E46;// "SNNF"
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final Set<PropertyChain> propertyChains;
+	private final Map<Long, long[]> parentIds = new Long2ObjectOpenHashMap<>();
+	private final Long2LongOpenHashMap inputHashes = new Long2LongOpenHashMap();
+	private final Map<Long, List<Relationship>> nonIsAFragments = new Long2ObjectOpenHashMap<>();
+
+	public NormalFormState(Set<PropertyChain> propertyChains) {
+		this.propertyChains = new HashSet<>(propertyChains);
+	}
+
+	/**
+	 * Records the state of a concept. Relationships are copied because the change processor modifies the originals.
+	 */
+	synchronized void put(long conceptId, Set<Long> parents, long inputHash, Collection<Relationship> fragments) {
+		long[] parentArray = new long[parents.size()];
+		int i = 0;
+		for (Long parentId : parents) {
+			parentArray[i++] = parentId;
+		}
+		Arrays.sort(parentArray);
+		parentIds.put(conceptId, parentArray);
+		inputHashes.put(conceptId, inputHash);
+		List<Relationship> copies = new ArrayList<>(fragments.size());
+		for (Relationship fragment : fragments) {
+			copies.add(copy(fragment));
+		}
+		nonIsAFragments.put(conceptId, copies);
+	}
+
+	boolean hasSameParents(long conceptId, Set<Long> parents) {
+		long[] previousParents = parentIds.get(conceptId);
+		if (previousParents == null || previousParents.length != parents.size()) {
+			return false;
+		}
+		for (Long parentId : parents) {
+			if (Arrays.binarySearch(previousParents, parentId) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	boolean hasSameInputHash(long conceptId, long inputHash) {
+		return inputHashes.containsKey(conceptId) && inputHashes.get(conceptId) == inputHash;
+	}
+
+	/**
+	 * @return the generated non is-a relationships of the concept or null if the concept was not normalised.
+	 */
+	List<Relationship> getNonIsAFragments(long conceptId) {
+		return nonIsAFragments.get(conceptId);
+	}
+
+	/**
+	 * @return copies of the generated non is-a relationships of the concept, for reuse by a run of the normal form.
+	 * The change processor modifies the relationships it is given and the state may be reused by more than one run.
+	 */
+	List<Relationship> copyNonIsAFragments(long conceptId) {
+		List<Relationship> fragments = nonIsAFragments.get(conceptId);
+		List<Relationship> copies = new ArrayList<>(fragments.size());
+		for (Relationship fragment : fragments) {
+			copies.add(copy(fragment));
+		}
+		return copies;
+	}
+
+	public Set<PropertyChain> getPropertyChains() {
+		return propertyChains;
+	}
+
+	public int size() {
+		return nonIsAFragments.size();
+	}
+
+	/**
+	 * @return the state held in the file or null if the file does not exist or was written by a different version.
+	 */
+	public static NormalFormState read(File stateFile) throws IOException {
+		if (!stateFile.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile), BUFFER_SIZE))) {
+			if (!BinaryCodec.readHeader(in, MAGIC, FORMAT_VERSION)) {
+				return null;
+			}
+			int chains = in.readInt();
+			Set<PropertyChain> propertyChains = new HashSet<>();
+			for (int i = 0; i < chains; i++) {
+				propertyChains.add(new PropertyChain(in.readLong(), in.readLong(), in.readLong()));
+			}
+			NormalFormState state = new NormalFormState(propertyChains);
+			int concepts = in.readInt();
+			for (int i = 0; i < concepts; i++) {
+				long conceptId = in.readLong();
+				long[] parents = new long[in.readInt()];
+				for (int p = 0; p < parents.length; p++) {
+					parents[p] = in.readLong();
+				}
+				state.parentIds.put(conceptId, parents);
+				state.inputHashes.put(conceptId, in.readLong());
+				int fragmentCount = in.readInt();
+				List<Relationship> fragments = new ArrayList<>(fragmentCount);
+				for (int f = 0; f < fragmentCount; f++) {
+					fragments.add(BinaryCodec.readRelationship(in));
+				}
+				state.nonIsAFragments.put(conceptId, fragments);
+			}
+			return state;
+		}
+	}
+
+	/**
+	 * Writes the state to a temporary file which then replaces the given file so that an interrupted write does not
+	 * leave a truncated state behind.
+	 */
+	public synchronized void write(File stateFile) throws IOException {
+		File directory = stateFile.getAbsoluteFile().getParentFile();
+		File tempFile = File.createTempFile(stateFile.getName(), ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE))) {
+				BinaryCodec.writeHeader(out, MAGIC, FORMAT_VERSION);
+				out.writeInt(propertyChains.size());
+				for (PropertyChain propertyChain : propertyChains) {
+					out.writeLong(propertyChain.getSourceType());
+					out.writeLong(propertyChain.getDestinationType());
+					out.writeLong(propertyChain.getInferredType());
+				}
+				out.writeInt(nonIsAFragments.size());
+				for (Map.Entry<Long, List<Relationship>> entry : nonIsAFragments.entrySet()) {
+					long conceptId = entry.getKey();
+					out.writeLong(conceptId);
+					long[] parents = parentIds.get(conceptId);
+					out.writeInt(parents.length);
+					for (long parent : parents) {
+						out.writeLong(parent);
+					}
+					out.writeLong(inputHashes.get(conceptId));
+					out.writeInt(entry.getValue().size());
+					for (Relationship relationship : entry.getValue()) {
+						BinaryCodec.writeRelationship(out, relationship);
+					}
+				}
+			}
+			Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static Relationship copy(Relationship relationship) {
+		if (relationship.isConcrete()) {
+			return new Relationship(relationship.getRelationshipId(), relationship.getEffectiveTime(), relationship.getModuleId(), relationship.getTypeId(),
+					relationship.getValue(), relationship.getGroup(), relationship.getUnionGroup(), relationship.isUniversal(), relationship.getCharacteristicTypeId());
+		}
+		return new Relationship(relationship.getRelationshipId(), relationship.getEffectiveTime(), relationship.getModuleId(), relationship.getTypeId(),
+				relationship.getDestinationId(), relationship.getGroup(), relationship.getUnionGroup(), relationship.isUniversal(), relationship.getCharacteristicTypeId());
+	}
+}
@@ -24,6 +24,7 @@ import java.util.*;
 /**
  * Compares two collections of change subjects and calls template methods whenever a removed, added or unmodified
  * element is encountered.
+ * Changes for different concepts may be applied concurrently.
  */
 public class RelationshipChangeProcessor {
 
@@ -53,9 +54,9 @@ public class RelationshipChangeProcessor {
 
 	private final Map<Long, Set<Relationship>> addedStatements;
 	private final Map<Long, Set<Relationship>> removedStatements;
-	private Long addedCount;
-	private Long updatedCount;
-	private Long removedDueToConceptInactivationCount;
+	private long addedCount;
+	private long updatedCount;
+	private long removedDueToConceptInactivationCount;
 
 	public RelationshipChangeProcessor() {
 		addedCount = 0L;
@@ -117,12 +118,10 @@ public class RelationshipChangeProcessor {
 				// Update existing relationship
 				Relationship existingRelationship = updatedRelationshipNewOldMap.get(newMini);
 				existingRelationship.setGroup(newMini.getGroup());
-				handleAddedOrChangedRelationship(conceptId, existingRelationship);
-				updatedCount++;
+				handleChangedRelationship(conceptId, existingRelationship);
 			} else if (Collections.binarySearch(sortedOld, newMini, RELATIONSHIP_COMPARATOR_ALL_FIELDS) < 0) {
 				newMini.clearId();// Make sure stated relationship ids don't get through into new inferred relationship results
-				handleAddedOrChangedRelationship(conceptId, newMini);
-				addedCount++;
+				handleAddedRelationship(conceptId, newMini);
 			}
 		}
 	}
@@ -133,18 +132,24 @@ public class RelationshipChangeProcessor {
 		return sortedOld;
 	}
 
-	private void handleAddedOrChangedRelationship(long conceptId, Relationship addedSubject) {
+	private synchronized void handleAddedRelationship(long conceptId, Relationship addedSubject) {
 		addedStatements.computeIfAbsent(conceptId, k -> new HashSet<>()).add(addedSubject);
+		addedCount++;
 	}
 
-	void handleRedundantRelationship(long conceptId, Relationship removedSubject) {
+	private synchronized void handleChangedRelationship(long conceptId, Relationship changedSubject) {
+		addedStatements.computeIfAbsent(conceptId, k -> new HashSet<>()).add(changedSubject);
+		updatedCount++;
+	}
+
+	synchronized void handleRedundantRelationship(long conceptId, Relationship removedSubject) {
 		//We will preserve any "Additional" characteristic types eg PartOf relationships
 		if (removedSubject.getCharacteristicTypeId() == -1 || removedSubject.getCharacteristicTypeId() != Concepts.ADDITIONAL_RELATIONSHIP_LONG) {
 			removedStatements.computeIfAbsent(conceptId, k -> new HashSet<>()).add(removedSubject);
 		}
 	}
 
-	void processRemovalsDueToInactivation(Long inactiveConceptId, Set<Relationship> inferredRelationships) {
+	synchronized void processRemovalsDueToInactivation(Long inactiveConceptId, Set<Relationship> inferredRelationships) {
 		if (inferredRelationships.isEmpty()) {
 			return;
 		}
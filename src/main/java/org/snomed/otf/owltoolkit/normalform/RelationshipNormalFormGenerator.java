@@ -23,6 +23,8 @@ package org.snomed.otf.owltoolkit.normalform;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.*;
 import com.google.common.collect.Maps.EntryTransformer;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,13 +32,20 @@ import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
 import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
 import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.metrics.ConceptNormalisationEvent;
+import org.snomed.otf.owltoolkit.metrics.NormalFormEvent;
 import org.snomed.otf.owltoolkit.normalform.internal.*;
 import org.snomed.otf.owltoolkit.normalform.transitive.NodeGraph;
 import org.snomed.otf.owltoolkit.ontology.PropertyChain;
+import org.snomed.otf.owltoolkit.taxonomy.ConceptIndex;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
 
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.stream.Collectors;
 
 import static org.snomed.otf.owltoolkit.constants.Concepts.IS_A_LONG;
@@ -66,16 +75,44 @@ public final class RelationshipNormalFormGenerator {
 		}
 		return 0;
 	};
+	// Concepts ready for their second pass are normalised in batches of this size on the pool during an incremental first pass
+	private static final int SECOND_PASS_BATCH_SIZE = 1024;
+	// Order of the relationships hashed as the inputs of a concept
+	private static final Comparator<Relationship> INPUT_ORDER = Comparator.comparingLong(Relationship::getRelationshipId)
+			.thenComparingLong(Relationship::getTypeId)
+			.thenComparingLong(Relationship::getDestinationId)
+			.thenComparingInt(Relationship::getGroup)
+			.thenComparingInt(Relationship::getUnionGroup)
+			.thenComparingLong(Relationship::getCharacteristicTypeId)
+			.thenComparingLong(Relationship::getModuleId)
+			.thenComparingInt(Relationship::getEffectiveTime)
+			.thenComparing(Relationship::isUniversal)
+			.thenComparing(Relationship::getValueAsString, Comparator.nullsFirst(Comparator.naturalOrder()));
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(RelationshipNormalFormGenerator.class);
 
 	private final ReasonerTaxonomy reasonerTaxonomy;
 	private final SnomedTaxonomy snomedTaxonomy;
 	private final Set<PropertyChain> propertyChains;
 
-	private final Map<Long, Collection<Relationship>> generatedNonIsACache = new Long2ObjectOpenHashMap<>();
+	private final ConceptIndex conceptIndex;
+	// Generated non is-a relationships indexed by concept ordinal
+	private final Collection<Relationship>[] generatedNonIsACache;
+	// Reads still to come of the cache entry of each concept, indexed by concept ordinal: the first passes of its children,
+	// its own second pass and the second passes of children which are normalised again because a property chain applies
+	private AtomicIntegerArray pendingCacheReaders;
+	// Children of each concept whose first pass has not run yet, indexed by concept ordinal
+	private int[] pendingChildFirstPasses;
+	private BitSet firstPassCompleted;
+	// Concepts normalised again in the second pass because a property chain applies, which needs the complete transitive graphs
+	private BitSet secondPassDeferred;
+	private final AtomicInteger cachedConcepts = new AtomicInteger();
+	private final AtomicInteger peakCachedConcepts = new AtomicInteger();
+	private final BitSet attributeOrdinals;
 	private final Set<Long> traversableProperties;
 	private final Map<Long, NodeGraph> transitiveNodeGraphs = new HashMap<>();
 	private final Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap;
+	private NormalFormState nextState;
 
 	/**
 	 * Creates a new distribution normal form generator instance.
@@ -91,6 +128,12 @@ public final class RelationshipNormalFormGenerator {
 		this.snomedTaxonomy = snomedTaxonomy;
 		this.propertyChains = propertyChains;
 		this.conceptAxiomStatementMap = conceptAxiomStatementMap;
+		this.conceptIndex = reasonerTaxonomy.getConceptIndex();
+		this.generatedNonIsACache = newRelationshipsArray(conceptIndex.size());
+		this.attributeOrdinals = new BitSet(conceptIndex.size());
+		for (Long attributeId : reasonerTaxonomy.getAttributeIds()) {
+			attributeOrdinals.set(conceptIndex.add(attributeId));
+		}
 
 		traversableProperties = propertyChains.stream().map(PropertyChain::getDestinationType).collect(Collectors.toSet());
 
@@ -106,21 +149,414 @@ public final class RelationshipNormalFormGenerator {
 	 * @return the total number of generated components
 	 */
 	public final void collectNormalFormChanges(final RelationshipChangeProcessor processor) {
+		collectNormalFormChanges(processor, null);
+	}
+
+	/**
+	 * Computes and returns all changes as a result of normal form computation, optionally in parallel.
+	 * In parallel mode concepts are grouped into levels by their depth in the inferred is-a hierarchy.
+	 * Concepts in the same level only depend on the cached results of earlier levels so each level is normalised on the pool
+	 * and the next level starts once it completes. Transitive graph additions are applied in concept order after each level
+	 * so the results do not depend on thread scheduling.
+	 *
+	 * @param processor the change processor to route changes to
+	 * @param pool the pool to normalise each level on, or {@code null} to process concepts serially
+	 */
+	public final void collectNormalFormChanges(final RelationshipChangeProcessor processor, final ForkJoinPool pool) {
+		collectNormalFormChanges(processor, pool, null);
+	}
+
+	/**
+	 * Computes and returns all changes as a result of normal form computation, reusing the first pass results of an
+	 * earlier classification where possible.
+	 * A concept is only normalised again if its own relationships or axioms changed, its inferred parents changed,
+	 * the results of one of its parents changed, the ancestors of any attribute or value it uses changed, or
+	 * a property chain may apply to it. All other concepts take their previous results as-is.
+	 * When reusing results the first pass runs serially in concept order, the second passes of concepts which become
+	 * ready are run in batches on the pool while the first pass goes on.
+	 *
+	 * @param processor the change processor to route changes to
+	 * @param pool the pool to normalise each level on, or {@code null} to process concepts serially
+	 * @param previousState state recorded by an earlier classification or {@code null} to normalise all concepts
+	 */
+	public final void collectNormalFormChanges(final RelationshipChangeProcessor processor, final ForkJoinPool pool, NormalFormState previousState) {
 		LOGGER.info(">>> Relationship normal form generation");
 		final Stopwatch stopwatch = Stopwatch.createStarted();
+		final NormalFormEvent event = new NormalFormEvent();
+		event.begin();
 		final List<Long> entries = reasonerTaxonomy.getConceptIds();
 
+		if (previousState != null && !previousState.getPropertyChains().equals(propertyChains)) {
+			LOGGER.info("Property chains have changed since the previous normal form state, all concepts will be normalised.");
+			previousState = null;
+		}
+
+		final List<List<Long>> levels = pool != null ? getTopologicalLevels(entries) : null;
+		if (pool != null) {
+			LOGGER.info("Normalising {} concepts in {} levels with parallelism {}", entries.size(), levels.size(), pool.getParallelism());
+		}
+
+		// A concept's second pass runs as soon as the first passes of all of its children have read its cache entry,
+		// so the entry is evicted while the first pass carries on and the cache only holds the frontier of the hierarchy
+		countCacheReaders(entries);
+		final List<Long> readyForSecondPass = new ArrayList<>();
+		if (previousState != null) {
+			incrementalFirstNormalisationPass(entries, previousState, readyForSecondPass, processor, pool);
+		} else if (pool == null) {
+			for (Long conceptId : entries) {
+				final Set<Relationship> fragments = firstNormalisationPass(conceptId);
+				recordState(conceptId, fragments);
+				addToTransitiveGraphs(conceptId, fragments);
+				completeFirstPass(conceptId, fragments, readyForSecondPass);
+				applySecondNormalisationPasses(readyForSecondPass, processor, null);
+			}
+		} else {
+			for (List<Long> level : levels) {
+				final List<Set<Relationship>> levelFragments = pool.submit(() ->
+						level.parallelStream().map(this::firstNormalisationPass).collect(Collectors.toList())).join();
+				for (int i = 0; i < level.size(); i++) {
+					recordState(level.get(i), levelFragments.get(i));
+					addToTransitiveGraphs(level.get(i), levelFragments.get(i));
+					completeFirstPass(level.get(i), levelFragments.get(i), readyForSecondPass);
+				}
+				applySecondNormalisationPasses(readyForSecondPass, processor, pool);
+			}
+		}
+		applySecondNormalisationPasses(readyForSecondPass, processor, pool);
+
+		// Concepts which a property chain applies to are normalised again once the transitive graphs are complete
+		if (pool == null) {
+			for (Long conceptId : entries) {
+				if (isSecondPassDeferred(conceptId)) {
+					applySecondNormalisationPass(conceptId, processor);
+				}
+			}
+		} else {
+			// The second pass reads the cached results of parents, which may be modified by the processor, so is also run by level
+			for (List<Long> level : levels) {
+				final List<Long> deferred = level.stream().filter(this::isSecondPassDeferred).collect(Collectors.toList());
+				applySecondNormalisationPasses(deferred, processor, pool);
+			}
+		}
+		LOGGER.info("Cached the first pass results of at most {} of {} concepts at once.", peakCachedConcepts.get(), entries.size());
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.concepts = entries.size();
+			event.levels = levels != null ? levels.size() : 0;
+			event.parallelism = pool != null ? pool.getParallelism() : 1;
+			event.incremental = previousState != null;
+			event.peakCachedConcepts = peakCachedConcepts.get();
+			event.commit();
+		}
+		LOGGER.info(MessageFormat.format("<<< Relationship normal form generation [{0}]", stopwatch.toString()));
+	}
+
+	/**
+	 * Records the first pass results of the next call to collectNormalFormChanges so that a later classification can reuse them.
+	 * @return the state, which is filled during normal form generation
+	 */
+	public NormalFormState recordNormalFormState() {
+		nextState = new NormalFormState(propertyChains);
+		return nextState;
+	}
+
+	private void incrementalFirstNormalisationPass(final List<Long> entries, final NormalFormState previousState,
+			final List<Long> readyForSecondPass, final RelationshipChangeProcessor processor, final ForkJoinPool pool) {
+		// Work out which concepts have different parents or ancestors. Parents are always listed before children.
+		final BitSet walked = new BitSet(conceptIndex.size());
+		final BitSet parentsChanged = new BitSet(conceptIndex.size());
+		final BitSet ancestryChanged = new BitSet(conceptIndex.size());
 		for (Long conceptId : entries) {
-			firstNormalisationPass(conceptId);
+			final int ordinal = conceptIndex.indexOf(conceptId);
+			final Set<Long> parents = reasonerTaxonomy.getParents(conceptId);
+			boolean changed = !previousState.hasSameParents(conceptId, parents);
+			parentsChanged.set(ordinal, changed);
+			for (Long parentId : parents) {
+				changed |= isSet(ancestryChanged, walked, parentId);
+			}
+			ancestryChanged.set(ordinal, changed);
+			walked.set(ordinal);
 		}
 
+		final BitSet fragmentsChanged = new BitSet(conceptIndex.size());
+		int reused = 0;
 		for (Long conceptId : entries) {
-			final Collection<Relationship> existingComponents = snomedTaxonomy.getInferredRelationships((long) conceptId);
-			final Collection<Relationship> generatedComponents = secondNormalisationPass(conceptId);
-			processor.apply(conceptId, existingComponents, generatedComponents);
+			final int ordinal = conceptIndex.indexOf(conceptId);
+			final long inputHash = hashInputs(conceptId);
+			final List<Relationship> previousFragments = previousState.getNonIsAFragments(conceptId);
+			final Set<Relationship> fragments;
+			if (previousFragments != null && previousState.hasSameInputHash(conceptId, inputHash) && !parentsChanged.get(ordinal)
+					&& !isAffected(conceptId, ancestryChanged, walked, fragmentsChanged)) {
+				final List<Relationship> reusedFragments = previousState.copyNonIsAFragments(conceptId);
+				fragments = new HashSet<>(reusedFragments);
+				putCacheEntry(ordinal, ImmutableList.copyOf(reusedFragments));
+				reused++;
+			} else {
+				fragments = firstNormalisationPass(conceptId);
+				if (previousFragments == null || !fragments.equals(new HashSet<>(previousFragments))) {
+					fragmentsChanged.set(ordinal);
+				}
+			}
+			if (nextState != null) {
+				nextState.put(conceptId, reasonerTaxonomy.getParents(conceptId), inputHash, fragments);
+			}
+			addToTransitiveGraphs(conceptId, fragments);
+			completeFirstPass(conceptId, fragments, readyForSecondPass);
+			if (pool == null || readyForSecondPass.size() >= SECOND_PASS_BATCH_SIZE) {
+				applySecondNormalisationPasses(readyForSecondPass, processor, pool);
+			}
 		}
+		LOGGER.info("Reused the previous normal form of {} of {} concepts.", reused, entries.size());
+	}
 
-		LOGGER.info(MessageFormat.format("<<< Relationship normal form generation [{0}]", stopwatch.toString()));
+	/**
+	 * @return true if the normal form of the concept may differ from the previous run even though its own inputs and parents are unchanged.
+	 */
+	private boolean isAffected(final long conceptId, final BitSet ancestryChanged, final BitSet walked, final BitSet fragmentsChanged) {
+		final List<Relationship> inputs = new ArrayList<>(getOwnStatedNonIsARelationships(conceptId));
+		inputs.addAll(getOwnInferredNonIsARelationships(conceptId));
+		for (Long parentId : reasonerTaxonomy.getParents(conceptId)) {
+			if (isSet(fragmentsChanged, walked, parentId)) {
+				return true;
+			}
+			final Collection<Relationship> parentFragments = getCachedNonIsAFragments(parentId);
+			if (parentFragments != null) {
+				inputs.addAll(parentFragments);
+			}
+		}
+		for (Relationship input : inputs) {
+			// Redundancy checks depend on the ancestors of attributes and values
+			if (isSet(ancestryChanged, walked, input.getTypeId())
+					|| (!input.isConcrete() && isSet(ancestryChanged, walked, input.getDestinationId()))) {
+				return true;
+			}
+			// Property chains depend on the transitive graphs of other concepts so are always normalised
+			if (propertyChains.stream().anyMatch(propertyChain -> reasonerTaxonomy.isSameOrAncestor(propertyChain.getSourceType(), input.getTypeId()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the concept's bit is set, concepts which were not walked are treated as set.
+	 */
+	private boolean isSet(final BitSet bitSet, final BitSet walked, final long conceptId) {
+		final int ordinal = conceptIndex.indexOf(conceptId);
+		return ordinal == ConceptIndex.NOT_FOUND || !walked.get(ordinal) || bitSet.get(ordinal);
+	}
+
+	private void recordState(final long conceptId, final Set<Relationship> fragments) {
+		if (nextState != null) {
+			nextState.put(conceptId, reasonerTaxonomy.getParents(conceptId), hashInputs(conceptId), fragments);
+		}
+	}
+
+	/**
+	 * @return a digest of the relationships and axioms of the concept that are used by the first pass, independent of their order.
+	 * Only stable fields are hashed, not {@link Relationship#hashCode()}, because the state may be reused by another JVM.
+	 */
+	private long hashInputs(final long conceptId) {
+		final Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putBoolean(attributeOrdinals.get(conceptIndex.indexOf(conceptId)));
+		putSorted(hasher, getOwnStatedNonIsARelationships(conceptId));
+		putSorted(hasher, getOwnInferredNonIsARelationships(conceptId));
+		return hasher.hash().asLong();
+	}
+
+	private static void putSorted(final Hasher hasher, final Collection<Relationship> relationships) {
+		final Relationship[] sorted = relationships.toArray(new Relationship[0]);
+		Arrays.sort(sorted, INPUT_ORDER);
+		hasher.putInt(sorted.length);
+		for (Relationship relationship : sorted) {
+			hasher.putLong(relationship.getRelationshipId())
+					.putInt(relationship.getEffectiveTime())
+					.putLong(relationship.getModuleId())
+					.putLong(relationship.getTypeId())
+					.putLong(relationship.getDestinationId())
+					.putInt(relationship.getGroup())
+					.putInt(relationship.getUnionGroup())
+					.putBoolean(relationship.isUniversal())
+					.putLong(relationship.getCharacteristicTypeId());
+			final String value = relationship.getValueAsString();
+			if (value != null) {
+				hasher.putBoolean(true).putString(value, StandardCharsets.UTF_8);
+			} else {
+				hasher.putBoolean(false);
+			}
+		}
+	}
+
+	/**
+	 * Runs the second pass of each concept, on the pool when given, and clears the list.
+	 */
+	private void applySecondNormalisationPasses(final List<Long> conceptIds, final RelationshipChangeProcessor processor, final ForkJoinPool pool) {
+		if (conceptIds.isEmpty()) {
+			return;
+		}
+		if (pool == null || conceptIds.size() == 1) {
+			for (Long conceptId : conceptIds) {
+				applySecondNormalisationPass(conceptId, processor);
+			}
+		} else {
+			pool.submit(() -> conceptIds.parallelStream().forEach(conceptId -> applySecondNormalisationPass(conceptId, processor))).join();
+		}
+		conceptIds.clear();
+	}
+
+	private void applySecondNormalisationPass(final long conceptId, final RelationshipChangeProcessor processor) {
+		final ConceptNormalisationEvent event = new ConceptNormalisationEvent();
+		event.begin();
+		final Collection<Relationship> existingComponents = snomedTaxonomy.getInferredRelationships(conceptId);
+		final Collection<Relationship> generatedComponents = secondNormalisationPass(conceptId);
+		processor.apply(conceptId, existingComponents, generatedComponents);
+		releaseCacheEntries(conceptId);
+		commitConceptEvent(event, conceptId, 2);
+	}
+
+	/**
+	 * Counts the readers of each cache entry: the first pass of each child and the second pass of the concept itself.
+	 * Children found to need the complete transitive graphs in their second pass are counted when their first pass completes.
+	 */
+	void countCacheReaders(final List<Long> conceptIds) {
+		pendingCacheReaders = new AtomicIntegerArray(generatedNonIsACache.length);
+		pendingChildFirstPasses = new int[generatedNonIsACache.length];
+		firstPassCompleted = new BitSet(generatedNonIsACache.length);
+		secondPassDeferred = new BitSet(generatedNonIsACache.length);
+		for (Long conceptId : conceptIds) {
+			countCacheReader(conceptId);
+			for (Long parentId : reasonerTaxonomy.getParents(conceptId)) {
+				final int parentOrdinal = getCacheOrdinal(parentId);
+				if (parentOrdinal != ConceptIndex.NOT_FOUND) {
+					pendingCacheReaders.incrementAndGet(parentOrdinal);
+					pendingChildFirstPasses[parentOrdinal]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Releases the reads of the parents' cache entries by the first pass of the concept and adds the concept and any parents
+	 * whose children have all completed their first pass to the concepts ready for the second pass.
+	 * Called on a single thread in concept order, after the state of the concept is recorded.
+	 */
+	private void completeFirstPass(final long conceptId, final Set<Relationship> fragments, final List<Long> readyForSecondPass) {
+		final int ordinal = getCacheOrdinal(conceptId);
+		firstPassCompleted.set(ordinal);
+		final Set<Long> parentIds = reasonerTaxonomy.getParents(conceptId);
+		if (hasPropertyChainSource(fragments)) {
+			// The second pass normalises the concept again, which reads the entries of the parents instead of its own
+			secondPassDeferred.set(ordinal);
+			parentIds.forEach(this::countCacheReader);
+			releaseCacheEntry(conceptId);
+		}
+		for (Long parentId : parentIds) {
+			releaseCacheEntry(parentId);
+			final int parentOrdinal = getCacheOrdinal(parentId);
+			if (parentOrdinal != ConceptIndex.NOT_FOUND && --pendingChildFirstPasses[parentOrdinal] == 0) {
+				addIfReadyForSecondPass(parentId, parentOrdinal, readyForSecondPass);
+			}
+		}
+		addIfReadyForSecondPass(conceptId, ordinal, readyForSecondPass);
+	}
+
+	/**
+	 * A concept is ready once its own first pass and those of its children are complete. The processor can update the
+	 * concept's generated fragments so they must not be read by a first pass after its second pass.
+	 */
+	private void addIfReadyForSecondPass(final long conceptId, final int ordinal, final List<Long> readyForSecondPass) {
+		if (firstPassCompleted.get(ordinal) && pendingChildFirstPasses[ordinal] == 0 && !secondPassDeferred.get(ordinal)) {
+			readyForSecondPass.add(conceptId);
+		}
+	}
+
+	private boolean isSecondPassDeferred(final long conceptId) {
+		return secondPassDeferred.get(conceptIndex.indexOf(conceptId));
+	}
+
+	/**
+	 * Releases the reads of the second pass, the entries of the parents if the concept was normalised again and its own entry otherwise.
+	 */
+	private void releaseCacheEntries(final long conceptId) {
+		if (isSecondPassDeferred(conceptId)) {
+			for (Long parentId : reasonerTaxonomy.getParents(conceptId)) {
+				releaseCacheEntry(parentId);
+			}
+		} else {
+			releaseCacheEntry(conceptId);
+		}
+	}
+
+	private void countCacheReader(final long conceptId) {
+		final int ordinal = getCacheOrdinal(conceptId);
+		if (ordinal != ConceptIndex.NOT_FOUND) {
+			pendingCacheReaders.incrementAndGet(ordinal);
+		}
+	}
+
+	private void releaseCacheEntry(final long conceptId) {
+		final int ordinal = getCacheOrdinal(conceptId);
+		if (ordinal != ConceptIndex.NOT_FOUND && pendingCacheReaders.decrementAndGet(ordinal) == 0 && generatedNonIsACache[ordinal] != null) {
+			generatedNonIsACache[ordinal] = null;
+			cachedConcepts.decrementAndGet();
+		}
+	}
+
+	private void putCacheEntry(final int ordinal, final Collection<Relationship> fragments) {
+		generatedNonIsACache[ordinal] = fragments;
+		peakCachedConcepts.accumulateAndGet(cachedConcepts.incrementAndGet(), Math::max);
+	}
+
+	private int getCacheOrdinal(final long conceptId) {
+		final int ordinal = conceptIndex.indexOf(conceptId);
+		return ordinal < generatedNonIsACache.length ? ordinal : ConceptIndex.NOT_FOUND;
+	}
+
+	int getPendingCacheReaders(final long conceptId) {
+		return pendingCacheReaders.get(conceptIndex.indexOf(conceptId));
+	}
+
+	int getCachedConcepts() {
+		return cachedConcepts.get();
+	}
+
+	int getPeakCachedConcepts() {
+		return peakCachedConcepts.get();
+	}
+
+	private static void commitConceptEvent(final ConceptNormalisationEvent event, final long conceptId, final int pass) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.conceptId = conceptId;
+			event.pass = pass;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Groups concepts by depth so that every concept is in a later level than all of its parents.
+	 * Relies on parents being listed before their children, which is the breadth-first order of the reasoner taxonomy.
+	 */
+	private List<List<Long>> getTopologicalLevels(final List<Long> conceptIds) {
+		// Level plus one by concept ordinal, zero for concepts not yet placed
+		final int[] levelByOrdinal = new int[conceptIndex.size()];
+		final List<List<Long>> levels = new ArrayList<>();
+		for (Long conceptId : conceptIds) {
+			int level = 0;
+			for (Long parentId : reasonerTaxonomy.getParents(conceptId)) {
+				final int parentOrdinal = conceptIndex.indexOf(parentId);
+				if (parentOrdinal != ConceptIndex.NOT_FOUND && parentOrdinal < levelByOrdinal.length) {
+					level = Math.max(level, levelByOrdinal[parentOrdinal]);
+				}
+			}
+			levelByOrdinal[conceptIndex.indexOf(conceptId)] = level + 1;
+			if (level == levels.size()) {
+				levels.add(new ArrayList<>());
+			}
+			levels.get(level).add(conceptId);
+		}
+		return levels;
 	}
 
 	/**
@@ -129,14 +565,20 @@ public final class RelationshipNormalFormGenerator {
 	 * This hierarchy is available during the first pass because of the breath first order of processing concepts.
 	 *
 	 * @param conceptId the concept for which components should be generated
+	 * @return the generated non is-a components
 	 */
-	private void firstNormalisationPass(long conceptId) {
+	private Set<Relationship> firstNormalisationPass(long conceptId) {
+		final ConceptNormalisationEvent event = new ConceptNormalisationEvent();
+		event.begin();
 		final Set<Relationship> inferredNonIsAFragments = getInferredNonIsAFragmentsInNormalForm(conceptId);
 
 		// Place results in the cache, so children can re-use it
-		generatedNonIsACache.put(conceptId, ImmutableList.copyOf(inferredNonIsAFragments));
+		putCacheEntry(conceptIndex.indexOf(conceptId), ImmutableList.copyOf(inferredNonIsAFragments));
+		commitConceptEvent(event, conceptId, 1);
+		return inferredNonIsAFragments;
+	}
 
-		// Add to transitive graphs
+	private void addToTransitiveGraphs(long conceptId, Set<Relationship> inferredNonIsAFragments) {
 		inferredNonIsAFragments.stream().filter(r -> traversableProperties.contains(r.getTypeId())).forEach(r ->
 				transitiveNodeGraphs.get(r.getTypeId()).addParent(conceptId, r.getDestinationId()));
 	}
@@ -156,23 +598,31 @@ public final class RelationshipNormalFormGenerator {
 		// Step 1: collect IS-A relationships
 		final Iterable<Relationship> inferredIsAFragments = getInferredIsAFragments(conceptId, directSuperTypes);
 
-		Iterable<Relationship> inferredNonIsAFragments = generatedNonIsACache.get(conceptId);
+		// Concepts with a relationship which a property chain applies to are normalised again
+		final Iterable<Relationship> inferredNonIsAFragments = isSecondPassDeferred(conceptId)
+				? getInferredNonIsAFragmentsInNormalForm(conceptId)
+				: getCachedNonIsAFragments(conceptId);
+
+		return ImmutableList.copyOf(Iterables.concat(inferredIsAFragments, inferredNonIsAFragments));
+	}
+
+	/**
+	 * @return true if there is a property chain for one of the relationships
+	 */
+	private boolean hasPropertyChainSource(final Iterable<Relationship> inferredNonIsAFragments) {
 		if (!propertyChains.isEmpty()) {
 			for (Relationship inferredNonIsAFragment : inferredNonIsAFragments) {
-				// Is there a property chain for this relationship?
 				if (propertyChains.stream().anyMatch(propertyChain -> propertyChain.getSourceType().equals(inferredNonIsAFragment.getTypeId()))) {
-					inferredNonIsAFragments = getInferredNonIsAFragmentsInNormalForm(conceptId);
-					break;
+					return true;
 				}
 			}
 		}
-
-		return ImmutableList.copyOf(Iterables.concat(inferredIsAFragments, inferredNonIsAFragments));
+		return false;
 	}
 
 	private Set<Relationship> getInferredNonIsAFragmentsInNormalForm(Long conceptId) {
 
-		if (reasonerTaxonomy.getAttributeIds().contains(conceptId)) {
+		if (attributeOrdinals.get(conceptIndex.indexOf(conceptId))) {
 			// Attributes have no attributes, only parents.
 			return Collections.emptySet();
 		}
@@ -190,6 +640,16 @@ public final class RelationshipNormalFormGenerator {
 			otherNonIsAFragments.put(directSuperTypeId, getCachedNonIsAFragments(directSuperTypeId));
 		}
 
+		final Collection<Relationship> ownStatedNonIsaRelationships = getOwnStatedNonIsARelationships(conceptId);
+		final Collection<Relationship> ownInferredNonIsaFragments = getOwnInferredNonIsARelationships(conceptId);
+
+		return getInferredNonIsAFragments(conceptId,
+				ownInferredNonIsaFragments,
+				ownStatedNonIsaRelationships,
+				otherNonIsAFragments);
+	}
+
+	private Collection<Relationship> getOwnStatedNonIsARelationships(final Long conceptId) {
 		Set<AxiomRepresentation> axiomRepresentations = conceptAxiomStatementMap.get(conceptId);
 		final Collection<Relationship> ownStatedNonIsaRelationships;
 		if (axiomRepresentations == null) {
@@ -206,13 +666,11 @@ public final class RelationshipNormalFormGenerator {
 					.collect(Collectors.toList()));
 		}
 
-		final Collection<Relationship> ownInferredFragments = snomedTaxonomy.getInferredRelationships(conceptId);
-		final Collection<Relationship> ownInferredNonIsaFragments = Collections2.filter(ownInferredFragments, input -> input.getTypeId() != IS_A_LONG);
+		return ownStatedNonIsaRelationships;
+	}
 
-		return getInferredNonIsAFragments(conceptId,
-				ownInferredNonIsaFragments,
-				ownStatedNonIsaRelationships,
-				otherNonIsAFragments);
+	private Collection<Relationship> getOwnInferredNonIsARelationships(final long conceptId) {
+		return snomedTaxonomy.getInferredNonIsARelationships(conceptId);
 	}
 
 	/**
@@ -278,8 +736,14 @@ public final class RelationshipNormalFormGenerator {
 		return fromGroupSet(groups);
 	}
 
-	private Collection<Relationship> getCachedNonIsAFragments(final long directSuperTypeId) {
-		return generatedNonIsACache.get(directSuperTypeId);
+	private Collection<Relationship> getCachedNonIsAFragments(final long conceptId) {
+		final int ordinal = conceptIndex.indexOf(conceptId);
+		return ordinal == ConceptIndex.NOT_FOUND ? null : generatedNonIsACache[ordinal];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Collection<Relationship>[] newRelationshipsArray(final int length) {
+		return new Collection[length];
 	}
 
 	private Iterable<Relationship> getInferredIsAFragments(final long conceptId, final Set<Long> parentIds) {
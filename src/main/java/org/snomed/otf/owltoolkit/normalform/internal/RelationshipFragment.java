@@ -21,8 +21,6 @@
 package org.snomed.otf.owltoolkit.normalform.internal;
 
 import com.google.common.base.Objects;
-import com.google.common.collect.Sets;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
 import org.snomed.otf.owltoolkit.domain.Relationship;
 import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
@@ -133,20 +131,20 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 		 *
 		 */
 
-		final Set<Long> BAttributeClosure = getTransitiveClosure(B.getTypeId());
+		final ReasonerTaxonomy reasonerTaxonomy = relationshipNormalFormGenerator.getReasonerTaxonomy();
+		final long BTypeId = B.getTypeId();
 
 		if (!A.isConcreteValue()) {
-			final Set<Long> BValueClosure = getTransitiveClosure(B.getDestinationId());
-
 			// Rule 1
-			if (BAttributeClosure.contains(A.getTypeId()) && BValueClosure.contains(A.getDestinationId())) {
+			if (reasonerTaxonomy.isSameOrAncestor(A.getTypeId(), BTypeId)
+					&& reasonerTaxonomy.isSameOrAncestor(A.getDestinationId(), B.getDestinationId())) {
 				return true;
 			}
 
 			// Rule 2
 			else {
 				Set<PropertyChain> relevantPropertyChains = relationshipNormalFormGenerator.getPropertyChains().stream()
-						.filter(propertyChain -> BAttributeClosure.contains(propertyChain.getSourceType()))
+						.filter(propertyChain -> reasonerTaxonomy.isSameOrAncestor(propertyChain.getSourceType(), BTypeId))
 						.filter(propertyChain -> propertyChain.getInferredType().equals(A.getTypeId()))
 						.collect(Collectors.toSet());
 				for (PropertyChain propertyChain : relevantPropertyChains) {
@@ -158,7 +156,7 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 			}
 		} else {
 			// Rule 1
-			if (BAttributeClosure.contains(A.getTypeId()) && A.getValue() != null && A.getValue().equals(B.getValue())) {
+			if (reasonerTaxonomy.isSameOrAncestor(A.getTypeId(), BTypeId) && A.getValue() != null && A.getValue().equals(B.getValue())) {
 				return true;
 			}
 
@@ -174,12 +172,11 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 
 	private boolean hasCommonExhaustiveSuperType(final RelationshipFragment other) {
 
-		final Set<Long> valueAncestors = relationshipNormalFormGenerator.getReasonerTaxonomy().getAncestors(getDestinationId());
-		final Set<Long> otherValueAncestors = relationshipNormalFormGenerator.getReasonerTaxonomy().getAncestors(other.getDestinationId());
-		final Set<Long> commonAncestors = Sets.intersection(valueAncestors, otherValueAncestors);
+		final ReasonerTaxonomy reasonerTaxonomy = relationshipNormalFormGenerator.getReasonerTaxonomy();
+		final long otherDestinationId = other.getDestinationId();
 
-		for (Long commonAncestor : commonAncestors) {
-			if (isExhaustive(commonAncestor)) {
+		for (Long ancestor : reasonerTaxonomy.getAncestors(getDestinationId())) {
+			if (reasonerTaxonomy.isAncestor(ancestor, otherDestinationId) && isExhaustive(ancestor)) {
 				return true;
 			}
 		}
@@ -191,23 +188,6 @@ public final class RelationshipFragment implements SemanticComparable<Relationsh
 		return relationshipNormalFormGenerator.getSnomedTaxonomy().isExhaustive(conceptId);
 	}
 
-	/**
-	 * Collects all parent concepts reachable from the specified concept. The
-	 * returned set also includes the starting concept.
-	 *
-	 * @param conceptId
-	 *            the concept to start from
-	 *
-	 * @return a set containing the starting concept and all reachable
-	 *         supertypes
-	 */
-	private Set<Long> getTransitiveClosure(final long conceptId) {
-		final Set<Long> ancestors = relationshipNormalFormGenerator.getReasonerTaxonomy().getAncestors(conceptId);
-		final Set<Long> conceptAndAncestors = new LongOpenHashSet(ancestors);
-		conceptAndAncestors.add(conceptId);
-		return conceptAndAncestors;
-	}
-
 	private Set<Long> getPropertyChainTransitiveClosure(final long conceptId, Long chainDestinationType) {
 		// Build closure containing all possible hops using chainDestinationType
 		// For every concept found also add its super types
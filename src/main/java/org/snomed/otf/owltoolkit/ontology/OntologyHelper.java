@@ -15,6 +15,8 @@ public class OntologyHelper {
 	}
 
 	public static long getConceptId(final OWLNamedObject owlNamedObject) {
-		return Long.parseLong(owlNamedObject.getIRI().toString().substring(OntologyService.SNOMED_CORE_COMPONENTS_URI.length()));
+		// Parse in place rather than taking a substring
+		String iri = owlNamedObject.getIRI().toString();
+		return Long.parseLong(iri, OntologyService.SNOMED_CORE_COMPONENTS_URI.length(), iri.length(), 10);
 	}
 }
@@ -35,11 +35,13 @@ import org.snomed.otf.owltoolkit.taxonomy.Description;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
 import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
 
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.lang.Long.parseLong;
 import static org.snomed.otf.owltoolkit.domain.Relationship.*;
@@ -53,6 +55,7 @@ public class OntologyService {
 	public static final String COLON = ":";
 	public static final String ROLE_GROUP_SCTID = "609096000";
 	public static final String ROLE_GROUP_OUTDATED_CONSTANT = "roleGroup";
+	private static final long ROLE_GROUP_SCTID_LONG = parseLong(ROLE_GROUP_SCTID);
 	public static final String SNOMED_ROLE_GROUP_SHORT_URI = COLON + ROLE_GROUP_SCTID;
 	public static final String SNOMED_ROLE_GROUP_FULL_URI = SNOMED_CORE_COMPONENTS_URI + ROLE_GROUP_SCTID;
 	public static final String CORE_COMPONENT_NAMESPACE_PATTERN = "<http://snomed.info/id/([0-9]+)>";
@@ -65,9 +68,16 @@ public class OntologyService {
 	private static final String SKOS_DEFINITION_LABEL_URI = SKOS_URI + "definition";
 	public static final String LANGUAGE_REFSET_DIALECT_MAP_PROPERTIES = "language-refset-dialect-map.properties";
 
+	// Number of axioms added to an ontology at a time
+	private static final int ONTOLOGY_BATCH_SIZE = 10_000;
+
+	// Number of concepts converted to axioms by one task
+	private static final int AXIOM_CREATION_BATCH_SIZE = 1_000;
+
 	private final OWLOntologyManager manager;
 	private OWLDataFactory factory;
 	private DefaultPrefixManager prefixManager;
+	private final OwlEntityCache entityCache;
 	private final Set<Long> ungroupedAttributes;
 	private AtomicLong missingDialectWarnings;
 
@@ -77,6 +87,7 @@ public class OntologyService {
 		factory = new OWLDataFactoryImpl();
 		prefixManager = new DefaultPrefixManager();
 		prefixManager.setDefaultPrefix(SNOMED_CORE_COMPONENTS_URI);
+		entityCache = new OwlEntityCache(factory, prefixManager);
 		missingDialectWarnings = new AtomicLong();
 	}
 
@@ -93,122 +104,186 @@ public class OntologyService {
 			langRefsetToDialectMap = loadLanguageRefsetToDialectMap();
 		}
 
-		Set<OWLAxiom> axioms = new HashSet<>();
+		// The ontology is filled in batches straight from each concept so all axioms are never held in a separate set,
+		// an axiom already in the ontology is not added again
+		OWLOntology ontology = manager.createOntology(createOntologyID(ontologyUri, versionDate));
+		Map<Long, List<OWLAxiom>> conceptAxiomMap = snomedTaxonomy.getConceptAxiomMap();
+		Set<OWLAxiom> batch = new HashSet<>();
 		for (Long conceptId : snomedTaxonomy.getAllConceptIds()) {
 
 			// Add raw axioms from the axiom reference set file
-			axioms.addAll(snomedTaxonomy.getConceptAxiomMap().getOrDefault(conceptId, Collections.emptyList()));
+			batch.addAll(conceptAxiomMap.getOrDefault(conceptId, Collections.emptyList()));
 
-			// Add axioms generated from stated relationships
-			axioms.addAll(axiomsFromStatedRelationships.getOrDefault(conceptId, Collections.emptySet()));
+			// Add axioms generated from stated relationships, the map entry is not needed once the axioms are in the ontology
+			Set<OWLAxiom> conceptAxioms = axiomsFromStatedRelationships.remove(conceptId);
+			if (conceptAxioms != null) {
+				batch.addAll(conceptAxioms);
+			}
 
 			if (includeDescriptions) {
-				addDescriptionAnnotations(conceptId, snomedTaxonomy, axioms, langRefsetToDialectMap);
+				addDescriptionAnnotations(conceptId, snomedTaxonomy, batch, langRefsetToDialectMap);
+			}
+
+			if (batch.size() >= ONTOLOGY_BATCH_SIZE) {
+				manager.addAxioms(ontology, batch);
+				batch = new HashSet<>();
 			}
 		}
+		manager.addAxioms(ontology, batch);
+		manager.setOntologyFormat(ontology, getFunctionalSyntaxDocumentFormat());
+		return ontology;
+	}
+
+	/**
+	 * Writes the ontology in OWL functional syntax concept by concept without creating it in memory.
+	 * The output is the same as {@link #createOntology(SnomedTaxonomy, String, String, boolean)} followed by {@link #saveOntology}.
+	 * @return the number of axioms written, not counting declarations.
+	 */
+	public long writeOntology(SnomedTaxonomy snomedTaxonomy, String ontologyUri, String versionDate, boolean includeDescriptions,
+			OutputStream outputStream) throws OWLOntologyCreationException, IOException {
+
+		Map<Long, String> langRefsetToDialectMap = null;
+		if (includeDescriptions) {
+			langRefsetToDialectMap = loadLanguageRefsetToDialectMap();
+		}
+		OntologyStreamWriter streamWriter = new OntologyStreamWriter(this, snomedTaxonomy, langRefsetToDialectMap);
+		OWLOntology emptyOntology = manager.createOntology();
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+			return streamWriter.write(writer, createOntologyID(ontologyUri, versionDate), getFunctionalSyntaxDocumentFormat(), emptyOntology);
+		} finally {
+			manager.removeOntology(emptyOntology);
+		}
+	}
 
-		OWLOntology ontology;
+	private OWLOntologyID createOntologyID(String ontologyUri, String versionDate) {
 		if (Strings.isNullOrEmpty(ontologyUri)) {
 			ontologyUri = SNOMED_INTERNATIONAL_EDITION_URI;
 		}
 		if (Strings.isNullOrEmpty(versionDate)) {
-			ontology = manager.createOntology(IRI.create(ontologyUri));
-		} else {
-			ontology = manager.createOntology(new OWLOntologyID(
-					com.google.common.base.Optional.of(IRI.create(ontologyUri)),
-					com.google.common.base.Optional.of(IRI.create(ontologyUri + ONTOLOGY_URI_VERSION_POSTFIX + versionDate))));
+			return new OWLOntologyID(IRI.create(ontologyUri));
 		}
+		return new OWLOntologyID(
+				com.google.common.base.Optional.of(IRI.create(ontologyUri)),
+				com.google.common.base.Optional.of(IRI.create(ontologyUri + ONTOLOGY_URI_VERSION_POSTFIX + versionDate)));
+	}
 
-		manager.addAxioms(ontology, axioms);
-		manager.setOntologyFormat(ontology, getFunctionalSyntaxDocumentFormat());
+	/**
+	 * Passes the axioms of each concept to the consumer without collecting the axioms of all concepts first,
+	 * for loading them straight into a reasoner. Descriptions are not included.
+	 */
+	public void forEachAxiom(SnomedTaxonomy snomedTaxonomy, Consumer<OWLAxiom> consumer) {
+		Map<Long, List<OWLAxiom>> conceptAxiomMap = snomedTaxonomy.getConceptAxiomMap();
+		Map<Long, Set<OWLAxiom>> axiomsFromStatedRelationships = createAxiomsFromStatedRelationships(snomedTaxonomy);
+		for (Long conceptId : snomedTaxonomy.getAllConceptIds()) {
+			conceptAxiomMap.getOrDefault(conceptId, Collections.emptyList()).forEach(consumer);
+			axiomsFromStatedRelationships.getOrDefault(conceptId, Collections.emptySet()).forEach(consumer);
+		}
+	}
+
+	/**
+	 * Creates an ontology holding only the given axioms, for example the property axioms needed to read the property
+	 * hierarchy and property chains when classes were classified without an OWL API ontology.
+	 */
+	public OWLOntology createOntology(Collection<OWLAxiom> axioms) throws OWLOntologyCreationException {
+		OWLOntology ontology = manager.createOntology();
+		manager.addAxioms(ontology, new HashSet<>(axioms));
 		return ontology;
 	}
 
 	public Map<Long, Set<OWLAxiom>> createAxiomsFromStatedRelationships(SnomedTaxonomy snomedTaxonomy, Set<Long> conceptIds) {
 		Map<Long, Set<OWLAxiom>> axiomsMap = new Long2ObjectOpenHashMap<>();
+		StatedAttributes statedAttributes = new StatedAttributes(snomedTaxonomy);
 
 		// Create axioms of concept model attributes
-		// The Concept Model Object Attribute concept did not always exist - use the parent if it doesn't exist
-		boolean conceptModelObjectAttributePresent = snomedTaxonomy.getAllConceptIds().contains(Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG);
-		Long conceptModelObjectAttribute = conceptModelObjectAttributePresent ?
-				Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG : Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG;
-
-		Set<Long> descendants = snomedTaxonomy.getDescendants(conceptModelObjectAttribute);
-		for (Long objectAttributeId : descendants) {
-			if (conceptIds != null && !conceptIds.contains(objectAttributeId)) {
+		for (Long attributeId : statedAttributes.propertyAttributes) {
+			if (conceptIds != null && !conceptIds.contains(attributeId)) {
 				continue;
 			}
-			for (Relationship relationship : snomedTaxonomy.getStatedRelationships(objectAttributeId)) {
-				if (relationship.getTypeId() == Concepts.IS_A_LONG) {
-					axiomsMap.computeIfAbsent(objectAttributeId, (id) -> new HashSet<>())
-							.add(createOwlSubObjectPropertyOfAxiom(objectAttributeId, relationship.getDestinationId()));
-				}
-			}
-		}
-
-		if (snomedTaxonomy.getAllConceptIds().contains(Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE_LONG)) {
-			for (Long dataAttributeId : snomedTaxonomy.getDescendants(Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE_LONG)) {
-				if (conceptIds != null && !conceptIds.contains(dataAttributeId)) {
-					continue;
-				}
-				for (Relationship relationship : snomedTaxonomy.getStatedRelationships(dataAttributeId)) {
-					if (relationship.getTypeId() == Concepts.IS_A_LONG) {
-						axiomsMap.computeIfAbsent(dataAttributeId, (id) -> new HashSet<>())
-								.add(createOwlSubDataPropertyOfAxiom(dataAttributeId, relationship.getDestinationId()));
-					}
-				}
-			}
-		}
-
-		if (snomedTaxonomy.getAllConceptIds().contains(Concepts.CONCEPT_ANNOTATION_ATTRIBUTE_LONG)) {
-			for (Long dataAttributeId : snomedTaxonomy.getDescendants(Concepts.CONCEPT_ANNOTATION_ATTRIBUTE_LONG)) {
-				if (conceptIds != null && !conceptIds.contains(dataAttributeId)) {
-					continue;
-				}
-				for (Relationship relationship : snomedTaxonomy.getStatedRelationships(dataAttributeId)) {
-					if (relationship.getTypeId() == Concepts.IS_A_LONG) {
-						axiomsMap.computeIfAbsent(dataAttributeId, (id) -> new HashSet<>())
-								.add(createOwlSubAnnotationPropertyOfAxiom(dataAttributeId, relationship.getDestinationId()));
-					}
-				}
+			Set<OWLAxiom> propertyAxioms = new HashSet<>();
+			addPropertyAxioms(attributeId, snomedTaxonomy.getStatedRelationships(attributeId), statedAttributes, propertyAxioms);
+			if (!propertyAxioms.isEmpty()) {
+				axiomsMap.computeIfAbsent(attributeId, (id) -> new HashSet<>()).addAll(propertyAxioms);
 			}
 		}
 
 		// Create axioms of all other Snomed concepts
-		Set<Long> attributeIds = snomedTaxonomy.getDescendants(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG);
-
-		// Link the top object and data property into the class hierarchy.
-		// The top object and data properties will be represented as an OWL Property and as a Class to ensure that this link comes out in the NNF.
-		// "The OWL 2 specification allows different entities with the same IRI to co-exist in an ontology" (thanks @apeteri)
-		// Removing them from the attributeIds here set will ensure Class axioms are created.
-		attributeIds.remove(Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG);
-		attributeIds.remove(Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE_LONG);
-
+		// Collect the concepts to convert on this thread, the first read builds the index of the relationship store before going parallel
+		List<Long> classConceptIds = new ArrayList<>();
+		List<Collection<Relationship>> classRelationships = new ArrayList<>();
 		for (Long conceptId : snomedTaxonomy.getAllConceptIds()) {
 			if (conceptIds != null && !conceptIds.contains(conceptId)) {
 				continue;
 			}
-			// Convert any stated relationships to axioms
-			boolean primitive = snomedTaxonomy.isPrimitive(conceptId);
 			Collection<Relationship> statedRelationships = snomedTaxonomy.getStatedRelationships(conceptId);
+			if (!statedRelationships.isEmpty() && !statedAttributes.attributes.contains(conceptId)) {
+				classConceptIds.add(conceptId);
+				classRelationships.add(statedRelationships);
+			}
+		}
 
-			if (!statedRelationships.isEmpty() && !attributeIds.contains(conceptId)) {
-				AxiomRepresentation representation = new AxiomRepresentation();
-				representation.setPrimitive(primitive);
-				representation.setLeftHandSideNamedConcept(conceptId);
-				Map<Integer, List<Relationship>> relationshipMap = new HashMap<>();
-				for (Relationship statedRelationship : statedRelationships) {
-					relationshipMap.computeIfAbsent(statedRelationship.getGroup(), g -> new ArrayList<>()).add(statedRelationship);
-				}
-				representation.setRightHandSideRelationships(relationshipMap);
-				OWLClassAxiom conceptAxiom = createOwlClassAxiom(representation);
-				axiomsMap.computeIfAbsent(conceptId, (id) -> new HashSet<>())
-						.add(conceptAxiom);
+		// Convert stated relationships to axioms in parallel batches, the data factory is thread safe.
+		// Results are kept by position and added to the map in concept order afterwards so the map does not depend on thread timing.
+		OWLClassAxiom[] conceptAxioms = new OWLClassAxiom[classConceptIds.size()];
+		int batches = (conceptAxioms.length + AXIOM_CREATION_BATCH_SIZE - 1) / AXIOM_CREATION_BATCH_SIZE;
+		IntStream.range(0, batches).parallel().forEach(batch -> {
+			int end = Math.min(conceptAxioms.length, (batch + 1) * AXIOM_CREATION_BATCH_SIZE);
+			for (int i = batch * AXIOM_CREATION_BATCH_SIZE; i < end; i++) {
+				Long conceptId = classConceptIds.get(i);
+				conceptAxioms[i] = createOwlClassAxiom(conceptId, snomedTaxonomy.isPrimitive(conceptId), classRelationships.get(i));
 			}
+		});
+
+		for (int i = 0; i < conceptAxioms.length; i++) {
+			axiomsMap.computeIfAbsent(classConceptIds.get(i), (id) -> new HashSet<>())
+					.add(conceptAxioms[i]);
 		}
 		return axiomsMap;
 	}
 
+	/**
+	 * Adds the axioms created from the stated relationships of one concept, the same axioms as
+	 * {@link #createAxiomsFromStatedRelationships(SnomedTaxonomy, Set)} creates for it, without converting any other concept.
+	 */
+	void addAxiomsFromStatedRelationships(Long conceptId, SnomedTaxonomy snomedTaxonomy, StatedAttributes statedAttributes, Set<OWLAxiom> axioms) {
+		Collection<Relationship> statedRelationships = snomedTaxonomy.getStatedRelationships(conceptId);
+		if (statedRelationships.isEmpty()) {
+			return;
+		}
+		addPropertyAxioms(conceptId, statedRelationships, statedAttributes, axioms);
+		if (!statedAttributes.attributes.contains(conceptId)) {
+			axioms.add(createOwlClassAxiom(conceptId, snomedTaxonomy.isPrimitive(conceptId), statedRelationships));
+		}
+	}
+
+	private void addPropertyAxioms(Long attributeId, Collection<Relationship> statedRelationships, StatedAttributes statedAttributes, Set<OWLAxiom> axioms) {
+		for (Relationship relationship : statedRelationships) {
+			if (relationship.getTypeId() == Concepts.IS_A_LONG) {
+				if (statedAttributes.objectAttributes.contains(attributeId)) {
+					axioms.add(createOwlSubObjectPropertyOfAxiom(attributeId, relationship.getDestinationId()));
+				}
+				if (statedAttributes.dataAttributes.contains(attributeId)) {
+					axioms.add(createOwlSubDataPropertyOfAxiom(attributeId, relationship.getDestinationId()));
+				}
+				if (statedAttributes.annotationAttributes.contains(attributeId)) {
+					axioms.add(createOwlSubAnnotationPropertyOfAxiom(attributeId, relationship.getDestinationId()));
+				}
+			}
+		}
+	}
+
+	private OWLClassAxiom createOwlClassAxiom(Long conceptId, boolean primitive, Collection<Relationship> statedRelationships) {
+		AxiomRepresentation representation = new AxiomRepresentation();
+		representation.setPrimitive(primitive);
+		representation.setLeftHandSideNamedConcept(conceptId);
+		Map<Integer, List<Relationship>> relationshipMap = new HashMap<>();
+		for (Relationship statedRelationship : statedRelationships) {
+			relationshipMap.computeIfAbsent(statedRelationship.getGroup(), g -> new ArrayList<>()).add(statedRelationship);
+		}
+		representation.setRightHandSideRelationships(relationshipMap);
+		return createOwlClassAxiom(representation);
+	}
+
 	public Map<Long, Set<OWLAxiom>> createAxiomsFromStatedRelationships(SnomedTaxonomy snomedTaxonomy) {
 		return createAxiomsFromStatedRelationships(snomedTaxonomy, null);
 	}
@@ -375,11 +450,7 @@ public class OntologyService {
 	}
 
 	private OWLObjectSomeValuesFrom getOwlObjectSomeValuesFromGroup(OWLClassExpression owlObjectSomeValuesFrom) {
-		return getOwlObjectSomeValuesWithPrefix(SNOMED_ROLE_GROUP_SHORT_URI, owlObjectSomeValuesFrom);
-	}
-
-	private OWLObjectSomeValuesFrom getOwlObjectSomeValuesWithPrefix(String prefix, OWLClassExpression owlObjectSomeValuesFrom) {
-		return factory.getOWLObjectSomeValuesFrom(factory.getOWLObjectProperty(prefix, prefixManager), owlObjectSomeValuesFrom);
+		return factory.getOWLObjectSomeValuesFrom(getOwlObjectProperty(ROLE_GROUP_SCTID_LONG), owlObjectSomeValuesFrom);
 	}
 
 	private OWLObjectSomeValuesFrom getOwlObjectSomeValuesFrom(long typeId, long destinationId) {
@@ -387,18 +458,26 @@ public class OntologyService {
 	}
 
 	private OWLObjectProperty getOwlObjectProperty(long typeId) {
-		return factory.getOWLObjectProperty(COLON + typeId, prefixManager);
+		return entityCache.getOwlObjectProperty(typeId);
 	}
 
 	private OWLDataProperty getOwlDataProperty(long typeId) {
-		return factory.getOWLDataProperty(COLON + typeId, prefixManager);
+		return entityCache.getOwlDataProperty(typeId);
 	}
 
 	private OWLAnnotationProperty getOwlAnnotationProperty(long typeId) {
-		return factory.getOWLAnnotationProperty(COLON + typeId, prefixManager);
+		return entityCache.getOwlAnnotationProperty(typeId);
 	}
+
 	private OWLClass getOwlClass(Long conceptId) {
-		return factory.getOWLClass(COLON + conceptId, prefixManager);
+		return entityCache.getOwlClass(conceptId);
+	}
+
+	/**
+	 * @return the OWL classes and properties created by this service, for reuse by services converting between axioms and relationships.
+	 */
+	public OwlEntityCache getEntityCache() {
+		return entityCache;
 	}
 
 	private OWLDataHasValue getOwlDataHasValue(long typeId, ConcreteValue value) {
@@ -416,7 +495,7 @@ public class OntologyService {
 		return factory.getOWLDataHasValue(getOwlDataProperty(typeId), owlLiteral);
 	}
 
-	private void addDescriptionAnnotations(Long conceptId, SnomedTaxonomy snomedTaxonomy, Set<OWLAxiom> axioms, Map<Long, String> langRefsetToDialectMap) {
+	void addDescriptionAnnotations(Long conceptId, SnomedTaxonomy snomedTaxonomy, Set<OWLAxiom> axioms, Map<Long, String> langRefsetToDialectMap) {
 		for (Description description : snomedTaxonomy.getConceptDescriptions(conceptId)) {
 			String typeId = description.getTypeId();
 			String term = description.getTerm();
@@ -488,7 +567,7 @@ public class OntologyService {
 		}
 	}
 
-	private Map<Long, String> loadLanguageRefsetToDialectMap() throws OWLOntologyCreationException {
+	Map<Long, String> loadLanguageRefsetToDialectMap() throws OWLOntologyCreationException {
 		Map<Long, String> map = new Long2ObjectOpenHashMap<>();
 		try {
 			Properties properties = new Properties();
@@ -502,4 +581,40 @@ public class OntologyService {
 		return map;
 	}
 
+
+	/**
+	 * The concept model attributes of a taxonomy, whose stated is-a relationships are converted to property axioms instead of a class axiom.
+	 */
+	static final class StatedAttributes {
+
+		private final Set<Long> objectAttributes;
+		private final Set<Long> dataAttributes;
+		private final Set<Long> annotationAttributes;
+		private final Set<Long> propertyAttributes = new LinkedHashSet<>();
+		// Concepts which are not converted to a class axiom
+		private final Set<Long> attributes;
+
+		StatedAttributes(SnomedTaxonomy snomedTaxonomy) {
+			// The Concept Model Object Attribute concept did not always exist - use the parent if it doesn't exist
+			boolean conceptModelObjectAttributePresent = snomedTaxonomy.getAllConceptIds().contains(Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG);
+			Long conceptModelObjectAttribute = conceptModelObjectAttributePresent ?
+					Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG : Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG;
+			objectAttributes = snomedTaxonomy.getDescendants(conceptModelObjectAttribute);
+			dataAttributes = snomedTaxonomy.getAllConceptIds().contains(Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE_LONG) ?
+					snomedTaxonomy.getDescendants(Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE_LONG) : Collections.emptySet();
+			annotationAttributes = snomedTaxonomy.getAllConceptIds().contains(Concepts.CONCEPT_ANNOTATION_ATTRIBUTE_LONG) ?
+					snomedTaxonomy.getDescendants(Concepts.CONCEPT_ANNOTATION_ATTRIBUTE_LONG) : Collections.emptySet();
+			propertyAttributes.addAll(objectAttributes);
+			propertyAttributes.addAll(dataAttributes);
+			propertyAttributes.addAll(annotationAttributes);
+
+			attributes = new HashSet<>(snomedTaxonomy.getDescendants(Concepts.CONCEPT_MODEL_ATTRIBUTE_LONG));
+			// Link the top object and data property into the class hierarchy.
+			// The top object and data properties will be represented as an OWL Property and as a Class to ensure that this link comes out in the NNF.
+			// "The OWL 2 specification allows different entities with the same IRI to co-exist in an ontology" (thanks @apeteri)
+			// Removing them from the attributes here will ensure Class axioms are created.
+			attributes.remove(Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE_LONG);
+			attributes.remove(Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE_LONG);
+		}
+	}
 }
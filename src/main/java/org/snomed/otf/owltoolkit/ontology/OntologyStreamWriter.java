@@ -0,0 +1,367 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.ontology;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.semanticweb.owlapi.functional.renderer.FunctionalSyntaxObjectRenderer;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import org.semanticweb.owlapi.util.OWLEntityCollector;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Writes OWL functional syntax straight from a SNOMED taxonomy, producing the same document as saving the ontology
+ * created by {@link OntologyService#createOntology(SnomedTaxonomy, String, String, boolean)} without building it.
+ * A first pass over the concepts collects the signature and notes which concepts have axioms filed under each entity
+ * the OWL API functional syntax renderer writes them with. The sections are then written in the renderer's order:
+ * prefixes, declarations of the whole signature, a section for each entity type and last the axioms which are not
+ * about an entity. The axioms of each entity are created again from its concepts when the entity is written,
+ * so only the axioms of one entity are held at a time.
+ */
+class OntologyStreamWriter {
+
+	private static final String BANNER_LINE = "############################\n";
+
+	private final OntologyService ontologyService;
+	private final SnomedTaxonomy snomedTaxonomy;
+	private final Map<Long, String> langRefsetToDialectMap;
+	private final Map<Long, List<OWLAxiom>> conceptAxiomMap;
+	private final OntologyService.StatedAttributes statedAttributes;
+
+	// The concepts with axioms filed under each entity, IRI or the end of the document
+	private final Set<OWLEntity> signature = new HashSet<>();
+	private final Map<OWLEntity, LongList> declarationConcepts = new HashMap<>();
+	private final Map<OWLEntity, LongList> entityConcepts = new HashMap<>();
+	private final Map<IRI, LongList> annotationConcepts = new HashMap<>();
+	private final LongList remainingConcepts = new LongArrayList();
+	private final Set<IRI> writtenAnnotationSubjects = new HashSet<>();
+	private long axiomCount;
+
+	/**
+	 * @param langRefsetToDialectMap map used for description annotations or null to leave out descriptions.
+	 */
+	OntologyStreamWriter(OntologyService ontologyService, SnomedTaxonomy snomedTaxonomy, Map<Long, String> langRefsetToDialectMap) {
+		this.ontologyService = ontologyService;
+		this.snomedTaxonomy = snomedTaxonomy;
+		this.langRefsetToDialectMap = langRefsetToDialectMap;
+		conceptAxiomMap = snomedTaxonomy.getConceptAxiomMap();
+		statedAttributes = new OntologyService.StatedAttributes(snomedTaxonomy);
+	}
+
+	/**
+	 * @return the number of axioms written, not counting declarations.
+	 */
+	long write(Writer writer, OWLOntologyID ontologyID, PrefixManager prefixManager, OWLOntology emptyOntology) throws IOException {
+		collectSignature();
+
+		FunctionalSyntaxObjectRenderer renderer = new FunctionalSyntaxObjectRenderer(emptyOntology, writer);
+		renderer.setPrefixManager(prefixManager);
+		// The renderer names entities in section comments with its own copy of the prefixes
+		DefaultPrefixManager shortForms = new DefaultPrefixManager();
+		shortForms.copyPrefixesFrom(prefixManager);
+
+		for (Map.Entry<String, String> prefix : prefixManager.getPrefixName2PrefixMap().entrySet()) {
+			writer.write("Prefix(" + prefix.getKey() + "=<" + prefix.getValue() + ">)\n");
+		}
+		writer.write("\n\nOntology(");
+		if (ontologyID.getOntologyIRI().isPresent()) {
+			writer.write("<" + ontologyID.getOntologyIRI().get() + ">\n");
+			if (ontologyID.getVersionIRI().isPresent()) {
+				writer.write("<" + ontologyID.getVersionIRI().get() + ">\n");
+			}
+		}
+		writer.write("\n");
+
+		List<OWLEntity> sortedSignature = new ArrayList<>(signature);
+		Collections.sort(sortedSignature);
+		Set<IRI> illegalPunnings = getIllegalPunnings();
+		for (OWLEntity entity : sortedSignature) {
+			LongList conceptIds = declarationConcepts.remove(entity);
+			if (conceptIds != null) {
+				for (OWLAxiom declaration : createAxioms(conceptIds, axiom -> axiom instanceof OWLDeclarationAxiom
+						&& ((OWLDeclarationAxiom) axiom).getEntity().equals(entity))) {
+					declaration.accept(renderer);
+					writer.write("\n");
+				}
+			} else if (!entity.isBuiltIn() && !illegalPunnings.contains(entity.getIRI())) {
+				emptyOntology.getOWLOntologyManager().getOWLDataFactory().getOWLDeclarationAxiom(entity).accept(renderer);
+				writer.write("\n");
+			}
+		}
+
+		writeSection(EntityType.ANNOTATION_PROPERTY, "Annotation Properties", "Annotation Property", sortedSignature, shortForms, renderer, writer);
+		writeSection(EntityType.OBJECT_PROPERTY, "Object Properties", "Object Property", sortedSignature, shortForms, renderer, writer);
+		writeSection(EntityType.DATA_PROPERTY, "Data Properties", "Data Property", sortedSignature, shortForms, renderer, writer);
+		writeSection(EntityType.DATATYPE, "Datatypes", "Datatype", sortedSignature, shortForms, renderer, writer);
+		writeSection(EntityType.CLASS, "Classes", "Class", sortedSignature, shortForms, renderer, writer);
+		writeSection(EntityType.NAMED_INDIVIDUAL, "Named Individuals", "Individual", sortedSignature, shortForms, renderer, writer);
+
+		// Axioms which are not about an entity, for example general concept inclusions and property chains,
+		// and annotations of IRIs which are not the IRI of an entity
+		Set<OWLAxiom> remainingAxioms = new HashSet<>(createAxioms(remainingConcepts, OntologyStreamWriter::isRemainingAxiom));
+		for (Map.Entry<IRI, LongList> entry : annotationConcepts.entrySet()) {
+			if (!writtenAnnotationSubjects.contains(entry.getKey())) {
+				remainingAxioms.addAll(createAnnotations(entry.getKey(), entry.getValue()));
+			}
+		}
+		annotationConcepts.clear();
+		writeAxioms(sorted(remainingAxioms), renderer, writer);
+
+		writer.write(")");
+		writer.flush();
+		return axiomCount;
+	}
+
+	/**
+	 * Creates the axioms of every concept once to collect the signature and the concepts which have axioms filed under each entity.
+	 */
+	private void collectSignature() {
+		// The same as the signature of an ontology, which unlike the signature of an axiom includes the datatypes of literals
+		OWLEntityCollector signatureCollector = new OWLEntityCollector(signature);
+		for (Long conceptId : snomedTaxonomy.getAllConceptIds()) {
+			for (OWLAxiom axiom : createConceptAxioms(conceptId)) {
+				axiom.accept(signatureCollector);
+				fileConcept(conceptId, axiom);
+			}
+		}
+	}
+
+	private Set<OWLAxiom> createConceptAxioms(Long conceptId) {
+		Set<OWLAxiom> axioms = new HashSet<>(conceptAxiomMap.getOrDefault(conceptId, Collections.emptyList()));
+		ontologyService.addAxiomsFromStatedRelationships(conceptId, snomedTaxonomy, statedAttributes, axioms);
+		if (langRefsetToDialectMap != null) {
+			ontologyService.addDescriptionAnnotations(conceptId, snomedTaxonomy, axioms, langRefsetToDialectMap);
+		}
+		return axioms;
+	}
+
+	/**
+	 * @return the axioms of the concepts which match the filter, sorted and without duplicates.
+	 */
+	private List<OWLAxiom> createAxioms(LongList conceptIds, Predicate<OWLAxiom> filter) {
+		Set<OWLAxiom> axioms = new HashSet<>();
+		for (long conceptId : conceptIds) {
+			for (OWLAxiom axiom : createConceptAxioms(conceptId)) {
+				if (filter.test(axiom)) {
+					axioms.add(axiom);
+				}
+			}
+		}
+		return sorted(axioms);
+	}
+
+	private List<OWLAxiom> createAnnotations(IRI iri, LongList conceptIds) {
+		return createAxioms(conceptIds, axiom -> axiom instanceof OWLAnnotationAssertionAxiom
+				&& ((OWLAnnotationAssertionAxiom) axiom).getSubject().equals(iri));
+	}
+
+	private void fileConcept(long conceptId, OWLAxiom axiom) {
+		if (axiom instanceof OWLDeclarationAxiom) {
+			addConcept(declarationConcepts.computeIfAbsent(((OWLDeclarationAxiom) axiom).getEntity(), entity -> new LongArrayList()), conceptId);
+		} else if (axiom instanceof OWLAnnotationAssertionAxiom && ((OWLAnnotationAssertionAxiom) axiom).getSubject() instanceof IRI) {
+			addConcept(annotationConcepts.computeIfAbsent((IRI) ((OWLAnnotationAssertionAxiom) axiom).getSubject(), iri -> new LongArrayList()), conceptId);
+		} else {
+			OWLEntity subject = getSubject(axiom);
+			addConcept(subject != null ? entityConcepts.computeIfAbsent(subject, entity -> new LongArrayList()) : remainingConcepts, conceptId);
+		}
+	}
+
+	/**
+	 * Concepts are filed in order so a concept with several axioms under the same entity is only listed once.
+	 */
+	private static void addConcept(LongList conceptIds, long conceptId) {
+		if (conceptIds.isEmpty() || conceptIds.getLong(conceptIds.size() - 1) != conceptId) {
+			conceptIds.add(conceptId);
+		}
+	}
+
+	/**
+	 * @return true for the axioms written at the end of the document, except annotations of IRIs which are not an entity.
+	 */
+	private static boolean isRemainingAxiom(OWLAxiom axiom) {
+		if (axiom instanceof OWLDeclarationAxiom) {
+			return false;
+		}
+		if (axiom instanceof OWLAnnotationAssertionAxiom) {
+			return !(((OWLAnnotationAssertionAxiom) axiom).getSubject() instanceof IRI);
+		}
+		return getSubject(axiom) == null;
+	}
+
+	/**
+	 * Same as the OWL API, declarations are not written for an IRI used as more than one kind of property or as both class and datatype.
+	 */
+	private Set<IRI> getIllegalPunnings() {
+		Map<IRI, Set<EntityType<?>>> iriTypes = new HashMap<>();
+		for (OWLEntity entity : signature) {
+			iriTypes.computeIfAbsent(entity.getIRI(), iri -> new HashSet<>()).add(entity.getEntityType());
+		}
+		Set<IRI> illegalPunnings = new HashSet<>();
+		for (Map.Entry<IRI, Set<EntityType<?>>> entry : iriTypes.entrySet()) {
+			Set<EntityType<?>> types = entry.getValue();
+			int propertyTypes = (types.contains(EntityType.OBJECT_PROPERTY) ? 1 : 0) + (types.contains(EntityType.DATA_PROPERTY) ? 1 : 0)
+					+ (types.contains(EntityType.ANNOTATION_PROPERTY) ? 1 : 0);
+			if (propertyTypes > 1 || (types.contains(EntityType.CLASS) && types.contains(EntityType.DATATYPE))) {
+				illegalPunnings.add(entry.getKey());
+			}
+		}
+		return illegalPunnings;
+	}
+
+	private void writeSection(EntityType<?> entityType, String bannerName, String entityTypeName, List<OWLEntity> sortedSignature,
+			DefaultPrefixManager shortForms, FunctionalSyntaxObjectRenderer renderer, Writer writer) throws IOException {
+
+		boolean entitiesOfType = false;
+		boolean bannerWritten = false;
+		for (OWLEntity entity : sortedSignature) {
+			if (!entity.isType(entityType)) {
+				continue;
+			}
+			entitiesOfType = true;
+
+			IRI iri = entity.getIRI();
+			LongList annotationConceptIds = annotationConcepts.get(iri);
+			LongList entityConceptIds = entityConcepts.remove(entity);
+			if (annotationConceptIds == null && entityConceptIds == null) {
+				continue;
+			}
+			// The annotations and axioms of an entity usually come from the same concept, its axioms are only created once
+			LongSet conceptIds = new LongLinkedOpenHashSet();
+			if (annotationConceptIds != null) {
+				conceptIds.addAll(annotationConceptIds);
+			}
+			if (entityConceptIds != null) {
+				conceptIds.addAll(entityConceptIds);
+			}
+			Set<OWLAxiom> annotationSet = new HashSet<>();
+			Set<OWLAxiom> axiomSet = new HashSet<>();
+			for (long conceptId : conceptIds) {
+				for (OWLAxiom axiom : createConceptAxioms(conceptId)) {
+					if (axiom instanceof OWLAnnotationAssertionAxiom) {
+						if (((OWLAnnotationAssertionAxiom) axiom).getSubject().equals(iri)) {
+							annotationSet.add(axiom);
+						}
+					} else if (!(axiom instanceof OWLDeclarationAxiom) && entity.equals(getSubject(axiom))) {
+						axiomSet.add(axiom);
+					}
+				}
+			}
+			List<OWLAxiom> allAnnotations = sorted(annotationSet);
+			// Annotations of an IRI used by several entities are written with the first one
+			List<OWLAxiom> annotations = writtenAnnotationSubjects.contains(iri) ? Collections.emptyList() : allAnnotations;
+			List<OWLAxiom> axioms = sorted(axiomSet);
+			if (annotations.isEmpty() && axioms.isEmpty()) {
+				continue;
+			}
+			if (!bannerWritten) {
+				writer.write(BANNER_LINE + "#   " + bannerName + "\n" + BANNER_LINE + "\n");
+				bannerWritten = true;
+			}
+			writer.write("# " + entityTypeName + ": " + shortForms.getShortForm(entity) + " (" + getLabel(entity, allAnnotations, shortForms) + ")\n\n");
+			writeAxioms(annotations, renderer, writer);
+			writtenAnnotationSubjects.add(iri);
+			writeAxioms(axioms, renderer, writer);
+			writer.write("\n");
+		}
+		if (entitiesOfType) {
+			writer.write("\n");
+		}
+	}
+
+	private void writeAxioms(List<OWLAxiom> axioms, FunctionalSyntaxObjectRenderer renderer, Writer writer) throws IOException {
+		for (OWLAxiom axiom : axioms) {
+			axiom.accept(renderer);
+			writer.write("\n");
+			axiomCount++;
+		}
+	}
+
+	private static String getLabel(OWLEntity entity, List<OWLAxiom> sortedAnnotations, DefaultPrefixManager shortForms) {
+		for (OWLAxiom axiom : sortedAnnotations) {
+			OWLAnnotationAssertionAxiom annotation = (OWLAnnotationAssertionAxiom) axiom;
+			if (annotation.getProperty().isLabel() && annotation.getValue() instanceof OWLLiteral) {
+				return ((OWLLiteral) annotation.getValue()).getLiteral().replace("\n", "\n#");
+			}
+		}
+		return shortForms.getShortForm(entity);
+	}
+
+	private static List<OWLAxiom> sorted(Collection<OWLAxiom> axioms) {
+		List<OWLAxiom> list = new ArrayList<>(axioms);
+		Collections.sort(list);
+		return list;
+	}
+
+	/**
+	 * @return the entity an axiom is about, which the OWL API writes the axiom under, or null for axioms written at the end.
+	 */
+	private static OWLEntity getSubject(OWLAxiom axiom) {
+		if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLClassExpression subClass = ((OWLSubClassOfAxiom) axiom).getSubClass();
+			return subClass.isAnonymous() ? null : subClass.asOWLClass();
+		}
+		if (axiom instanceof OWLDisjointClassesAxiom && ((OWLDisjointClassesAxiom) axiom).getClassExpressions().size() > 2) {
+			// The OWL API leaves disjoint classes axioms of more than two classes to the end
+			return null;
+		}
+		if (axiom instanceof OWLNaryClassAxiom) {
+			return firstEntity(((OWLNaryClassAxiom) axiom).getClassExpressions());
+		}
+		if (axiom instanceof OWLDisjointUnionAxiom) {
+			return ((OWLDisjointUnionAxiom) axiom).getOWLClass();
+		}
+		if (axiom instanceof OWLSubPropertyAxiom) {
+			return firstEntity(Collections.singleton(((OWLSubPropertyAxiom<?>) axiom).getSubProperty()));
+		}
+		if (axiom instanceof OWLSubAnnotationPropertyOfAxiom) {
+			return ((OWLSubAnnotationPropertyOfAxiom) axiom).getSubProperty();
+		}
+		if (axiom instanceof OWLUnaryPropertyAxiom) {
+			return firstEntity(Collections.singleton(((OWLUnaryPropertyAxiom<?>) axiom).getProperty()));
+		}
+		if (axiom instanceof OWLNaryPropertyAxiom) {
+			return firstEntity(((OWLNaryPropertyAxiom<?>) axiom).getProperties());
+		}
+		if (axiom instanceof OWLAnnotationPropertyDomainAxiom) {
+			return ((OWLAnnotationPropertyDomainAxiom) axiom).getProperty();
+		}
+		if (axiom instanceof OWLAnnotationPropertyRangeAxiom) {
+			return ((OWLAnnotationPropertyRangeAxiom) axiom).getProperty();
+		}
+		if (axiom instanceof OWLDatatypeDefinitionAxiom) {
+			return ((OWLDatatypeDefinitionAxiom) axiom).getDatatype();
+		}
+		return null;
+	}
+
+	private static OWLEntity firstEntity(Collection<? extends OWLObject> objects) {
+		OWLEntity first = null;
+		for (OWLObject object : objects) {
+			if (object instanceof OWLEntity && (first == null || object.compareTo(first) < 0)) {
+				first = (OWLEntity) object;
+			}
+		}
+		return first;
+	}
+}
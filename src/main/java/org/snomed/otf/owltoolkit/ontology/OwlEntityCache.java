@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.ontology;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.snomed.otf.owltoolkit.ontology.OntologyService.COLON;
+
+/**
+ * OWL classes and properties of SNOMED CT concepts keyed by concept id, so each entity is only resolved through the prefix manager once.
+ * The IRI of each entity is also mapped back to the concept id for converting axioms to relationships.
+ * Entities are kept for the lifetime of the cache. Axioms are created in parallel so the maps are concurrent, entities already
+ * cached are read without locking and only a missing entity is created under the lock of its map entry.
+ */
+public class OwlEntityCache {
+
+	private final OWLDataFactory factory;
+	private final PrefixManager prefixManager;
+
+	private final Map<Long, OWLClass> classes = new ConcurrentHashMap<>();
+	private final Map<Long, OWLObjectProperty> objectProperties = new ConcurrentHashMap<>();
+	private final Map<Long, OWLDataProperty> dataProperties = new ConcurrentHashMap<>();
+	private final Map<Long, OWLAnnotationProperty> annotationProperties = new ConcurrentHashMap<>();
+	private final Map<IRI, Long> conceptIds = new ConcurrentHashMap<>();
+
+	OwlEntityCache(OWLDataFactory factory, PrefixManager prefixManager) {
+		this.factory = factory;
+		this.prefixManager = prefixManager;
+	}
+
+	public OWLClass getOwlClass(long conceptId) {
+		OWLClass owlClass = classes.get(conceptId);
+		if (owlClass == null) {
+			owlClass = classes.computeIfAbsent(conceptId, id -> factory.getOWLClass(COLON + id, prefixManager));
+			conceptIds.putIfAbsent(owlClass.getIRI(), conceptId);
+		}
+		return owlClass;
+	}
+
+	public OWLObjectProperty getOwlObjectProperty(long typeId) {
+		OWLObjectProperty property = objectProperties.get(typeId);
+		if (property == null) {
+			property = objectProperties.computeIfAbsent(typeId, id -> factory.getOWLObjectProperty(COLON + id, prefixManager));
+			conceptIds.putIfAbsent(property.getIRI(), typeId);
+		}
+		return property;
+	}
+
+	public OWLDataProperty getOwlDataProperty(long typeId) {
+		OWLDataProperty property = dataProperties.get(typeId);
+		if (property == null) {
+			property = dataProperties.computeIfAbsent(typeId, id -> factory.getOWLDataProperty(COLON + id, prefixManager));
+			conceptIds.putIfAbsent(property.getIRI(), typeId);
+		}
+		return property;
+	}
+
+	public OWLAnnotationProperty getOwlAnnotationProperty(long typeId) {
+		OWLAnnotationProperty property = annotationProperties.get(typeId);
+		if (property == null) {
+			property = annotationProperties.computeIfAbsent(typeId, id -> factory.getOWLAnnotationProperty(COLON + id, prefixManager));
+			conceptIds.putIfAbsent(property.getIRI(), typeId);
+		}
+		return property;
+	}
+
+	/**
+	 * Same as {@link OntologyHelper#getConceptId(OWLNamedObject)} but the IRI is only parsed the first time it is seen.
+	 */
+	public long getConceptId(OWLNamedObject owlNamedObject) {
+		IRI iri = owlNamedObject.getIRI();
+		Long conceptId = conceptIds.get(iri);
+		if (conceptId == null) {
+			conceptId = conceptIds.computeIfAbsent(iri, key -> OntologyHelper.getConceptId(owlNamedObject));
+		}
+		return conceptId;
+	}
+}
@@ -17,6 +17,7 @@ package org.snomed.otf.owltoolkit.service;
 
 import org.snomed.otf.owltoolkit.constants.Concepts;
 import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.metrics.ResultsWriteEvent;
 import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
 
 import java.io.BufferedWriter;
@@ -45,30 +46,47 @@ class ClassificationResultsWriter {
 			OutputStream resultsOutputStream,
 			Date startDate) throws ReasonerServiceException {
 
+		ResultsWriteEvent event = new ResultsWriteEvent();
+		event.begin();
+		int relationshipRows;
+		int concreteRelationshipRows;
+		int equivalentConceptRows;
 		try {
 			try (ZipOutputStream zipOutputStream = new ZipOutputStream(resultsOutputStream, UTF_8_CHARSET);
 				 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(zipOutputStream))) {
 
 				String formattedDate = DATE_FORMAT.format(startDate);
 				zipOutputStream.putNextEntry(new ZipEntry(String.format("RF2/sct2_Relationship_Delta_Classification_%s.txt", formattedDate)));
-				writeRelationshipChanges(false, writer, changeCollector.getAddedStatements(), changeCollector.getRemovedStatements());
+				relationshipRows = writeRelationshipChanges(false, writer, changeCollector.getAddedStatements(), changeCollector.getRemovedStatements());
 
 				zipOutputStream.putNextEntry(new ZipEntry(String.format("RF2/sct2_RelationshipConcreteValues_Delta_Classification_%s.txt", formattedDate)));
-				writeRelationshipChanges(true, writer, changeCollector.getAddedStatements(), changeCollector.getRemovedStatements());
+				concreteRelationshipRows = writeRelationshipChanges(true, writer, changeCollector.getAddedStatements(), changeCollector.getRemovedStatements());
 
 				zipOutputStream.putNextEntry(new ZipEntry(String.format("RF2/der2_sRefset_EquivalentConceptSimpleMapDelta_Classification_%s.txt", formattedDate)));
-				writeEquivalentConcepts(writer, equivalentConceptIdSets);
+				equivalentConceptRows = writeEquivalentConcepts(writer, equivalentConceptIdSets);
 			}
 		} catch (IOException e) {
 			throw new ReasonerServiceException("Failed to write out results archive.", e);
 		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.relationshipRows = relationshipRows;
+			event.concreteRelationshipRows = concreteRelationshipRows;
+			event.equivalentConceptRows = equivalentConceptRows;
+			event.commit();
+		}
 	}
 
-	private void writeRelationshipChanges(boolean concrete, BufferedWriter writer, Map<Long, Set<Relationship>> addedStatements, Map<Long, Set<Relationship>> removedStatements) throws IOException {
+	/**
+	 * @return the number of rows written, not including the header.
+	 */
+	private int writeRelationshipChanges(boolean concrete, BufferedWriter writer, Map<Long, Set<Relationship>> addedStatements, Map<Long, Set<Relationship>> removedStatements) throws IOException {
 		// Write header
 		writer.write(concrete ? CONCRETE_RELATIONSHIPS_HEADER : RELATIONSHIPS_HEADER);
 		writer.newLine();
 
+		int rows = 0;
+
 		// Write newly inferred relationships
 		for (Long sourceId : addedStatements.keySet()) {
 			String active = "1";
@@ -81,6 +99,7 @@ class ClassificationResultsWriter {
 							concrete ? relationship.getValue().getRF2Value() : "" + relationship.getDestinationId(),
 							relationship.getGroup(),
 							relationship.getTypeId());
+					rows++;
 				}
 			}
 		}
@@ -97,18 +116,22 @@ class ClassificationResultsWriter {
 							concrete ? relationship.getValue().getRF2Value() : "" + relationship.getDestinationId(),
 							relationship.getGroup(),
 							relationship.getTypeId());
+					rows++;
 				}
 			}
 		}
 
 		writer.flush();
+		return rows;
 	}
 
-	private void writeEquivalentConcepts(BufferedWriter writer, List<Set<Long>> equivalentConceptIdSets) throws IOException {
+	private int writeEquivalentConcepts(BufferedWriter writer, List<Set<Long>> equivalentConceptIdSets) throws IOException {
 		// Write header
 		writer.write(EQUIVALENT_REFSET_HEADER);
 		writer.newLine();
 
+		int rows = 0;
+
 		// Write sets of equivalentConcepts
 		for (Set<Long> equivalentConceptIdSet : equivalentConceptIdSets) {
 			String setId = UUID.randomUUID().toString();
@@ -138,10 +161,12 @@ class ClassificationResultsWriter {
 				// mapTarget is the unique id for the set
 				writer.write(setId);
 				writer.newLine();
+				rows++;
 			}
 		}
 
 		writer.flush();
+		return rows;
 	}
 
 	private void writeRelationship(BufferedWriter writer, String relationshipId, String active, Long sourceId, String destinationOrValue, Integer group, Long typeId) throws IOException {
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
+import org.snomed.otf.owltoolkit.metrics.PipelineMetrics;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Long running classification process which keeps base editions warm between jobs.
+ * Each edition's snapshot is loaded into memory once when it is added. Each job loads its delta into an overlay of the
+ * edition's taxonomy so concurrent jobs share the same base without copying it.
+ * Each job is classified by its own service so the settings of one job never leak into another,
+ * the metrics of all jobs are kept in the registry of the server.
+ * Jobs are accepted over HTTP on the loopback interface:
+ * <ul>
+ * <li>GET /editions - list of loaded edition names, one per line</li>
+ * <li>POST /classify/{edition} - request body is an RF2 delta archive, response body is the classification results archive,
+ * the X-Classification-Id response header holds the id of the job</li>
+ * <li>GET /metrics/{classificationId} - JSON metrics report of a recent job</li>
+ * </ul>
+ */
+public class ClassificationServer {
+
+	private static final String CLASSIFY_PATH = "/classify/";
+	private static final String EDITIONS_PATH = "/editions";
+	private static final String METRICS_PATH = "/metrics/";
+	private static final String CLASSIFICATION_ID_HEADER = "X-Classification-Id";
+
+	private final Supplier<SnomedReasonerService> jobServiceFactory;
+	private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+	private final File snapshotCacheDirectory;
+	private final Map<String, SnomedTaxonomy> editionTaxonomies = new ConcurrentHashMap<>();
+	// Classification uses a lot of memory so the number of jobs running at once is limited
+	private final Semaphore jobPermits;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private HttpServer httpServer;
+	private ExecutorService requestExecutor;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * @param jobServiceFactory creates a configured service for each job, the metrics registry of the service is replaced by the one of the server
+	 * @param snapshotCacheDirectory directory to hold the snapshot cache of each edition
+	 * @param concurrentJobs maximum number of classifications to run at once, further jobs wait
+	 */
+	public ClassificationServer(Supplier<SnomedReasonerService> jobServiceFactory, File snapshotCacheDirectory, int concurrentJobs) {
+		this.jobServiceFactory = jobServiceFactory;
+		this.snapshotCacheDirectory = snapshotCacheDirectory;
+		this.jobPermits = new Semaphore(concurrentJobs, true);
+	}
+
+	/**
+	 * Loads the snapshot archives of an edition so that jobs can be classified against it.
+	 */
+	public void addEdition(String editionName, Set<File> snapshotArchives) throws ReleaseImportException {
+		logger.info("Loading edition {}", editionName);
+		// The snapshot cache makes loading the edition again after a restart quick
+		SnomedTaxonomyBuilder snomedTaxonomyBuilder = new SnomedTaxonomyBuilder();
+		File snapshotCacheFile = snomedTaxonomyBuilder.buildSnapshotCache(snapshotArchives, snapshotCacheDirectory, false);
+		SnomedTaxonomy editionTaxonomy = snomedTaxonomyBuilder.build(snapshotCacheFile, null, false);
+		// Jobs read the edition from many threads at once so everything built on first read is built now
+		editionTaxonomy.freeze();
+		editionTaxonomies.put(editionName, editionTaxonomy);
+		logger.info("Edition {} ready", editionName);
+	}
+
+	public Set<String> getEditionNames() {
+		return new TreeSet<>(editionTaxonomies.keySet());
+	}
+
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
+	/**
+	 * Classifies a delta against a loaded edition.
+	 */
+	public void classify(String classificationId, String editionName, InputStream rf2DeltaArchive, OutputStream resultsRf2DeltaArchive) throws ReasonerServiceException {
+		SnomedTaxonomy baseSnomedTaxonomy = editionTaxonomies.get(editionName);
+		if (baseSnomedTaxonomy == null) {
+			throw new ReasonerServiceException("Edition " + editionName + " is not loaded.");
+		}
+		try {
+			jobPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ReasonerServiceException("Interrupted while waiting to classify.", e);
+		}
+		try {
+			logger.info("Classifying job {} against edition {}", classificationId, editionName);
+			jobServiceFactory.get().setMetricsRegistry(metricsRegistry).classify(classificationId, baseSnomedTaxonomy, rf2DeltaArchive, resultsRf2DeltaArchive,
+					SnomedReasonerService.ELK_REASONER_FACTORY, false);
+		} finally {
+			jobPermits.release();
+		}
+	}
+
+	public void start(int port) throws IOException {
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		httpServer.createContext(EDITIONS_PATH, this::handleEditions);
+		httpServer.createContext(CLASSIFY_PATH, this::handleClassify);
+		httpServer.createContext(METRICS_PATH, this::handleMetrics);
+		requestExecutor = Executors.newCachedThreadPool();
+		httpServer.setExecutor(requestExecutor);
+		httpServer.start();
+		logger.info("Classification server listening on {}", httpServer.getAddress());
+	}
+
+	/**
+	 * @return the port the server is listening on, useful when started on port 0 to pick any free port.
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	public void stop() {
+		if (httpServer != null) {
+			httpServer.stop(0);
+			requestExecutor.shutdown();
+		}
+		stopped.countDown();
+	}
+
+	/**
+	 * Blocks until the server is stopped.
+	 */
+	public void awaitStop() throws InterruptedException {
+		stopped.await();
+	}
+
+	private void handleEditions(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendText(exchange, 405, "Expecting GET.");
+				return;
+			}
+			sendText(exchange, 200, String.join("\n", getEditionNames()));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void handleClassify(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				sendText(exchange, 405, "Expecting POST.");
+				return;
+			}
+			String editionName = exchange.getRequestURI().getPath().substring(CLASSIFY_PATH.length());
+			if (!editionTaxonomies.containsKey(editionName)) {
+				sendText(exchange, 404, "Edition " + editionName + " is not loaded.");
+				return;
+			}
+
+			// Results are written to a file first so that a failed classification can still return an error status
+			String classificationId = UUID.randomUUID().toString();
+			File resultsFile = Files.createTempFile("classification-results-" + classificationId, ".zip").toFile();
+			try {
+				try (InputStream rf2DeltaArchive = exchange.getRequestBody();
+					 OutputStream resultsRf2DeltaArchive = new BufferedOutputStream(new FileOutputStream(resultsFile))) {
+					classify(classificationId, editionName, rf2DeltaArchive, resultsRf2DeltaArchive);
+				} catch (ReasonerServiceException | RuntimeException e) {
+					logger.error("Classification job {} failed.", classificationId, e);
+					sendText(exchange, 500, "Classification failed: " + e.getMessage());
+					return;
+				}
+				exchange.getResponseHeaders().set("Content-Type", "application/zip");
+				exchange.getResponseHeaders().set(CLASSIFICATION_ID_HEADER, classificationId);
+				exchange.sendResponseHeaders(200, resultsFile.length());
+				try (OutputStream responseBody = exchange.getResponseBody()) {
+					Files.copy(resultsFile.toPath(), responseBody);
+				}
+			} finally {
+				Files.deleteIfExists(resultsFile.toPath());
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendText(exchange, 405, "Expecting GET.");
+				return;
+			}
+			String classificationId = exchange.getRequestURI().getPath().substring(METRICS_PATH.length());
+			PipelineMetrics metrics = metricsRegistry.getMetrics(classificationId);
+			if (metrics == null) {
+				sendText(exchange, 404, "No metrics for classification " + classificationId + ".");
+				return;
+			}
+			byte[] bytes = metrics.toJson().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream responseBody = exchange.getResponseBody()) {
+				responseBody.write(bytes);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void sendText(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(bytes);
+		}
+	}
+}
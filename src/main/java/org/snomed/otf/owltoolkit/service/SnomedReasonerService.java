@@ -16,11 +16,19 @@
 package org.snomed.otf.owltoolkit.service;
 
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
+import org.semanticweb.elk.owl.exceptions.ElkException;
+import org.semanticweb.elk.owl.interfaces.ElkClass;
+import org.semanticweb.elk.reasoner.Reasoner;
+import org.semanticweb.elk.reasoner.ReasonerFactory;
+import org.semanticweb.elk.reasoner.config.ReasonerConfiguration;
+import org.semanticweb.elk.reasoner.stages.SimpleStageExecutor;
+import org.semanticweb.elk.reasoner.taxonomy.model.Taxonomy;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.reasoner.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.classification.ElkAxiomLoader;
 import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
 import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomyWalker;
 import org.snomed.otf.owltoolkit.constants.Concepts;
@@ -28,6 +36,9 @@ import org.snomed.otf.owltoolkit.conversion.AxiomRelationshipConversionService;
 import org.snomed.otf.owltoolkit.conversion.ConversionException;
 import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
 import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
+import org.snomed.otf.owltoolkit.metrics.PipelineMetrics;
+import org.snomed.otf.owltoolkit.normalform.NormalFormState;
 import org.snomed.otf.owltoolkit.normalform.RelationshipChangeProcessor;
 import org.snomed.otf.owltoolkit.normalform.RelationshipInactivationProcessor;
 import org.snomed.otf.owltoolkit.normalform.RelationshipNormalFormGenerator;
@@ -38,19 +49,34 @@ import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
 import org.snomed.otf.owltoolkit.util.InputStreamSet;
 import org.snomed.otf.owltoolkit.util.OptionalFileInputStream;
-import org.snomed.otf.owltoolkit.util.TimerUtil;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static java.lang.Long.parseLong;
 
 public class SnomedReasonerService {
 
 	public static final String ELK_REASONER_FACTORY = "org.semanticweb.elk.owlapi.ElkReasonerFactory";
+	public static final String CLASSIFICATION_PIPELINE = "classification";
 
 	private final ClassificationResultsWriter classificationResultsWriter;
 
+	private File snapshotCacheDirectory;
+
+	private int normalFormParallelism = 1;
+
+	private MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+	private File normalFormStateFile;
+
+	private boolean elkNativeLoading;
+
+	private boolean lowMemory;
+
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	private static final Comparator<Relationship> RELATIONSHIP_COMPARATOR_RECENT_CHANGE_FIRST = Comparator
@@ -64,6 +90,74 @@ public class SnomedReasonerService {
 		this.classificationResultsWriter = new ClassificationResultsWriter();
 	}
 
+	/**
+	 * Enables a binary cache of the loaded snapshot state when classifying from files.
+	 * Later classifications using the same snapshot archives will read the cache instead of parsing RF2.
+	 * @param snapshotCacheDirectory directory to store cache files or null to disable caching.
+	 */
+	public SnomedReasonerService setSnapshotCacheDirectory(File snapshotCacheDirectory) {
+		this.snapshotCacheDirectory = snapshotCacheDirectory;
+		return this;
+	}
+
+	/**
+	 * Enables incremental normal form generation.
+	 * The first pass results of each classification are written to this file and the next classification only normalises
+	 * concepts affected by the changes made in between. The reasoner still classifies the whole ontology.
+	 * @param normalFormStateFile file to read and write the normal form state or null to normalise all concepts.
+	 */
+	public SnomedReasonerService setNormalFormStateFile(File normalFormStateFile) {
+		this.normalFormStateFile = normalFormStateFile;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads used for normal form generation.
+	 * Results are the same regardless of the number of threads.
+	 * @param normalFormParallelism number of threads, 1 to generate the normal form serially.
+	 */
+	public SnomedReasonerService setNormalFormParallelism(int normalFormParallelism) {
+		if (normalFormParallelism < 1) {
+			throw new IllegalArgumentException("Normal form parallelism must be at least 1.");
+		}
+		this.normalFormParallelism = normalFormParallelism;
+		return this;
+	}
+
+	/**
+	 * Loads axioms straight into ELK instead of creating an OWL API ontology for the reasoner to convert.
+	 * Only used when the ELK reasoner is requested and the ontology is not serialised for debug.
+	 * @param elkNativeLoading true to skip the OWL API ontology.
+	 */
+	public SnomedReasonerService setElkNativeLoading(boolean elkNativeLoading) {
+		this.elkNativeLoading = elkNativeLoading;
+		return this;
+	}
+
+	/**
+	 * Releases the OWL ontology, the OWL axioms of the taxonomy and the normal form generator as soon as each is consumed
+	 * and records the heap reclaimed after each stage in the metrics. Each release runs a full garbage collection so the
+	 * classification is slower but its peak heap is lower.
+	 * @param lowMemory true to release each stage once consumed.
+	 */
+	public SnomedReasonerService setLowMemory(boolean lowMemory) {
+		this.lowMemory = lowMemory;
+		return this;
+	}
+
+	/**
+	 * Sets the registry which keeps per phase metrics of classifications, by default each service has its own.
+	 * Classifications of files also write the metrics as JSON next to the results archive.
+	 */
+	public SnomedReasonerService setMetricsRegistry(MetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+		return this;
+	}
+
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
 	public void classify(String classificationId,
 			File previousReleaseRf2SnapshotArchiveFiles,
 			File currentReleaseRf2DeltaArchiveFile,
@@ -87,18 +181,45 @@ public class SnomedReasonerService {
 			String reasonerFactoryClassName,
 			boolean outputOntologyFileForDebug) throws ReasonerServiceException {
 
-		try (InputStreamSet previousReleaseRf2SnapshotArchives = new InputStreamSet(previousReleaseRf2SnapshotArchiveFile);
-			 OptionalFileInputStream currentReleaseRf2DeltaArchive = new OptionalFileInputStream(currentReleaseRf2DeltaArchiveFile);
-			 OutputStream resultsRf2DeltaArchive = new FileOutputStream(resultsRf2DeltaArchiveFile)) {
+		PipelineMetrics metrics;
+		if (snapshotCacheDirectory != null) {
+			try (OptionalFileInputStream currentReleaseRf2DeltaArchive = new OptionalFileInputStream(currentReleaseRf2DeltaArchiveFile);
+				 OutputStream resultsRf2DeltaArchive = new FileOutputStream(resultsRf2DeltaArchiveFile)) {
+
+				metrics = classify(classificationId,
+						snomedTaxonomyBuilder -> snomedTaxonomyBuilder.build(previousReleaseRf2SnapshotArchiveFile,
+								currentReleaseRf2DeltaArchive.getInputStream().orElse(null), snapshotCacheDirectory, false),
+						resultsRf2DeltaArchive,
+						reasonerFactoryClassName,
+						outputOntologyFileForDebug);
+			} catch (IOException e) {
+				throw new ReasonerServiceException("IO error handling input/output files.", e);
+			}
+		} else {
+			try (InputStreamSet previousReleaseRf2SnapshotArchives = SnomedTaxonomyBuilder.openSnapshotArchives(previousReleaseRf2SnapshotArchiveFile, false);
+				 OptionalFileInputStream currentReleaseRf2DeltaArchive = new OptionalFileInputStream(currentReleaseRf2DeltaArchiveFile);
+				 OutputStream resultsRf2DeltaArchive = new FileOutputStream(resultsRf2DeltaArchiveFile)) {
+
+				metrics = classify(classificationId,
+						snomedTaxonomyBuilder -> snomedTaxonomyBuilder.build(previousReleaseRf2SnapshotArchives,
+								currentReleaseRf2DeltaArchive.getInputStream().orElse(null), false),
+						resultsRf2DeltaArchive,
+						reasonerFactoryClassName,
+						outputOntologyFileForDebug);
+			} catch (IOException e) {
+				throw new ReasonerServiceException("IO error handling input/output files.", e);
+			}
+		}
+		writeMetricsReport(metrics, resultsRf2DeltaArchiveFile);
+	}
 
-			classify(classificationId,
-					previousReleaseRf2SnapshotArchives,
-					currentReleaseRf2DeltaArchive.getInputStream().orElse(null),
-					resultsRf2DeltaArchive,
-					reasonerFactoryClassName,
-					outputOntologyFileForDebug);
+	private void writeMetricsReport(PipelineMetrics metrics, File resultsRf2DeltaArchiveFile) {
+		File reportFile = MetricsRegistry.getReportFile(resultsRf2DeltaArchiveFile);
+		try {
+			metrics.writeJson(reportFile);
+			logger.info("Classification metrics written to {}", reportFile.getAbsolutePath());
 		} catch (IOException e) {
-			throw new ReasonerServiceException("IO error handling input/output files.", e);
+			logger.warn("Failed to write classification metrics to {}", reportFile.getAbsolutePath(), e);
 		}
 	}
 
@@ -109,69 +230,93 @@ public class SnomedReasonerService {
 			String reasonerFactoryClassName,
 			boolean outputOntologyFileForDebug) throws ReasonerServiceException {
 
+		classify(classificationId,
+				snomedTaxonomyBuilder -> snomedTaxonomyBuilder.build(previousReleaseRf2SnapshotArchives, currentReleaseRf2DeltaArchive, false),
+				resultsRf2DeltaArchive,
+				reasonerFactoryClassName,
+				outputOntologyFileForDebug);
+	}
+
+	/**
+	 * Classifies a delta against a snapshot cache file created by {@link SnomedTaxonomyBuilder#buildSnapshotCache}.
+	 * Used by long running processes which classify many deltas against the same snapshot.
+	 */
+	public void classify(String classificationId,
+			File snapshotCacheFile,
+			InputStream currentReleaseRf2DeltaArchive,
+			OutputStream resultsRf2DeltaArchive,
+			String reasonerFactoryClassName,
+			boolean outputOntologyFileForDebug) throws ReasonerServiceException {
+
+		classify(classificationId,
+				snomedTaxonomyBuilder -> snomedTaxonomyBuilder.build(snapshotCacheFile, currentReleaseRf2DeltaArchive, false),
+				resultsRf2DeltaArchive,
+				reasonerFactoryClassName,
+				outputOntologyFileForDebug);
+	}
+
+	/**
+	 * Classifies a delta against a base taxonomy which is already loaded in memory.
+	 * The delta is loaded into an overlay so the base is not modified and can be shared by concurrent classifications.
+	 * @param baseSnomedTaxonomy frozen snapshot taxonomy, for example built from {@link SnomedTaxonomyBuilder#build(File, InputStream, boolean)}
+	 * without a delta then {@link SnomedTaxonomy#freeze() frozen}.
+	 */
+	public void classify(String classificationId,
+			SnomedTaxonomy baseSnomedTaxonomy,
+			InputStream currentReleaseRf2DeltaArchive,
+			OutputStream resultsRf2DeltaArchive,
+			String reasonerFactoryClassName,
+			boolean outputOntologyFileForDebug) throws ReasonerServiceException {
+
+		classify(classificationId,
+				snomedTaxonomyBuilder -> snomedTaxonomyBuilder.buildOverlay(baseSnomedTaxonomy, currentReleaseRf2DeltaArchive, false),
+				resultsRf2DeltaArchive,
+				reasonerFactoryClassName,
+				outputOntologyFileForDebug);
+	}
+
+	private PipelineMetrics classify(String classificationId,
+			TaxonomySource taxonomySource,
+			OutputStream resultsRf2DeltaArchive,
+			String reasonerFactoryClassName,
+			boolean outputOntologyFileForDebug) throws ReasonerServiceException {
+
 		Date startDate = new Date();
-		TimerUtil timer = new TimerUtil("Classification");
+		PipelineMetrics metrics = metricsRegistry.start(CLASSIFICATION_PIPELINE, classificationId);
 		logger.info("Checking requested reasoner is available");
 		OWLReasonerFactory reasonerFactory = getOWLReasonerFactory(reasonerFactoryClassName);
-		timer.checkpoint("Create reasoner factory");
+		metrics.checkpoint("Create reasoner factory");
 
 		logger.info("Building snomedTaxonomy");
-		SnomedTaxonomyBuilder snomedTaxonomyBuilder = new SnomedTaxonomyBuilder();
+		SnomedTaxonomyBuilder snomedTaxonomyBuilder = new SnomedTaxonomyBuilder().setMetrics(metrics);
 		SnomedTaxonomy snomedTaxonomy;
 		try {
-			snomedTaxonomy = snomedTaxonomyBuilder.build(previousReleaseRf2SnapshotArchives, currentReleaseRf2DeltaArchive, false);
+			snomedTaxonomy = taxonomySource.build(snomedTaxonomyBuilder);
 		} catch (ReleaseImportException e) {
 			throw new ReasonerServiceException("Failed to build existing taxonomy.", e);
 		}
-		timer.checkpoint("Build existing taxonomy");
+		metrics.checkpoint("Build existing taxonomy");
 
-		logger.info("Creating OwlOntology");
 		Set<Long> ungroupedRoles = snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
-		OntologyService ontologyService = new OntologyService(ungroupedRoles);
-		OWLOntology owlOntology;
-		try {
-			owlOntology = ontologyService.createOntology(snomedTaxonomy);
-		} catch (OWLOntologyCreationException e) {
-			throw new ReasonerServiceException("Failed to build OWL Ontology.", e);
+		// The ontology, reasoner and normal form generator only live inside the method of their stage
+		// so they can be collected as soon as it returns
+		InferredHierarchy inferredHierarchy;
+		if (elkNativeLoading && ELK_REASONER_FACTORY.equals(reasonerFactoryClassName) && !outputOntologyFileForDebug) {
+			inferredHierarchy = inferWithElkAxiomLoader(snomedTaxonomy, ungroupedRoles, metrics);
+		} else {
+			inferredHierarchy = inferWithOwlReasoner(classificationId, snomedTaxonomy, ungroupedRoles, reasonerFactory, outputOntologyFileForDebug, metrics);
 		}
-		timer.checkpoint("Create OWL Ontology");
-
-		Set<PropertyChain> propertyChains = ontologyService.getPropertyChains(owlOntology);
-
-		if (outputOntologyFileForDebug) {
-			OntologyDebugUtil.serialiseOntologyForDebug(classificationId, owlOntology);
-			timer.checkpoint("Serialising OWL Ontology to disk for debug");
+		List<Set<Long>> equivalentConceptIds = inferredHierarchy.reasonerTaxonomy.getEquivalentConceptIds();
+		if (lowMemory) {
+			releaseMemory("Release OWL ontology", metrics);
 		}
 
-		logger.info("Creating OwlReasoner");
-		final OWLReasonerConfiguration configuration = new SimpleConfiguration(new ConsoleProgressMonitor());
-		OWLReasoner reasoner = reasonerFactory.createReasoner(owlOntology, configuration);
-		timer.checkpoint("Create reasoner");
-
-		logger.info("OwlReasoner inferring class hierarchy");
-		reasoner.flush();
-		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
-		timer.checkpoint("Inference computation");
-
-		logger.info("Extract ReasonerTaxonomy");
-		ReasonerTaxonomyWalker walker = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy());
-		ReasonerTaxonomy reasonerTaxonomy = walker.walk();
-		reasoner.dispose();
-		timer.checkpoint("Extract ReasonerTaxonomy");
-
-		logger.info("Generate normal form");
-		AxiomRelationshipConversionService axiomRelationshipConversionService = new AxiomRelationshipConversionService(ungroupedRoles);
-		Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap;
-		try {
-			conceptAxiomStatementMap = axiomRelationshipConversionService.convertAxiomsToRelationships(snomedTaxonomy.getConceptAxiomMap(), true);
-		} catch (ConversionException e) {
-			throw new ReasonerServiceException("Failed to convert OWL Axiom Expressions into relationships for normal form generation.", e);
+		RelationshipChangeProcessor changeCollector = generateNormalForm(snomedTaxonomy, ungroupedRoles, inferredHierarchy, metrics);
+		// The reasoner taxonomy is not needed after the normal form
+		inferredHierarchy = null;
+		if (lowMemory) {
+			releaseMemory("Release normal form generator", metrics);
 		}
-		RelationshipNormalFormGenerator normalFormGenerator = new RelationshipNormalFormGenerator(reasonerTaxonomy, snomedTaxonomy, conceptAxiomStatementMap, propertyChains);
-
-		RelationshipChangeProcessor changeCollector = new RelationshipChangeProcessor();
-		normalFormGenerator.collectNormalFormChanges(changeCollector);
-		timer.checkpoint("Generate normal form");
 
 		logger.info("Inactivating inferred relationships for new inactive concepts");
 		new RelationshipInactivationProcessor(snomedTaxonomy).processInactivationChanges(changeCollector);
@@ -203,6 +348,8 @@ public class SnomedReasonerService {
 			}
 		}
 
+		metrics.checkpoint("Inactivate relationships").count("removedDueToConceptInactivation", changeCollector.getRemovedDueToConceptInactivationCount());
+
 		long redundantCount = changeCollector.getRedundantCount();
 		long totalChanges = changeCollector.getAddedCount() + changeCollector.getUpdatedCount() + redundantCount + changeCollector.getRemovedDueToConceptInactivationCount();
 		logger.info("{} relationship rows changed: {} added, {} updated, {} redundant, {} removed due to concept inactivation.",
@@ -210,9 +357,177 @@ public class SnomedReasonerService {
 				formatDecimal(redundantCount), formatDecimal(changeCollector.getRemovedDueToConceptInactivationCount()));
 
 		logger.info("Writing results archive");
-		classificationResultsWriter.writeResultsRf2Archive(changeCollector, reasonerTaxonomy.getEquivalentConceptIds(), resultsRf2DeltaArchive, startDate);
-		timer.checkpoint("Write results to disk");
-		timer.finish();
+		classificationResultsWriter.writeResultsRf2Archive(changeCollector, equivalentConceptIds, resultsRf2DeltaArchive, startDate);
+		metrics.checkpoint("Write results to disk").count("changedRelationships", totalChanges);
+		metrics.finish();
+		return metrics;
+	}
+
+	private InferredHierarchy inferWithElkAxiomLoader(SnomedTaxonomy snomedTaxonomy, Set<Long> ungroupedRoles, PipelineMetrics metrics) throws ReasonerServiceException {
+		logger.info("Creating ELK reasoner");
+		OntologyService ontologyService = new OntologyService(ungroupedRoles);
+		ElkAxiomLoader axiomLoader = new ElkAxiomLoader(ontologyService, snomedTaxonomy);
+		Reasoner reasoner = new ReasonerFactory().createReasoner(axiomLoader, new SimpleStageExecutor(), ReasonerConfiguration.getConfiguration());
+		try {
+			metrics.checkpoint("Create reasoner");
+
+			logger.info("ELK loading axioms and inferring class hierarchy");
+			Taxonomy<ElkClass> elkTaxonomy;
+			try {
+				elkTaxonomy = reasoner.getTaxonomy();
+			} catch (ElkException e) {
+				throw new ReasonerServiceException("Failed to classify with ELK.", e);
+			}
+			metrics.checkpoint("Inference computation")
+					.count("concepts", snomedTaxonomy.getAllConceptIds().size())
+					.count("axioms", axiomLoader.getAxiomCount());
+
+			logger.info("Extract ReasonerTaxonomy");
+			OWLOntology propertyOntology;
+			try {
+				propertyOntology = ontologyService.createOntology(axiomLoader.getPropertyAxioms());
+			} catch (OWLOntologyCreationException e) {
+				throw new ReasonerServiceException("Failed to build OWL Ontology of properties.", e);
+			}
+			Set<PropertyChain> propertyChains = ontologyService.getPropertyChains(propertyOntology);
+			ReasonerTaxonomyWalker walker = new ReasonerTaxonomyWalker(elkTaxonomy, propertyOntology, new ReasonerTaxonomy(snomedTaxonomy.getConceptIndex()));
+			ReasonerTaxonomy reasonerTaxonomy = walker.walk();
+			metrics.checkpoint("Extract ReasonerTaxonomy").count("equivalentConceptSets", reasonerTaxonomy.getEquivalentConceptIds().size());
+			return new InferredHierarchy(reasonerTaxonomy, propertyChains);
+		} finally {
+			try {
+				reasoner.shutdown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private InferredHierarchy inferWithOwlReasoner(String classificationId, SnomedTaxonomy snomedTaxonomy, Set<Long> ungroupedRoles,
+			OWLReasonerFactory reasonerFactory, boolean outputOntologyFileForDebug, PipelineMetrics metrics) throws ReasonerServiceException {
+
+		logger.info("Creating OwlOntology");
+		OntologyService ontologyService = new OntologyService(ungroupedRoles);
+		OWLOntology owlOntology;
+		try {
+			owlOntology = ontologyService.createOntology(snomedTaxonomy);
+		} catch (OWLOntologyCreationException e) {
+			throw new ReasonerServiceException("Failed to build OWL Ontology.", e);
+		}
+		metrics.checkpoint("Create OWL Ontology")
+				.count("concepts", snomedTaxonomy.getAllConceptIds().size())
+				.count("axioms", owlOntology.getAxiomCount());
+
+		Set<PropertyChain> propertyChains = ontologyService.getPropertyChains(owlOntology);
+
+		if (outputOntologyFileForDebug) {
+			OntologyDebugUtil.serialiseOntologyForDebug(classificationId, owlOntology);
+			metrics.checkpoint("Serialising OWL Ontology to disk for debug");
+		}
+
+		logger.info("Creating OwlReasoner");
+		final OWLReasonerConfiguration configuration = new SimpleConfiguration(new ConsoleProgressMonitor());
+		OWLReasoner reasoner = reasonerFactory.createReasoner(owlOntology, configuration);
+		metrics.checkpoint("Create reasoner");
+
+		logger.info("OwlReasoner inferring class hierarchy");
+		reasoner.flush();
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		metrics.checkpoint("Inference computation");
+
+		logger.info("Extract ReasonerTaxonomy");
+		ReasonerTaxonomyWalker walker = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy(snomedTaxonomy.getConceptIndex()));
+		ReasonerTaxonomy reasonerTaxonomy = walker.walk();
+		reasoner.dispose();
+		metrics.checkpoint("Extract ReasonerTaxonomy").count("equivalentConceptSets", reasonerTaxonomy.getEquivalentConceptIds().size());
+		return new InferredHierarchy(reasonerTaxonomy, propertyChains);
+	}
+
+	private RelationshipChangeProcessor generateNormalForm(SnomedTaxonomy snomedTaxonomy, Set<Long> ungroupedRoles, InferredHierarchy inferredHierarchy,
+			PipelineMetrics metrics) throws ReasonerServiceException {
+
+		logger.info("Generate normal form");
+		AxiomRelationshipConversionService axiomRelationshipConversionService = new AxiomRelationshipConversionService(ungroupedRoles);
+		Map<Long, Set<AxiomRepresentation>> conceptAxiomStatementMap;
+		try {
+			conceptAxiomStatementMap = axiomRelationshipConversionService.convertAxiomsToRelationships(snomedTaxonomy.getConceptAxiomMap(), true);
+		} catch (ConversionException e) {
+			throw new ReasonerServiceException("Failed to convert OWL Axiom Expressions into relationships for normal form generation.", e);
+		}
+		if (lowMemory) {
+			// The axioms are only read again as relationships
+			snomedTaxonomy.releaseAxioms();
+			releaseMemory("Release OWL axioms", metrics);
+		}
+		RelationshipNormalFormGenerator normalFormGenerator = new RelationshipNormalFormGenerator(inferredHierarchy.reasonerTaxonomy, snomedTaxonomy,
+				conceptAxiomStatementMap, inferredHierarchy.propertyChains);
+
+		NormalFormState previousNormalFormState = null;
+		NormalFormState nextNormalFormState = null;
+		if (normalFormStateFile != null) {
+			try {
+				previousNormalFormState = NormalFormState.read(normalFormStateFile);
+			} catch (IOException e) {
+				logger.warn("Failed to read normal form state {}, all concepts will be normalised.", normalFormStateFile.getAbsolutePath(), e);
+			}
+			nextNormalFormState = normalFormGenerator.recordNormalFormState();
+		}
+
+		RelationshipChangeProcessor changeCollector = new RelationshipChangeProcessor();
+		ForkJoinPool normalFormPool = normalFormParallelism > 1 ? new ForkJoinPool(normalFormParallelism) : null;
+		try {
+			normalFormGenerator.collectNormalFormChanges(changeCollector, normalFormPool, previousNormalFormState);
+		} finally {
+			if (normalFormPool != null) {
+				normalFormPool.shutdown();
+			}
+		}
+		if (nextNormalFormState != null) {
+			try {
+				nextNormalFormState.write(normalFormStateFile);
+			} catch (IOException e) {
+				logger.warn("Failed to write normal form state {}.", normalFormStateFile.getAbsolutePath(), e);
+			}
+		}
+		metrics.checkpoint("Generate normal form")
+				.count("added", changeCollector.getAddedCount())
+				.count("updated", changeCollector.getUpdatedCount())
+				.count("redundant", changeCollector.getRedundantCount());
+		return changeCollector;
+	}
+
+	/**
+	 * Collects the garbage left by the stage just finished and records the heap reclaimed as a phase of its own.
+	 */
+	private void releaseMemory(String phaseName, PipelineMetrics metrics) {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long usedBefore = memory.getHeapMemoryUsage().getUsed();
+		System.gc();
+		long usedAfter = memory.getHeapMemoryUsage().getUsed();
+		long reclaimed = Math.max(usedBefore - usedAfter, 0);
+		logger.info("{} reclaimed {} MB of heap, {} MB in use", phaseName, reclaimed / (1024 * 1024), usedAfter / (1024 * 1024));
+		metrics.checkpoint(phaseName)
+				.count("heapReclaimedBytes", reclaimed)
+				.count("heapUsedBytes", usedAfter);
+	}
+
+	/**
+	 * Results of the reasoner needed for the normal form, without the ontology or reasoner which produced them.
+	 */
+	private static final class InferredHierarchy {
+
+		private final ReasonerTaxonomy reasonerTaxonomy;
+		private final Set<PropertyChain> propertyChains;
+
+		private InferredHierarchy(ReasonerTaxonomy reasonerTaxonomy, Set<PropertyChain> propertyChains) {
+			this.reasonerTaxonomy = reasonerTaxonomy;
+			this.propertyChains = propertyChains;
+		}
+	}
+
+	@FunctionalInterface
+	private interface TaxonomySource {
+		SnomedTaxonomy build(SnomedTaxonomyBuilder snomedTaxonomyBuilder) throws ReleaseImportException;
 	}
 
 	private String formatDecimal(long number) {
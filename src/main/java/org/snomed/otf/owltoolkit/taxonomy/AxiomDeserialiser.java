@@ -7,86 +7,141 @@ import org.semanticweb.owlapi.io.StringDocumentSource;
 import org.semanticweb.owlapi.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.metrics.AxiomDeserialisationEvent;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Deserialises OWL axiom strings from the OWL axiom reference set.
+ * Axioms within the SNOMED CT subset of the syntax are built directly by the {@link SnomedAxiomParser},
+ * anything else falls back to the OWLAPI functional syntax parser.
+ * Each call borrows an OWLAPI parser and scratch ontology from a pool owned by this deserialiser so that axioms from files
+ * loaded in parallel (e.g. international and extension) can be deserialised concurrently. The pool holds at most one parser
+ * per concurrent caller and is collected with the deserialiser, no state is left on the calling threads.
+ */
 public class AxiomDeserialiser {
 
 	private static final String ontologyDocStart = "Prefix(:=<http://snomed.info/id/>) Ontology(";
 	private static final String ontologyDocEnd = ")";
 
-	private OWLOntology owlOntology;
-	private OWLOntologyLoaderConfiguration owlOntologyLoaderConfiguration;
-	private OWLFunctionalSyntaxOWLParser owlFunctionalSyntaxOWLParser;
-	private List<OWLAxiom> owlAxiomsLoaded = new ArrayList<>();
-	private int axiomsLoaded = 0;
-	private long timeTakenDeserialisingAxioms;
-	private final OWLOntologyManager owlOntologyManager;
+	private final SnomedAxiomParser snomedAxiomParser = new SnomedAxiomParser(OWLManager.getOWLDataFactory());
+	private final Queue<ParserContext> parserContexts = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger axiomsLoaded = new AtomicInteger();
+	private final AtomicLong timeTakenDeserialisingAxioms = new AtomicLong();
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	AxiomDeserialiser() {
-		owlOntologyManager = OWLManager.createOWLOntologyManager();
-		try {
-			owlOntology = owlOntologyManager.loadOntologyFromOntologyDocument(
-					new StringDocumentSource(ontologyDocStart + ontologyDocEnd));
-		} catch (OWLOntologyCreationException e) {
-			throw new RuntimeException(e);
-		}
-		OWLAPIConfigProvider owlapiConfigProvider = new OWLAPIConfigProvider();
-		owlOntologyLoaderConfiguration = owlapiConfigProvider.get();
-		owlFunctionalSyntaxOWLParser = new OWLFunctionalSyntaxOWLParser();
-		owlOntologyManager.addOntologyChangeListener(list -> {
-			for (OWLOntologyChange owlOntologyChange : list) {
-				if (owlOntologyChange instanceof AddAxiom) {
-					AddAxiom addAxiom = (AddAxiom) owlOntologyChange;
-					owlAxiomsLoaded.add(addAxiom.getAxiom());
-				}
-			}
-		});
-		timeTakenDeserialisingAxioms = 0;
 	}
 
 	public OWLAxiom deserialiseAxiom(String owlExpression, @Nullable String axiomIdentifier) throws OWLOntologyCreationException {
-		synchronized (this) {
-			try {
-				long start = new Date().getTime();
-				owlFunctionalSyntaxOWLParser.parse(new StringDocumentSource(ontologyDocStart + owlExpression + ontologyDocEnd), owlOntology, owlOntologyLoaderConfiguration);
+		AxiomDeserialisationEvent event = new AxiomDeserialisationEvent();
+		event.begin();
+		long start = System.currentTimeMillis();
+		OWLAxiom owlAxiom = snomedAxiomParser.parse(owlExpression);
+		if (owlAxiom != null) {
+			timeTakenDeserialisingAxioms.addAndGet(System.currentTimeMillis() - start);
+			logProgress();
+			commitEvent(event, axiomIdentifier, owlExpression, false);
+			return owlAxiom;
+		}
 
-				if (owlAxiomsLoaded.size() != 1) {
-					throw new IllegalArgumentException("OWL Axiom string should contain a single Axiom" +
-							" found " + owlAxiomsLoaded.size() + " for axiom id " + axiomIdentifier + " - '" + owlExpression + "'");
-				}
-				timeTakenDeserialisingAxioms += new Date().getTime() - start;
-
-				return owlAxiomsLoaded.iterator().next();
-			} catch (IOException e) {
-				throw new OWLOntologyCreationException("Failed to parse axiom " + axiomIdentifier + ", '" + owlExpression + "'", e);
-			} finally {
-				axiomsLoaded++;
-				if (axiomsLoaded > 0 && axiomsLoaded % 10_000 == 0) {
-					logger.info("Deserialised {} axioms...", String.format("%,8d", axiomsLoaded));
-				}
-				owlOntologyManager.removeAxioms(owlOntology, new HashSet<>(owlAxiomsLoaded));
-				owlAxiomsLoaded.clear();
+		ParserContext context = parserContexts.poll();
+		if (context == null) {
+			context = new ParserContext();
+		}
+		try {
+			context.owlFunctionalSyntaxOWLParser.parse(new StringDocumentSource(ontologyDocStart + owlExpression + ontologyDocEnd),
+					context.owlOntology, context.owlOntologyLoaderConfiguration);
+
+			if (context.owlAxiomsLoaded.size() != 1) {
+				throw new IllegalArgumentException("OWL Axiom string should contain a single Axiom" +
+						" found " + context.owlAxiomsLoaded.size() + " for axiom id " + axiomIdentifier + " - '" + owlExpression + "'");
 			}
+			timeTakenDeserialisingAxioms.addAndGet(System.currentTimeMillis() - start);
+			commitEvent(event, axiomIdentifier, owlExpression, true);
+
+			return context.owlAxiomsLoaded.iterator().next();
+		} catch (IOException e) {
+			throw new OWLOntologyCreationException("Failed to parse axiom " + axiomIdentifier + ", '" + owlExpression + "'", e);
+		} finally {
+			logProgress();
+			context.clear();
+			parserContexts.offer(context);
+		}
+	}
+
+	private static void commitEvent(AxiomDeserialisationEvent event, String axiomIdentifier, String owlExpression, boolean owlApiParser) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.axiomId = axiomIdentifier;
+			event.expressionLength = owlExpression.length();
+			event.owlApiParser = owlApiParser;
+			event.commit();
+		}
+	}
+
+	private void logProgress() {
+		int loaded = axiomsLoaded.incrementAndGet();
+		if (loaded % 10_000 == 0) {
+			logger.info("Deserialised {} axioms...", String.format("%,8d", loaded));
 		}
 	}
 
 	public long getTimeTakenDeserialisingAxioms() {
-		return timeTakenDeserialisingAxioms;
+		return timeTakenDeserialisingAxioms.get();
 	}
 
 	public int getAxiomsLoaded() {
-		return axiomsLoaded;
+		return axiomsLoaded.get();
 	}
 
 	public void clearCounters() {
-		this.timeTakenDeserialisingAxioms = 0;
-		this.axiomsLoaded = 0;
+		this.timeTakenDeserialisingAxioms.set(0);
+		this.axiomsLoaded.set(0);
+	}
+
+	/**
+	 * Parser state used by one call at a time.
+	 */
+	private static final class ParserContext {
+
+		private final OWLOntologyManager owlOntologyManager;
+		private final OWLOntology owlOntology;
+		private final OWLOntologyLoaderConfiguration owlOntologyLoaderConfiguration;
+		private final OWLFunctionalSyntaxOWLParser owlFunctionalSyntaxOWLParser;
+		private final List<OWLAxiom> owlAxiomsLoaded = new ArrayList<>();
+
+		private ParserContext() {
+			owlOntologyManager = OWLManager.createOWLOntologyManager();
+			try {
+				owlOntology = owlOntologyManager.loadOntologyFromOntologyDocument(
+						new StringDocumentSource(ontologyDocStart + ontologyDocEnd));
+			} catch (OWLOntologyCreationException e) {
+				throw new RuntimeException(e);
+			}
+			owlOntologyLoaderConfiguration = new OWLAPIConfigProvider().get();
+			owlFunctionalSyntaxOWLParser = new OWLFunctionalSyntaxOWLParser();
+			owlOntologyManager.addOntologyChangeListener(list -> {
+				for (OWLOntologyChange owlOntologyChange : list) {
+					if (owlOntologyChange instanceof AddAxiom) {
+						AddAxiom addAxiom = (AddAxiom) owlOntologyChange;
+						owlAxiomsLoaded.add(addAxiom.getAxiom());
+					}
+				}
+			});
+		}
+
+		private void clear() {
+			owlOntologyManager.removeAxioms(owlOntology, new HashSet<>(owlAxiomsLoaded));
+			owlAxiomsLoaded.clear();
+		}
 	}
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+/**
+ * An active OWL axiom reference set member as read from RF2, the owlExpression exactly as it was loaded.
+ */
+final class AxiomExpression {
+
+	private final long conceptId;
+	private final String owlExpression;
+
+	AxiomExpression(long conceptId, String owlExpression) {
+		this.conceptId = conceptId;
+		this.owlExpression = owlExpression;
+	}
+
+	long getConceptId() {
+		return conceptId;
+	}
+
+	String getOwlExpression() {
+		return owlExpression;
+	}
+}
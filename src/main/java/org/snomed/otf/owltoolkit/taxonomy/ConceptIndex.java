@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Assigns each concept id a contiguous int ordinal so that per concept data can be held in arrays and bitsets
+ * rather than maps keyed by boxed SCTIDs.
+ * Ordinals are assigned in the order concepts are first added and never change.
+ * Adding is synchronised, lookups are not and should only run once adding has finished or on the adding thread.
+ * An index created over a base index keeps the base ordinals and assigns new ordinals after them without modifying the base,
+ * so one base index can be shared by many overlays. A base index is frozen first so that it can never be added to once shared.
+ */
+public final class ConceptIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	public static final int NOT_FOUND = -1;
+
+	private final ConceptIndex base;
+	private final int baseSize;
+	private final Long2IntOpenHashMap ordinals = new Long2IntOpenHashMap();
+	// Concepts of this index only, the ordinal of conceptIds[i] is baseSize + i
+	private long[] conceptIds = new long[1024];
+	private int size;
+	private volatile boolean frozen;
+
+	public ConceptIndex() {
+		this(null);
+	}
+
+	/**
+	 * @param base index which must not be added to while this index is in use, or null.
+	 */
+	public ConceptIndex(ConceptIndex base) {
+		this.base = base;
+		this.baseSize = base != null ? base.size() : 0;
+		this.size = baseSize;
+		ordinals.defaultReturnValue(NOT_FOUND);
+	}
+
+	/**
+	 * @return the ordinal of the concept, a new ordinal is assigned if the concept has not been seen before.
+	 */
+	public synchronized int add(long conceptId) {
+		int ordinal = indexOf(conceptId);
+		if (ordinal == NOT_FOUND) {
+			if (frozen) {
+				throw new IllegalStateException("Concept " + conceptId + " can not be added to a frozen concept index.");
+			}
+			ordinal = size++;
+			int position = ordinal - baseSize;
+			if (position == conceptIds.length) {
+				conceptIds = Arrays.copyOf(conceptIds, conceptIds.length * 2);
+			}
+			conceptIds[position] = conceptId;
+			ordinals.put(conceptId, ordinal);
+		}
+		return ordinal;
+	}
+
+	/**
+	 * Adds the first count concepts of the array, taking the lock once.
+	 */
+	public synchronized void addAll(long[] conceptIds, int count) {
+		for (int i = 0; i < count; i++) {
+			add(conceptIds[i]);
+		}
+	}
+
+	/**
+	 * @return the ordinal of the concept or {@link #NOT_FOUND}.
+	 */
+	public int indexOf(long conceptId) {
+		if (base != null) {
+			int baseOrdinal = base.indexOf(conceptId);
+			if (baseOrdinal != NOT_FOUND && baseOrdinal < baseSize) {
+				return baseOrdinal;
+			}
+		}
+		return ordinals.get(conceptId);
+	}
+
+	/**
+	 * Rejects any new concept from now on so that lookups from any thread are safe.
+	 */
+	public synchronized void freeze() {
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	public long getConceptId(int ordinal) {
+		if (ordinal < 0 || ordinal >= size) {
+			throw new IndexOutOfBoundsException("No concept with ordinal " + ordinal);
+		}
+		return ordinal < baseSize ? base.getConceptId(ordinal) : conceptIds[ordinal - baseSize];
+	}
+
+	public int size() {
+		return size;
+	}
+}
@@ -24,6 +24,10 @@ public class Description {
 		this.languageCode = languageCode;
 	}
 
+	public String getId() {
+		return id;
+	}
+
 	public String getTerm() {
 		return term;
 	}
@@ -49,6 +53,12 @@ public class Description {
 		return Objects.hash(id);
 	}
 
+	Description copy() {
+		Description copy = new Description(id, term, typeId, languageCode);
+		copy.acceptabilityMap.putAll(acceptabilityMap);
+		return copy;
+	}
+
 	void setAcceptability(long refsetId, long acceptabilityId, boolean active) {
 		if (active) {
 			acceptabilityMap.put(refsetId, acceptabilityId);
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import com.google.common.collect.Iterators;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Map which records puts and removals separately from a base map which is never modified.
+ * Mutable values of the base must be copied into this map with {@link #writableValue} before they are changed.
+ * Null values are not supported. Not thread safe.
+ */
+final class OverlayMap<K, V> extends AbstractMap<K, V> {
+
+	private final Map<K, V> base;
+	private final Map<K, V> own;
+	// Keys of the base which have been removed
+	private final Set<K> removed = new HashSet<>();
+	// Number of keys in own which are not in the base
+	private int ownOnly;
+
+	OverlayMap(Map<K, V> base, Map<K, V> own) {
+		this.base = base;
+		this.own = own;
+	}
+
+	/**
+	 * @return the value of the key which is safe to modify, for an overlay a base value is copied into the overlay first.
+	 * Null if the key has no value.
+	 */
+	@SuppressWarnings("unchecked")
+	static <K, V> V writableValue(Map<K, V> map, K key, UnaryOperator<V> copy) {
+		if (map instanceof OverlayMap) {
+			OverlayMap<K, V> overlay = (OverlayMap<K, V>) map;
+			V value = overlay.own.get(key);
+			if (value == null && !overlay.removed.contains(key)) {
+				V baseValue = overlay.base.get(key);
+				if (baseValue != null) {
+					value = copy.apply(baseValue);
+					overlay.put(key, value);
+				}
+			}
+			return value;
+		}
+		return map.get(key);
+	}
+
+	/**
+	 * Same as {@link #writableValue} but creates the value if the key has none.
+	 */
+	static <K, V> V computeWritableValue(Map<K, V> map, K key, UnaryOperator<V> copy, Function<K, V> create) {
+		V value = writableValue(map, key, copy);
+		if (value == null) {
+			value = create.apply(key);
+			map.put(key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public V get(Object key) {
+		V value = own.get(key);
+		if (value != null || removed.contains(key)) {
+			return value;
+		}
+		return base.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		V previous = get(key);
+		boolean inBase = base.containsKey(key);
+		if (own.put(key, value) == null && !inBase) {
+			ownOnly++;
+		}
+		if (inBase) {
+			removed.remove(key);
+		}
+		return previous;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		V previous = get(key);
+		if (previous == null) {
+			return null;
+		}
+		boolean inBase = base.containsKey(key);
+		if (own.remove(key) != null && !inBase) {
+			ownOnly--;
+		}
+		if (inBase) {
+			removed.add((K) key);
+		}
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return base.size() - removed.size() + ownOnly;
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				Iterator<Entry<K, V>> baseEntries = Iterators.filter(base.entrySet().iterator(),
+						entry -> !own.containsKey(entry.getKey()) && !removed.contains(entry.getKey()));
+				return Iterators.unmodifiableIterator(Iterators.concat(baseEntries, own.entrySet().iterator()));
+			}
+
+			@Override
+			public int size() {
+				return OverlayMap.this.size();
+			}
+		};
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Set which records additions and removals separately from a base set which is never modified.
+ * Not thread safe.
+ */
+final class OverlaySet<E> extends AbstractSet<E> {
+
+	private final Set<E> base;
+	// Elements not in the base
+	private final Set<E> added;
+	// Elements of the base which have been removed
+	private final Set<E> removed;
+
+	OverlaySet(Set<E> base, Set<E> added, Set<E> removed) {
+		this.base = base;
+		this.added = added;
+		this.removed = removed;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return added.contains(o) || (base.contains(o) && !removed.contains(o));
+	}
+
+	@Override
+	public boolean add(E e) {
+		if (base.contains(e)) {
+			return removed.remove(e);
+		}
+		return added.add(e);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object o) {
+		if (added.remove(o)) {
+			return true;
+		}
+		return base.contains(o) && removed.add((E) o);
+	}
+
+	@Override
+	public int size() {
+		return base.size() - removed.size() + added.size();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private final Iterator<E> baseIterator = base.iterator();
+			private final Iterator<E> addedIterator = added.iterator();
+			private boolean inBase = true;
+			private E next;
+			private E last;
+
+			@Override
+			public boolean hasNext() {
+				if (next != null) {
+					return true;
+				}
+				while (inBase && baseIterator.hasNext()) {
+					E candidate = baseIterator.next();
+					if (!removed.contains(candidate)) {
+						next = candidate;
+						return true;
+					}
+				}
+				inBase = false;
+				if (addedIterator.hasNext()) {
+					next = addedIterator.next();
+					return true;
+				}
+				return false;
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = null;
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				if (inBase) {
+					removed.add(last);
+				} else {
+					addedIterator.remove();
+				}
+				last = null;
+			}
+		};
+	}
+}
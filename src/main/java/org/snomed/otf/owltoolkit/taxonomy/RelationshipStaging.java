@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Buffers relationship changes per loading thread and applies them to a {@link RelationshipStore} in batches.
+ * RF2 files are loaded in parallel, staging means each thread takes the lock of the store once per batch rather than
+ * once per row and threads loading different stores never wait for each other.
+ * Changes made by one thread are applied in the order they were staged.
+ */
+final class RelationshipStaging {
+
+	static final byte ADD_OR_MODIFY = 0;
+	static final byte ADD_OR_REPLACE = 1;
+	static final byte REMOVE = 2;
+
+	private static final int BATCH_SIZE = 4096;
+
+	/**
+	 * Applies one staged change, called while holding the lock of the store.
+	 */
+	@FunctionalInterface
+	interface ChangeApplier {
+		void apply(byte operation, long sourceId, Relationship relationship, long relationshipId);
+	}
+
+	private final RelationshipStore store;
+	private final ConceptIndex conceptIndex;
+	private final ChangeApplier changeApplier;
+	private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+	// Replaced once all batches are applied so threads staging later changes start new batches. The arrays of applied
+	// batches are released because loading threads may be pool threads which outlive the load.
+	private volatile ThreadLocal<Batch> threadBatch = ThreadLocal.withInitial(this::newBatch);
+	private volatile boolean pending;
+
+	RelationshipStaging(RelationshipStore store, ConceptIndex conceptIndex, ChangeApplier changeApplier) {
+		this.store = store;
+		this.conceptIndex = conceptIndex;
+		this.changeApplier = changeApplier;
+	}
+
+	void stage(byte operation, long sourceId, Relationship relationship) {
+		stage(operation, sourceId, relationship, relationship.getRelationshipId());
+	}
+
+	void stage(byte operation, long sourceId, Relationship relationship, long relationshipId) {
+		Batch batch = threadBatch.get();
+		if (batch.size == 0) {
+			// Only written when a batch starts so loading threads do not write the shared flag for every row
+			pending = true;
+		}
+		batch.add(operation, sourceId, relationship, relationshipId);
+		if (batch.size == BATCH_SIZE) {
+			apply(batch);
+		}
+	}
+
+	/**
+	 * Applies one change straight away, without staging it, for callers outside of a parallel load.
+	 */
+	void applyImmediately(byte operation, long sourceId, Relationship relationship, long relationshipId) {
+		synchronized (store) {
+			if (operation == ADD_OR_MODIFY) {
+				conceptIndex.add(sourceId);
+				if (!relationship.isConcrete()) {
+					conceptIndex.add(relationship.getDestinationId());
+				}
+			}
+			changeApplier.apply(operation, sourceId, relationship, relationshipId);
+		}
+	}
+
+	boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * Applies the changes staged by all threads and releases their batches. Must not be called while other threads
+	 * are still staging changes, for example once the release importer has returned.
+	 */
+	void applyAll() {
+		if (!pending) {
+			return;
+		}
+		synchronized (store) {
+			for (Batch batch : batches) {
+				apply(batch);
+				batch.release();
+			}
+			batches.clear();
+			threadBatch.remove();
+			threadBatch = ThreadLocal.withInitial(this::newBatch);
+			pending = false;
+		}
+	}
+
+	/**
+	 * @return the number of batches held for staging threads, zero once all changes have been applied.
+	 */
+	int getBatchCount() {
+		return batches.size();
+	}
+
+	private void apply(Batch batch) {
+		synchronized (store) {
+			conceptIndex.addAll(batch.conceptIds, batch.conceptIdCount);
+			for (int i = 0; i < batch.size; i++) {
+				changeApplier.apply(batch.operations[i], batch.sourceIds[i], batch.relationships[i], batch.relationshipIds[i]);
+			}
+			batch.clear();
+		}
+	}
+
+	private Batch newBatch() {
+		Batch batch = new Batch();
+		batches.add(batch);
+		return batch;
+	}
+
+	private static final class Batch {
+
+		private byte[] operations = new byte[BATCH_SIZE];
+		private long[] sourceIds = new long[BATCH_SIZE];
+		private long[] relationshipIds = new long[BATCH_SIZE];
+		private Relationship[] relationships = new Relationship[BATCH_SIZE];
+		// Sources and destinations to add to the concept index in one call
+		private long[] conceptIds = new long[BATCH_SIZE * 2];
+		private int conceptIdCount;
+		private int size;
+
+		private void add(byte operation, long sourceId, Relationship relationship, long relationshipId) {
+			operations[size] = operation;
+			sourceIds[size] = sourceId;
+			relationships[size] = relationship;
+			relationshipIds[size] = relationshipId;
+			size++;
+			if (operation == ADD_OR_MODIFY) {
+				conceptIds[conceptIdCount++] = sourceId;
+				if (!relationship.isConcrete()) {
+					conceptIds[conceptIdCount++] = relationship.getDestinationId();
+				}
+			}
+		}
+
+		private void clear() {
+			Arrays.fill(relationships, 0, size, null);
+			size = 0;
+			conceptIdCount = 0;
+		}
+
+		private void release() {
+			operations = null;
+			sourceIds = null;
+			relationshipIds = null;
+			relationships = null;
+			conceptIds = null;
+		}
+	}
+}
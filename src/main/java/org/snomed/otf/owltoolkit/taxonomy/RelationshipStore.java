@@ -0,0 +1,581 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import com.google.common.collect.Iterators;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.*;
+
+/**
+ * Columnar store of relationships.
+ * Relationship fields are held in parallel primitive arrays, one row per relationship, rather than as individual objects.
+ * Rows are indexed by source concept ordinal using compressed offsets which are rebuilt lazily after any modification.
+ * Relationship objects are only created when a row is read, once per view, or through the column accessors which skip
+ * rows without creating objects for them.
+ * Removed rows are left in place as tombstones until they make up a quarter of the rows, the live rows are then compacted.
+ * Views read before a modification must not be used after it.
+ * A store created over a base store holds only the changes made on top of the base, which is never modified,
+ * so one base store can be shared by many overlays. Rows of the base which are removed or modified are shadowed.
+ * Mutating methods are not thread safe, callers must synchronise. A frozen store is fully indexed and can not be modified,
+ * so it can be read by any number of threads at once.
+ */
+final class RelationshipStore {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int NOT_FOUND = -1;
+	// Tombstones are only compacted once there are at least this many, so small stores are never copied
+	private static final int MIN_COMPACTION_ROWS = 1024;
+
+	private long[] ids = new long[INITIAL_CAPACITY];
+	private long[] sourceIds = new long[INITIAL_CAPACITY];
+	private long[] typeIds = new long[INITIAL_CAPACITY];
+	private long[] destinationIds = new long[INITIAL_CAPACITY];
+	private long[] moduleIds = new long[INITIAL_CAPACITY];
+	private long[] characteristicTypeIds = new long[INITIAL_CAPACITY];
+	private int[] effectiveTimes = new int[INITIAL_CAPACITY];
+	private int[] groups = new int[INITIAL_CAPACITY];
+	private int[] unionGroups = new int[INITIAL_CAPACITY];
+	private final BitSet universal = new BitSet();
+	private final BitSet removed = new BitSet();
+	private int removedCount;
+	// Concrete values are rare so they are kept by row rather than in a column
+	private final Int2ObjectOpenHashMap<Relationship.ConcreteValue> concreteValues = new Int2ObjectOpenHashMap<>();
+	private final Long2IntOpenHashMap rowById = new Long2IntOpenHashMap();
+	private int rowCount;
+
+	// Offsets by source concept ordinal, rebuilt when dirty
+	private final ConceptIndex conceptIndex;
+	private volatile boolean indexed;
+	private volatile boolean frozen;
+	private int[] sourceOffsets;
+	private int[] rowsBySource;
+	private long[] indexedSourceIds;
+
+	private final RelationshipStore base;
+	// Ids of base relationships which have been removed or replaced by a row of this store
+	private final LongOpenHashSet shadowedBaseIds = new LongOpenHashSet();
+	// Sources which have rows in this store or shadowed base rows, all other sources are read from the base unchanged
+	private final LongOpenHashSet changedSourceIds = new LongOpenHashSet();
+
+	RelationshipStore(ConceptIndex conceptIndex) {
+		this(conceptIndex, null);
+	}
+
+	/**
+	 * @param conceptIndex index of this store, an overlay of the base index if there is a base store.
+	 * @param base store which must not be modified while this store is in use, or null.
+	 */
+	RelationshipStore(ConceptIndex conceptIndex, RelationshipStore base) {
+		this.conceptIndex = conceptIndex;
+		this.base = base;
+		rowById.defaultReturnValue(NOT_FOUND);
+	}
+
+	/**
+	 * Adds a relationship or, if a relationship with the same id exists, updates the effectiveTime and group which are the only mutable fields.
+	 */
+	void addOrModify(long sourceId, Relationship relationship) {
+		checkNotFrozen();
+		int row = rowById.get(relationship.getRelationshipId());
+		if (row != NOT_FOUND) {
+			effectiveTimes[row] = relationship.getEffectiveTime();
+			groups[row] = relationship.getGroup();
+		} else if (isVisibleInBase(relationship.getRelationshipId())) {
+			Relationship existing = base.get(relationship.getRelationshipId());
+			existing.setEffectiveTime(relationship.getEffectiveTime());
+			existing.setGroup(relationship.getGroup());
+			shadowBaseRow(relationship.getRelationshipId());
+			addRow(sourceId, existing);
+		} else {
+			addRow(sourceId, relationship);
+		}
+	}
+
+	/**
+	 * Adds a relationship replacing any existing relationship with the same id.
+	 */
+	void addOrReplace(long sourceId, Relationship relationship) {
+		checkNotFrozen();
+		remove(relationship.getRelationshipId());
+		addRow(sourceId, relationship);
+	}
+
+	boolean remove(long relationshipId) {
+		checkNotFrozen();
+		if (isVisibleInBase(relationshipId)) {
+			shadowBaseRow(relationshipId);
+			return true;
+		}
+		int row = rowById.remove(relationshipId);
+		if (row == NOT_FOUND) {
+			return false;
+		}
+		removed.set(row);
+		removedCount++;
+		concreteValues.remove(row);
+		indexed = false;
+		if (removedCount >= MIN_COMPACTION_ROWS && removedCount * 4 > rowCount) {
+			compact();
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the index of the rows, adding their sources to the concept index, and rejects any further modification.
+	 */
+	void freeze() {
+		ensureIndexed();
+		frozen = true;
+	}
+
+	boolean isFrozen() {
+		return frozen;
+	}
+
+	int size() {
+		return rowById.size() + (base != null ? base.size() - shadowedBaseIds.size() : 0);
+	}
+
+	boolean contains(long relationshipId) {
+		return rowById.containsKey(relationshipId) || isVisibleInBase(relationshipId);
+	}
+
+	Relationship get(long relationshipId) {
+		int row = rowById.get(relationshipId);
+		if (row != NOT_FOUND) {
+			return toRelationship(row);
+		}
+		return isVisibleInBase(relationshipId) ? base.get(relationshipId) : null;
+	}
+
+	/**
+	 * @return a read only view of the relationships of the source concept.
+	 * Relationship objects are created on the first iteration and reused by later iterations of the same view,
+	 * changes to these are not written back to the store. A view must not be iterated by several threads at once.
+	 */
+	Set<Relationship> getRelationships(long sourceId) {
+		if (base != null) {
+			if (!changedSourceIds.contains(sourceId)) {
+				return base.getRelationships(sourceId);
+			}
+			return getMergedRelationships(sourceId);
+		}
+		return getOwnRelationships(sourceId);
+	}
+
+	private Set<Relationship> getOwnRelationships(long sourceId) {
+		ensureIndexed();
+		int slot = getSlot(sourceId);
+		if (slot == NOT_FOUND) {
+			return Collections.emptySet();
+		}
+		return new SourceView(rowsBySource, sourceOffsets[slot], sourceOffsets[slot + 1]);
+	}
+
+	private Set<Relationship> getMergedRelationships(long sourceId) {
+		List<Relationship> merged = new ArrayList<>();
+		for (Relationship relationship : base.getRelationships(sourceId)) {
+			if (!shadowedBaseIds.contains(relationship.getRelationshipId())) {
+				merged.add(relationship);
+			}
+		}
+		merged.addAll(getOwnRelationships(sourceId));
+		return new AbstractSet<Relationship>() {
+			@Override
+			public Iterator<Relationship> iterator() {
+				return Collections.unmodifiableList(merged).iterator();
+			}
+
+			@Override
+			public int size() {
+				return merged.size();
+			}
+		};
+	}
+
+	/**
+	 * @return the relationships of the source concept with any type other than the given type.
+	 * Reads the type column so objects are only created for the relationships returned.
+	 */
+	List<Relationship> getRelationshipsExcludingType(long sourceId, long typeId) {
+		if (base != null) {
+			if (!changedSourceIds.contains(sourceId)) {
+				return base.getRelationshipsExcludingType(sourceId, typeId);
+			}
+			List<Relationship> relationships = new ArrayList<>();
+			for (Relationship relationship : getMergedRelationships(sourceId)) {
+				if (relationship.getTypeId() != typeId) {
+					relationships.add(relationship);
+				}
+			}
+			return relationships;
+		}
+		ensureIndexed();
+		int slot = getSlot(sourceId);
+		if (slot == NOT_FOUND) {
+			return Collections.emptyList();
+		}
+		List<Relationship> relationships = new ArrayList<>(sourceOffsets[slot + 1] - sourceOffsets[slot]);
+		for (int i = sourceOffsets[slot]; i < sourceOffsets[slot + 1]; i++) {
+			int row = rowsBySource[i];
+			if (typeIds[row] != typeId) {
+				relationships.add(toRelationship(row));
+			}
+		}
+		return relationships;
+	}
+
+	/**
+	 * @return destination of the first relationship of the source concept with the given type or -1 if none exists.
+	 * Reads the columns directly without creating Relationship objects.
+	 */
+	long getFirstDestination(long sourceId, long typeId) {
+		if (base != null) {
+			if (!changedSourceIds.contains(sourceId)) {
+				return base.getFirstDestination(sourceId, typeId);
+			}
+			for (Relationship relationship : getMergedRelationships(sourceId)) {
+				if (relationship.getTypeId() == typeId) {
+					return relationship.getDestinationId();
+				}
+			}
+			return NOT_FOUND;
+		}
+		ensureIndexed();
+		int slot = getSlot(sourceId);
+		if (slot == NOT_FOUND) {
+			return NOT_FOUND;
+		}
+		for (int i = sourceOffsets[slot]; i < sourceOffsets[slot + 1]; i++) {
+			int row = rowsBySource[i];
+			if (typeIds[row] == typeId) {
+				return destinationIds[row];
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * @return destinations of all relationships of the source concept with the given type.
+	 */
+	LongList getDestinations(long sourceId, long typeId) {
+		if (base != null) {
+			if (!changedSourceIds.contains(sourceId)) {
+				return base.getDestinations(sourceId, typeId);
+			}
+			LongList destinations = new LongArrayList();
+			for (Relationship relationship : getMergedRelationships(sourceId)) {
+				if (relationship.getTypeId() == typeId) {
+					destinations.add(relationship.getDestinationId());
+				}
+			}
+			return destinations;
+		}
+		ensureIndexed();
+		LongList destinations = new LongArrayList();
+		int slot = getSlot(sourceId);
+		if (slot != NOT_FOUND) {
+			for (int i = sourceOffsets[slot]; i < sourceOffsets[slot + 1]; i++) {
+				int row = rowsBySource[i];
+				if (typeIds[row] == typeId) {
+					destinations.add(destinationIds[row]);
+				}
+			}
+		}
+		return destinations;
+	}
+
+	/**
+	 * @return ids of all concepts which are the source of at least one relationship.
+	 */
+	long[] getSourceIds() {
+		if (base != null) {
+			LongArrayList sources = new LongArrayList();
+			for (long sourceId : base.getSourceIds()) {
+				if (!changedSourceIds.contains(sourceId)) {
+					sources.add(sourceId);
+				}
+			}
+			for (long sourceId : changedSourceIds) {
+				if (!getMergedRelationships(sourceId).isEmpty()) {
+					sources.add(sourceId);
+				}
+			}
+			return sources.toLongArray();
+		}
+		ensureIndexed();
+		return indexedSourceIds;
+	}
+
+	/**
+	 * @return a read only view of all relationships keyed by relationship id.
+	 */
+	Map<Long, Relationship> asMap() {
+		return new AbstractMap<Long, Relationship>() {
+			@Override
+			public int size() {
+				return RelationshipStore.this.size();
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return key instanceof Long && contains((Long) key);
+			}
+
+			@Override
+			public Relationship get(Object key) {
+				return key instanceof Long ? RelationshipStore.this.get((Long) key) : null;
+			}
+
+			@Override
+			public Set<Entry<Long, Relationship>> entrySet() {
+				return new AbstractSet<Entry<Long, Relationship>>() {
+					@Override
+					public Iterator<Entry<Long, Relationship>> iterator() {
+						Iterator<Long2IntMap.Entry> rows = rowById.long2IntEntrySet().iterator();
+						Iterator<Entry<Long, Relationship>> ownEntries = new Iterator<Entry<Long, Relationship>>() {
+							@Override
+							public boolean hasNext() {
+								return rows.hasNext();
+							}
+
+							@Override
+							public Entry<Long, Relationship> next() {
+								Long2IntMap.Entry next = rows.next();
+								return new SimpleImmutableEntry<>(next.getLongKey(), toRelationship(next.getIntValue()));
+							}
+						};
+						if (base == null) {
+							return ownEntries;
+						}
+						Iterator<Entry<Long, Relationship>> baseEntries = Iterators.filter(base.asMap().entrySet().iterator(),
+								entry -> !shadowedBaseIds.contains((long) entry.getKey()));
+						return Iterators.concat(baseEntries, ownEntries);
+					}
+
+					@Override
+					public int size() {
+						return RelationshipStore.this.size();
+					}
+				};
+			}
+		};
+	}
+
+	private void addRow(long sourceId, Relationship relationship) {
+		if (rowCount == ids.length) {
+			grow();
+		}
+		int row = rowCount++;
+		ids[row] = relationship.getRelationshipId();
+		sourceIds[row] = sourceId;
+		typeIds[row] = relationship.getTypeId();
+		destinationIds[row] = relationship.getDestinationId();
+		moduleIds[row] = relationship.getModuleId();
+		characteristicTypeIds[row] = relationship.getCharacteristicTypeId();
+		effectiveTimes[row] = relationship.getEffectiveTime();
+		groups[row] = relationship.getGroup();
+		unionGroups[row] = relationship.getUnionGroup();
+		universal.set(row, relationship.isUniversal());
+		if (relationship.isConcrete()) {
+			concreteValues.put(row, relationship.getValue());
+		}
+		rowById.put(relationship.getRelationshipId(), row);
+		if (base != null) {
+			changedSourceIds.add(sourceId);
+		}
+		indexed = false;
+	}
+
+	private boolean isVisibleInBase(long relationshipId) {
+		return base != null && !shadowedBaseIds.contains(relationshipId) && base.contains(relationshipId);
+	}
+
+	private void shadowBaseRow(long relationshipId) {
+		shadowedBaseIds.add(relationshipId);
+		changedSourceIds.add(base.getSourceId(relationshipId));
+	}
+
+	/**
+	 * @return source of the relationship, which must exist in this store.
+	 */
+	private long getSourceId(long relationshipId) {
+		int row = rowById.get(relationshipId);
+		return row != NOT_FOUND ? sourceIds[row] : base.getSourceId(relationshipId);
+	}
+
+	/**
+	 * Moves the live rows down over the tombstones, keeping their order, and trims the columns.
+	 */
+	private void compact() {
+		Int2ObjectOpenHashMap<Relationship.ConcreteValue> liveConcreteValues = new Int2ObjectOpenHashMap<>();
+		int live = 0;
+		for (int row = 0; row < rowCount; row++) {
+			if (removed.get(row)) {
+				continue;
+			}
+			if (row != live) {
+				ids[live] = ids[row];
+				sourceIds[live] = sourceIds[row];
+				typeIds[live] = typeIds[row];
+				destinationIds[live] = destinationIds[row];
+				moduleIds[live] = moduleIds[row];
+				characteristicTypeIds[live] = characteristicTypeIds[row];
+				effectiveTimes[live] = effectiveTimes[row];
+				groups[live] = groups[row];
+				unionGroups[live] = unionGroups[row];
+				universal.set(live, universal.get(row));
+				rowById.put(ids[live], live);
+			}
+			Relationship.ConcreteValue value = concreteValues.get(row);
+			if (value != null) {
+				liveConcreteValues.put(live, value);
+			}
+			live++;
+		}
+		universal.clear(live, rowCount);
+		removed.clear();
+		removedCount = 0;
+		concreteValues.clear();
+		concreteValues.putAll(liveConcreteValues);
+		rowCount = live;
+		resize(Math.max(INITIAL_CAPACITY, live + (live >> 1)));
+		indexed = false;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("A frozen relationship store can not be modified.");
+		}
+	}
+
+	private void grow() {
+		resize(ids.length + (ids.length >> 1));
+	}
+
+	private void resize(int capacity) {
+		ids = Arrays.copyOf(ids, capacity);
+		sourceIds = Arrays.copyOf(sourceIds, capacity);
+		typeIds = Arrays.copyOf(typeIds, capacity);
+		destinationIds = Arrays.copyOf(destinationIds, capacity);
+		moduleIds = Arrays.copyOf(moduleIds, capacity);
+		characteristicTypeIds = Arrays.copyOf(characteristicTypeIds, capacity);
+		effectiveTimes = Arrays.copyOf(effectiveTimes, capacity);
+		groups = Arrays.copyOf(groups, capacity);
+		unionGroups = Arrays.copyOf(unionGroups, capacity);
+	}
+
+	private Relationship toRelationship(int row) {
+		Relationship.ConcreteValue value = concreteValues.get(row);
+		if (value != null) {
+			return new Relationship(ids[row], effectiveTimes[row], moduleIds[row], typeIds[row], value,
+					groups[row], unionGroups[row], universal.get(row), characteristicTypeIds[row]);
+		}
+		return new Relationship(ids[row], effectiveTimes[row], moduleIds[row], typeIds[row], destinationIds[row],
+				groups[row], unionGroups[row], universal.get(row), characteristicTypeIds[row]);
+	}
+
+	private int getSlot(long sourceId) {
+		int ordinal = conceptIndex.indexOf(sourceId);
+		// Concepts added to the index after the offsets were built have no rows
+		return ordinal < sourceOffsets.length - 1 ? ordinal : NOT_FOUND;
+	}
+
+	private void ensureIndexed() {
+		if (!indexed) {
+			synchronized (this) {
+				if (!indexed) {
+					buildIndex();
+					indexed = true;
+				}
+			}
+		}
+	}
+
+	private void buildIndex() {
+		// Counting sort of live rows by source concept ordinal
+		int[] rowSlots = new int[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			rowSlots[row] = removed.get(row) ? NOT_FOUND : conceptIndex.add(sourceIds[row]);
+		}
+
+		int slots = conceptIndex.size();
+		int[] offsets = new int[slots + 1];
+		for (int row = 0; row < rowCount; row++) {
+			if (rowSlots[row] != NOT_FOUND) {
+				offsets[rowSlots[row] + 1]++;
+			}
+		}
+		LongArrayList sources = new LongArrayList();
+		for (int slot = 0; slot < slots; slot++) {
+			if (offsets[slot + 1] > 0) {
+				sources.add(conceptIndex.getConceptId(slot));
+			}
+			offsets[slot + 1] += offsets[slot];
+		}
+		int[] positions = Arrays.copyOf(offsets, slots);
+		int[] sortedRows = new int[offsets[slots]];
+		for (int row = 0; row < rowCount; row++) {
+			int slot = rowSlots[row];
+			if (slot != NOT_FOUND) {
+				sortedRows[positions[slot]++] = row;
+			}
+		}
+
+		sourceOffsets = offsets;
+		rowsBySource = sortedRows;
+		indexedSourceIds = sources.toLongArray();
+	}
+
+	private final class SourceView extends AbstractSet<Relationship> {
+
+		// Index arrays are replaced rather than modified when rebuilt so holding a reference keeps this view consistent
+		private final int[] rows;
+		private final int start;
+		private final int end;
+		private Relationship[] relationships;
+
+		private SourceView(int[] rows, int start, int end) {
+			this.rows = rows;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Iterator<Relationship> iterator() {
+			if (relationships == null) {
+				Relationship[] materialised = new Relationship[end - start];
+				for (int i = start; i < end; i++) {
+					materialised[i - start] = toRelationship(rows[i]);
+				}
+				relationships = materialised;
+			}
+			return Collections.unmodifiableList(Arrays.asList(relationships)).iterator();
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.snomed.otf.owltoolkit.metrics.ResourceMonitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Hands RF2 rows from the release reader threads to a pool of workers in batches.
+ * The reader threads only split lines while the workers parse the fields and insert into the taxonomy, so
+ * decompression, parsing and insertion overlap. The work queue is bounded, when it is full the reader thread
+ * handles the batch itself which stops rows piling up in memory.
+ * Rows are not handled in the order they were read. Each pipeline is used for one loading stage and shut down once drained.
+ */
+final class RowPipeline<T> {
+
+	private static final int BATCH_SIZE = 1024;
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+	private final Consumer<T> rowHandler;
+	private final ThreadPoolExecutor workers;
+	private final Queue<Batch<T>> batches = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<Batch<T>> threadBatch = ThreadLocal.withInitial(this::newBatch);
+	private final Queue<Future<?>> dispatched = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * @param rowHandler called by the workers for each row, must be thread safe.
+	 * @param workerCount the number of worker threads.
+	 */
+	RowPipeline(Consumer<T> rowHandler, int workerCount) {
+		this.rowHandler = rowHandler;
+		int poolNumber = POOL_NUMBER.incrementAndGet();
+		AtomicInteger threadNumber = new AtomicInteger();
+		workers = new ThreadPoolExecutor(workerCount, workerCount, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(workerCount * 2),
+				runnable -> {
+					// Workers end with the loading stage so report their allocation to the run metrics first
+					Thread thread = new Thread(ResourceMonitor.recordingAllocation(runnable), "rf2-row-pipeline-" + poolNumber + "-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	void submit(T row) {
+		Batch<T> batch = threadBatch.get();
+		batch.rows.add(row);
+		if (batch.rows.size() == BATCH_SIZE) {
+			dispatch(batch);
+		}
+	}
+
+	/**
+	 * Waits until every submitted row has been handled. Must only be called once the reader threads have finished,
+	 * for example once the release importer has returned.
+	 * @throws ExecutionException if the row handler threw an exception.
+	 */
+	void drain() throws ExecutionException, InterruptedException {
+		for (Batch<T> batch : batches) {
+			if (!batch.rows.isEmpty()) {
+				dispatch(batch);
+			}
+		}
+		ExecutionException failure = null;
+		Future<?> future;
+		while ((future = dispatched.poll()) != null) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Stops the workers once the rows already dispatched are handled. No rows may be submitted afterwards.
+	 */
+	void shutdown() {
+		workers.shutdown();
+	}
+
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return workers.awaitTermination(timeout, unit);
+	}
+
+	private void dispatch(Batch<T> batch) {
+		List<T> rows = batch.rows;
+		batch.rows = new ArrayList<>(BATCH_SIZE);
+		dispatched.add(workers.submit(() -> rows.forEach(rowHandler)));
+	}
+
+	private Batch<T> newBatch() {
+		Batch<T> batch = new Batch<>();
+		batches.add(batch);
+		return batch;
+	}
+
+	private static final class Batch<T> {
+		private List<T> rows = new ArrayList<>(BATCH_SIZE);
+	}
+}
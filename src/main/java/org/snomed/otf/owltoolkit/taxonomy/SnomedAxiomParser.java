@@ -0,0 +1,280 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single pass parser for the subset of OWL functional syntax used in the SNOMED CT OWL axiom reference set.
+ * Axioms are built directly through the OWLDataFactory without creating an ontology document.
+ * Anything outside of the supported subset, including malformed input, is left to the OWLAPI parser.
+ * Instances are stateless and may be shared between threads.
+ */
+class SnomedAxiomParser {
+
+	private static final String XSD_PREFIX = "xsd:";
+
+	private final OWLDataFactory factory;
+
+	SnomedAxiomParser(OWLDataFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * @param owlExpression a single axiom in OWL functional syntax using the default SNOMED CT prefix.
+	 * @return the axiom or null if the expression is not within the supported subset.
+	 */
+	OWLAxiom parse(String owlExpression) {
+		try {
+			Tokenizer tokenizer = new Tokenizer(owlExpression);
+			OWLAxiom axiom = parseAxiom(tokenizer);
+			tokenizer.expectEnd();
+			return axiom;
+		} catch (UnsupportedSyntaxException e) {
+			return null;
+		}
+	}
+
+	private OWLAxiom parseAxiom(Tokenizer tokenizer) {
+		String keyword = tokenizer.keyword();
+		tokenizer.open();
+		OWLAxiom axiom;
+		switch (keyword) {
+			case "SubClassOf":
+				axiom = factory.getOWLSubClassOfAxiom(parseClassExpression(tokenizer), parseClassExpression(tokenizer));
+				break;
+			case "EquivalentClasses":
+				axiom = factory.getOWLEquivalentClassesAxiom(parseClassExpressions(tokenizer));
+				break;
+			case "SubObjectPropertyOf":
+				if (tokenizer.peekKeyword("ObjectPropertyChain")) {
+					tokenizer.keyword();
+					tokenizer.open();
+					List<OWLObjectPropertyExpression> chain = new ArrayList<>();
+					do {
+						chain.add(factory.getOWLObjectProperty(tokenizer.entity()));
+					} while (!tokenizer.peekClose());
+					if (chain.size() < 2) {
+						throw UnsupportedSyntaxException.INSTANCE;
+					}
+					tokenizer.close();
+					axiom = factory.getOWLSubPropertyChainOfAxiom(chain, factory.getOWLObjectProperty(tokenizer.entity()));
+				} else {
+					axiom = factory.getOWLSubObjectPropertyOfAxiom(factory.getOWLObjectProperty(tokenizer.entity()), factory.getOWLObjectProperty(tokenizer.entity()));
+				}
+				break;
+			case "SubDataPropertyOf":
+				axiom = factory.getOWLSubDataPropertyOfAxiom(factory.getOWLDataProperty(tokenizer.entity()), factory.getOWLDataProperty(tokenizer.entity()));
+				break;
+			case "SubAnnotationPropertyOf":
+				axiom = factory.getOWLSubAnnotationPropertyOfAxiom(factory.getOWLAnnotationProperty(tokenizer.entity()), factory.getOWLAnnotationProperty(tokenizer.entity()));
+				break;
+			case "TransitiveObjectProperty":
+				axiom = factory.getOWLTransitiveObjectPropertyAxiom(factory.getOWLObjectProperty(tokenizer.entity()));
+				break;
+			case "ReflexiveObjectProperty":
+				axiom = factory.getOWLReflexiveObjectPropertyAxiom(factory.getOWLObjectProperty(tokenizer.entity()));
+				break;
+			default:
+				throw UnsupportedSyntaxException.INSTANCE;
+		}
+		tokenizer.close();
+		return axiom;
+	}
+
+	private OWLClassExpression parseClassExpression(Tokenizer tokenizer) {
+		if (tokenizer.peekEntity()) {
+			return factory.getOWLClass(tokenizer.entity());
+		}
+		String keyword = tokenizer.keyword();
+		tokenizer.open();
+		OWLClassExpression expression;
+		switch (keyword) {
+			case "ObjectIntersectionOf":
+				expression = factory.getOWLObjectIntersectionOf(parseClassExpressions(tokenizer));
+				break;
+			case "ObjectSomeValuesFrom":
+				expression = factory.getOWLObjectSomeValuesFrom(factory.getOWLObjectProperty(tokenizer.entity()), parseClassExpression(tokenizer));
+				break;
+			case "DataHasValue":
+				expression = factory.getOWLDataHasValue(factory.getOWLDataProperty(tokenizer.entity()), parseLiteral(tokenizer));
+				break;
+			default:
+				throw UnsupportedSyntaxException.INSTANCE;
+		}
+		tokenizer.close();
+		return expression;
+	}
+
+	private Set<OWLClassExpression> parseClassExpressions(Tokenizer tokenizer) {
+		Set<OWLClassExpression> expressions = new HashSet<>();
+		do {
+			expressions.add(parseClassExpression(tokenizer));
+		} while (!tokenizer.peekClose());
+		if (expressions.size() < 2) {
+			throw UnsupportedSyntaxException.INSTANCE;
+		}
+		return expressions;
+	}
+
+	private OWLLiteral parseLiteral(Tokenizer tokenizer) {
+		String lexicalValue = tokenizer.quotedString();
+		String datatype = tokenizer.datatype();
+		switch (datatype) {
+			case "integer":
+				return factory.getOWLLiteral(lexicalValue, OWL2Datatype.XSD_INTEGER);
+			case "decimal":
+				return factory.getOWLLiteral(lexicalValue, OWL2Datatype.XSD_DECIMAL);
+			case "string":
+				return factory.getOWLLiteral(lexicalValue, OWL2Datatype.XSD_STRING);
+			default:
+				throw UnsupportedSyntaxException.INSTANCE;
+		}
+	}
+
+	private static final class Tokenizer {
+
+		private final String input;
+		private int position;
+
+		private Tokenizer(String input) {
+			this.input = input;
+		}
+
+		private String keyword() {
+			skipWhitespace();
+			int start = position;
+			while (position < input.length() && Character.isLetter(input.charAt(position))) {
+				position++;
+			}
+			if (start == position) {
+				throw UnsupportedSyntaxException.INSTANCE;
+			}
+			return input.substring(start, position);
+		}
+
+		private boolean peekKeyword(String keyword) {
+			skipWhitespace();
+			return input.startsWith(keyword, position)
+					&& (position + keyword.length() == input.length() || !Character.isLetter(input.charAt(position + keyword.length())));
+		}
+
+		private boolean peekEntity() {
+			skipWhitespace();
+			return position < input.length() && (input.charAt(position) == ':' || input.charAt(position) == '<');
+		}
+
+		private IRI entity() {
+			skipWhitespace();
+			if (position >= input.length()) {
+				throw UnsupportedSyntaxException.INSTANCE;
+			}
+			char first = input.charAt(position);
+			if (first == ':') {
+				int start = ++position;
+				while (position < input.length() && Character.isDigit(input.charAt(position))) {
+					position++;
+				}
+				if (start == position) {
+					throw UnsupportedSyntaxException.INSTANCE;
+				}
+				return IRI.create(OntologyService.SNOMED_CORE_COMPONENTS_URI + input.substring(start, position));
+			} else if (first == '<') {
+				int end = input.indexOf('>', position);
+				if (end == -1) {
+					throw UnsupportedSyntaxException.INSTANCE;
+				}
+				String iri = input.substring(position + 1, end);
+				position = end + 1;
+				return IRI.create(iri);
+			}
+			throw UnsupportedSyntaxException.INSTANCE;
+		}
+
+		private String quotedString() {
+			skipWhitespace();
+			if (position >= input.length() || input.charAt(position) != '"') {
+				throw UnsupportedSyntaxException.INSTANCE;
+			}
+			position++;
+			StringBuilder value = new StringBuilder();
+			while (position < input.length()) {
+				char c = input.charAt(position++);
+				if (c == '"') {
+					return value.toString();
+				} else if (c == '\\') {
+					// Functional syntax only defines \" and \\, other escapes are left to the OWLAPI parser
+					if (position >= input.length() || (input.charAt(position) != '"' && input.charAt(position) != '\\')) {
+						throw UnsupportedSyntaxException.INSTANCE;
+					}
+					value.append(input.charAt(position++));
+				} else {
+					value.append(c);
+				}
+			}
+			throw UnsupportedSyntaxException.INSTANCE;
+		}
+
+		private String datatype() {
+			// Only typed literals using the xsd prefix are supported, plain and language tagged literals are left to the OWLAPI parser
+			if (!input.startsWith("^^" + XSD_PREFIX, position)) {
+				throw UnsupportedSyntaxException.INSTANCE;
+			}
+			position += 2 + XSD_PREFIX.length();
+			int start = position;
+			while (position < input.length() && Character.isLetter(input.charAt(position))) {
+				position++;
+			}
+			return input.substring(start, position);
+		}
+
+		private void open() {
+			expect('(');
+		}
+
+		private void close() {
+			expect(')');
+		}
+
+		private boolean peekClose() {
+			skipWhitespace();
+			return position < input.length() && input.charAt(position) == ')';
+		}
+
+		private void expect(char expected) {
+			skipWhitespace();
+			if (position >= input.length() || input.charAt(position) != expected) {
+				throw UnsupportedSyntaxException.INSTANCE;
+			}
+			position++;
+		}
+
+		private void expectEnd() {
+			skipWhitespace();
+			if (position != input.length()) {
+				throw UnsupportedSyntaxException.INSTANCE;
+			}
+		}
+
+		private void skipWhitespace() {
+			while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+				position++;
+			}
+		}
+	}
+
+	private static final class UnsupportedSyntaxException extends RuntimeException {
+
+		// Thrown for control flow only so a shared instance without a stack trace is used
+		private static final UnsupportedSyntaxException INSTANCE = new UnsupportedSyntaxException();
+
+		private UnsupportedSyntaxException() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -20,6 +20,8 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.owltoolkit.constants.Concepts;
@@ -28,34 +30,54 @@ import org.snomed.otf.owltoolkit.domain.Relationship;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 import static java.lang.Long.parseLong;
 
+/**
+ * In memory view of the SNOMED CT content needed for classification and conversion.
+ * A taxonomy can be created as an overlay of a base taxonomy. The overlay records changes, for example those of an
+ * authoring delta, without modifying the base, so one loaded base edition can be shared by many concurrent classifications.
+ * The base is frozen once loaded, before it is shared, see {@link #freeze()}.
+ */
 public class SnomedTaxonomy {
 
-	private Map<String, String> ontologyNamespaces = new HashMap<>();
-	private Map<String, String> ontologyHeader = new HashMap<>();
-	private Set<Long> allConceptIds = new LongOpenHashSet();
-	private Map<Long, Long> conceptModuleMap = new Long2ObjectOpenHashMap<>();
-	private Set<Long> fullyDefinedConceptIds = new LongOpenHashSet();
-	private Map<Long, Relationship> statedRelationshipsById = new HashMap<>();
-	private Map<Long, Relationship> inferredRelationshipsById = new HashMap<>();
-	private Map<Long, Set<Relationship>> conceptStatedRelationshipMap = new Long2ObjectOpenHashMap<>();
-	private Map<Long, Set<Relationship>> conceptInferredRelationshipMap = new Long2ObjectOpenHashMap<>();
-	private Map<Long, Set<Relationship>> conceptInactiveInferredRelationshipMap = new Long2ObjectOpenHashMap<>();
-
-	// Axiom maps must be synchronised because international and extension refset members are loaded in parallel
-	private Map<Long, List<OWLAxiom>> conceptAxiomMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
-	private Map<String, OWLAxiom> axiomsById = new ConcurrentHashMap<>();
-
-	private Map<Long, Set<Long>> inferredSubTypesMap = new Long2ObjectOpenHashMap<>();
+	private final SnomedTaxonomy base;
+	private final ConceptIndex conceptIndex;
+	private final Map<String, String> ontologyNamespaces;
+	private final Map<String, String> ontologyHeader;
+	private final Set<Long> allConceptIds;
+	private final Map<Long, Long> conceptModuleMap;
+	private final Set<Long> fullyDefinedConceptIds;
+	private final RelationshipStore statedRelationships;
+	private final RelationshipStore inferredRelationships;
+	private final RelationshipStore inactiveInferredRelationships;
+	// Relationship rows are staged by each loading thread and applied in batches, each store has its own lock.
+	// Changes made through the public methods are applied straight away under the same lock.
+	private final RelationshipStaging statedStaging;
+	private final RelationshipStaging inferredStaging;
+	private final RelationshipStaging inactiveInferredStaging;
+
+	// Axiom maps must be synchronised because international and extension refset members are loaded and deserialised in parallel
+	private final Map<Long, List<OWLAxiom>> conceptAxiomMap;
+	private final Map<String, OWLAxiom> axiomsById;
+
+	// Axioms kept as functional syntax strings until the axioms of their concept are first read, by concept then axiom id, when loaded lazily.
+	// Concurrent so that the axioms of different concepts of a taxonomy which is not an overlay can be deserialised by different threads at once.
+	private final Map<Long, Map<String, String>> pendingAxiomExpressions = new ConcurrentHashMap<>();
+	private final Map<String, Long> pendingAxiomConceptIds = new ConcurrentHashMap<>();
+	private final Map<Long, List<OWLAxiom>> conceptAxiomView = new ConceptAxiomView();
+	private AxiomDeserialiser axiomDeserialiser;
+	private volatile boolean frozen;
+
+	private final Map<Long, Set<Long>> inferredSubTypesMap;
 
 	// Ungrouped roles map must be synchronised because international and extension refset members are loaded in parallel. The US Edition package contains the full MRCM.
-	private Map<Long, Set<Long>> ungroupedRolesByContentType = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
-	private Set<Long> inactivatedConcepts = new LongOpenHashSet();
-	private Map<Long, Set<Description>> conceptDescriptionMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
-	private Map<Long, Description> descriptionMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+	private final Map<Long, Set<Long>> ungroupedRolesByContentType;
+	private final Set<Long> inactivatedConcepts;
+	private final Map<Long, Set<Description>> conceptDescriptionMap;
+	private final Map<Long, Description> descriptionMap;
 
 	public static final Set<Long> DEFAULT_NEVER_GROUPED_ROLE_IDS = Collections.unmodifiableSet(Sets.newHashSet(
 			parseLong(Concepts.PART_OF),
@@ -64,8 +86,92 @@ public class SnomedTaxonomy {
 			parseLong(Concepts.HAS_DOSE_FORM)
 	));
 
+	// Concepts per batch when all pending axioms are deserialised in parallel
+	private static final int AXIOM_DESERIALISATION_BATCH_SIZE = 500;
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(SnomedTaxonomy.class);
 
+	public SnomedTaxonomy() {
+		base = null;
+		conceptIndex = new ConceptIndex();
+		ontologyNamespaces = new HashMap<>();
+		ontologyHeader = new HashMap<>();
+		allConceptIds = new LongOpenHashSet();
+		conceptModuleMap = new Long2ObjectOpenHashMap<>();
+		fullyDefinedConceptIds = new LongOpenHashSet();
+		statedRelationships = new RelationshipStore(conceptIndex);
+		inferredRelationships = new RelationshipStore(conceptIndex);
+		inactiveInferredRelationships = new RelationshipStore(conceptIndex);
+		conceptAxiomMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+		axiomsById = new ConcurrentHashMap<>();
+		inferredSubTypesMap = new Long2ObjectOpenHashMap<>();
+		ungroupedRolesByContentType = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+		inactivatedConcepts = new LongOpenHashSet();
+		conceptDescriptionMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+		descriptionMap = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+		statedStaging = new RelationshipStaging(statedRelationships, conceptIndex, this::applyStatedChange);
+		inferredStaging = new RelationshipStaging(inferredRelationships, conceptIndex, this::applyInferredChange);
+		inactiveInferredStaging = new RelationshipStaging(inactiveInferredRelationships, conceptIndex, this::applyInactiveInferredChange);
+	}
+
+	/**
+	 * Creates an overlay which reads through to the base and holds its own changes.
+	 * Collections and relationship stores of the base are shared, not copied. Values of the base which are modified
+	 * through the overlay, such as the axioms of a concept, are copied on first write.
+	 * @param base taxonomy which has been frozen, so that reading it through overlays from any thread never modifies it.
+	 */
+	public SnomedTaxonomy(SnomedTaxonomy base) {
+		if (!base.isFrozen()) {
+			throw new IllegalStateException("The base taxonomy must be frozen before overlays are created from it.");
+		}
+		this.base = base;
+		conceptIndex = new ConceptIndex(base.conceptIndex);
+		// Ontology and MRCM entries are few so these are copied
+		ontologyNamespaces = new HashMap<>(base.ontologyNamespaces);
+		ontologyHeader = new HashMap<>(base.ontologyHeader);
+		ungroupedRolesByContentType = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+		base.ungroupedRolesByContentType.forEach((contentType, attributes) -> ungroupedRolesByContentType.put(contentType, new HashSet<>(attributes)));
+
+		allConceptIds = new OverlaySet<>(base.allConceptIds, new LongOpenHashSet(), new LongOpenHashSet());
+		conceptModuleMap = new OverlayMap<>(base.conceptModuleMap, new Long2ObjectOpenHashMap<>());
+		fullyDefinedConceptIds = new OverlaySet<>(base.fullyDefinedConceptIds, new LongOpenHashSet(), new LongOpenHashSet());
+		statedRelationships = new RelationshipStore(conceptIndex, base.statedRelationships);
+		inferredRelationships = new RelationshipStore(conceptIndex, base.inferredRelationships);
+		inactiveInferredRelationships = new RelationshipStore(conceptIndex, base.inactiveInferredRelationships);
+		conceptAxiomMap = new OverlayMap<>(base.conceptAxiomMap, new Long2ObjectOpenHashMap<>());
+		axiomsById = new OverlayMap<>(base.axiomsById, new HashMap<>());
+		inferredSubTypesMap = new OverlayMap<>(base.inferredSubTypesMap, new Long2ObjectOpenHashMap<>());
+		inactivatedConcepts = new OverlaySet<>(base.inactivatedConcepts, new LongOpenHashSet(), new LongOpenHashSet());
+		conceptDescriptionMap = new OverlayMap<>(base.conceptDescriptionMap, new Long2ObjectOpenHashMap<>());
+		descriptionMap = new OverlayMap<>(base.descriptionMap, new Long2ObjectOpenHashMap<>());
+		statedStaging = new RelationshipStaging(statedRelationships, conceptIndex, this::applyStatedChange);
+		inferredStaging = new RelationshipStaging(inferredRelationships, conceptIndex, this::applyInferredChange);
+		inactiveInferredStaging = new RelationshipStaging(inactiveInferredRelationships, conceptIndex, this::applyInactiveInferredChange);
+	}
+
+	/**
+	 * Completes all state which is otherwise built on first read and rejects further relationship, axiom and concept index changes.
+	 * Pending axioms are deserialised, staged relationships applied and every relationship store indexed, which adds the
+	 * sources of all rows to the concept index. Must be called once loading has finished and before overlays are created,
+	 * reads of a frozen taxonomy never modify it so they are safe from any number of threads.
+	 */
+	public synchronized void freeze() {
+		if (frozen) {
+			return;
+		}
+		deserialisePendingAxiomsUnchecked();
+		applyStagedRelationships();
+		statedRelationships.freeze();
+		inferredRelationships.freeze();
+		inactiveInferredRelationships.freeze();
+		conceptIndex.freeze();
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
 	public boolean isPrimitive(Long conceptId) {
 		return !fullyDefinedConceptIds.contains(conceptId);
 	}
@@ -76,43 +182,82 @@ public class SnomedTaxonomy {
 	 * @return the active source relationships.
 	 */
 	public Collection<Relationship> getStatedRelationships(Long conceptId) {
-		return conceptStatedRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
+		return statedRelationships.getRelationships(conceptId);
 	}
 	
 	public Set<Relationship> getInferredRelationships(Long conceptId) {
-		return conceptInferredRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
+		return inferredRelationships.getRelationships(conceptId);
 	}
 
 	public Set<Relationship> getInactiveInferredRelationships(Long conceptId) {
-		return conceptInactiveInferredRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
+		return inactiveInferredRelationships.getRelationships(conceptId);
+	}
+
+	/**
+	 * Adds the relationship or, if a relationship with the same id exists, updates its effectiveTime and group.
+	 */
+	public void addOrModifyRelationship(boolean stated, long conceptId, Relationship relationship) {
+		(stated ? statedStaging : inferredStaging).applyImmediately(RelationshipStaging.ADD_OR_MODIFY, conceptId, relationship, relationship.getRelationshipId());
+	}
+
+	public void addInactiveInferredRelationship(long conceptId, Relationship relationship) {
+		inactiveInferredStaging.applyImmediately(RelationshipStaging.ADD_OR_REPLACE, conceptId, relationship, relationship.getRelationshipId());
+	}
+
+	public void removeRelationship(boolean stated, String sourceId, String relationshipIdStr) {
+		(stated ? statedStaging : inferredStaging).applyImmediately(RelationshipStaging.REMOVE, parseLong(sourceId), null, parseLong(relationshipIdStr));
 	}
 
-	public synchronized void addOrModifyRelationship(boolean stated, long conceptId, Relationship relationship) {
-		// Have we seen this relationship before ie we need to modify it?
-		Relationship existingRelationship = stated ? statedRelationshipsById.get(relationship.getRelationshipId())
-				: inferredRelationshipsById.get(relationship.getRelationshipId());
+	/**
+	 * Stages the relationship, it is applied with the other rows loaded by the same thread by {@link #applyStagedRelationships()}.
+	 */
+	void stageRelationship(boolean stated, long conceptId, Relationship relationship) {
+		(stated ? statedStaging : inferredStaging).stage(RelationshipStaging.ADD_OR_MODIFY, conceptId, relationship);
+	}
+
+	void stageInactiveInferredRelationship(long conceptId, Relationship relationship) {
+		inactiveInferredStaging.stage(RelationshipStaging.ADD_OR_REPLACE, conceptId, relationship);
+	}
 
-		if (existingRelationship != null) {
-			// Only effectiveTime and groupId are mutable
-			existingRelationship.setEffectiveTime(relationship.getEffectiveTime());
-			existingRelationship.setGroup(relationship.getGroup());
+	void stageRelationshipRemoval(boolean stated, long sourceId, long relationshipId) {
+		(stated ? statedStaging : inferredStaging).stage(RelationshipStaging.REMOVE, sourceId, null, relationshipId);
+	}
+
+	/**
+	 * Applies relationship changes staged by the loading threads, staged relationships are not visible to reads until then.
+	 * The loader calls this once each loading stage completes. Must not be called while relationships are still being staged.
+	 */
+	void applyStagedRelationships() {
+		if (statedStaging.isPending() || inferredStaging.isPending() || inactiveInferredStaging.isPending()) {
+			statedStaging.applyAll();
+			inferredStaging.applyAll();
+			inactiveInferredStaging.applyAll();
+		}
+	}
+
+	private void applyStatedChange(byte operation, long conceptId, Relationship relationship, long relationshipId) {
+		if (operation == RelationshipStaging.REMOVE) {
+			statedRelationships.remove(relationshipId);
 		} else {
-			// add relationship
-			if (stated) {
-				conceptStatedRelationshipMap.computeIfAbsent(conceptId, k -> new HashSet<>()).add(relationship);
-				statedRelationshipsById.put(relationship.getRelationshipId(), relationship);
-			} else {
-				conceptInferredRelationshipMap.computeIfAbsent(conceptId, k -> new HashSet<>()).add(relationship);
-				inferredRelationshipsById.put(relationship.getRelationshipId(), relationship);
-				if (relationship.getTypeId() == Concepts.IS_A_LONG) {
-					inferredSubTypesMap.computeIfAbsent(relationship.getDestinationId(), k -> new HashSet<>()).add(conceptId);
-				}
-			}
+			statedRelationships.addOrModify(conceptId, relationship);
 		}
 	}
 
-	public synchronized void addInactiveInferredRelationship(long conceptId, Relationship relationship) {
-		conceptInactiveInferredRelationshipMap.computeIfAbsent(conceptId, k -> new HashSet<>()).add(relationship);
+	private void applyInferredChange(byte operation, long conceptId, Relationship relationship, long relationshipId) {
+		if (operation == RelationshipStaging.REMOVE) {
+			inferredRelationships.remove(relationshipId);
+			return;
+		}
+		boolean existing = inferredRelationships.contains(relationshipId);
+		inferredRelationships.addOrModify(conceptId, relationship);
+		// Sub types are only modified while holding the lock of the inferred store
+		if (!existing && relationship.getTypeId() == Concepts.IS_A_LONG) {
+			OverlayMap.computeWritableValue(inferredSubTypesMap, relationship.getDestinationId(), HashSet::new, k -> new HashSet<>()).add(conceptId);
+		}
+	}
+
+	private void applyInactiveInferredChange(byte operation, long conceptId, Relationship relationship, long relationshipId) {
+		inactiveInferredRelationships.addOrReplace(conceptId, relationship);
 	}
 
 	public Set<Long> getDescendants(Long ancestor) {
@@ -140,10 +285,9 @@ public class SnomedTaxonomy {
 		}
 
 		// Check all ancestors for the attribute concept
-		for (Relationship relationship : conceptStatedRelationshipMap.getOrDefault(conceptId, Collections.emptySet())) {
-			if (relationship.getTypeId() == Concepts.IS_A_LONG) {
-				return relationship.getDestinationId() == ancestor || conceptHasAncestor(relationship.getDestinationId(), ancestor, ++depth);
-			}
+		long parentId = statedRelationships.getFirstDestination(conceptId, Concepts.IS_A_LONG);
+		if (parentId != -1) {
+			return parentId == ancestor || conceptHasAncestor(parentId, ancestor, ++depth);
 		}
 		return false;
 	}
@@ -153,17 +297,15 @@ public class SnomedTaxonomy {
 			return Collections.emptySet();
 		}
 
-		Set<Long> superTypes = new HashSet<>();
-		for (Relationship relationship : conceptStatedRelationshipMap.get(conceptId)) {
-			if (relationship.getTypeId() == Concepts.IS_A_LONG) {
-				superTypes.add(relationship.getDestinationId());
-			}
-		}
-		return superTypes;
+		return new HashSet<>(statedRelationships.getDestinations(conceptId, Concepts.IS_A_LONG));
 	}
 
 	public Collection<Relationship> getNonIsAStatements(Long conceptId) {
-		return conceptStatedRelationshipMap.getOrDefault(conceptId, Collections.emptySet()).stream().filter(f -> f.getTypeId() != Concepts.IS_A_LONG).collect(Collectors.toList());
+		return statedRelationships.getRelationshipsExcludingType(conceptId, Concepts.IS_A_LONG);
+	}
+
+	public Collection<Relationship> getInferredNonIsARelationships(long conceptId) {
+		return inferredRelationships.getRelationshipsExcludingType(conceptId, Concepts.IS_A_LONG);
 	}
 
 	public Set<Long> getSubTypeIds(long conceptId) {
@@ -176,6 +318,20 @@ public class SnomedTaxonomy {
 		return false;
 	}
 
+	/**
+	 * @return the dense ordinal mapping of all concepts seen while loading, shared with the reasoner taxonomy and normal form generation.
+	 */
+	public ConceptIndex getConceptIndex() {
+		return conceptIndex;
+	}
+
+	/**
+	 * @return the taxonomy this is an overlay of or null.
+	 */
+	public SnomedTaxonomy getBase() {
+		return base;
+	}
+
 	public Set<Long> getAllConceptIds() {
 		return allConceptIds;
 	}
@@ -193,18 +349,7 @@ public class SnomedTaxonomy {
 	}
 
 	public Collection<Relationship> getInferredRelationships(long conceptId) {
-		return conceptInferredRelationshipMap.getOrDefault(conceptId, Collections.emptySet());
-	}
-
-	public synchronized void removeRelationship(boolean stated, String sourceId, String relationshipIdStr) {
-		long relationshipId = parseLong(relationshipIdStr);
-		if (stated) {
-			getStatedRelationships(parseLong(sourceId)).removeIf(relationship -> relationshipId == relationship.getRelationshipId());
-			statedRelationshipsById.remove(relationshipId);
-		} else {
-			getInferredRelationships(parseLong(sourceId)).removeIf(relationship -> relationshipId == relationship.getRelationshipId());
-			inferredRelationshipsById.remove(relationshipId);
-		}
+		return inferredRelationships.getRelationships(conceptId);
 	}
 
 	public void addOntologyNamespace(String id, String namespace) {
@@ -231,11 +376,17 @@ public class SnomedTaxonomy {
 		return ontologyHeader;
 	}
 
-	public void addAxiom(String referencedComponentId, String axiomId, OWLAxiom owlAxiom) {
+	public synchronized void addAxiom(String referencedComponentId, String axiomId, OWLAxiom owlAxiom) {
+		checkNotFrozen();
+		removePendingAxiom(axiomId);
+		putAxiom(parseLong(referencedComponentId), axiomId, owlAxiom);
+	}
+
+	private void putAxiom(long conceptId, String axiomId, OWLAxiom owlAxiom) {
 		// Manually remove any existing axiom by axiomId.
 		// We can't use the natural behaviour of a Java Set because the OWLAxiom does not use the axiomId in the equals method.
 		OWLAxiom existingAxiomVersion = axiomsById.get(axiomId);
-		List<OWLAxiom> conceptAxioms = conceptAxiomMap.computeIfAbsent(parseLong(referencedComponentId), id -> new ArrayList<>());
+		List<OWLAxiom> conceptAxioms = OverlayMap.computeWritableValue(conceptAxiomMap, conceptId, ArrayList::new, id -> new ArrayList<>());
 		if (existingAxiomVersion != null) {
 			conceptAxioms.remove(existingAxiomVersion);
 		}
@@ -243,27 +394,194 @@ public class SnomedTaxonomy {
 		axiomsById.put(axiomId, owlAxiom);
 	}
 
-	public void removeAxiom(String referencedComponentId, String id) {
+	/**
+	 * Adds an axiom without deserialising it. The expression is deserialised, together with the other pending axioms of
+	 * the concept, the first time the axioms of the concept are read. A later version of the same axiom replaces the
+	 * expression so is only deserialised once.
+	 */
+	synchronized void addAxiomExpression(String referencedComponentId, String axiomId, String owlExpression, AxiomDeserialiser axiomDeserialiser) {
+		checkNotFrozen();
+		this.axiomDeserialiser = axiomDeserialiser;
+		long conceptId = parseLong(referencedComponentId);
+		OWLAxiom existingAxiomVersion = axiomsById.remove(axiomId);
+		if (existingAxiomVersion != null) {
+			List<OWLAxiom> conceptAxioms = OverlayMap.writableValue(conceptAxiomMap, conceptId, ArrayList::new);
+			if (conceptAxioms != null) {
+				conceptAxioms.remove(existingAxiomVersion);
+			}
+		}
+		removePendingAxiom(axiomId);
+		pendingAxiomExpressions.computeIfAbsent(conceptId, id -> new LinkedHashMap<>()).put(axiomId, owlExpression);
+		pendingAxiomConceptIds.put(axiomId, conceptId);
+	}
+
+	private boolean removePendingAxiom(String axiomId) {
+		Long conceptId = pendingAxiomConceptIds.remove(axiomId);
+		if (conceptId == null) {
+			return false;
+		}
+		Map<String, String> conceptExpressions = pendingAxiomExpressions.get(conceptId);
+		conceptExpressions.remove(axiomId);
+		if (conceptExpressions.isEmpty()) {
+			pendingAxiomExpressions.remove(conceptId);
+		}
+		return true;
+	}
+
+	/**
+	 * Deserialises all axioms added by {@link #addAxiomExpression} which have not been deserialised yet.
+	 * Batches of concepts are deserialised in parallel and the axioms are added to the maps on the calling thread.
+	 * The axioms of an overlay are deserialised serially, its maps and pending expressions are not thread safe.
+	 * Only needed by callers which read all axioms by id or want invalid axioms reported as a checked exception,
+	 * the axioms of a concept are otherwise deserialised when they are first read.
+	 */
+	public void deserialisePendingAxioms() throws OWLOntologyCreationException {
+		if (pendingAxiomExpressions.isEmpty()) {
+			return;
+		}
+		if (base != null) {
+			try {
+				deserialiseOverlayAxioms();
+			} catch (OWLRuntimeException e) {
+				throw (OWLOntologyCreationException) e.getCause();
+			}
+			return;
+		}
+		List<Long> conceptIds = new ArrayList<>(pendingAxiomExpressions.keySet());
+		@SuppressWarnings("unchecked")
+		Map<String, OWLAxiom>[] conceptAxioms = new Map[conceptIds.size()];
+		AtomicReference<OWLOntologyCreationException> failure = new AtomicReference<>();
+		int batches = (conceptIds.size() + AXIOM_DESERIALISATION_BATCH_SIZE - 1) / AXIOM_DESERIALISATION_BATCH_SIZE;
+		IntStream.range(0, batches).parallel().forEach(batch -> {
+			int end = Math.min(conceptIds.size(), (batch + 1) * AXIOM_DESERIALISATION_BATCH_SIZE);
+			for (int i = batch * AXIOM_DESERIALISATION_BATCH_SIZE; i < end && failure.get() == null; i++) {
+				// Null if the concept has been read by another thread since
+				Map<String, String> conceptExpressions = pendingAxiomExpressions.get(conceptIds.get(i));
+				if (conceptExpressions == null) {
+					continue;
+				}
+				try {
+					conceptAxioms[i] = deserialiseAxioms(conceptExpressions);
+				} catch (OWLRuntimeException e) {
+					failure.compareAndSet(null, (OWLOntologyCreationException) e.getCause());
+				}
+			}
+		});
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		// Only locked once the parallel work is done, readers of single concepts may be waiting on the common pool
+		synchronized (this) {
+			for (int i = 0; i < conceptAxioms.length; i++) {
+				Map<String, OWLAxiom> axioms = conceptAxioms[i];
+				if (axioms != null) {
+					pendingAxiomExpressions.computeIfPresent(conceptIds.get(i), (conceptId, conceptExpressions) -> {
+						putAxioms(conceptId, axioms);
+						return null;
+					});
+				}
+			}
+		}
+		LOGGER.info("Deserialised the pending axioms of {} concepts", conceptIds.size());
+	}
+
+	/**
+	 * Deserialises the pending axioms of an overlay one concept at a time on the calling thread.
+	 */
+	private synchronized void deserialiseOverlayAxioms() {
+		for (Long conceptId : new ArrayList<>(pendingAxiomExpressions.keySet())) {
+			deserialisePendingAxioms(conceptId);
+		}
+	}
+
+	/**
+	 * Deserialises the pending axioms of one concept. Other threads reading the same concept wait for the result,
+	 * different concepts are deserialised concurrently. Not used for an overlay, its maps are not thread safe.
+	 */
+	private void deserialisePendingAxioms(Long conceptId) {
+		pendingAxiomExpressions.computeIfPresent(conceptId, (id, conceptExpressions) -> {
+			putAxioms(id, deserialiseAxioms(conceptExpressions));
+			return null;
+		});
+	}
+
+	/**
+	 * @return the axioms by axiom id, in the order of the expressions.
+	 * @throws OWLRuntimeException with an {@link OWLOntologyCreationException} cause if an expression is not valid.
+	 */
+	private Map<String, OWLAxiom> deserialiseAxioms(Map<String, String> conceptExpressions) {
+		Map<String, OWLAxiom> axioms = new LinkedHashMap<>();
+		conceptExpressions.forEach((axiomId, expression) -> {
+			try {
+				axioms.put(axiomId, axiomDeserialiser.deserialiseAxiom(expression, axiomId));
+			} catch (OWLOntologyCreationException | OWLRuntimeException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+				OWLOntologyCreationException failure = new OWLOntologyCreationException("Failed to parse OWL Axiom in reference set member '" + axiomId + "'", e);
+				throw new OWLRuntimeException(failure.getMessage(), failure);
+			}
+		});
+		return axioms;
+	}
+
+	private void putAxioms(long conceptId, Map<String, OWLAxiom> axioms) {
+		axioms.forEach((axiomId, owlAxiom) -> {
+			putAxiom(conceptId, axiomId, owlAxiom);
+			pendingAxiomConceptIds.remove(axiomId);
+		});
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("A frozen taxonomy can not be modified.");
+		}
+	}
+
+	private void deserialisePendingAxiomsUnchecked() {
+		try {
+			deserialisePendingAxioms();
+		} catch (OWLOntologyCreationException e) {
+			throw new OWLRuntimeException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Drops all OWL axioms, for example once they have been converted to relationships for the normal form.
+	 * Axioms of a frozen taxonomy are shared with its overlays so neither the frozen taxonomy nor an overlay drops them.
+	 */
+	public synchronized void releaseAxioms() {
+		if (base != null || frozen) {
+			return;
+		}
+		pendingAxiomExpressions.clear();
+		pendingAxiomConceptIds.clear();
+		conceptAxiomMap.clear();
+		axiomsById.clear();
+	}
+
+	public synchronized void removeAxiom(String referencedComponentId, String id) {
+		checkNotFrozen();
+		if (removePendingAxiom(id)) {
+			return;
+		}
 		// Find the previously loaded axiom by id so that it can be removed from the set of axioms on the concept
 		OWLAxiom owlAxiomToRemove = axiomsById.remove(id);
 		if (owlAxiomToRemove != null) {
-			conceptAxiomMap.get(parseLong(referencedComponentId)).remove(owlAxiomToRemove);
+			OverlayMap.writableValue(conceptAxiomMap, parseLong(referencedComponentId), ArrayList::new).remove(owlAxiomToRemove);
 		}
 	}
 
-	void addDescription(String conceptId, String id, String term, String typeId, String languageCode) {
+	synchronized void addDescription(String conceptId, String id, String term, String typeId, String languageCode) {
 		Description description = new Description(id, term, typeId, languageCode);
-		conceptDescriptionMap.computeIfAbsent(parseLong(conceptId), key -> new HashSet<>()).add(description);
+		OverlayMap.computeWritableValue(conceptDescriptionMap, parseLong(conceptId), HashSet::new, key -> new HashSet<>()).add(description);
 		descriptionMap.put(parseLong(id), description);
 	}
 
-	void removeDescription(String conceptId, String id) {
-		conceptDescriptionMap.computeIfAbsent(parseLong(conceptId), key -> new HashSet<>())
+	synchronized void removeDescription(String conceptId, String id) {
+		OverlayMap.computeWritableValue(conceptDescriptionMap, parseLong(conceptId), HashSet::new, key -> new HashSet<>())
 				.remove(new Description(id));
 	}
 
-	void setDescriptionAcceptability(String descriptionId, String refsetId, String acceptabilityId, boolean active) {
-		Description description = descriptionMap.get(parseLong(descriptionId));
+	synchronized void setDescriptionAcceptability(String descriptionId, String refsetId, String acceptabilityId, boolean active) {
+		Description description = OverlayMap.writableValue(descriptionMap, parseLong(descriptionId), Description::copy);
 		if (description == null) {
 			LOGGER.warn("Reference set {} references description {} which is not active or does not exist.", refsetId, descriptionId);
 			return;
@@ -272,14 +590,23 @@ public class SnomedTaxonomy {
 	}
 
 	public Set<Description> getConceptDescriptions(Long conceptId) {
-		return conceptDescriptionMap.getOrDefault(conceptId, Collections.emptySet());
+		Set<Description> descriptions = conceptDescriptionMap.getOrDefault(conceptId, Collections.emptySet());
+		if (base == null || descriptions.isEmpty()) {
+			return descriptions;
+		}
+		// Base descriptions are copied into the overlay when their acceptability changes, return the latest copies
+		Set<Description> current = new HashSet<>();
+		for (Description description : descriptions) {
+			current.add(descriptionMap.getOrDefault(parseLong(description.getId()), description));
+		}
+		return current;
 	}
 
-	public void addUngroupedRole(Long contentType, Long attributeId) {
+	public synchronized void addUngroupedRole(Long contentType, Long attributeId) {
 		ungroupedRolesByContentType.computeIfAbsent(contentType, type -> new HashSet<>()).add(attributeId);
 	}
 
-	public void removeUngroupedRole(Long contentType, Long attributeId) {
+	public synchronized void removeUngroupedRole(Long contentType, Long attributeId) {
 		Set<Long> ungrouped = ungroupedRolesByContentType.get(contentType);
 		if (ungrouped != null) {
 			ungrouped.remove(attributeId);
@@ -307,26 +634,134 @@ public class SnomedTaxonomy {
 		return ungrouped;
 	}
 
+	/**
+	 * @return read only view of the axioms by concept id, the pending axioms of a concept are deserialised when its entry is first read.
+	 * Invalid axioms are reported as an {@link OWLRuntimeException}.
+	 */
 	public Map<Long, List<OWLAxiom>> getConceptAxiomMap() {
-		return conceptAxiomMap;
+		return conceptAxiomView;
+	}
+
+	/**
+	 * @return the axioms of the concept, deserialising any pending axioms of the concept first, or an empty list.
+	 * An overlay deserialises all of its pending axioms on the first read.
+	 */
+	public List<OWLAxiom> getAxiomsForConcept(Long conceptId) {
+		if (!pendingAxiomExpressions.isEmpty()) {
+			if (base != null) {
+				// The maps of an overlay are not thread safe, the pending axioms are only those of its delta so are all added at once
+				deserialiseOverlayAxioms();
+			} else {
+				deserialisePendingAxioms(conceptId);
+			}
+		}
+		return conceptAxiomMap.getOrDefault(conceptId, Collections.emptyList());
+	}
+
+	/**
+	 * @return true if the concept has axioms which have not been deserialised yet.
+	 */
+	boolean hasPendingAxioms(Long conceptId) {
+		return pendingAxiomExpressions.containsKey(conceptId);
 	}
 
 	public Set<Long> getInactivatedConcepts() {
 		return inactivatedConcepts;
 	}
 
+	/**
+	 * @return read only view of all active stated relationships by relationship id.
+	 */
 	public Map<Long, Relationship> getStatedRelationships() {
-		return statedRelationshipsById;
+		return statedRelationships.asMap();
 	}
 
-	public Long getAxiomCount() {
-		AtomicLong axiomCount = new AtomicLong();
+	/**
+	 * @return number of active axioms, including any not deserialised yet.
+	 */
+	public synchronized Long getAxiomCount() {
+		AtomicLong axiomCount = new AtomicLong(pendingAxiomConceptIds.size());
 		conceptAxiomMap.values().forEach(axioms -> axiomCount.addAndGet(axioms.size()));
 		return axiomCount.get();
 	}
 
 	public Map<String, OWLAxiom> getAxiomsById() {
+		deserialisePendingAxiomsUnchecked();
 		return axiomsById;
 	}
 
+	RelationshipStore getStatedRelationshipStore() {
+		return statedRelationships;
+	}
+
+	RelationshipStore getInferredRelationshipStore() {
+		return inferredRelationships;
+	}
+
+	RelationshipStore getInactiveInferredRelationshipStore() {
+		return inactiveInferredRelationships;
+	}
+
+	Map<Long, Set<Description>> getConceptDescriptionMap() {
+		return conceptDescriptionMap;
+	}
+
+	/**
+	 * Map of the deserialised and pending axioms of each concept, values are deserialised when read.
+	 */
+	private final class ConceptAxiomView extends AbstractMap<Long, List<OWLAxiom>> {
+
+		@Override
+		public List<OWLAxiom> get(Object key) {
+			if (!(key instanceof Long) || !containsKey(key)) {
+				return null;
+			}
+			return getAxiomsForConcept((Long) key);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return pendingAxiomExpressions.containsKey(key) || conceptAxiomMap.containsKey(key);
+		}
+
+		// Iterating the keys does not deserialise anything
+		@Override
+		public Set<Long> keySet() {
+			return Collections.unmodifiableSet(getConceptIds());
+		}
+
+		@Override
+		public Set<Entry<Long, List<OWLAxiom>>> entrySet() {
+			Set<Long> conceptIds = getConceptIds();
+			return new AbstractSet<Entry<Long, List<OWLAxiom>>>() {
+				@Override
+				public Iterator<Entry<Long, List<OWLAxiom>>> iterator() {
+					Iterator<Long> conceptIdIterator = conceptIds.iterator();
+					return new Iterator<Entry<Long, List<OWLAxiom>>>() {
+						@Override
+						public boolean hasNext() {
+							return conceptIdIterator.hasNext();
+						}
+
+						@Override
+						public Entry<Long, List<OWLAxiom>> next() {
+							Long conceptId = conceptIdIterator.next();
+							return new SimpleImmutableEntry<>(conceptId, getAxiomsForConcept(conceptId));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return conceptIds.size();
+				}
+			};
+		}
+
+		private Set<Long> getConceptIds() {
+			Set<Long> conceptIds = new LongOpenHashSet(conceptAxiomMap.keySet());
+			conceptIds.addAll(pendingAxiomExpressions.keySet());
+			return conceptIds;
+		}
+	}
 }
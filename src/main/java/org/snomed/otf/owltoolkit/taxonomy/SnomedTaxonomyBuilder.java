@@ -21,10 +21,16 @@ import org.ihtsdo.otf.snomedboot.factory.ComponentFactory;
 import org.ihtsdo.otf.snomedboot.factory.LoadingProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.metrics.PipelineMetrics;
+import org.snomed.otf.owltoolkit.metrics.TaxonomyLoadEvent;
 import org.snomed.otf.owltoolkit.util.InputStreamSet;
 import org.springframework.util.StopWatch;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.*;
+import java.util.regex.Pattern;
 
 import static org.snomed.otf.owltoolkit.constants.Concepts.*;
 
@@ -32,7 +38,16 @@ public class SnomedTaxonomyBuilder {
 
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
-	private static final LoadingProfile SNAPSHOT_LOADING_PROFILE = new LoadingProfile()
+	// Reference set file names read by the loading profiles, also used to select the archive entries to open
+	private static final List<String> REFSET_FILENAME_PATTERNS = Arrays.asList(".*_sRefset_.*OWL.*", ".*_cissccRefset_.*MRCMAttributeDomain.*");
+	private static final List<String> LANGUAGE_REFSET_FILENAME_PATTERNS = Collections.singletonList("der2_cRefset_.*Language.*");
+
+	// Component file names the release importer reads for the components included by the loading profiles
+	private static final List<String> COMPONENT_FILENAME_PATTERNS = Arrays.asList(
+			"sct2_Concept_.*", "sct2_Relationship_.*", "sct2_StatedRelationship_.*", "sct2_RelationshipConcreteValues_.*");
+	private static final List<String> DESCRIPTION_FILENAME_PATTERNS = Arrays.asList("sct2_Description_.*", "sct2_TextDefinition_.*");
+
+	private static final LoadingProfile SNAPSHOT_LOADING_PROFILE = withIncludedReferenceSetFilenamePatterns(new LoadingProfile()
 			.withConcepts()
 			.withRelationships()
 			.withoutDescriptions()
@@ -42,15 +57,14 @@ public class SnomedTaxonomyBuilder {
 			.withInactiveRelationships()
 			.withRefset(OWL_ONTOLOGY_REFERENCE_SET)
 			.withRefset(OWL_AXIOM_REFERENCE_SET)
-			.withRefset(MRCM_ATTRIBUTE_DOMAIN_INTERNATIONAL_REFERENCE_SET)
+			.withRefset(MRCM_ATTRIBUTE_DOMAIN_INTERNATIONAL_REFERENCE_SET),
 			// Giving reference set filename patterns avoids reading them all
-			.withIncludedReferenceSetFilenamePattern(".*_sRefset_.*OWL.*")
-			.withIncludedReferenceSetFilenamePattern(".*_cissccRefset_.*MRCMAttributeDomain.*");
+			REFSET_FILENAME_PATTERNS);
 
-	private static final LoadingProfile SNAPSHOT_LOADING_PROFILE_PLUS_LANGUAGE = SNAPSHOT_LOADING_PROFILE
+	private static final LoadingProfile SNAPSHOT_LOADING_PROFILE_PLUS_LANGUAGE = withIncludedReferenceSetFilenamePatterns(SNAPSHOT_LOADING_PROFILE
 			.withDescriptions()
-			.withAllRefsets()// We don't know what the ID of the language reference set is going to be.
-			.withIncludedReferenceSetFilenamePattern("der2_cRefset_.*Language.*");
+			.withAllRefsets(),// We don't know what the ID of the language reference set is going to be.
+			LANGUAGE_REFSET_FILENAME_PATTERNS);
 	
 	
 	private static final LoadingProfile OWL_SNAPSHOT_LOADING_PROFILE = new LoadingProfile()
@@ -70,7 +84,34 @@ public class SnomedTaxonomyBuilder {
 			.withInactiveRelationships()
 			.withInactiveRefsetMembers();
 
+	// Files read by the snapshot loading profiles, with and without descriptions
+	private static final List<Pattern> SNAPSHOT_FILENAME_PATTERNS = compile(COMPONENT_FILENAME_PATTERNS, REFSET_FILENAME_PATTERNS);
+	private static final List<Pattern> SNAPSHOT_FILENAME_PATTERNS_PLUS_LANGUAGE = compile(COMPONENT_FILENAME_PATTERNS, REFSET_FILENAME_PATTERNS,
+			DESCRIPTION_FILENAME_PATTERNS, LANGUAGE_REFSET_FILENAME_PATTERNS);
+
 	private ReleaseImporter releaseImporter = new ReleaseImporter();
+	private boolean lazyAxiomDeserialisation;
+	private PipelineMetrics metrics;
+
+	/**
+	 * Keeps OWL axioms as strings while loading and deserialises the axioms of each concept when they are first read.
+	 * Axioms replaced by a later delta row, or of concepts which are never read, are never deserialised. Useful for
+	 * conversions which do not need invalid axioms to be reported during loading.
+	 * @see SnomedTaxonomy#getAxiomsForConcept(Long)
+	 */
+	public SnomedTaxonomyBuilder setLazyAxiomDeserialisation(boolean lazyAxiomDeserialisation) {
+		this.lazyAxiomDeserialisation = lazyAxiomDeserialisation;
+		return this;
+	}
+
+	/**
+	 * Records the load snapshot and load delta phases, with concept, relationship and axiom counts.
+	 * @param metrics the metrics of the run this build is part of or null.
+	 */
+	public SnomedTaxonomyBuilder setMetrics(PipelineMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
 
 	public SnomedTaxonomy build(InputStreamSet snomedRf2SnapshotArchives, boolean includeFSNs) throws ReleaseImportException {
 		return build(snomedRf2SnapshotArchives, null, includeFSNs);
@@ -89,11 +130,13 @@ public class SnomedTaxonomyBuilder {
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
-		SnomedTaxonomyLoader snomedTaxonomyLoader = new SnomedTaxonomyLoader();
+		SnomedTaxonomyLoader snomedTaxonomyLoader = newLoader(new SnomedTaxonomyLoader());
 		
+		TaxonomyLoadEvent loadEvent = beginLoadEvent();
 		releaseImporter.loadEffectiveSnapshotReleaseFileStreams(snomedRf2OwlSnapshotArchive.getFileInputStreams(), OWL_SNAPSHOT_LOADING_PROFILE, snomedTaxonomyLoader, false);
 		snomedTaxonomyLoader.reportErrors();
 		logger.info("Loaded release snapshot");
+		recordLoadPhase("Load snapshot", loadEvent, snomedTaxonomyLoader);
 		logger.info("Time taken deserialising axioms {}s", (snomedTaxonomyLoader.getTimeTakenDeserialisingAxioms() / 1000.00));
 		
 		stopWatch.stop();
@@ -116,8 +159,189 @@ public class SnomedTaxonomyBuilder {
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
-		SnomedTaxonomyLoader snomedTaxonomyLoader = new SnomedTaxonomyLoader(snapshotComponentFactoryTap, deltaComponentFactoryTap);
-		
+		SnomedTaxonomyLoader snomedTaxonomyLoader = newLoader(new SnomedTaxonomyLoader(snapshotComponentFactoryTap, deltaComponentFactoryTap));
+		loadSnapshot(snomedTaxonomyLoader, snomedRf2SnapshotArchives, includeDescriptions);
+		loadDelta(snomedTaxonomyLoader, currentReleaseRf2DeltaArchive, includeDescriptions);
+
+		stopWatch.stop();
+		return logSummary(snomedTaxonomyLoader, stopWatch);
+	}
+
+	/**
+	 * Builds the taxonomy using a binary cache of the snapshot state.
+	 * The cache is keyed by the content of the snapshot archives, if no cache file exists the archives are loaded and the cache is written.
+	 * The delta is always loaded from RF2.
+	 */
+	public SnomedTaxonomy build(
+			Set<File> snomedRf2SnapshotArchiveFiles,
+			InputStream currentReleaseRf2DeltaArchive,
+			File snapshotCacheDirectory,
+			boolean includeDescriptions) throws ReleaseImportException {
+
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		SnomedTaxonomySnapshotCache snapshotCache = new SnomedTaxonomySnapshotCache(snapshotCacheDirectory);
+		SnomedTaxonomyLoader snomedTaxonomyLoader = null;
+		File cacheFile = null;
+		try {
+			cacheFile = snapshotCache.getCacheFile(snomedRf2SnapshotArchiveFiles, includeDescriptions);
+			if (cacheFile.isFile()) {
+				logger.info("Loading release snapshot from cache {}", cacheFile.getAbsolutePath());
+				snomedTaxonomyLoader = newLoader(new SnomedTaxonomyLoader());
+				TaxonomyLoadEvent loadEvent = beginLoadEvent();
+				snapshotCache.read(cacheFile, snomedTaxonomyLoader);
+				logger.info("Loaded release snapshot from cache");
+				recordLoadPhase("Load snapshot cache", loadEvent, snomedTaxonomyLoader);
+			}
+		} catch (IOException e) {
+			logger.warn("Failed to read snapshot cache, loading snapshot archives instead.", e);
+			snomedTaxonomyLoader = null;
+		}
+
+		if (snomedTaxonomyLoader == null) {
+			snomedTaxonomyLoader = newLoader(new SnomedTaxonomyLoader());
+			snomedTaxonomyLoader.setKeepAxiomExpressions(cacheFile != null);
+			try (InputStreamSet snomedRf2SnapshotArchives = openSnapshotArchives(snomedRf2SnapshotArchiveFiles, includeDescriptions)) {
+				loadSnapshot(snomedTaxonomyLoader, snomedRf2SnapshotArchives, includeDescriptions);
+			} catch (IOException e) {
+				throw new ReleaseImportException("Failed to read snapshot archives.", e);
+			}
+			if (cacheFile != null) {
+				try {
+					snapshotCache.write(snomedTaxonomyLoader.getSnomedTaxonomy(), snomedTaxonomyLoader.getAxiomExpressions(), cacheFile, includeDescriptions);
+				} catch (IOException e) {
+					logger.warn("Failed to write snapshot cache.", e);
+				}
+			}
+			// The delta is not cached
+			snomedTaxonomyLoader.setKeepAxiomExpressions(false);
+		}
+
+		loadDelta(snomedTaxonomyLoader, currentReleaseRf2DeltaArchive, includeDescriptions);
+
+		stopWatch.stop();
+		return logSummary(snomedTaxonomyLoader, stopWatch);
+	}
+
+	/**
+	 * Makes sure a snapshot cache file exists for the archives, loading the archives if needed.
+	 * @return the cache file, which can be passed to {@link #build(File, InputStream, boolean)} any number of times.
+	 */
+	public File buildSnapshotCache(Set<File> snomedRf2SnapshotArchiveFiles, File snapshotCacheDirectory, boolean includeDescriptions) throws ReleaseImportException {
+		SnomedTaxonomySnapshotCache snapshotCache = new SnomedTaxonomySnapshotCache(snapshotCacheDirectory);
+		try {
+			File cacheFile = snapshotCache.getCacheFile(snomedRf2SnapshotArchiveFiles, includeDescriptions);
+			if (!cacheFile.isFile()) {
+				SnomedTaxonomyLoader snomedTaxonomyLoader = newLoader(new SnomedTaxonomyLoader());
+				snomedTaxonomyLoader.setKeepAxiomExpressions(true);
+				try (InputStreamSet snomedRf2SnapshotArchives = openSnapshotArchives(snomedRf2SnapshotArchiveFiles, includeDescriptions)) {
+					loadSnapshot(snomedTaxonomyLoader, snomedRf2SnapshotArchives, includeDescriptions);
+				}
+				snapshotCache.write(snomedTaxonomyLoader.getSnomedTaxonomy(), snomedTaxonomyLoader.getAxiomExpressions(), cacheFile, includeDescriptions);
+			}
+			return cacheFile;
+		} catch (IOException e) {
+			throw new ReleaseImportException("Failed to build snapshot cache.", e);
+		}
+	}
+
+	/**
+	 * Builds the taxonomy from an existing snapshot cache file, without hashing or reading the snapshot archives.
+	 * The delta is loaded from RF2.
+	 */
+	public SnomedTaxonomy build(
+			File snapshotCacheFile,
+			InputStream currentReleaseRf2DeltaArchive,
+			boolean includeDescriptions) throws ReleaseImportException {
+
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		SnomedTaxonomyLoader snomedTaxonomyLoader = newLoader(new SnomedTaxonomyLoader());
+		TaxonomyLoadEvent loadEvent = beginLoadEvent();
+		try {
+			new SnomedTaxonomySnapshotCache(snapshotCacheFile.getParentFile()).read(snapshotCacheFile, snomedTaxonomyLoader);
+		} catch (IOException e) {
+			throw new ReleaseImportException("Failed to read snapshot cache " + snapshotCacheFile.getAbsolutePath(), e);
+		}
+		logger.info("Loaded release snapshot from cache");
+		recordLoadPhase("Load snapshot cache", loadEvent, snomedTaxonomyLoader);
+		loadDelta(snomedTaxonomyLoader, currentReleaseRf2DeltaArchive, includeDescriptions);
+
+		stopWatch.stop();
+		return logSummary(snomedTaxonomyLoader, stopWatch);
+	}
+
+	/**
+	 * Builds a taxonomy which is an overlay of an already loaded base taxonomy with the delta applied.
+	 * The base must be frozen, it is not modified so it can be shared by any number of concurrent builds.
+	 * @see SnomedTaxonomy#SnomedTaxonomy(SnomedTaxonomy)
+	 */
+	public SnomedTaxonomy buildOverlay(
+			SnomedTaxonomy baseSnomedTaxonomy,
+			InputStream currentReleaseRf2DeltaArchive,
+			boolean includeDescriptions) throws ReleaseImportException {
+
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		SnomedTaxonomyLoader snomedTaxonomyLoader = newLoader(new SnomedTaxonomyLoader(new SnomedTaxonomy(baseSnomedTaxonomy)));
+		loadDelta(snomedTaxonomyLoader, currentReleaseRf2DeltaArchive, includeDescriptions);
+
+		stopWatch.stop();
+		return logSummary(snomedTaxonomyLoader, stopWatch);
+	}
+
+	/**
+	 * Opens snapshot archives reading only the zip entries needed to build the taxonomy.
+	 * Entries are selected using the central directory of each archive so Full and Delta files, maps and other
+	 * reference sets are skipped without being read.
+	 */
+	public static InputStreamSet openSnapshotArchives(Set<File> snomedRf2SnapshotArchiveFiles, boolean includeDescriptions) throws IOException {
+		return new InputStreamSet(snomedRf2SnapshotArchiveFiles, entryName -> isSnapshotFileNeeded(entryName, includeDescriptions));
+	}
+
+	static boolean isSnapshotFileNeeded(String entryName, boolean includeDescriptions) {
+		String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+		if (!fileName.endsWith(".txt") || !fileName.contains("Snapshot")) {
+			return false;
+		}
+		for (Pattern pattern : includeDescriptions ? SNAPSHOT_FILENAME_PATTERNS_PLUS_LANGUAGE : SNAPSHOT_FILENAME_PATTERNS) {
+			if (pattern.matcher(fileName).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static LoadingProfile withIncludedReferenceSetFilenamePatterns(LoadingProfile loadingProfile, List<String> filenamePatterns) {
+		for (String filenamePattern : filenamePatterns) {
+			loadingProfile = loadingProfile.withIncludedReferenceSetFilenamePattern(filenamePattern);
+		}
+		return loadingProfile;
+	}
+
+	@SafeVarargs
+	private static List<Pattern> compile(List<String>... filenamePatternLists) {
+		List<Pattern> patterns = new ArrayList<>();
+		for (List<String> filenamePatterns : filenamePatternLists) {
+			for (String filenamePattern : filenamePatterns) {
+				patterns.add(Pattern.compile(filenamePattern));
+			}
+		}
+		return patterns;
+	}
+
+	private SnomedTaxonomyLoader newLoader(SnomedTaxonomyLoader snomedTaxonomyLoader) {
+		snomedTaxonomyLoader.setLazyAxiomDeserialisation(lazyAxiomDeserialisation);
+		// Release reader threads hand relationship rows to parsing workers, one per core
+		snomedTaxonomyLoader.setRelationshipParsingThreads(Runtime.getRuntime().availableProcessors());
+		return snomedTaxonomyLoader;
+	}
+
+	private void loadSnapshot(SnomedTaxonomyLoader snomedTaxonomyLoader, InputStreamSet snomedRf2SnapshotArchives, boolean includeDescriptions) throws ReleaseImportException {
+		TaxonomyLoadEvent loadEvent = beginLoadEvent();
 		ReleaseImporter releaseImporter = new ReleaseImporter();
 		releaseImporter.loadEffectiveSnapshotReleaseFileStreams(
 				snomedRf2SnapshotArchives.getFileInputStreams(),
@@ -126,12 +350,17 @@ public class SnomedTaxonomyBuilder {
 				false);
 		snomedTaxonomyLoader.reportErrors();
 		logger.info("Loaded release snapshot");
+		recordLoadPhase("Load snapshot", loadEvent, snomedTaxonomyLoader);
 		logger.info("Time taken deserialising axioms {}s", (snomedTaxonomyLoader.getTimeTakenDeserialisingAxioms() / 1000.00));
+	}
 
+	private void loadDelta(SnomedTaxonomyLoader snomedTaxonomyLoader, InputStream currentReleaseRf2DeltaArchive, boolean includeDescriptions) throws ReleaseImportException {
 		if (currentReleaseRf2DeltaArchive != null) {
 			logger.info("Loading delta");
+			TaxonomyLoadEvent loadEvent = beginLoadEvent();
 			snomedTaxonomyLoader.startLoadingDelta();
 
+			ReleaseImporter releaseImporter = new ReleaseImporter();
 			releaseImporter.loadDeltaReleaseFiles(
 					currentReleaseRf2DeltaArchive,
 					includeDescriptions ? DELTA_LOADING_PROFILE_PLUS_LANGUAGE : DELTA_LOADING_PROFILE,
@@ -139,12 +368,47 @@ public class SnomedTaxonomyBuilder {
 					false);
 			snomedTaxonomyLoader.reportErrors();
 			logger.info("Loaded delta");
+			recordLoadPhase("Load delta", loadEvent, snomedTaxonomyLoader);
 			logger.info("Time taken deserialising axioms {}s", (snomedTaxonomyLoader.getTimeTakenDeserialisingAxioms() / 1000));
 		} else {
 			logger.info("Loading complete.");
 		}
+	}
 
-		stopWatch.stop();
+	private static TaxonomyLoadEvent beginLoadEvent() {
+		TaxonomyLoadEvent loadEvent = new TaxonomyLoadEvent();
+		loadEvent.begin();
+		return loadEvent;
+	}
+
+	private void recordLoadPhase(String phaseName, TaxonomyLoadEvent loadEvent, SnomedTaxonomyLoader snomedTaxonomyLoader) {
+		loadEvent.end();
+		if (metrics == null && !loadEvent.shouldCommit()) {
+			return;
+		}
+		SnomedTaxonomy snomedTaxonomy = snomedTaxonomyLoader.getSnomedTaxonomy();
+		int concepts = snomedTaxonomy.getAllConceptIds().size();
+		int statedRelationships = snomedTaxonomy.getStatedRelationshipStore().size();
+		int inferredRelationships = snomedTaxonomy.getInferredRelationshipStore().size();
+		long axioms = snomedTaxonomy.getAxiomCount();
+		if (loadEvent.shouldCommit()) {
+			loadEvent.stage = phaseName;
+			loadEvent.concepts = concepts;
+			loadEvent.statedRelationships = statedRelationships;
+			loadEvent.inferredRelationships = inferredRelationships;
+			loadEvent.axioms = axioms;
+			loadEvent.commit();
+		}
+		if (metrics != null) {
+			metrics.checkpoint(phaseName)
+					.count("concepts", concepts)
+					.count("statedRelationships", statedRelationships)
+					.count("inferredRelationships", inferredRelationships)
+					.count("axioms", axioms);
+		}
+	}
+
+	private SnomedTaxonomy logSummary(SnomedTaxonomyLoader snomedTaxonomyLoader, StopWatch stopWatch) {
 		logger.info("SnomedTaxonomy loaded in {} seconds", stopWatch.getTotalTimeSeconds());
 
 		SnomedTaxonomy snomedTaxonomy = snomedTaxonomyLoader.getSnomedTaxonomy();
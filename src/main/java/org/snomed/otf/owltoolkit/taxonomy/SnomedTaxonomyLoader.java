@@ -30,7 +30,11 @@ import org.snomed.otf.owltoolkit.domain.Relationship;
 import org.snomed.otf.owltoolkit.ontology.OntologyService;
 
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 
 import static java.lang.Long.parseLong;
@@ -38,10 +42,13 @@ import static org.snomed.otf.owltoolkit.constants.Concepts.*;
 
 public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 
-	private final SnomedTaxonomy snomedTaxonomy = new SnomedTaxonomy();
+	private final SnomedTaxonomy snomedTaxonomy;
 	private static final String ACTIVE = "1";
 
 	private boolean loadingDelta;
+	private boolean lazyAxiomDeserialisation;
+	private int relationshipParsingThreads;
+	private RowPipeline<RelationshipRow> relationshipPipeline;
 	private final int effectiveTimeNow = Integer.parseInt(new SimpleDateFormat("yyyyMMdd").format(new Date()));
 
 	private Exception owlParsingExceptionThrown;
@@ -49,9 +56,18 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 	private final AxiomDeserialiser axiomDeserialiser;
 	private ComponentFactory deltaComponentFactoryTap;
 	private ComponentFactory snapshotComponentFactoryTap;
+	private Map<String, AxiomExpression> axiomExpressions;
 	private static final Logger LOGGER = LoggerFactory.getLogger(SnomedTaxonomyLoader.class);
 
 	public SnomedTaxonomyLoader() {
+		this(new SnomedTaxonomy());
+	}
+
+	/**
+	 * @param snomedTaxonomy the taxonomy to load into, for example an overlay of an already loaded base taxonomy.
+	 */
+	SnomedTaxonomyLoader(SnomedTaxonomy snomedTaxonomy) {
+		this.snomedTaxonomy = snomedTaxonomy;
 		axiomDeserialiser = new AxiomDeserialiser();
 	}
 
@@ -69,6 +85,7 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 	@Override
 	public void newConceptState(String filename, long lineNumber, String conceptId, String effectiveTime, String active, String moduleId, String definitionStatusId) {
 		long id = parseLong(conceptId);
+		snomedTaxonomy.getConceptIndex().add(id);
 		if (ACTIVE.equals(active)) {
 			snomedTaxonomy.getAllConceptIds().add(id);
 			if (Concepts.FULLY_DEFINED.equals(definitionStatusId)) {
@@ -100,12 +117,30 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 
 	@Override
 	public void newRelationshipState(String filename, long lineNumber, String id, String effectiveTime, String active, String moduleId, String sourceId, String destinationId, String relationshipGroup, String typeId, String characteristicTypeId, String modifierId) {
+		if (relationshipPipeline != null) {
+			relationshipPipeline.submit(new RelationshipRow(false, id, effectiveTime, active, moduleId, sourceId, destinationId, relationshipGroup, typeId, characteristicTypeId, modifierId));
+		} else {
+			addRelationshipState(id, effectiveTime, active, moduleId, sourceId, destinationId, relationshipGroup, typeId, characteristicTypeId, modifierId);
+		}
+		ComponentFactory componentFactoryTap = getComponentFactoryTap();
+		if (componentFactoryTap != null) {
+			componentFactoryTap.newRelationshipState(filename, lineNumber, id, effectiveTime, active, moduleId, sourceId, destinationId, relationshipGroup, typeId, characteristicTypeId, modifierId);
+		}
+
+		// Detect partially deleted concepts to be cleaned up
+		long conceptId = parseLong(sourceId);
+		if (!snomedTaxonomy.getAllConceptIds().contains(conceptId)) {
+			snomedTaxonomy.getInactivatedConcepts().add(conceptId);
+		}
+	}
+
+	private void addRelationshipState(String id, String effectiveTime, String active, String moduleId, String sourceId, String destinationId, String relationshipGroup, String typeId, String characteristicTypeId, String modifierId) {
 		boolean stated = STATED_RELATIONSHIP.equals(characteristicTypeId);
 		long conceptId = parseLong(sourceId);
 
 		if (ACTIVE.equals(active) && !ADDITIONAL_RELATIONSHIP.equals(characteristicTypeId)) {// Ignore additional relationships
 
-			snomedTaxonomy.addOrModifyRelationship(
+			snomedTaxonomy.stageRelationship(
 					stated,
 					conceptId,
 					new Relationship(
@@ -125,11 +160,11 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 			// Inactive
 			if (loadingDelta) {
 				// Inactive relationships in the delta should be removed from the snapshot view
-				snomedTaxonomy.removeRelationship(stated, sourceId, id);
+				snomedTaxonomy.stageRelationshipRemoval(stated, parseLong(sourceId), parseLong(id));
 			}
 			if (!stated) {
 				// Inactive inferred relationships kept for possible reactivation
-				snomedTaxonomy.addInactiveInferredRelationship(conceptId, new Relationship(
+				snomedTaxonomy.stageInactiveInferredRelationship(conceptId, new Relationship(
 						parseLong(id),
 						getEffectiveTimeInt(effectiveTime),
 						parseLong(moduleId),
@@ -141,23 +176,22 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 						parseLong(characteristicTypeId)));
 			}
 		}
-		ComponentFactory componentFactoryTap = getComponentFactoryTap();
-		if (componentFactoryTap != null) {
-			componentFactoryTap.newRelationshipState(filename, lineNumber, id, effectiveTime, active, moduleId, sourceId, destinationId, relationshipGroup, typeId, characteristicTypeId, modifierId);
-		}
-
-		// Detect partially deleted concepts to be cleaned up
-		if (!snomedTaxonomy.getAllConceptIds().contains(conceptId)) {
-			snomedTaxonomy.getInactivatedConcepts().add(conceptId);
-		}
 	}
 
 	@Override
 	public void newConcreteRelationshipState(String filename, long lineNumber, String id, String effectiveTime, String active, String moduleId, String sourceId, String value, String relationshipGroup, String typeId, String characteristicTypeId, String modifierId) {
+		if (relationshipPipeline != null) {
+			relationshipPipeline.submit(new RelationshipRow(true, id, effectiveTime, active, moduleId, sourceId, value, relationshipGroup, typeId, characteristicTypeId, modifierId));
+		} else {
+			addConcreteRelationshipState(id, effectiveTime, active, moduleId, sourceId, value, relationshipGroup, typeId, characteristicTypeId, modifierId);
+		}
+	}
+
+	private void addConcreteRelationshipState(String id, String effectiveTime, String active, String moduleId, String sourceId, String value, String relationshipGroup, String typeId, String characteristicTypeId, String modifierId) {
 		boolean stated = false;
 
 		if (ACTIVE.equals(active)) {
-			snomedTaxonomy.addOrModifyRelationship(stated, parseLong(sourceId), new Relationship(
+			snomedTaxonomy.stageRelationship(stated, parseLong(sourceId), new Relationship(
 					parseLong(id),
 					getEffectiveTimeInt(effectiveTime),
 					parseLong(moduleId),
@@ -168,7 +202,17 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 					UNIVERSAL_RESTRICTION_MODIFIER.equals(modifierId),
 					parseLong(characteristicTypeId)));
 		} else {
-			snomedTaxonomy.removeRelationship(stated, sourceId, id);
+			snomedTaxonomy.stageRelationshipRemoval(stated, parseLong(sourceId), parseLong(id));
+		}
+	}
+
+	private void addRelationshipRow(RelationshipRow row) {
+		if (row.concrete) {
+			addConcreteRelationshipState(row.id, row.effectiveTime, row.active, row.moduleId, row.sourceId, row.destinationIdOrValue,
+					row.relationshipGroup, row.typeId, row.characteristicTypeId, row.modifierId);
+		} else {
+			addRelationshipState(row.id, row.effectiveTime, row.active, row.moduleId, row.sourceId, row.destinationIdOrValue,
+					row.relationshipGroup, row.typeId, row.characteristicTypeId, row.modifierId);
 		}
 	}
 
@@ -191,6 +235,9 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 				// Remove the axiom from our active set
 				// Match by id rather than a deserialised representation because the equals method may fail.
 				snomedTaxonomy.removeAxiom(referencedComponentId, id);
+				if (axiomExpressions != null) {
+					axiomExpressions.remove(id);
+				}
 			}
 		} else if (refsetId.equals(Concepts.OWL_ONTOLOGY_REFERENCE_SET)) {
 			if (Concepts.OWL_ONTOLOGY_NAMESPACE.equals(referencedComponentId)) {
@@ -231,7 +278,14 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 		String owlExpressionString = owlExpression
 				// Replace any remaining outdated role group constants
 				.replace(OntologyService.ROLE_GROUP_OUTDATED_CONSTANT, OntologyService.ROLE_GROUP_SCTID);
+		if (axiomExpressions != null) {
+			axiomExpressions.put(id, new AxiomExpression(parseLong(referencedComponentId), owlExpressionString));
+		}
 
+		if (lazyAxiomDeserialisation) {
+			snomedTaxonomy.addAxiomExpression(referencedComponentId, id, owlExpressionString, axiomDeserialiser);
+			return;
+		}
 		OWLAxiom owlAxiom = axiomDeserialiser.deserialiseAxiom(owlExpressionString, id);
 		snomedTaxonomy.addAxiom(referencedComponentId, id, owlAxiom);
 	}
@@ -254,6 +308,22 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 	}
 
 	void reportErrors() throws ReleaseImportException {
+		if (relationshipPipeline != null) {
+			try {
+				relationshipPipeline.drain();
+			} catch (ExecutionException e) {
+				throw new ReleaseImportException("Failed to load relationship rows", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ReleaseImportException("Interrupted while loading relationship rows", e);
+			} finally {
+				// Rows of this loading stage have all been handled, the next stage starts its own workers
+				relationshipPipeline.shutdown();
+				relationshipPipeline = null;
+			}
+		}
+		// All loading threads have finished so the relationships they staged can be applied
+		snomedTaxonomy.applyStagedRelationships();
 		if (owlParsingExceptionThrown != null) {
 			throw new ReleaseImportException("Failed to parse OWL Axiom in reference set member '" + owlParsingExceptionMemberId + "'",
 					owlParsingExceptionThrown);
@@ -268,7 +338,49 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 		return snomedTaxonomy;
 	}
 
+	/**
+	 * @param keepAxiomExpressions true to keep the expression of each active axiom as loaded, for writing the snapshot cache.
+	 * False drops the expressions kept so far.
+	 */
+	void setKeepAxiomExpressions(boolean keepAxiomExpressions) {
+		axiomExpressions = keepAxiomExpressions ? Collections.synchronizedMap(new LinkedHashMap<>()) : null;
+	}
+
+	/**
+	 * @return the active axioms loaded since {@link #setKeepAxiomExpressions(boolean)} was enabled, by axiom id.
+	 */
+	Map<String, AxiomExpression> getAxiomExpressions() {
+		return axiomExpressions;
+	}
+
+	/**
+	 * @param lazyAxiomDeserialisation true to keep axioms as strings until the taxonomy axiom maps are first read.
+	 * Invalid axioms are then reported when they are deserialised rather than during loading.
+	 */
+	void setLazyAxiomDeserialisation(boolean lazyAxiomDeserialisation) {
+		this.lazyAxiomDeserialisation = lazyAxiomDeserialisation;
+	}
+
+	/**
+	 * @param workerCount the number of threads parsing relationship rows handed over by the release reader threads,
+	 * or 0 to parse rows on the reader threads. When greater than 0 {@link #reportErrors()} must be called once the
+	 * release importer has returned so that all rows are loaded and the worker threads are stopped.
+	 */
+	void setRelationshipParsingThreads(int workerCount) {
+		relationshipParsingThreads = workerCount;
+		relationshipPipeline = newRelationshipPipeline();
+	}
+
+	private RowPipeline<RelationshipRow> newRelationshipPipeline() {
+		return relationshipParsingThreads > 0 ? new RowPipeline<>(this::addRelationshipRow, relationshipParsingThreads) : null;
+	}
+
 	void startLoadingDelta() {
+		// Snapshot rows must be applied before delta rows which may remove them
+		snomedTaxonomy.applyStagedRelationships();
+		if (relationshipPipeline == null) {
+			relationshipPipeline = newRelationshipPipeline();
+		}
 		loadingDelta = true;
 		axiomDeserialiser.clearCounters();
 	}
@@ -276,4 +388,37 @@ public class SnomedTaxonomyLoader extends ImpotentComponentFactory {
 	long getTimeTakenDeserialisingAxioms() {
 		return axiomDeserialiser.getTimeTakenDeserialisingAxioms();
 	}
+
+	/**
+	 * Relationship or concrete relationship fields as read, parsed by the relationship pipeline workers.
+	 */
+	private static final class RelationshipRow {
+
+		private final boolean concrete;
+		private final String id;
+		private final String effectiveTime;
+		private final String active;
+		private final String moduleId;
+		private final String sourceId;
+		private final String destinationIdOrValue;
+		private final String relationshipGroup;
+		private final String typeId;
+		private final String characteristicTypeId;
+		private final String modifierId;
+
+		private RelationshipRow(boolean concrete, String id, String effectiveTime, String active, String moduleId, String sourceId,
+				String destinationIdOrValue, String relationshipGroup, String typeId, String characteristicTypeId, String modifierId) {
+			this.concrete = concrete;
+			this.id = id;
+			this.effectiveTime = effectiveTime;
+			this.active = active;
+			this.moduleId = moduleId;
+			this.sourceId = sourceId;
+			this.destinationIdOrValue = destinationIdOrValue;
+			this.relationshipGroup = relationshipGroup;
+			this.typeId = typeId;
+			this.characteristicTypeId = characteristicTypeId;
+			this.modifierId = modifierId;
+		}
+	}
 }
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.util.BinaryCodec;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import static org.snomed.otf.owltoolkit.util.BinaryCodec.readString;
+import static org.snomed.otf.owltoolkit.util.BinaryCodec.writeString;
+
+/**
+ * Binary cache of the SnomedTaxonomy state loaded from a set of RF2 snapshot archives.
+ * Cache files are keyed by a hash of the archive content so a changed archive is never served from the cache.
+ * The delta is not included, it must be applied on top of the cached snapshot state.
+ */
+public class SnomedTaxonomySnapshotCache {
+
+	// Increment when the layout of this file changes so that old cache files are ignored, relationships are encoded by BinaryCodec
+	private static final int FORMAT_VERSION = 2;
+	private static final int MAGIC = 0x534E5443;// "SNTC"
+	private static final String CACHE_FILE_PREFIX = "snomed-taxonomy-";
+	private static final String CACHE_FILE_EXTENSION = ".bin";
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final File cacheDirectory;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public SnomedTaxonomySnapshotCache(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * @return the cache file for this set of archives, the file may not exist yet.
+	 */
+	public File getCacheFile(Set<File> snapshotArchives, boolean includeDescriptions) throws IOException {
+		// Hash each archive separately and sort so that the key does not depend on the iteration order of the set
+		List<String> archiveHashes = new ArrayList<>();
+		for (File snapshotArchive : snapshotArchives) {
+			archiveHashes.add(hash(snapshotArchive));
+		}
+		Collections.sort(archiveHashes);
+		MessageDigest digest = newDigest();
+		digest.update(("v" + FORMAT_VERSION + "|descriptions=" + includeDescriptions).getBytes(StandardCharsets.UTF_8));
+		for (String archiveHash : archiveHashes) {
+			digest.update(archiveHash.getBytes(StandardCharsets.UTF_8));
+		}
+		return new File(cacheDirectory, CACHE_FILE_PREFIX + toHex(digest.digest()) + CACHE_FILE_EXTENSION);
+	}
+
+	/**
+	 * Loads the cached snapshot state into the taxonomy of the given loader.
+	 * The loader can then be used to apply a delta.
+	 */
+	void read(File cacheFile, SnomedTaxonomyLoader loader) throws IOException {
+		SnomedTaxonomy snomedTaxonomy = loader.getSnomedTaxonomy();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), BUFFER_SIZE))) {
+			if (!BinaryCodec.readHeader(in, MAGIC, FORMAT_VERSION)) {
+				throw new IOException("Unrecognised snapshot cache file format " + cacheFile.getAbsolutePath());
+			}
+
+			readStringMap(in, snomedTaxonomy.getOntologyNamespaces());
+			readStringMap(in, snomedTaxonomy.getOntologyHeader());
+			readLongs(in, snomedTaxonomy.getAllConceptIds());
+			ConceptIndex conceptIndex = snomedTaxonomy.getConceptIndex();
+			for (Long conceptId : snomedTaxonomy.getAllConceptIds()) {
+				conceptIndex.add(conceptId);
+			}
+			readLongs(in, snomedTaxonomy.getFullyDefinedConceptIds());
+			readLongs(in, snomedTaxonomy.getInactivatedConcepts());
+			int modules = in.readInt();
+			for (int i = 0; i < modules; i++) {
+				snomedTaxonomy.getConceptModuleMap().put(in.readLong(), in.readLong());
+			}
+
+			int statedConcepts = in.readInt();
+			for (int i = 0; i < statedConcepts; i++) {
+				long conceptId = in.readLong();
+				int count = in.readInt();
+				for (int j = 0; j < count; j++) {
+					snomedTaxonomy.stageRelationship(true, conceptId, BinaryCodec.readRelationship(in));
+				}
+			}
+			int inferredConcepts = in.readInt();
+			for (int i = 0; i < inferredConcepts; i++) {
+				long conceptId = in.readLong();
+				int count = in.readInt();
+				for (int j = 0; j < count; j++) {
+					snomedTaxonomy.stageRelationship(false, conceptId, BinaryCodec.readRelationship(in));
+				}
+			}
+			int inactiveInferredConcepts = in.readInt();
+			for (int i = 0; i < inactiveInferredConcepts; i++) {
+				long conceptId = in.readLong();
+				int count = in.readInt();
+				for (int j = 0; j < count; j++) {
+					snomedTaxonomy.stageInactiveInferredRelationship(conceptId, BinaryCodec.readRelationship(in));
+				}
+			}
+
+			int axioms = in.readInt();
+			for (int i = 0; i < axioms; i++) {
+				String axiomId = readString(in);
+				String referencedComponentId = Long.toString(in.readLong());
+				String owlExpression = readString(in);
+				try {
+					loader.addActiveAxiom(axiomId, referencedComponentId, owlExpression);
+				} catch (OWLOntologyCreationException e) {
+					throw new IOException("Failed to deserialise cached axiom " + axiomId, e);
+				}
+			}
+
+			int contentTypes = in.readInt();
+			for (int i = 0; i < contentTypes; i++) {
+				long contentTypeId = in.readLong();
+				int count = in.readInt();
+				for (int j = 0; j < count; j++) {
+					snomedTaxonomy.addUngroupedRole(contentTypeId, in.readLong());
+				}
+			}
+
+			boolean descriptionsIncluded = in.readBoolean();
+			if (descriptionsIncluded) {
+				int concepts = in.readInt();
+				for (int i = 0; i < concepts; i++) {
+					String conceptId = Long.toString(in.readLong());
+					int count = in.readInt();
+					for (int j = 0; j < count; j++) {
+						String descriptionId = readString(in);
+						snomedTaxonomy.addDescription(conceptId, descriptionId, readString(in), readString(in), readString(in));
+						int acceptabilityCount = in.readInt();
+						for (int k = 0; k < acceptabilityCount; k++) {
+							snomedTaxonomy.setDescriptionAcceptability(descriptionId, Long.toString(in.readLong()), Long.toString(in.readLong()), true);
+						}
+					}
+				}
+			}
+		}
+		snomedTaxonomy.applyStagedRelationships();
+	}
+
+	/**
+	 * Writes the snapshot state of the taxonomy to the cache file.
+	 * The file is written under a temporary name and moved into place so that a partial file is never read.
+	 * @param axiomExpressions the active axioms of the taxonomy by axiom id, as kept by the loader.
+	 * @see SnomedTaxonomyLoader#setKeepAxiomExpressions(boolean)
+	 */
+	void write(SnomedTaxonomy snomedTaxonomy, Map<String, AxiomExpression> axiomExpressions, File cacheFile, boolean includeDescriptions) throws IOException {
+		if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+			throw new IOException("Failed to create snapshot cache directory " + cacheDirectory.getAbsolutePath());
+		}
+		File tempFile = File.createTempFile(CACHE_FILE_PREFIX, ".tmp", cacheDirectory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE))) {
+				BinaryCodec.writeHeader(out, MAGIC, FORMAT_VERSION);
+
+				writeStringMap(out, snomedTaxonomy.getOntologyNamespaces());
+				writeStringMap(out, snomedTaxonomy.getOntologyHeader());
+				writeLongs(out, snomedTaxonomy.getAllConceptIds());
+				writeLongs(out, snomedTaxonomy.getFullyDefinedConceptIds());
+				writeLongs(out, snomedTaxonomy.getInactivatedConcepts());
+				Map<Long, Long> conceptModuleMap = snomedTaxonomy.getConceptModuleMap();
+				out.writeInt(conceptModuleMap.size());
+				for (Map.Entry<Long, Long> entry : conceptModuleMap.entrySet()) {
+					out.writeLong(entry.getKey());
+					out.writeLong(entry.getValue());
+				}
+
+				writeRelationships(out, snomedTaxonomy.getStatedRelationshipStore());
+				writeRelationships(out, snomedTaxonomy.getInferredRelationshipStore());
+				writeRelationships(out, snomedTaxonomy.getInactiveInferredRelationshipStore());
+
+				// Axioms are stored as the expressions read from the OWL axiom reference set, not re-rendered from the OWL API objects
+				out.writeInt(axiomExpressions.size());
+				for (Map.Entry<String, AxiomExpression> entry : axiomExpressions.entrySet()) {
+					writeString(out, entry.getKey());
+					out.writeLong(entry.getValue().getConceptId());
+					writeString(out, entry.getValue().getOwlExpression());
+				}
+
+				Map<Long, Set<Long>> ungroupedRolesByContentType = snomedTaxonomy.getUngroupedRolesByContentType();
+				out.writeInt(ungroupedRolesByContentType.size());
+				for (Map.Entry<Long, Set<Long>> entry : ungroupedRolesByContentType.entrySet()) {
+					out.writeLong(entry.getKey());
+					writeLongs(out, entry.getValue());
+				}
+
+				out.writeBoolean(includeDescriptions);
+				if (includeDescriptions) {
+					Map<Long, Set<Description>> conceptDescriptionMap = snomedTaxonomy.getConceptDescriptionMap();
+					out.writeInt(conceptDescriptionMap.size());
+					for (Map.Entry<Long, Set<Description>> entry : conceptDescriptionMap.entrySet()) {
+						out.writeLong(entry.getKey());
+						out.writeInt(entry.getValue().size());
+						for (Description description : entry.getValue()) {
+							writeString(out, description.getId());
+							writeString(out, description.getTerm());
+							writeString(out, description.getTypeId());
+							writeString(out, description.getLanguageCode());
+							Map<Long, Long> acceptabilityMap = description.getAcceptabilityMap();
+							out.writeInt(acceptabilityMap.size());
+							for (Map.Entry<Long, Long> acceptability : acceptabilityMap.entrySet()) {
+								out.writeLong(acceptability.getKey());
+								out.writeLong(acceptability.getValue());
+							}
+						}
+					}
+				}
+			}
+			Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			logger.info("Snapshot cache written to {}", cacheFile.getAbsolutePath());
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private void writeRelationships(DataOutputStream out, RelationshipStore relationshipStore) throws IOException {
+		long[] sourceIds = relationshipStore.getSourceIds();
+		out.writeInt(sourceIds.length);
+		for (long sourceId : sourceIds) {
+			Set<Relationship> relationships = relationshipStore.getRelationships(sourceId);
+			out.writeLong(sourceId);
+			out.writeInt(relationships.size());
+			for (Relationship relationship : relationships) {
+				BinaryCodec.writeRelationship(out, relationship);
+			}
+		}
+	}
+
+	private void writeStringMap(DataOutputStream out, Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+
+	private void readStringMap(DataInputStream in, Map<String, String> map) throws IOException {
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			map.put(readString(in), readString(in));
+		}
+	}
+
+	private void writeLongs(DataOutputStream out, Collection<Long> longs) throws IOException {
+		out.writeInt(longs.size());
+		for (Long value : longs) {
+			out.writeLong(value);
+		}
+	}
+
+	private void readLongs(DataInputStream in, Collection<Long> longs) throws IOException {
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			longs.add(in.readLong());
+		}
+	}
+
+	private String hash(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available.", e);
+		}
+	}
+
+	private String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			builder.append(String.format("%02x", b));
+		}
+		return builder.toString();
+	}
+}
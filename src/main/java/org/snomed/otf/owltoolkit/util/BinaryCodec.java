@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.util;
+
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding shared by the binary files written between runs, the snapshot cache and the normal form state.
+ * Every file starts with a header of the magic number and format version of the file followed by the version of this codec,
+ * so changing the encoding of relationships or strings here invalidates all existing files without each file format
+ * having to be versioned again.
+ */
+public final class BinaryCodec {
+
+	// Increment when the encoding of relationships or strings changes
+	private static final int CODEC_VERSION = 1;
+
+	private BinaryCodec() {
+	}
+
+	/**
+	 * @param formatVersion the version of the file layout, to be incremented by the caller when its layout changes.
+	 */
+	public static void writeHeader(DataOutputStream out, int magic, int formatVersion) throws IOException {
+		out.writeInt(magic);
+		out.writeInt(formatVersion);
+		out.writeInt(CODEC_VERSION);
+	}
+
+	/**
+	 * @return false if the file was written by a different version of the file layout or of this codec.
+	 */
+	public static boolean readHeader(DataInputStream in, int magic, int formatVersion) throws IOException {
+		return in.readInt() == magic && in.readInt() == formatVersion && in.readInt() == CODEC_VERSION;
+	}
+
+	public static void writeRelationship(DataOutputStream out, Relationship relationship) throws IOException {
+		out.writeLong(relationship.getRelationshipId());
+		out.writeInt(relationship.getEffectiveTime());
+		out.writeLong(relationship.getModuleId());
+		out.writeLong(relationship.getTypeId());
+		out.writeLong(relationship.getDestinationId());
+		out.writeInt(relationship.getGroup());
+		out.writeInt(relationship.getUnionGroup());
+		out.writeBoolean(relationship.isUniversal());
+		out.writeLong(relationship.getCharacteristicTypeId());
+		Relationship.ConcreteValue value = relationship.getValue();
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeByte(value.getType().ordinal());
+			writeString(out, value.asString());
+		}
+	}
+
+	public static Relationship readRelationship(DataInputStream in) throws IOException {
+		long relationshipId = in.readLong();
+		int effectiveTime = in.readInt();
+		long moduleId = in.readLong();
+		long typeId = in.readLong();
+		long destinationId = in.readLong();
+		int group = in.readInt();
+		int unionGroup = in.readInt();
+		boolean universal = in.readBoolean();
+		long characteristicTypeId = in.readLong();
+		if (in.readBoolean()) {
+			Relationship.ConcreteValue.Type type = Relationship.ConcreteValue.Type.values()[in.readByte()];
+			Relationship.ConcreteValue value = new Relationship.ConcreteValue(type, readString(in));
+			return new Relationship(relationshipId, effectiveTime, moduleId, typeId, value, group, unionGroup, universal, characteristicTypeId);
+		}
+		return new Relationship(relationshipId, effectiveTime, moduleId, typeId, destinationId, group, unionGroup, universal, characteristicTypeId);
+	}
+
+	// DataOutputStream.writeUTF is limited to 64KB so a length prefixed byte array is used instead
+	public static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -6,6 +6,7 @@ import java.io.*;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Predicate;
 
 public class InputStreamSet extends HashSet<InputStream> implements AutoCloseable {
 
@@ -23,6 +24,22 @@ public class InputStreamSet extends HashSet<InputStream> implements AutoCloseabl
 		}
 	}
 
+	/**
+	 * Opens each zip file as a stream containing only the entries accepted by the filter.
+	 * @see SelectedZipEntriesInputStream
+	 */
+	public InputStreamSet(Set<java.io.File> zipFiles, Predicate<String> zipEntryNameFilter) throws IOException {
+		fileInputStreams = new HashSet<>();
+		try {
+			for (File zipFile : zipFiles) {
+				fileInputStreams.add(new SelectedZipEntriesInputStream(zipFile, zipEntryNameFilter));
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
 	public InputStreamSet(InputStream... inputStream) {
 		fileInputStreams = Sets.newHashSet(inputStream);
 	}
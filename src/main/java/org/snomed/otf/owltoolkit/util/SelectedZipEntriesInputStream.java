@@ -0,0 +1,119 @@
+package org.snomed.otf.owltoolkit.util;
+
+import org.snomed.otf.owltoolkit.metrics.ResourceMonitor;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Zip archive stream containing only the selected entries of a zip file.
+ * The entries are chosen from the central directory of the file, so entries which are not selected are never read or inflated.
+ * Selected entries are inflated by a background thread and written uncompressed so the reader does not inflate them again.
+ */
+public class SelectedZipEntriesInputStream extends InputStream {
+
+	private static final int PIPE_SIZE = 1024 * 1024;
+
+	private final ZipFile zipFile;
+	private final PipedInputStream pipe;
+	private final Thread writerThread;
+	private volatile IOException failure;
+
+	/**
+	 * @param file the zip file.
+	 * @param entryNameFilter selects entries by their full name within the archive.
+	 */
+	public SelectedZipEntriesInputStream(File file, Predicate<String> entryNameFilter) throws IOException {
+		zipFile = new ZipFile(file);
+		List<ZipEntry> selectedEntries = new ArrayList<>();
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			if (!entry.isDirectory() && entryNameFilter.test(entry.getName())) {
+				selectedEntries.add(entry);
+			}
+		}
+		pipe = new PipedInputStream(PIPE_SIZE);
+		PipedOutputStream pipeOutput = new PipedOutputStream(pipe);
+		writerThread = new Thread(ResourceMonitor.recordingAllocation(() -> writeEntries(selectedEntries, pipeOutput)), "zip-entries-" + file.getName());
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	private void writeEntries(List<ZipEntry> selectedEntries, PipedOutputStream pipeOutput) {
+		try (ZipOutputStream zipOutputStream = new ZipOutputStream(pipeOutput)) {
+			byte[] buffer = new byte[64 * 1024];
+			for (ZipEntry entry : selectedEntries) {
+				// Size and checksum from the central directory allow the entry to be stored without compressing it again
+				ZipEntry storedEntry = new ZipEntry(entry.getName());
+				storedEntry.setMethod(ZipEntry.STORED);
+				storedEntry.setSize(entry.getSize());
+				storedEntry.setCompressedSize(entry.getSize());
+				storedEntry.setCrc(entry.getCrc());
+				zipOutputStream.putNextEntry(storedEntry);
+				try (InputStream entryStream = zipFile.getInputStream(entry)) {
+					int read;
+					while ((read = entryStream.read(buffer)) != -1) {
+						zipOutputStream.write(buffer, 0, read);
+					}
+				}
+				zipOutputStream.closeEntry();
+			}
+		} catch (IOException e) {
+			failure = e;
+			try {
+				pipeOutput.close();
+			} catch (IOException closeException) {
+				e.addSuppressed(closeException);
+			}
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		int read = pipe.read();
+		if (read == -1) {
+			throwIfFailed();
+		}
+		return read;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = pipe.read(b, off, len);
+		if (read == -1) {
+			throwIfFailed();
+		}
+		return read;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return pipe.available();
+	}
+
+	private void throwIfFailed() throws IOException {
+		if (failure != null) {
+			throw new IOException("Failed to read entries of zip file " + zipFile.getName(), failure);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			// Makes the writer thread fail and stop if the stream was not read to the end
+			pipe.close();
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			zipFile.close();
+		}
+	}
+}
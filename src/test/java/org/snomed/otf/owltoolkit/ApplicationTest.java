@@ -25,6 +25,10 @@ public class ApplicationTest {
 			" -classify                              Run classification process.\n" +
 			"                                        Results are written to an RF2 delta archive.\n" +
 			"\n" +
+			" -server <port>                         Run as a classification server on the local port.\n" +
+			"                                        The Snapshots are loaded into memory once and shared as the base of every classification.\n" +
+			"                                        POST an RF2 delta archive to /classify/default, the response is the results archive.\n" +
+			"\n" +
 			" -rf2-to-owl                            (Default mode) Convert RF2 to OWL Functional Syntax.\n" +
 			"                                        Results are written to an .owl file.\n" +
 			"\n" +
@@ -50,6 +54,24 @@ public class ApplicationTest {
 			" -rf2-authoring-delta-archive <path>    (Optional) Path to a zip file containing RF2 Delta files to be applied on top \n" +
 			"                                        of the Snapshots. This is helpful during an authoring cycle.\n" +
 			"\n" +
+			" -snapshot-cache-dir <path>             (Optional) Directory for a binary cache of the loaded Snapshot archives. \n" +
+			"                                        Classifications using the same Snapshots will read the cache instead of RF2.\n" +
+			"\n" +
+			" -normal-form-threads <count>           (Optional) Number of threads used to generate the relationship normal form. \n" +
+			"                                        Defaults to 1.\n" +
+			"\n" +
+			" -normal-form-state <path>              (Optional) File to keep normal form results between classifications. \n" +
+			"                                        Later classifications only normalise concepts affected by changes since the previous one.\n" +
+			"\n" +
+			" -elk-native-loading                    (Optional) Load axioms straight into the ELK reasoner without creating an OWL API ontology. \n" +
+			"                                        Uses less memory and time for large editions.\n" +
+			"\n" +
+			" -low-memory                            (Optional) Release each classification stage as soon as it is consumed. \n" +
+			"                                        Lowers peak heap at the cost of a full garbage collection between stages.\n" +
+			"\n" +
+			" -server-jobs <count>                   (Optional) Number of classifications the server runs at once. \n" +
+			"                                        Defaults to 1.\n" +
+			"\n" +
 			" -debug                                 Additional output for debugging.\n" +
 			"\n" +
 			"\n" +
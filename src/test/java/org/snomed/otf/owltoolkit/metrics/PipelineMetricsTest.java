@@ -0,0 +1,70 @@
+package org.snomed.otf.owltoolkit.metrics;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PipelineMetricsTest {
+
+	@Test
+	public void testPhasesAndJsonReport() {
+		MetricsRegistry registry = new MetricsRegistry(2);
+		PipelineMetrics metrics = registry.start("classification", "run-\"1\"");
+		metrics.checkpoint("Load snapshot").count("concepts", 10).count("axioms", 5);
+		metrics.checkpoint("Write results to disk");
+		metrics.finish();
+
+		List<PhaseMetrics> phases = metrics.getPhases();
+		assertEquals(2, phases.size());
+		assertEquals("Load snapshot", phases.get(0).getName());
+		assertEquals(Long.valueOf(10), phases.get(0).getCounts().get("concepts"));
+		assertTrue(phases.get(0).getWallTimeMillis() >= 0);
+		assertTrue(phases.get(0).getPeakHeapBytes() > 0);
+		assertTrue(metrics.getWallTimeMillis() >= 0);
+
+		String json = metrics.toJson();
+		assertTrue(json, json.contains("\"runId\": \"run-\\\"1\\\"\""));
+		assertTrue(json, json.contains("\"name\": \"Load snapshot\""));
+		assertTrue(json, json.contains("\"counts\": {\"concepts\": 10, \"axioms\": 5}"));
+	}
+
+	@Test
+	public void testAllocationOfEndedThreadsAndHeapPeak() throws InterruptedException {
+		PipelineMetrics metrics = new PipelineMetrics("classification", "run");
+		int size = 32 * 1024 * 1024;
+		Thread thread = new Thread(ResourceMonitor.recordingAllocation(() -> {
+			byte[] bytes = new byte[size];
+			bytes[size - 1] = 1;
+		}));
+		thread.start();
+		thread.join();
+		byte[] held = new byte[size];
+		PhaseMetrics phase = metrics.checkpoint("Allocate");
+		metrics.finish();
+
+		if (phase.getAllocatedBytes() != -1) {
+			// Both arrays, including the one allocated by the thread which has ended
+			assertTrue(phase.getAllocatedBytes() + " bytes allocated", phase.getAllocatedBytes() >= 2L * size);
+		}
+		assertTrue(phase.getPeakHeapBytes() + " peak heap bytes", phase.getPeakHeapBytes() >= held.length);
+	}
+
+	@Test
+	public void testRegistryKeepsRecentRuns() {
+		MetricsRegistry registry = new MetricsRegistry(2);
+		registry.start("classification", "a");
+		PipelineMetrics b = registry.start("classification", "b");
+		PipelineMetrics c = registry.start("rf2-to-owl", "c");
+
+		assertNull(registry.getMetrics("a"));
+		assertSame(b, registry.getMetrics("b"));
+		assertSame(b, registry.getLatest("classification"));
+		assertSame(c, registry.getLatest("rf2-to-owl"));
+		assertEquals(2, registry.getAll().size());
+
+		assertEquals("results-metrics.json", MetricsRegistry.getReportFile(new File("results.zip")).getName());
+	}
+}
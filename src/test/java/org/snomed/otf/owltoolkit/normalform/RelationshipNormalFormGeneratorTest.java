@@ -0,0 +1,260 @@
+package org.snomed.otf.owltoolkit.normalform;
+
+import org.junit.Test;
+import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomy;
+import org.snomed.otf.owltoolkit.classification.ReasonerTaxonomyWalker;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.conversion.AxiomRelationshipConversionService;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.ontology.OntologyService;
+import org.snomed.otf.owltoolkit.ontology.PropertyChain;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.testutil.SyntheticRf2Generator;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+import org.snomed.otf.snomedboot.testutil.ZipUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static java.lang.Long.parseLong;
+import static org.junit.Assert.*;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.newTemporaryFile;
+
+public class RelationshipNormalFormGeneratorTest {
+
+	private static final int CONCEPTS = 2000;
+
+	@Test
+	public void testCacheReadersAreCountedPerChild() throws Exception {
+		File[] archives = writeSyntheticArchives();
+		RelationshipNormalFormGenerator generator = createGenerator(archives[0], archives[1]);
+		ReasonerTaxonomy reasonerTaxonomy = generator.getReasonerTaxonomy();
+		List<Long> conceptIds = reasonerTaxonomy.getConceptIds();
+
+		generator.countCacheReaders(conceptIds);
+
+		// The first pass of each child and the concept's own second pass
+		Map<Long, Integer> children = new HashMap<>();
+		for (Long conceptId : conceptIds) {
+			for (Long parentId : reasonerTaxonomy.getParents(conceptId)) {
+				children.merge(parentId, 1, Integer::sum);
+			}
+		}
+		for (Long conceptId : conceptIds) {
+			assertEquals(conceptId.toString(), children.getOrDefault(conceptId, 0) + 1, generator.getPendingCacheReaders(conceptId));
+		}
+	}
+
+	@Test
+	public void testCacheEntriesAreEvictedDuringFirstPass() throws Exception {
+		File[] archives = writeSyntheticArchives();
+		RelationshipNormalFormGenerator generator = createGenerator(archives[0], archives[1]);
+		List<Long> conceptIds = generator.getReasonerTaxonomy().getConceptIds();
+
+		generator.collectNormalFormChanges(new RelationshipChangeProcessor());
+
+		// Leaves are evicted straight after their first pass and parents once their last child has read them,
+		// unless a child is normalised again in the second pass because a property chain applies to it
+		assertTrue("Peak of " + generator.getPeakCachedConcepts(), generator.getPeakCachedConcepts() < conceptIds.size() / 2);
+		assertEquals(0, generator.getCachedConcepts());
+		for (Long conceptId : conceptIds) {
+			assertEquals(0, generator.getPendingCacheReaders(conceptId));
+		}
+	}
+
+	@Test
+	public void testSameChangesSerialParallelAndIncremental() throws Exception {
+		File[] archives = writeSyntheticArchives();
+		assertSameChanges(archives[0], archives[1]);
+	}
+
+	@Test
+	public void testSameChangesWithPropertyChains() throws Exception {
+		// Concepts which a property chain applies to keep the entries of their parents until the transitive graphs are complete
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		File delta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta");
+		assertFalse(assertSameChanges(snapshot, delta).getPropertyChains().isEmpty());
+	}
+
+	@Test
+	public void testIncrementalSameAsFullAfterModifyingExistingConcepts() throws Exception {
+		File snapshot = newTemporaryFile();
+		new SyntheticRf2Generator().setConcepts(CONCEPTS).setDepth(5).setFanOut(6).setStatedRelationships(true).writeSnapshotArchive(snapshot);
+
+		RelationshipNormalFormGenerator previousGenerator = createGenerator(snapshot, null, taxonomy -> {});
+		NormalFormState state = previousGenerator.recordNormalFormState();
+		previousGenerator.collectNormalFormChanges(new RelationshipChangeProcessor());
+		PropertyChain propertyChain = previousGenerator.getPropertyChains().iterator().next();
+
+		// Three concepts with attributes and descendants, away from each other, get a new attribute, a new parent and an attribute a property chain applies to
+		ReasonerTaxonomy previousTaxonomy = previousGenerator.getReasonerTaxonomy();
+		List<Long> candidates = new ArrayList<>();
+		for (Long conceptId : previousTaxonomy.getConceptIds()) {
+			for (Long parentId : previousTaxonomy.getParents(conceptId)) {
+				if (!candidates.contains(parentId) && previousTaxonomy.getParents(parentId).size() == 1 && !previousTaxonomy.getParents(parentId).contains(Concepts.ROOT_LONG)
+						&& !previousGenerator.getSnomedTaxonomy().getNonIsAStatements(parentId).isEmpty()) {
+					candidates.add(parentId);
+				}
+			}
+		}
+		long attributeChanged = candidates.get(0);
+		long parentChanged = candidates.get(candidates.size() / 2);
+		long chainApplied = candidates.get(candidates.size() - 1);
+		long newParent = previousTaxonomy.getParents(attributeChanged).iterator().next();
+		assertFalse(previousTaxonomy.isSameOrAncestor(parentChanged, newParent));
+		long chainValue = previousTaxonomy.getConceptIds().stream()
+				.filter(conceptId -> state.getNonIsAFragments(conceptId).stream()
+						.anyMatch(relationship -> relationship.getTypeId() == propertyChain.getDestinationType()))
+				.findFirst().orElseThrow();
+		Set<Long> chainTypes = new HashSet<>(Arrays.asList(propertyChain.getSourceType(), propertyChain.getDestinationType(), propertyChain.getInferredType()));
+		long attributeType = previousTaxonomy.getConceptIds().stream()
+				.flatMap(conceptId -> previousGenerator.getSnomedTaxonomy().getNonIsAStatements(conceptId).stream())
+				.map(Relationship::getTypeId)
+				.filter(typeId -> !chainTypes.contains(typeId))
+				.findFirst().orElseThrow();
+
+		Consumer<SnomedTaxonomy> modification = taxonomy -> {
+			long statedCharacteristicType = parseLong(Concepts.STATED_RELATIONSHIP);
+			taxonomy.addOrModifyRelationship(true, attributeChanged,
+					new Relationship(9000000001L, 20200131, 0, attributeType, newParent, 9, 0, false, statedCharacteristicType));
+			Relationship isA = taxonomy.getStatedRelationships(parentChanged).stream()
+					.filter(relationship -> relationship.getTypeId() == Concepts.IS_A_LONG).findFirst().orElseThrow();
+			taxonomy.removeRelationship(true, Long.toString(parentChanged), Long.toString(isA.getRelationshipId()));
+			taxonomy.addOrModifyRelationship(true, parentChanged,
+					new Relationship(9000000002L, 20200131, 0, Concepts.IS_A_LONG, newParent, 0, 0, false, statedCharacteristicType));
+			taxonomy.addOrModifyRelationship(true, chainApplied,
+					new Relationship(9000000003L, 20200131, 0, propertyChain.getSourceType(), chainValue, 9, 0, false, statedCharacteristicType));
+		};
+
+		RelationshipNormalFormGenerator fullGenerator = createGenerator(snapshot, null, modification);
+		NormalFormState fullState = fullGenerator.recordNormalFormState();
+		RelationshipChangeProcessor fullChanges = new RelationshipChangeProcessor();
+		fullGenerator.collectNormalFormChanges(fullChanges);
+		assertTrue(fullGenerator.getReasonerTaxonomy().getParents(parentChanged).contains(newParent));
+
+		for (boolean parallel : new boolean[] {false, true}) {
+			RelationshipNormalFormGenerator incrementalGenerator = createGenerator(snapshot, null, modification);
+			NormalFormState incrementalState = incrementalGenerator.recordNormalFormState();
+			RelationshipChangeProcessor incrementalChanges = new RelationshipChangeProcessor();
+			ForkJoinPool pool = parallel ? new ForkJoinPool(4) : null;
+			try {
+				incrementalGenerator.collectNormalFormChanges(incrementalChanges, pool, state);
+			} finally {
+				if (pool != null) {
+					pool.shutdown();
+				}
+			}
+			assertEquals(0, incrementalGenerator.getCachedConcepts());
+			assertEquals(toStrings(fullChanges.getAddedStatements()), toStrings(incrementalChanges.getAddedStatements()));
+			assertEquals(toStrings(fullChanges.getRemovedStatements()), toStrings(incrementalChanges.getRemovedStatements()));
+
+			// The descendants of the modified concepts have the same first pass results as a full run,
+			// also for the second run from the same previous state
+			ReasonerTaxonomy reasonerTaxonomy = fullGenerator.getReasonerTaxonomy();
+			for (long modified : new long[] {attributeChanged, parentChanged, chainApplied}) {
+				List<Long> descendants = reasonerTaxonomy.getConceptIds().stream()
+						.filter(conceptId -> conceptId != modified && reasonerTaxonomy.isSameOrAncestor(modified, conceptId))
+						.collect(Collectors.toList());
+				assertFalse(descendants.isEmpty());
+				for (Long descendant : descendants) {
+					assertEquals(descendant + " parallel " + parallel, toStrings(fullState.getNonIsAFragments(descendant)),
+							toStrings(incrementalState.getNonIsAFragments(descendant)));
+				}
+			}
+		}
+	}
+
+	private RelationshipNormalFormGenerator assertSameChanges(File snapshot, File delta) throws Exception {
+		RelationshipNormalFormGenerator serialGenerator = createGenerator(snapshot, delta);
+		NormalFormState state = serialGenerator.recordNormalFormState();
+		RelationshipChangeProcessor serialChanges = new RelationshipChangeProcessor();
+		serialGenerator.collectNormalFormChanges(serialChanges);
+		assertEquals(0, serialGenerator.getCachedConcepts());
+
+		// The processor updates the relationships of the taxonomy so each run loads its own
+		RelationshipNormalFormGenerator parallelGenerator = createGenerator(snapshot, delta);
+		RelationshipChangeProcessor parallelChanges = new RelationshipChangeProcessor();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			parallelGenerator.collectNormalFormChanges(parallelChanges, pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(0, parallelGenerator.getCachedConcepts());
+
+		RelationshipNormalFormGenerator incrementalGenerator = createGenerator(snapshot, delta);
+		RelationshipChangeProcessor incrementalChanges = new RelationshipChangeProcessor();
+		incrementalGenerator.collectNormalFormChanges(incrementalChanges, null, state);
+		assertEquals(0, incrementalGenerator.getCachedConcepts());
+
+		assertFalse(serialChanges.getAddedStatements().isEmpty());
+		assertEquals(toStrings(serialChanges.getAddedStatements()), toStrings(parallelChanges.getAddedStatements()));
+		assertEquals(toStrings(serialChanges.getRemovedStatements()), toStrings(parallelChanges.getRemovedStatements()));
+		assertEquals(toStrings(serialChanges.getAddedStatements()), toStrings(incrementalChanges.getAddedStatements()));
+		assertEquals(toStrings(serialChanges.getRemovedStatements()), toStrings(incrementalChanges.getRemovedStatements()));
+		return serialGenerator;
+	}
+
+	private File[] writeSyntheticArchives() throws Exception {
+		SyntheticRf2Generator syntheticGenerator = new SyntheticRf2Generator()
+				.setConcepts(CONCEPTS)
+				.setDepth(5)
+				.setFanOut(6);
+		File snapshot = newTemporaryFile();
+		File delta = newTemporaryFile();
+		syntheticGenerator.writeSnapshotArchive(snapshot);
+		syntheticGenerator.writeDeltaArchive(delta, 20, 20);
+		return new File[] {snapshot, delta};
+	}
+
+	private RelationshipNormalFormGenerator createGenerator(File snapshot, File delta) throws Exception {
+		return createGenerator(snapshot, delta, taxonomy -> {});
+	}
+
+	/**
+	 * @param modification changes made to the taxonomy before it is classified
+	 */
+	private RelationshipNormalFormGenerator createGenerator(File snapshot, File delta, Consumer<SnomedTaxonomy> modification) throws Exception {
+		SnomedTaxonomy snomedTaxonomy;
+		try (InputStreamSet snapshotArchives = new InputStreamSet(snapshot);
+			 FileInputStream deltaStream = delta != null ? new FileInputStream(delta) : null) {
+			snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotArchives, deltaStream, false);
+		}
+		modification.accept(snomedTaxonomy);
+		Set<Long> ungroupedRoles = snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT));
+		OntologyService ontologyService = new OntologyService(ungroupedRoles);
+		OWLOntology owlOntology = ontologyService.createOntology(snomedTaxonomy);
+		OWLReasoner reasoner = new ElkReasonerFactory().createReasoner(owlOntology);
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		ReasonerTaxonomy reasonerTaxonomy = new ReasonerTaxonomyWalker(reasoner, new ReasonerTaxonomy(snomedTaxonomy.getConceptIndex())).walk();
+		reasoner.dispose();
+		return new RelationshipNormalFormGenerator(reasonerTaxonomy, snomedTaxonomy,
+				new AxiomRelationshipConversionService(ungroupedRoles).convertAxiomsToRelationships(snomedTaxonomy.getConceptAxiomMap(), true),
+				ontologyService.getPropertyChains(owlOntology));
+	}
+
+	private static Set<String> toStrings(Collection<Relationship> relationships) {
+		Set<String> strings = new HashSet<>();
+		relationships.forEach(relationship -> strings.add(relationship.toString()));
+		return strings;
+	}
+
+	private static Map<Long, Set<String>> toStrings(Map<Long, Set<Relationship>> statements) {
+		Map<Long, Set<String>> strings = new HashMap<>();
+		statements.forEach((conceptId, relationships) -> {
+			Set<String> relationshipStrings = new HashSet<>();
+			relationships.forEach(relationship -> relationshipStrings.add(relationship.toString()));
+			strings.put(conceptId, relationshipStrings);
+		});
+		return strings;
+	}
+}
@@ -4,12 +4,24 @@ import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
-import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.*;
 import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+import org.snomed.otf.owltoolkit.service.classification.TestFileUtil;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
 import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyLoader;
-
+import org.snomed.otf.owltoolkit.testutil.SyntheticRf2Generator;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+import org.snomed.otf.snomedboot.testutil.ZipUtil;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.util.*;
+import java.util.stream.LongStream;
 
 import static org.junit.Assert.*;
 
@@ -48,6 +60,130 @@ public class OntologyServiceTest {
 		assertEquals("PropertyChain{sourceType=400, destinationType=400, inferredType=400}", chains.get(1).toString());
 	}
 
+	@Test
+	public void writeOntologySameAsSavedOntology() throws Exception {
+		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		String[] deltas = {
+				"SnomedCT_MiniRF2_Base_extra_descriptions",
+				"SnomedCT_MiniRF2_OWLDataProperty_delta",
+				"SnomedCT_MiniRF2_Add_Annotation_Property_delta",
+				"SnomedCT_MiniRF2_Secondary_Diabetes_GCI_delta",
+				"SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta"
+		};
+		for (String delta : deltas) {
+			File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/" + delta);
+			SnomedTaxonomy snomedTaxonomy;
+			try (InputStreamSet snapshotArchives = new InputStreamSet(baseRF2SnapshotZip);
+				 FileInputStream deltaStream = new FileInputStream(deltaZip)) {
+				snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotArchives, deltaStream, true);
+			}
+
+			// Without descriptions the section comments name classes by IRI instead of label
+			for (boolean includeDescriptions : new boolean[] {true, false}) {
+				// A new manager each time, the OWL API takes labels for the comments from every ontology of the manager
+				OntologyService service = new OntologyService(SnomedTaxonomy.DEFAULT_NEVER_GROUPED_ROLE_IDS);
+				String ontologyUri = "http://snomed.info/sct/" + delta.hashCode();
+				ByteArrayOutputStream savedOntology = new ByteArrayOutputStream();
+				service.saveOntology(service.createOntology(snomedTaxonomy, ontologyUri, "20180731", includeDescriptions), savedOntology);
+
+				ByteArrayOutputStream writtenOntology = new ByteArrayOutputStream();
+				service.writeOntology(snomedTaxonomy, ontologyUri, "20180731", includeDescriptions, writtenOntology);
+
+				assertEquals(delta + " " + includeDescriptions, savedOntology.toString("UTF-8"), writtenOntology.toString("UTF-8"));
+			}
+		}
+	}
+
+	@Test
+	public void writeOntologySameAsSavedOntologyForSyntheticContent() throws Exception {
+		// Property chains, concrete values and descriptions, defined by axioms or by stated relationships
+		for (boolean statedRelationships : new boolean[] {false, true}) {
+			File snapshot = TestFileUtil.newTemporaryFile();
+			new SyntheticRf2Generator().setConcepts(500).setConcreteValueRatio(0.2).setDescriptions(true)
+					.setStatedRelationships(statedRelationships).writeSnapshotArchive(snapshot);
+			SnomedTaxonomy snomedTaxonomy;
+			try (InputStreamSet snapshotArchives = new InputStreamSet(snapshot)) {
+				snomedTaxonomy = new SnomedTaxonomyBuilder().build(snapshotArchives, null, true);
+			}
+
+			OntologyService service = new OntologyService(SnomedTaxonomy.DEFAULT_NEVER_GROUPED_ROLE_IDS);
+			ByteArrayOutputStream savedOntology = new ByteArrayOutputStream();
+			service.saveOntology(service.createOntology(snomedTaxonomy, null, "20180731", true), savedOntology);
+
+			ByteArrayOutputStream writtenOntology = new ByteArrayOutputStream();
+			service.writeOntology(snomedTaxonomy, null, "20180731", true, writtenOntology);
+
+			assertEquals("Stated relationships " + statedRelationships, savedOntology.toString("UTF-8"), writtenOntology.toString("UTF-8"));
+		}
+	}
+
+	@Test
+	public void createAxiomsFromStatedRelationshipsInBatches() {
+		// Enough concepts for several parallel batches
+		SnomedTaxonomy snomedTaxonomy = new SnomedTaxonomy();
+		long moduleId = Long.parseLong(Concepts.SNOMED_CT_CORE_MODULE);
+		long statedId = Long.parseLong(Concepts.STATED_RELATIONSHIP);
+		snomedTaxonomy.getAllConceptIds().add(Concepts.ROOT_LONG);
+		for (long conceptId = 1_000_000; conceptId < 1_003_500; conceptId++) {
+			// A shallow hierarchy, 50 concepts under the root and the rest spread under them
+			long parentId = conceptId < 1_000_050 ? Concepts.ROOT_LONG : 1_000_000 + conceptId % 50;
+			snomedTaxonomy.getAllConceptIds().add(conceptId);
+			snomedTaxonomy.addOrModifyRelationship(true, conceptId,
+					new Relationship(conceptId * 100, 20200131, moduleId, Concepts.IS_A_LONG, parentId, 0, 0, false, statedId));
+			if (conceptId % 2 == 0) {
+				snomedTaxonomy.getFullyDefinedConceptIds().add(conceptId);
+				snomedTaxonomy.addOrModifyRelationship(true, conceptId,
+						new Relationship(conceptId * 100 + 1, 20200131, moduleId, 363698007L, Concepts.ROOT_LONG, 1, 0, false, statedId));
+			}
+		}
+
+		Map<Long, Set<OWLAxiom>> axioms = ontologyService.createAxiomsFromStatedRelationships(snomedTaxonomy);
+		assertEquals(3500, axioms.size());
+		for (long conceptId = 1_000_000; conceptId < 1_003_500; conceptId++) {
+			// Same as converting each concept on its own
+			AxiomRepresentation representation = new AxiomRepresentation();
+			representation.setPrimitive(snomedTaxonomy.isPrimitive(conceptId));
+			representation.setLeftHandSideNamedConcept(conceptId);
+			Map<Integer, List<Relationship>> relationshipMap = new HashMap<>();
+			for (Relationship relationship : snomedTaxonomy.getStatedRelationships(conceptId)) {
+				relationshipMap.computeIfAbsent(relationship.getGroup(), g -> new ArrayList<>()).add(relationship);
+			}
+			representation.setRightHandSideRelationships(relationshipMap);
+			assertEquals(Collections.singleton(ontologyService.createOwlClassAxiom(representation)), axioms.get(conceptId));
+		}
+
+		Map<Long, Set<OWLAxiom>> subset = ontologyService.createAxiomsFromStatedRelationships(snomedTaxonomy, new HashSet<>(Arrays.asList(1_000_001L, 1_003_498L)));
+		assertEquals(2, subset.size());
+		assertEquals(axioms.get(1_000_001L), subset.get(1_000_001L));
+		assertEquals(axioms.get(1_003_498L), subset.get(1_003_498L));
+	}
+
+	@Test
+	public void entityCache() {
+		OwlEntityCache entityCache = ontologyService.getEntityCache();
+		OWLClass owlClass = entityCache.getOwlClass(Concepts.ROOT_LONG);
+		assertEquals("<http://snomed.info/id/138875005>", owlClass.toString());
+		assertSame(owlClass, entityCache.getOwlClass(Concepts.ROOT_LONG));
+		assertEquals(Concepts.ROOT_LONG.longValue(), entityCache.getConceptId(owlClass));
+		assertEquals(Concepts.ROOT_LONG.longValue(), OntologyHelper.getConceptId(owlClass));
+
+		// Entities created elsewhere are parsed
+		OWLObjectProperty property = new OWLDataFactoryImpl().getOWLObjectProperty(IRI.create("http://snomed.info/id/363698007"));
+		assertEquals(363698007L, entityCache.getConceptId(property));
+		assertEquals(property, entityCache.getOwlObjectProperty(363698007L));
+
+		// Threads asking for the same concept at the same time get the same entity
+		Set<OWLClass> parallelClasses = Collections.newSetFromMap(new IdentityHashMap<>());
+		LongStream.range(0, 10_000).parallel().mapToObj(i -> entityCache.getOwlClass(1_000_000 + i % 100))
+				.forEach(cachedClass -> {
+					synchronized (parallelClasses) {
+						parallelClasses.add(cachedClass);
+					}
+				});
+		assertEquals(100, parallelClasses.size());
+		assertEquals(1_000_042L, entityCache.getConceptId(entityCache.getOwlClass(1_000_042L)));
+	}
+
 	private void addAttribute(String attribute, SnomedTaxonomyLoader snomedTaxonomyLoader) {
 		snomedTaxonomyLoader.newConceptState("", 0L, attribute, "", "1", Concepts.SNOMED_CT_CORE_MODULE, "");
 		snomedTaxonomyLoader.newRelationshipState("", 0L, "101", "", "1", Concepts.SNOMED_CT_CORE_MODULE, attribute, Concepts.CONCEPT_MODEL_ATTRIBUTE, "0", Concepts.IS_A, Concepts.INFERRED_RELATIONSHIP, "");
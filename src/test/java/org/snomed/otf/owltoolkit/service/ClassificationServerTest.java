@@ -0,0 +1,193 @@
+package org.snomed.otf.owltoolkit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.service.classification.TestFileUtil;
+import org.snomed.otf.snomedboot.testutil.ZipUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.readInferredRelationshipLinesTrim;
+
+public class ClassificationServerTest {
+
+	private static final String EDITION = "test";
+	private static final String INACTIVATION_EDITION = "inactivation";
+
+	private final AtomicInteger jobServicesCreated = new AtomicInteger();
+	private ClassificationServer server;
+	private File cacheDirectory;
+
+	@Before
+	public void setup() throws Exception {
+		cacheDirectory = Files.createTempDirectory("snapshot-cache").toFile();
+		server = new ClassificationServer(() -> {
+			jobServicesCreated.incrementAndGet();
+			return new SnomedReasonerService();
+		}, cacheDirectory, 2);
+		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		server.addEdition(EDITION, Collections.singleton(baseRF2SnapshotZip));
+		server.start(0);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testClassifyDeltaAndFetchResults() throws Exception {
+		assertEquals(Collections.singletonList(EDITION), readLines(get("/editions")));
+
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta");
+		File results = classify(deltaZip);
+
+		List<String> lines = readInferredRelationshipLinesTrim(results);
+		assertEquals(3, lines.size());
+		assertTrue(lines.contains("1\t\t100206001\t100205001\t0\t116680003\t900000000000011006\t900000000000451002"));
+		assertEquals(1, jobServicesCreated.get());
+	}
+
+	@Test
+	public void testConcurrentJobsEachHaveTheirOwnService() throws Exception {
+		File propertyChainDelta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta");
+		File emptyDelta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Empty_delta");
+
+		ExecutorService executorService = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<File>> propertyChainResults = new ArrayList<>();
+			List<Future<File>> emptyResults = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				propertyChainResults.add(executorService.submit(() -> classify(propertyChainDelta)));
+				emptyResults.add(executorService.submit(() -> classify(emptyDelta)));
+			}
+			// Jobs share the base edition but never see each other's delta
+			for (Future<File> results : propertyChainResults) {
+				assertEquals(3, readInferredRelationshipLinesTrim(results.get()).size());
+			}
+			for (Future<File> results : emptyResults) {
+				assertEquals(1, readInferredRelationshipLinesTrim(results.get()).size());
+			}
+		} finally {
+			executorService.shutdown();
+		}
+		assertEquals(6, jobServicesCreated.get());
+	}
+
+	@Test
+	public void testConcurrentJobsOverEditionWithInferredOnlySources() throws Exception {
+		// The inactive concept of this snapshot is only the source of inferred relationships, so it is not in the concept list of the cache
+		File snapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_snapshot");
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_delta");
+		server.addEdition(INACTIVATION_EDITION, Collections.singleton(snapshotZip));
+		File expected = TestFileUtil.newTemporaryFile();
+		new SnomedReasonerService().classify("", snapshotZip, deltaZip, expected, SnomedReasonerService.ELK_REASONER_FACTORY, false);
+		Set<String> expectedLines = new HashSet<>(readInferredRelationshipLinesTrim(expected));
+
+		// More jobs than the server runs at once, which read the shared edition at the same time
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<File>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executorService.submit(() -> classify(INACTIVATION_EDITION, deltaZip)));
+			}
+			for (Future<File> result : results) {
+				assertEquals(expectedLines, new HashSet<>(readInferredRelationshipLinesTrim(result.get())));
+			}
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testMetricsOfJob() throws Exception {
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta");
+		HttpURLConnection classifyConnection = post(deltaZip);
+		assertEquals(200, classifyConnection.getResponseCode());
+		String classificationId = classifyConnection.getHeaderField("X-Classification-Id");
+		classifyConnection.getInputStream().close();
+
+		HttpURLConnection connection = get("/metrics/" + classificationId);
+		assertEquals("application/json", connection.getContentType());
+		String json = String.join("\n", readLines(connection));
+		assertTrue(json, json.contains("\"pipeline\": \"classification\""));
+		assertTrue(json, json.contains("\"runId\": \"" + classificationId + "\""));
+		assertTrue(json, json.contains("\"name\": \"Write results to disk\""));
+		assertTrue(json, json.contains("\"processPeakHeapBytes\": "));
+		assertFalse(json, json.contains("\"wallTimeMillis\": -1"));
+
+		// Runs are kept in the registry of the server, not of the job services
+		assertSame(server.getMetricsRegistry().getMetrics(classificationId), server.getMetricsRegistry().getLatest("classification"));
+		assertEquals(404, open("/metrics/unknown").getResponseCode());
+	}
+
+	@Test
+	public void testUnknownEdition() throws IOException {
+		HttpURLConnection connection = open("/classify/unknown");
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.getOutputStream().close();
+		assertEquals(404, connection.getResponseCode());
+	}
+
+	private File classify(File deltaZip) throws IOException {
+		return classify(EDITION, deltaZip);
+	}
+
+	private File classify(String edition, File deltaZip) throws IOException {
+		HttpURLConnection connection = post(edition, deltaZip);
+		assertEquals(200, connection.getResponseCode());
+		assertNotNull(connection.getHeaderField("X-Classification-Id"));
+		File results = TestFileUtil.newTemporaryFile();
+		try (InputStream responseBody = connection.getInputStream()) {
+			Files.copy(responseBody, results.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return results;
+	}
+
+	private HttpURLConnection post(File deltaZip) throws IOException {
+		return post(EDITION, deltaZip);
+	}
+
+	private HttpURLConnection post(String edition, File deltaZip) throws IOException {
+		HttpURLConnection connection = open("/classify/" + edition);
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (OutputStream requestBody = connection.getOutputStream()) {
+			Files.copy(deltaZip.toPath(), requestBody);
+		}
+		return connection;
+	}
+
+	private HttpURLConnection get(String path) throws IOException {
+		HttpURLConnection connection = open(path);
+		assertEquals(200, connection.getResponseCode());
+		return connection;
+	}
+
+	private HttpURLConnection open(String path) throws IOException {
+		return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+	}
+
+	private List<String> readLines(HttpURLConnection connection) throws IOException {
+		try (Scanner scanner = new Scanner(connection.getInputStream(), "UTF-8")) {
+			List<String> lines = new ArrayList<>();
+			while (scanner.hasNextLine()) {
+				lines.add(scanner.nextLine());
+			}
+			return lines;
+		}
+	}
+}
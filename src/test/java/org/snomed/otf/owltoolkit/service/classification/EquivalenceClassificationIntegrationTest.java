@@ -68,4 +68,17 @@ public class EquivalenceClassificationIntegrationTest {
 		assertEquals("Relationship delta should contain new inferences.", 3, relationshipLines.size());
 	}
 
+	@Test
+	public void testClassifyWithElkNativeLoading() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Equivalence_delta");
+
+		File results = TestFileUtil.newTemporaryFile();
+		new SnomedReasonerService().setElkNativeLoading(true)
+				.classify("", baseRF2SnapshotZip, deltaZip, results, ELK_REASONER_FACTORY, false);
+
+		assertEquals("EquivalentConcept delta should contain a pair of concept.", 3, readEquivalentConceptLinesTrim(results).size());
+		assertEquals("Relationship delta should contain new inferences.", 3, readInferredRelationshipLinesTrim(results).size());
+	}
+
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 SNOMED International, http://snomed.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.snomed.otf.owltoolkit.service.classification;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.snomedboot.testutil.ZipUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.snomed.otf.owltoolkit.service.SnomedReasonerService.ELK_REASONER_FACTORY;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.*;
+
+/**
+ * Classifies each fixture with the serial normal form and with several levels of parallelism and compares all classification outputs.
+ */
+public class ParallelNormalFormIntegrationTest {
+
+	// Snapshot and delta fixture pairs covering property chains, GCIs, equivalence, role groups and concrete values
+	private static final String[][] FIXTURES = {
+			{"SnomedCT_MiniRF2_Base_snapshot", "SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta"},
+			{"SnomedCT_MiniRF2_Base_snapshot", "SnomedCT_MiniRF2_Secondary_Diabetes_GCI_delta"},
+			{"SnomedCT_MiniRF2_Base_snapshot", "SnomedCT_MiniRF2_Equivalence_delta"},
+			{"SnomedCT_MiniRF2_Base_snapshot", "SnomedCT_MiniRF2_Add_Laterality_delta"},
+			{"SnomedCT_MiniRF2_Base_snapshot", "SnomedCT_MiniRF2_Anatomy_Transitive_Reflexive_delta"},
+			{"SnomedCT_MiniRF2_GroupSeparation_Additional_Axiom_snapshot", "SnomedCT_MiniRF2_GroupSeparation_Additional_Axiom_delta"},
+			{"SnomedCT_MiniRF2_Base_with_Concepts_as_numbers_snapshot", "SnomedCT_MiniRF2_Concrete_Domain_conversion_delta"},
+			{"SnomedCT_MiniRF2_Base_with_Concepts_as_numbers_snapshot", "SnomedCT_MiniRF2_Concrete_Domain_conversion_classified_delta_with_change"},
+	};
+
+	private static final int[] PARALLELISM = {2, 4, 8};
+
+	@Test
+	public void testParallelNormalFormMatchesSerial() throws IOException, ReasonerServiceException {
+		for (String[] fixture : FIXTURES) {
+			File snapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/" + fixture[0]);
+			File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/" + fixture[1]);
+
+			File serialResults = newTemporaryFile();
+			new SnomedReasonerService().classify("", snapshotZip, deltaZip, serialResults, ELK_REASONER_FACTORY, false);
+
+			for (int parallelism : PARALLELISM) {
+				File parallelResults = newTemporaryFile();
+				new SnomedReasonerService().setNormalFormParallelism(parallelism)
+						.classify("", snapshotZip, deltaZip, parallelResults, ELK_REASONER_FACTORY, false);
+
+				String message = fixture[1] + " with parallelism " + parallelism;
+				assertEquals(message, new HashSet<>(readInferredRelationshipLinesTrim(serialResults)),
+						new HashSet<>(readInferredRelationshipLinesTrim(parallelResults)));
+				assertEquals(message, new HashSet<>(readInferredRelationshipConcreteValuesLinesTrim(serialResults)),
+						new HashSet<>(readInferredRelationshipConcreteValuesLinesTrim(parallelResults)));
+				assertEquals(message, readEquivalentConceptSets(serialResults), readEquivalentConceptSets(parallelResults));
+			}
+		}
+	}
+
+	// Member and set ids are random UUIDs so the sets are compared by referenced component
+	private Set<Set<String>> readEquivalentConceptSets(File results) throws IOException {
+		Map<String, Set<String>> sets = new HashMap<>();
+		List<String> lines = readEquivalentConceptLinesTrim(results);
+		// Skip the header
+		for (String line : lines.subList(1, lines.size())) {
+			String[] columns = line.split("\t", -1);
+			sets.computeIfAbsent(columns[6], setId -> new HashSet<>()).add(columns[5]);
+		}
+		return new HashSet<>(sets.values());
+	}
+}
@@ -18,12 +18,15 @@ package org.snomed.otf.owltoolkit.service.classification;
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
 import org.junit.Test;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.snomed.otf.owltoolkit.metrics.MetricsRegistry;
+import org.snomed.otf.owltoolkit.metrics.PhaseMetrics;
 import org.snomed.otf.owltoolkit.service.ReasonerServiceException;
 import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
 import org.snomed.otf.snomedboot.testutil.ZipUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -97,4 +100,38 @@ public class PropertyChainClassificationIntegrationTest {
 				lines.contains("200213021\t\t0\t900000000000207008\t100206001\t100302001\t3\t762949000\t900000000000011006\t900000000000451002"));
 	}
 
+	@Test
+	public void testElkNativeLoadingMatchesOwlOntology() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta");
+
+		File ontologyResults = TestFileUtil.newTemporaryFile();
+		snomedReasonerService.classify("", baseRF2SnapshotZip, deltaZip, ontologyResults, ELK_REASONER_FACTORY, false);
+
+		File nativeResults = TestFileUtil.newTemporaryFile();
+		new SnomedReasonerService().setElkNativeLoading(true)
+				.classify("", baseRF2SnapshotZip, deltaZip, nativeResults, ELK_REASONER_FACTORY, false);
+
+		assertEquals(new HashSet<>(readInferredRelationshipLinesTrim(ontologyResults)), new HashSet<>(readInferredRelationshipLinesTrim(nativeResults)));
+	}
+
+	@Test
+	public void testLowMemoryMatchesDefault() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Active_Ingredient_Property_Chain_delta");
+
+		File defaultResults = TestFileUtil.newTemporaryFile();
+		snomedReasonerService.classify("", baseRF2SnapshotZip, deltaZip, defaultResults, ELK_REASONER_FACTORY, false);
+
+		File lowMemoryResults = TestFileUtil.newTemporaryFile();
+		MetricsRegistry metricsRegistry = new MetricsRegistry();
+		new SnomedReasonerService().setLowMemory(true).setMetricsRegistry(metricsRegistry)
+				.classify("", baseRF2SnapshotZip, deltaZip, lowMemoryResults, ELK_REASONER_FACTORY, false);
+
+		assertEquals(new HashSet<>(readInferredRelationshipLinesTrim(defaultResults)), new HashSet<>(readInferredRelationshipLinesTrim(lowMemoryResults)));
+		PhaseMetrics releaseAxioms = metricsRegistry.getLatest(SnomedReasonerService.CLASSIFICATION_PIPELINE).getPhases().stream()
+				.filter(phase -> phase.getName().equals("Release OWL axioms")).findFirst().orElseThrow(AssertionError::new);
+		assertTrue(releaseAxioms.getCounts().containsKey("heapReclaimedBytes"));
+	}
+
 }
@@ -26,6 +26,7 @@ import org.snomed.otf.snomedboot.testutil.ZipUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -78,6 +79,27 @@ public class SimpleClassificationIntegrationTest {
 		assertTrue(lines.contains("1\t\t73211009\t113331007\t0\t" + FINDING_SITE + "\t900000000000011006\t900000000000451002"));
 	}
 
+	@Test
+	public void testClassifyNewConceptReusingPreviousNormalForm() throws IOException, ReasonerServiceException {
+		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
+		File emptyDeltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Empty_delta");
+		File deltaZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Add_Diabetes_delta");
+		File stateFile = TestFileUtil.newTemporaryFile();
+		assertTrue(stateFile.delete());
+		SnomedReasonerService incrementalReasonerService = new SnomedReasonerService().setNormalFormStateFile(stateFile);
+
+		// Record the normal form of the base, then classify the delta against it
+		incrementalReasonerService.classify("", baseRF2SnapshotZip, emptyDeltaZip, TestFileUtil.newTemporaryFile(), ELK_REASONER_FACTORY, false);
+		assertTrue(stateFile.isFile());
+		File incrementalResults = TestFileUtil.newTemporaryFile();
+		incrementalReasonerService.classify("", baseRF2SnapshotZip, deltaZip, incrementalResults, ELK_REASONER_FACTORY, false);
+
+		File fullResults = TestFileUtil.newTemporaryFile();
+		snomedReasonerService.classify("", baseRF2SnapshotZip, deltaZip, fullResults, ELK_REASONER_FACTORY, false);
+
+		assertEquals(new HashSet<>(readInferredRelationshipLinesTrim(fullResults)), new HashSet<>(readInferredRelationshipLinesTrim(incrementalResults)));
+	}
+
 	@Test
 	public void testClassifyAnnotationAttributes() throws IOException, ReasonerServiceException {
 		File baseRF2SnapshotZip = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_snapshot");
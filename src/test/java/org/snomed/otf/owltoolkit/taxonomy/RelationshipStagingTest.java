@@ -0,0 +1,75 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RelationshipStagingTest {
+
+	@Test
+	public void testStagedRowsAreAppliedAndBatchesReleased() throws Exception {
+		ConceptIndex conceptIndex = new ConceptIndex();
+		RelationshipStore store = new RelationshipStore(conceptIndex);
+		RelationshipStaging staging = new RelationshipStaging(store, conceptIndex, (operation, sourceId, relationship, relationshipId) -> {
+			if (operation == RelationshipStaging.REMOVE) {
+				store.remove(relationshipId);
+			} else {
+				store.addOrModify(sourceId, relationship);
+			}
+		});
+
+		int threads = 4;
+		// More rows than one batch per thread so full batches are applied while staging
+		int rowsPerThread = 10_000;
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < threads; thread++) {
+				long firstId = (long) thread * rowsPerThread + 1;
+				futures.add(executorService.submit(() -> {
+					for (long id = firstId; id < firstId + rowsPerThread; id++) {
+						staging.stage(RelationshipStaging.ADD_OR_MODIFY, id, new Relationship(id, 20200131, 1, 2, id + 1, 0, 0, false, 3));
+					}
+					// Staged after the add by the same thread so is applied after it
+					staging.stage(RelationshipStaging.REMOVE, firstId, null, firstId);
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			assertTrue(staging.isPending());
+			assertEquals(threads, staging.getBatchCount());
+
+			staging.applyAll();
+
+			assertFalse(staging.isPending());
+			assertEquals(0, staging.getBatchCount());
+			assertEquals(threads * (rowsPerThread - 1), store.size());
+			for (int thread = 0; thread < threads; thread++) {
+				long firstId = (long) thread * rowsPerThread + 1;
+				assertFalse(store.contains(firstId));
+				assertEquals(firstId + 2, store.get(firstId + 1).getDestinationId());
+				assertNotEquals(ConceptIndex.NOT_FOUND, conceptIndex.indexOf(firstId + rowsPerThread));
+			}
+
+			// Threads which staged before the apply get new batches
+			executorService.submit(() -> staging.stage(RelationshipStaging.ADD_OR_MODIFY, 1, new Relationship(1, 20200131, 1, 2, 5, 0, 0, false, 3))).get();
+			assertEquals(1, staging.getBatchCount());
+			assertFalse(store.contains(1));
+			staging.applyAll();
+			assertEquals(0, staging.getBatchCount());
+			assertEquals(5, store.get(1).getDestinationId());
+		} finally {
+			executorService.shutdown();
+			executorService.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+}
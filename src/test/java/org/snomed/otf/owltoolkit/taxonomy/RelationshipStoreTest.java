@@ -0,0 +1,85 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.domain.Relationship;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RelationshipStoreTest {
+
+	@Test
+	public void testRemovedRowsAreCompacted() {
+		ConceptIndex conceptIndex = new ConceptIndex();
+		RelationshipStore store = new RelationshipStore(conceptIndex);
+		int sources = 100;
+		int count = 10_000;
+		for (long sourceId = 1; sourceId <= sources; sourceId++) {
+			conceptIndex.add(sourceId);
+		}
+		for (long id = 1; id <= count; id++) {
+			Relationship relationship = id % 10 == 0 ?
+					new Relationship(id, 20200131, 1, 2, new Relationship.ConcreteValue(Relationship.ConcreteValue.Type.INTEGER, String.valueOf(id)), 1, 0, false, 3) :
+					new Relationship(id, 20200131, 1, 2, id + 1000, (int) (id % 3), 0, false, 3);
+			store.addOrModify(1 + id % sources, relationship);
+		}
+
+		// Remove every odd relationship, enough to compact more than once
+		for (long id = 1; id <= count; id += 2) {
+			assertTrue(store.remove(id));
+		}
+
+		assertEquals(count / 2, store.size());
+		for (long id = 1; id <= count; id++) {
+			Relationship relationship = store.get(id);
+			if (id % 2 == 1) {
+				assertNull(relationship);
+				assertFalse(store.contains(id));
+				continue;
+			}
+			assertEquals(id, relationship.getRelationshipId());
+			if (id % 10 == 0) {
+				assertEquals(String.valueOf(id), relationship.getValue().asString());
+			} else {
+				assertEquals(id + 1000, relationship.getDestinationId());
+				assertEquals(id % 3, relationship.getGroup());
+			}
+		}
+		for (long sourceId = 1; sourceId <= sources; sourceId++) {
+			Set<Relationship> relationships = store.getRelationships(sourceId);
+			assertEquals(sourceId % 2 == 1 ? count / sources : 0, relationships.size());
+		}
+	}
+
+	@Test
+	public void testViewsCreateObjectsOnce() {
+		ConceptIndex conceptIndex = new ConceptIndex();
+		RelationshipStore store = new RelationshipStore(conceptIndex);
+		store.addOrModify(100, new Relationship(1, 20200131, 1, 116680003, 200, 0, 0, false, 3));
+		store.addOrModify(100, new Relationship(2, 20200131, 1, 363698007, 300, 1, 0, false, 3));
+		store.addOrModify(100, new Relationship(3, 20200131, 1, 116676008, 400, 1, 0, false, 3));
+
+		Set<Relationship> relationships = store.getRelationships(100);
+		Iterator<Relationship> first = relationships.iterator();
+		Iterator<Relationship> second = relationships.iterator();
+		while (first.hasNext()) {
+			assertSame(first.next(), second.next());
+		}
+
+		List<Relationship> nonIsA = store.getRelationshipsExcludingType(100, 116680003);
+		assertEquals(2, nonIsA.size());
+		for (Relationship relationship : nonIsA) {
+			assertNotEquals(116680003, relationship.getTypeId());
+		}
+		assertTrue(store.getRelationshipsExcludingType(999, 116680003).isEmpty());
+
+		store.freeze();
+		RelationshipStore overlay = new RelationshipStore(new ConceptIndex(conceptIndex), store);
+		overlay.remove(2);
+		assertEquals(1, overlay.getRelationshipsExcludingType(100, 116680003).size());
+		assertEquals(2, store.getRelationshipsExcludingType(100, 116680003).size());
+	}
+}
@@ -0,0 +1,77 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class RowPipelineTest {
+
+	@Test
+	public void testAllRowsAreHandledInAnyOrder() throws Exception {
+		Set<Integer> handled = ConcurrentHashMap.newKeySet();
+		List<Integer> handledInOrder = Collections.synchronizedList(new ArrayList<>());
+		RowPipeline<Integer> pipeline = new RowPipeline<>(row -> {
+			assertTrue("Row handled more than once", handled.add(row));
+			handledInOrder.add(row);
+		}, 4);
+
+		int readers = 3;
+		int rowsPerReader = 10_000;
+		submitFromReaders(pipeline, readers, rowsPerReader);
+		pipeline.drain();
+		pipeline.shutdown();
+
+		Set<Integer> expected = new HashSet<>();
+		for (int row = 0; row < readers * rowsPerReader; row++) {
+			expected.add(row);
+		}
+		// The same rows whichever order the workers handled them in
+		assertEquals(expected, handled);
+		assertEquals(readers * rowsPerReader, handledInOrder.size());
+		assertTrue(pipeline.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testWorkerFailureIsThrownByDrain() throws Exception {
+		RowPipeline<Integer> pipeline = new RowPipeline<>(row -> {
+			if (row == 5_000) {
+				throw new IllegalStateException("Bad row " + row);
+			}
+		}, 4);
+
+		submitFromReaders(pipeline, 2, 10_000);
+		try {
+			pipeline.drain();
+			fail("Expected the failure of the worker to be thrown");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+			assertEquals("Bad row 5000", e.getCause().getMessage());
+		} finally {
+			pipeline.shutdown();
+		}
+		assertTrue(pipeline.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	private static void submitFromReaders(RowPipeline<Integer> pipeline, int readers, int rowsPerReader) throws Exception {
+		ExecutorService readerThreads = Executors.newFixedThreadPool(readers);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int reader = 0; reader < readers; reader++) {
+				int firstRow = reader * rowsPerReader;
+				futures.add(readerThreads.submit(() -> {
+					for (int row = firstRow; row < firstRow + rowsPerReader; row++) {
+						pipeline.submit(row);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			readerThreads.shutdown();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package org.snomed.otf.owltoolkit.taxonomy;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.StringDocumentSource;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SnomedAxiomParserTest {
+
+	private final SnomedAxiomParser parser = new SnomedAxiomParser(OWLManager.getOWLDataFactory());
+
+	@Test
+	public void testSupportedAxiomsMatchOwlApiParser() throws OWLOntologyCreationException {
+		assertSameAsOwlApi("SubClassOf(:362969004 :404684003)");
+		assertSameAsOwlApi("EquivalentClasses(:432685000 ObjectIntersectionOf(:763158003 ObjectSomeValuesFrom(:411116001 :385268001) " +
+				"ObjectSomeValuesFrom(:609096000 ObjectSomeValuesFrom(:127489000 :387131008))))");
+		assertSameAsOwlApi("SubClassOf(ObjectIntersectionOf(:763158003 ObjectSomeValuesFrom(:766939001 :773905006)) :432685000)");
+		assertSameAsOwlApi("SubClassOf(:322236009 ObjectIntersectionOf(:763158003 ObjectSomeValuesFrom(:609096000 " +
+				"ObjectIntersectionOf(DataHasValue(:100000001001 \"1\"^^xsd:integer) DataHasValue(:100000001002 \"0.5\"^^xsd:decimal)))))");
+		assertSameAsOwlApi("SubClassOf(:322236009 DataHasValue(:100000001003 \"a \\\"quoted\\\" value\"^^xsd:string))");
+		assertSameAsOwlApi("SubClassOf(:322236009 DataHasValue(:100000001003 \"back\\\\slash\"^^xsd:string))");
+		assertSameAsOwlApi("SubObjectPropertyOf(:738774007 :762705008)");
+		assertSameAsOwlApi("SubObjectPropertyOf(ObjectPropertyChain(:246093002 :738774007) :246093002)");
+		assertSameAsOwlApi("SubDataPropertyOf(:100000001001 :762706009)");
+		assertSameAsOwlApi("SubAnnotationPropertyOf(:1295448001 :1295447006)");
+		assertSameAsOwlApi("TransitiveObjectProperty(:738774007)");
+		assertSameAsOwlApi("ReflexiveObjectProperty(:733930001)");
+		assertSameAsOwlApi("SubClassOf(<http://snomed.info/id/362969004> <http://snomed.info/id/404684003>)");
+	}
+
+	@Test
+	public void testUnsupportedSyntaxReturnsNull() {
+		assertNull(parser.parse("SubClassOf(Annotation(:123 \"x\") :362969004 :404684003)"));
+		assertNull(parser.parse("SubClassOf(:362969004 owl:Thing)"));
+		assertNull(parser.parse("SubClassOf(:322236009 DataHasValue(:100000001003 \"plain\"))"));
+		assertNull(parser.parse("SubClassOf(:362969004 :404684003"));
+		assertNull(parser.parse("SubClassOf(:362969004 :404684003) SubClassOf(:404684003 :138875005)"));
+		assertNull(parser.parse("SubClassOf(:322236009 DataHasValue(:100000001003 \"new\\nline\"^^xsd:string))"));
+	}
+
+	private void assertSameAsOwlApi(String axiomString) throws OWLOntologyCreationException {
+		OWLAxiom axiom = parser.parse(axiomString);
+		assertNotNull("Axiom should be within the supported subset: " + axiomString, axiom);
+
+		OWLOntology ontology = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(
+				new StringDocumentSource("Prefix(:=<http://snomed.info/id/>) Ontology(" + axiomString + ")"));
+		Set<OWLAxiom> expected = ontology.getAxioms();
+		assertEquals(1, expected.size());
+		assertEquals(expected.iterator().next(), axiom);
+	}
+
+}
@@ -2,12 +2,19 @@ package org.snomed.otf.owltoolkit.taxonomy;
 
 import org.ihtsdo.otf.snomedboot.ReleaseImportException;
 import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.snomed.otf.owltoolkit.service.classification.TestFileUtil;
+import org.snomed.otf.owltoolkit.testutil.SyntheticRf2Generator;
 import org.snomed.otf.owltoolkit.util.InputStreamSet;
 import org.snomed.otf.snomedboot.testutil.ZipUtil;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.Assert.*;
 
@@ -25,4 +32,216 @@ public class SnomedTaxonomyBuilderTest {
 		assertEquals("The donated axiom must remain present after the US duplicate is made inactive", 1, snomedTaxonomy.getConceptAxiomMap().get(362969004L).size());
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testBuildTaxonomyWithLazyAxiomDeserialisation() throws IOException, ReleaseImportException {
+		File intSnapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/duplicate-axiom-test/int-snapshot");
+		File usSnapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/duplicate-axiom-test/us-snapshot");
+		File usDelta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/duplicate-axiom-test/us-delta");
+		final SnomedTaxonomy eager = new SnomedTaxonomyBuilder().build(new InputStreamSet(new FileInputStream(intSnapshot), new FileInputStream(usSnapshot)),
+				new FileInputStream(usDelta), false);
+		final SnomedTaxonomy lazy = new SnomedTaxonomyBuilder().setLazyAxiomDeserialisation(true)
+				.build(new InputStreamSet(new FileInputStream(intSnapshot), new FileInputStream(usSnapshot)), new FileInputStream(usDelta), false);
+
+		assertEquals(eager.getAxiomCount(), lazy.getAxiomCount());
+		assertEquals(eager.getAxiomsById(), lazy.getAxiomsById());
+		assertEquals(1, lazy.getConceptAxiomMap().get(362969004L).size());
+	}
+
+	@Test
+	public void testLazyAxiomsAreOnlyDeserialisedForConceptsRead() throws IOException, ReleaseImportException {
+		File baseSnapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_CompleteOwl_snapshot");
+		final SnomedTaxonomy eager = new SnomedTaxonomyBuilder().build(new InputStreamSet(baseSnapshot), null, false);
+		final SnomedTaxonomy lazy = new SnomedTaxonomyBuilder().setLazyAxiomDeserialisation(true).build(new InputStreamSet(baseSnapshot), null, false);
+
+		// Listing the concepts with axioms does not deserialise any of them
+		Set<Long> conceptIds = lazy.getConceptAxiomMap().keySet();
+		assertEquals(eager.getConceptAxiomMap().keySet(), conceptIds);
+		assertTrue("Expected several concepts with axioms but found " + conceptIds, conceptIds.size() > 1);
+		assertTrue(conceptIds.stream().allMatch(lazy::hasPendingAxioms));
+
+		Long readConceptId = conceptIds.iterator().next();
+		assertEquals(eager.getAxiomsForConcept(readConceptId), lazy.getAxiomsForConcept(readConceptId));
+		assertFalse(lazy.hasPendingAxioms(readConceptId));
+		for (Long conceptId : conceptIds) {
+			if (!conceptId.equals(readConceptId)) {
+				assertTrue("Concept " + conceptId + " was not read so its axioms must still be strings", lazy.hasPendingAxioms(conceptId));
+			}
+		}
+		assertEquals(eager.getAxiomCount(), lazy.getAxiomCount());
+
+		// Reading through the map deserialises the same axioms as loading eagerly
+		for (Long conceptId : conceptIds) {
+			assertEquals(new HashSet<>(eager.getConceptAxiomMap().get(conceptId)), new HashSet<>(lazy.getConceptAxiomMap().get(conceptId)));
+		}
+		assertFalse(conceptIds.stream().anyMatch(lazy::hasPendingAxioms));
+	}
+
+	@Test
+	public void testBuildTaxonomyUsingSnapshotCache() throws IOException, ReleaseImportException {
+		final SnomedTaxonomyBuilder builder = new SnomedTaxonomyBuilder();
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_with_Axioms_snapshot");
+		File delta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Add_Diabetes_delta");
+		File cacheDirectory = Files.createTempDirectory("snapshot-cache").toFile();
+
+		SnomedTaxonomy fromRf2 = builder.build(new InputStreamSet(new FileInputStream(snapshot)), new FileInputStream(delta), false);
+		SnomedTaxonomy cacheMiss = builder.build(Collections.singleton(snapshot), new FileInputStream(delta), cacheDirectory, false);
+		File[] cacheFiles = cacheDirectory.listFiles();
+		assertNotNull(cacheFiles);
+		assertEquals("Snapshot cache file should be written on first build", 1, cacheFiles.length);
+		SnomedTaxonomy cacheHit = builder.build(Collections.singleton(snapshot), new FileInputStream(delta), cacheDirectory, false);
+
+		// Axioms are cached as the expressions in the reference set file, not as strings rendered from the OWL API objects
+		String cacheContent = new String(Files.readAllBytes(cacheFiles[0].toPath()), StandardCharsets.UTF_8);
+		List<String> axiomRows = Files.readAllLines(new File("src/test/resources/SnomedCT_MiniRF2_Base_with_Axioms_snapshot/Snapshot/Terminology/" +
+				"sct2_sRefset_OWLAxiomSnapshot_INT_20180731.txt").toPath());
+		for (String axiomRow : axiomRows.subList(1, axiomRows.size())) {
+			String[] columns = axiomRow.split("\t");
+			if (columns.length == 7 && columns[2].equals("1")) {
+				assertTrue("Cache should hold the axiom expression as loaded " + columns[6], cacheContent.contains(columns[6]));
+			}
+		}
+
+		for (SnomedTaxonomy snomedTaxonomy : new SnomedTaxonomy[]{cacheMiss, cacheHit}) {
+			assertEquals(fromRf2.getAllConceptIds(), snomedTaxonomy.getAllConceptIds());
+			assertEquals(fromRf2.getFullyDefinedConceptIds(), snomedTaxonomy.getFullyDefinedConceptIds());
+			assertEquals(fromRf2.getStatedRelationships().keySet(), snomedTaxonomy.getStatedRelationships().keySet());
+			assertEquals(fromRf2.getAxiomsById().keySet(), snomedTaxonomy.getAxiomsById().keySet());
+			for (String axiomId : fromRf2.getAxiomsById().keySet()) {
+				assertEquals(fromRf2.getAxiomsById().get(axiomId), snomedTaxonomy.getAxiomsById().get(axiomId));
+			}
+			assertEquals(fromRf2.getOntologyNamespaces(), snomedTaxonomy.getOntologyNamespaces());
+			assertEquals(fromRf2.getUngroupedRolesByContentType(), snomedTaxonomy.getUngroupedRolesByContentType());
+		}
+	}
+
+	@Test
+	public void testBuildTaxonomyFromSelectedSnapshotEntries() throws IOException, ReleaseImportException {
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_with_Axioms_snapshot");
+
+		SnomedTaxonomy fromRf2 = new SnomedTaxonomyBuilder().build(new InputStreamSet(new FileInputStream(snapshot)), null, false);
+		SnomedTaxonomy fromSelectedEntries;
+		try (InputStreamSet selectedEntries = SnomedTaxonomyBuilder.openSnapshotArchives(Collections.singleton(snapshot), false)) {
+			fromSelectedEntries = new SnomedTaxonomyBuilder().build(selectedEntries, null, false);
+		}
+
+		assertEquals(fromRf2.getAllConceptIds(), fromSelectedEntries.getAllConceptIds());
+		assertEquals(fromRf2.getStatedRelationships().keySet(), fromSelectedEntries.getStatedRelationships().keySet());
+		assertEquals(fromRf2.getAxiomsById().keySet(), fromSelectedEntries.getAxiomsById().keySet());
+		assertEquals(fromRf2.getOntologyNamespaces(), fromSelectedEntries.getOntologyNamespaces());
+
+		assertTrue(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Terminology/sct2_Concept_Snapshot_INT_20180731.txt", false));
+		assertTrue(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Terminology/sct2_sRefset_OWLExpressionSnapshot_INT_20180731.txt", false));
+		assertFalse(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Full/Terminology/sct2_Concept_Full_INT_20180731.txt", false));
+		assertFalse(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Terminology/sct2_Description_Snapshot-en_INT_20180731.txt", false));
+		assertTrue(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Terminology/sct2_Description_Snapshot-en_INT_20180731.txt", true));
+		assertFalse(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Refset/Map/der2_iisssccRefset_ExtendedMapSnapshot_INT_20180731.txt", true));
+		assertTrue(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Terminology/sct2_RelationshipConcreteValues_Snapshot_INT_20210731.txt", false));
+		assertTrue(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Refset/Metadata/der2_cissccRefset_MRCMAttributeDomainSnapshot_INT_20180731.txt", false));
+		assertFalse(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Refset/Language/der2_cRefset_LanguageSnapshot-en_INT_20180731.txt", false));
+		assertTrue(SnomedTaxonomyBuilder.isSnapshotFileNeeded("Snapshot/Refset/Language/der2_cRefset_LanguageSnapshot-en_INT_20180731.txt", true));
+	}
+
+	@Test
+	public void testBuildOverlayLeavesBaseUnchanged() throws IOException, ReleaseImportException {
+		final SnomedTaxonomyBuilder builder = new SnomedTaxonomyBuilder();
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Base_with_Axioms_snapshot");
+		File delta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Add_Diabetes_delta");
+
+		SnomedTaxonomy fromRf2 = builder.build(new InputStreamSet(new FileInputStream(snapshot)), new FileInputStream(delta), false);
+		SnomedTaxonomy snapshotOnly = builder.build(new InputStreamSet(new FileInputStream(snapshot)), null, false);
+		SnomedTaxonomy base = builder.build(new InputStreamSet(new FileInputStream(snapshot)), null, false);
+		base.freeze();
+		SnomedTaxonomy overlay = builder.buildOverlay(base, new FileInputStream(delta), false);
+		SnomedTaxonomy secondOverlay = builder.buildOverlay(base, new FileInputStream(delta), false);
+
+		assertSameContent(fromRf2, overlay);
+		assertSameContent(fromRf2, secondOverlay);
+		assertSameContent(snapshotOnly, base);
+	}
+
+	@Test
+	public void testOverlayOfFrozenBaseNeverAddsToBase() throws IOException, ReleaseImportException {
+		final SnomedTaxonomyBuilder builder = new SnomedTaxonomyBuilder();
+		File snapshot = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_snapshot");
+		File delta = ZipUtil.zipDirectoryRemovingCommentsAndBlankLines("src/test/resources/SnomedCT_MiniRF2_Concept_Inactivation_delta");
+		File cacheFile = builder.buildSnapshotCache(Collections.singleton(snapshot), Files.createTempDirectory("snapshot-cache").toFile(), false);
+		SnomedTaxonomy base = builder.build(cacheFile, null, false);
+		try {
+			new SnomedTaxonomy(base);
+			fail("Expected an overlay of a base which is not frozen to be rejected");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+
+		// The inactive concept is only known from its inferred relationships
+		long inactiveConceptId = 404684003L;
+		assertFalse(base.getAllConceptIds().contains(inactiveConceptId));
+		base.freeze();
+		assertTrue(base.getConceptIndex().isFrozen());
+		int baseConcepts = base.getConceptIndex().size();
+		assertNotEquals(ConceptIndex.NOT_FOUND, base.getConceptIndex().indexOf(inactiveConceptId));
+
+		SnomedTaxonomy overlay = builder.buildOverlay(base, new FileInputStream(delta), false);
+		assertFalse(overlay.getInferredRelationships(inactiveConceptId).isEmpty());
+		for (Long conceptId : overlay.getInactivatedConcepts()) {
+			overlay.getInferredRelationships(conceptId);
+			overlay.getInactiveInferredRelationships(conceptId);
+		}
+		assertEquals(baseConcepts, base.getConceptIndex().size());
+		try {
+			base.getConceptIndex().add(1L);
+			fail("Expected a frozen concept index to reject new concepts");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		try {
+			base.removeRelationship(false, Long.toString(inactiveConceptId), "200008001");
+			fail("Expected a frozen taxonomy to reject relationship changes");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testLazyOverlayAxiomsAreDeserialisedOnOneThread() throws IOException, ReleaseImportException {
+		// Enough new and changed concepts in the delta for several parallel deserialisation batches
+		SyntheticRf2Generator generator = new SyntheticRf2Generator().setConcepts(1000);
+		File snapshot = TestFileUtil.newTemporaryFile();
+		File delta = TestFileUtil.newTemporaryFile();
+		generator.writeSnapshotArchive(snapshot);
+		generator.writeDeltaArchive(delta, 1200, 300);
+
+		SnomedTaxonomy eager = new SnomedTaxonomyBuilder().build(new InputStreamSet(snapshot), new FileInputStream(delta), false);
+		SnomedTaxonomy base = new SnomedTaxonomyBuilder().build(new InputStreamSet(snapshot), null, false);
+		base.freeze();
+		SnomedTaxonomyBuilder lazyBuilder = new SnomedTaxonomyBuilder().setLazyAxiomDeserialisation(true);
+
+		// All at once
+		SnomedTaxonomy overlay = lazyBuilder.buildOverlay(base, new FileInputStream(delta), false);
+		assertEquals(eager.getAxiomCount(), overlay.getAxiomCount());
+		assertEquals(eager.getAxiomsById(), overlay.getAxiomsById());
+
+		// Concept by concept from many threads
+		SnomedTaxonomy readOverlay = lazyBuilder.buildOverlay(base, new FileInputStream(delta), false);
+		Map<Long, Set<OWLAxiom>> readAxioms = new ConcurrentHashMap<>();
+		eager.getAllConceptIds().parallelStream().forEach(conceptId -> readAxioms.put(conceptId, new HashSet<>(readOverlay.getAxiomsForConcept(conceptId))));
+		for (Long conceptId : eager.getAllConceptIds()) {
+			assertEquals(new HashSet<>(eager.getAxiomsForConcept(conceptId)), readAxioms.get(conceptId));
+		}
+	}
+
+	private void assertSameContent(SnomedTaxonomy expected, SnomedTaxonomy actual) {
+		assertEquals(expected.getAllConceptIds(), actual.getAllConceptIds());
+		assertEquals(expected.getFullyDefinedConceptIds(), actual.getFullyDefinedConceptIds());
+		assertEquals(expected.getInactivatedConcepts(), actual.getInactivatedConcepts());
+		assertEquals(expected.getStatedRelationships().keySet(), actual.getStatedRelationships().keySet());
+		assertEquals(expected.getAxiomsById().keySet(), actual.getAxiomsById().keySet());
+		for (Long conceptId : expected.getAllConceptIds()) {
+			assertEquals(new HashSet<>(expected.getConceptAxiomMap().getOrDefault(conceptId, Collections.emptyList())),
+					new HashSet<>(actual.getConceptAxiomMap().getOrDefault(conceptId, Collections.emptyList())));
+			assertEquals(expected.getInferredRelationships(conceptId), actual.getInferredRelationships(conceptId));
+			assertEquals(expected.getSubTypeIds(conceptId), actual.getSubTypeIds(conceptId));
+		}
+	}
+
+}
@@ -0,0 +1,625 @@
+package org.snomed.otf.owltoolkit.testutil;
+
+import org.snomed.otf.owltoolkit.constants.Concepts;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes RF2 snapshot and delta archives of synthetic content at any size, for load and scaling tests.
+ * Concepts form a hierarchy of configurable depth and fan-out below the root. Each concept is defined by an axiom with its parent
+ * and a number of role groups whose values are earlier concepts. Some definitions include an ungrouped attribute and a concrete value.
+ * Attributes have their own hierarchy, MRCM attribute domain members and optionally property chains and transitive properties.
+ * The inferred relationships are the stated definitions without the role groups inherited from ancestors, so classifying
+ * the content gives changes for most concepts, as the normal form adds the inherited groups which are not redundant.
+ * The same settings always give the same content. Kept with the tests so small releases can be generated for tests
+ * as well as large ones for the benchmarks.
+ *
+ * Can be run from the command line with settings as name=value arguments, for example:
+ * <pre>concepts=100000 fanOut=8 depth=12 snapshot=snapshot.zip delta=delta.zip</pre>
+ */
+public class SyntheticRf2Generator {
+
+	public static final String EFFECTIVE_TIME = "20200131";
+
+	private static final String CORE_MODULE = Concepts.SNOMED_CT_CORE_MODULE;
+	private static final String MODEL_MODULE = Concepts.SNOMED_CT_MODEL_COMPONENT_MODULE;
+	private static final String ROLE_GROUP = "609096000";
+	private static final String ALL_SNOMED_CT_CONTENT = "723596005";
+	private static final String MANDATORY_CONCEPT_MODEL_RULE = "723597001";
+	private static final String US_ENGLISH_LANGUAGE_REFSET = "900000000000509007";
+	private static final String ENTIRE_TERM_CASE_SENSITIVE = "900000000000017005";
+
+	private static final String CONCEPT_HEADER = "id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId";
+	private static final String RELATIONSHIP_HEADER = "id\teffectiveTime\tactive\tmoduleId\tsourceId\tdestinationId\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId";
+	private static final String CONCRETE_RELATIONSHIP_HEADER = "id\teffectiveTime\tactive\tmoduleId\tsourceId\tvalue\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId";
+	private static final String OWL_REFSET_HEADER = "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\towlExpression";
+	private static final String MRCM_ATTRIBUTE_DOMAIN_HEADER = "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\tdomainId\tgrouped\tattributeCardinality\tattributeInGroupCardinality\truleStrengthId\tcontentTypeId";
+	private static final String DESCRIPTION_HEADER = "id\teffectiveTime\tactive\tmoduleId\tconceptId\tlanguageCode\ttypeId\tterm\tcaseSignificanceId";
+	private static final String LANGUAGE_REFSET_HEADER = "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\tacceptabilityId";
+
+	private static final long FIRST_CONCEPT_ITEM = 1_000_000L;
+	private static final long FIRST_ATTRIBUTE_ITEM = 900_000L;
+	// Relationships and descriptions of the model concepts and attributes
+	private static final long FIRST_MODEL_ITEM = 100_000L;
+
+	// Model concepts needed to load and classify content, with their parents
+	private static final String[][] MODEL_CONCEPTS = {
+			{Concepts.SNOMED_CT_MODEL_COMPONENT, Concepts.ROOT},
+			{Concepts.IS_A, Concepts.SNOMED_CT_MODEL_COMPONENT},
+			{Concepts.CONCEPT_MODEL_ATTRIBUTE, Concepts.SNOMED_CT_MODEL_COMPONENT},
+			{Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE, Concepts.CONCEPT_MODEL_ATTRIBUTE},
+			{Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE, Concepts.CONCEPT_MODEL_ATTRIBUTE},
+			{Concepts.ALL_PRECOORDINATED_CONTENT, Concepts.SNOMED_CT_MODEL_COMPONENT},
+			{ALL_SNOMED_CT_CONTENT, Concepts.ALL_PRECOORDINATED_CONTENT}
+	};
+
+	private int concepts = 10_000;
+	private int depth = 12;
+	private int fanOut = 8;
+	private double roleGroupsPerConcept = 2;
+	private int attributesPerGroup = 3;
+	private int objectAttributes = 20;
+	private int propertyChains = 1;
+	private double concreteValueRatio = 0.05;
+	private double fullyDefinedRatio = 0.3;
+	private boolean descriptions;
+	private boolean statedRelationships;
+	private long seed = 1;
+
+	private int[] parents;
+	private long modelItem;
+
+	/**
+	 * @param concepts number of concepts below the root, not including the model concepts and attributes.
+	 */
+	public SyntheticRf2Generator setConcepts(int concepts) {
+		this.concepts = concepts;
+		return this;
+	}
+
+	/**
+	 * @param depth maximum depth of the hierarchy, once reached the deepest level takes all remaining concepts.
+	 */
+	public SyntheticRf2Generator setDepth(int depth) {
+		this.depth = depth;
+		return this;
+	}
+
+	/**
+	 * @param fanOut number of children of each concept above the deepest level.
+	 */
+	public SyntheticRf2Generator setFanOut(int fanOut) {
+		this.fanOut = fanOut;
+		return this;
+	}
+
+	/**
+	 * @param roleGroupsPerConcept average number of role groups in each definition, the fraction is the chance of one more group.
+	 */
+	public SyntheticRf2Generator setRoleGroupsPerConcept(double roleGroupsPerConcept) {
+		this.roleGroupsPerConcept = roleGroupsPerConcept;
+		return this;
+	}
+
+	/**
+	 * @param attributesPerGroup maximum number of attributes in a role group, each group has between one and this number.
+	 */
+	public SyntheticRf2Generator setAttributesPerGroup(int attributesPerGroup) {
+		this.attributesPerGroup = attributesPerGroup;
+		return this;
+	}
+
+	public SyntheticRf2Generator setObjectAttributes(int objectAttributes) {
+		this.objectAttributes = objectAttributes;
+		return this;
+	}
+
+	/**
+	 * @param propertyChains number of property chains, each made of a transitive attribute and an attribute chained over it.
+	 */
+	public SyntheticRf2Generator setPropertyChains(int propertyChains) {
+		this.propertyChains = propertyChains;
+		return this;
+	}
+
+	/**
+	 * @param concreteValueRatio fraction of concepts with a concrete value in their definition.
+	 */
+	public SyntheticRf2Generator setConcreteValueRatio(double concreteValueRatio) {
+		this.concreteValueRatio = concreteValueRatio;
+		return this;
+	}
+
+	public SyntheticRf2Generator setFullyDefinedRatio(double fullyDefinedRatio) {
+		this.fullyDefinedRatio = fullyDefinedRatio;
+		return this;
+	}
+
+	/**
+	 * @param descriptions write a fully specified name and language reference set member for each concept.
+	 */
+	public SyntheticRf2Generator setDescriptions(boolean descriptions) {
+		this.descriptions = descriptions;
+		return this;
+	}
+
+	/**
+	 * @param statedRelationships write concept definitions as stated relationships rather than OWL axioms, like releases before 2019.
+	 */
+	public SyntheticRf2Generator setStatedRelationships(boolean statedRelationships) {
+		this.statedRelationships = statedRelationships;
+		return this;
+	}
+
+	public SyntheticRf2Generator setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public void writeSnapshotArchive(File archive) throws IOException {
+		validate();
+		parents = createHierarchy(concepts);
+		try (ArchiveWriter writer = new ArchiveWriter(archive, "Snapshot")) {
+			modelItem = FIRST_MODEL_ITEM;
+			writeConcepts(writer, 0, concepts, true);
+			writeDefinitions(writer, 0, concepts, true);
+			writeOntologyRefset(writer);
+			writeMrcmAttributeDomain(writer);
+			if (descriptions) {
+				writeDescriptions(writer, 0, concepts, true, EFFECTIVE_TIME);
+			}
+		}
+	}
+
+	/**
+	 * Writes an unpublished delta for the snapshot written with the same settings, as authoring would before classification.
+	 * The delta has new concepts and changed definitions but no inferred relationships.
+	 * @param newConcepts number of concepts added below existing concepts.
+	 * @param changedConcepts number of existing concepts given an additional role group, spread evenly through the hierarchy.
+	 */
+	public void writeDeltaArchive(File archive, int newConcepts, int changedConcepts) throws IOException {
+		validate();
+		parents = createHierarchy(concepts + newConcepts);
+		try (ArchiveWriter writer = new ArchiveWriter(archive, "Delta")) {
+			writer.startEntry("sct2_Concept", "", CONCEPT_HEADER);
+			for (int i = concepts; i < concepts + newConcepts; i++) {
+				writeConcept(writer, conceptId(i), isFullyDefined(i), "");
+			}
+			writer.startEntry("sct2_sRefset_OWLAxiom", "", OWL_REFSET_HEADER);
+			writer.startEntry("sct2_StatedRelationship", "", RELATIONSHIP_HEADER);
+			for (int i = concepts; i < concepts + newConcepts; i++) {
+				writeDefinition(writer, i, "", false, false);
+			}
+			if (changedConcepts > 0) {
+				int step = Math.max(1, concepts / changedConcepts);
+				for (int i = step / 2, changed = 0; i < concepts && changed < changedConcepts; i += step, changed++) {
+					writeDefinition(writer, i, "", true, false);
+				}
+			}
+			if (descriptions) {
+				writeDescriptions(writer, concepts, concepts + newConcepts, false, "");
+			}
+		}
+	}
+
+	private void validate() {
+		if (concepts < 1 || depth < 1 || fanOut < 1 || attributesPerGroup < 1 || objectAttributes < 2 * propertyChains + 2) {
+			throw new IllegalArgumentException("Generator settings must give at least one concept, one level, one child, one attribute per group " +
+					"and enough object attributes for the property chains, an ungrouped attribute and a grouped attribute.");
+		}
+	}
+
+	/**
+	 * @return the parent index of each concept, -1 for children of the root. Levels are filled breadth first so
+	 * a larger size keeps the parents of the smaller size.
+	 */
+	private int[] createHierarchy(int size) {
+		int[] parents = new int[size];
+		int levelEnd = Math.min(depth == 1 ? size : fanOut, size);
+		Arrays.fill(parents, 0, levelEnd, -1);
+		int parentStart = 0;
+		int level = 1;
+		for (int levelStart = levelEnd; levelStart < size; levelStart = levelEnd) {
+			level++;
+			int parentCount = levelStart - parentStart;
+			// The deepest level takes all remaining concepts, spread over the level above
+			boolean deepest = level == depth;
+			levelEnd = deepest ? size : (int) Math.min(size, levelStart + (long) parentCount * fanOut);
+			for (int i = levelStart; i < levelEnd; i++) {
+				int offset = i - levelStart;
+				parents[i] = parentStart + (deepest ? offset % parentCount : offset / fanOut);
+			}
+			parentStart = levelStart;
+		}
+		return parents;
+	}
+
+	private void writeConcepts(ArchiveWriter writer, int from, int to, boolean includeModel) throws IOException {
+		writer.startEntry("sct2_Concept", EFFECTIVE_TIME, CONCEPT_HEADER);
+		if (includeModel) {
+			writer.row(Concepts.ROOT, EFFECTIVE_TIME, "1", CORE_MODULE, Concepts.PRIMITIVE);
+			for (String[] modelConcept : MODEL_CONCEPTS) {
+				writer.row(modelConcept[0], EFFECTIVE_TIME, "1", MODEL_MODULE, Concepts.PRIMITIVE);
+			}
+			for (int a = 0; a < objectAttributes; a++) {
+				writer.row(objectAttributeId(a), EFFECTIVE_TIME, "1", MODEL_MODULE, Concepts.PRIMITIVE);
+			}
+			writer.row(dataAttributeId(), EFFECTIVE_TIME, "1", MODEL_MODULE, Concepts.PRIMITIVE);
+		}
+		for (int i = from; i < to; i++) {
+			writeConcept(writer, conceptId(i), isFullyDefined(i), EFFECTIVE_TIME);
+		}
+	}
+
+	private void writeConcept(ArchiveWriter writer, String conceptId, boolean fullyDefined, String effectiveTime) throws IOException {
+		writer.row(conceptId, effectiveTime, "1", CORE_MODULE, fullyDefined ? Concepts.FULLY_DEFINED : Concepts.PRIMITIVE);
+	}
+
+	private void writeDefinitions(ArchiveWriter writer, int from, int to, boolean includeModel) throws IOException {
+		writer.startEntry("sct2_sRefset_OWLAxiom", EFFECTIVE_TIME, OWL_REFSET_HEADER);
+		writer.startEntry("sct2_StatedRelationship", EFFECTIVE_TIME, RELATIONSHIP_HEADER);
+		writer.startEntry("sct2_Relationship", EFFECTIVE_TIME, RELATIONSHIP_HEADER);
+		writer.startEntry("sct2_RelationshipConcreteValues", EFFECTIVE_TIME, CONCRETE_RELATIONSHIP_HEADER);
+		if (includeModel) {
+			for (String[] modelConcept : MODEL_CONCEPTS) {
+				writeModelDefinition(writer, modelConcept[0], modelConcept[1], "SubClassOf(:%s :%s)");
+			}
+			for (int a = 0; a < objectAttributes; a++) {
+				writeModelDefinition(writer, objectAttributeId(a), Concepts.CONCEPT_MODEL_OBJECT_ATTRIBUTE, "SubObjectPropertyOf(:%s :%s)");
+			}
+			writeModelDefinition(writer, dataAttributeId(), Concepts.CONCEPT_MODEL_DATA_ATTRIBUTE, "SubDataPropertyOf(:%s :%s)");
+			for (int c = 0; c < propertyChains; c++) {
+				String transitive = objectAttributeId(1 + 2 * c);
+				String chained = objectAttributeId(2 + 2 * c);
+				writer.write("sct2_sRefset_OWLAxiom", memberId("transitive", transitive), EFFECTIVE_TIME, "1", MODEL_MODULE,
+						Concepts.OWL_AXIOM_REFERENCE_SET, transitive, "TransitiveObjectProperty(:" + transitive + ")");
+				writer.write("sct2_sRefset_OWLAxiom", memberId("chain", chained), EFFECTIVE_TIME, "1", MODEL_MODULE,
+						Concepts.OWL_AXIOM_REFERENCE_SET, chained, "SubObjectPropertyOf(ObjectPropertyChain(:" + chained + " :" + transitive + ") :" + chained + ")");
+			}
+		}
+		for (int i = from; i < to; i++) {
+			writeDefinition(writer, i, EFFECTIVE_TIME, false, true);
+		}
+	}
+
+	private void writeModelDefinition(ArchiveWriter writer, String conceptId, String parentId, String axiomFormat) throws IOException {
+		writer.write("sct2_sRefset_OWLAxiom", memberId("axiom", conceptId), EFFECTIVE_TIME, "1", MODEL_MODULE,
+				Concepts.OWL_AXIOM_REFERENCE_SET, conceptId, String.format(axiomFormat, conceptId, parentId));
+		writer.write("sct2_Relationship", sctid(modelItem++, "02"), EFFECTIVE_TIME, "1", MODEL_MODULE, conceptId, parentId, "0", Concepts.IS_A,
+				Concepts.INFERRED_RELATIONSHIP, Concepts.EXISTENTIAL_RESTRICTION_MODIFIER);
+	}
+
+	/**
+	 * Writes the axiom or stated relationships of a concept and optionally its inferred relationships.
+	 * Relationship ids depend only on the concept and the position of the relationship in the definition, so a changed
+	 * definition keeps the ids of the unchanged relationships.
+	 * @param changed adds a role group to the end of the definition, for changes in a delta.
+	 */
+	private void writeDefinition(ArchiveWriter writer, int index, String effectiveTime, boolean changed, boolean inferred) throws IOException {
+		String conceptId = conceptId(index);
+		String parentId = parents[index] == -1 ? Concepts.ROOT : conceptId(parents[index]);
+		Random random = new Random(seed * 31 + index);
+
+		// Attribute type and value pairs of each role group, group 0 holds the ungrouped attribute
+		List<List<String[]>> groups = new ArrayList<>();
+		groups.add(new ArrayList<>());
+		if (index > 0 && random.nextInt(4) == 0) {
+			groups.get(0).add(new String[]{objectAttributeId(0), valueId(index, random)});
+		}
+		String concreteValue = index > 0 && random.nextDouble() < concreteValueRatio ? Integer.toString(1 + random.nextInt(10)) : null;
+		int groupCount = index == 0 ? 0 : (int) roleGroupsPerConcept + (random.nextDouble() < roleGroupsPerConcept % 1 ? 1 : 0) + (changed ? 1 : 0);
+		for (int g = 0; g < groupCount; g++) {
+			List<String[]> group = new ArrayList<>();
+			// Attribute types are consecutive from a random start so they are different within a group
+			int groupedAttributes = objectAttributes - 1;
+			int attributes = Math.min(1 + random.nextInt(attributesPerGroup), groupedAttributes);
+			int firstType = random.nextInt(groupedAttributes);
+			for (int a = 0; a < attributes; a++) {
+				group.add(new String[]{objectAttributeId(1 + (firstType + a) % groupedAttributes), valueId(index, random)});
+			}
+			groups.add(group);
+		}
+
+		if (statedRelationships) {
+			writeRelationships(writer, "sct2_StatedRelationship", effectiveTime, index, parentId, groups, false);
+		} else {
+			StringBuilder axiom = new StringBuilder(isFullyDefined(index) ? "EquivalentClasses(:" : "SubClassOf(:").append(conceptId).append(" ");
+			if (groups.size() == 1 && groups.get(0).isEmpty() && concreteValue == null) {
+				axiom.append(":").append(parentId);
+			} else {
+				axiom.append("ObjectIntersectionOf(:").append(parentId);
+				for (String[] attribute : groups.get(0)) {
+					axiom.append(" ObjectSomeValuesFrom(:").append(attribute[0]).append(" :").append(attribute[1]).append(")");
+				}
+				if (concreteValue != null) {
+					axiom.append(" DataHasValue(:").append(dataAttributeId()).append(" \"").append(concreteValue).append("\"^^xsd:integer)");
+				}
+				for (List<String[]> group : groups.subList(1, groups.size())) {
+					axiom.append(" ObjectSomeValuesFrom(:").append(ROLE_GROUP).append(" ");
+					if (group.size() > 1) {
+						axiom.append("ObjectIntersectionOf(");
+					}
+					for (int a = 0; a < group.size(); a++) {
+						axiom.append(a > 0 ? " " : "").append("ObjectSomeValuesFrom(:").append(group.get(a)[0]).append(" :").append(group.get(a)[1]).append(")");
+					}
+					axiom.append(group.size() > 1 ? "))" : ")");
+				}
+				axiom.append(")");
+			}
+			axiom.append(")");
+			writer.write("sct2_sRefset_OWLAxiom", memberId("axiom", conceptId), effectiveTime, "1", CORE_MODULE,
+					Concepts.OWL_AXIOM_REFERENCE_SET, conceptId, axiom.toString());
+		}
+
+		if (!inferred) {
+			return;
+		}
+		writeRelationships(writer, "sct2_Relationship", effectiveTime, index, parentId, groups, true);
+		if (concreteValue != null) {
+			writer.write("sct2_RelationshipConcreteValues", relationshipId(index, maxRelationshipsPerConcept() - 1, true), effectiveTime, "1", CORE_MODULE, conceptId, "#" + concreteValue, "0",
+					dataAttributeId(), Concepts.INFERRED_RELATIONSHIP, Concepts.EXISTENTIAL_RESTRICTION_MODIFIER);
+		}
+	}
+
+	private void writeRelationships(ArchiveWriter writer, String file, String effectiveTime, int index, String parentId,
+			List<List<String[]>> groups, boolean inferred) throws IOException {
+
+		String conceptId = conceptId(index);
+		String characteristicTypeId = inferred ? Concepts.INFERRED_RELATIONSHIP : Concepts.STATED_RELATIONSHIP;
+		int position = 0;
+		writer.write(file, relationshipId(index, position++, inferred), effectiveTime, "1", CORE_MODULE, conceptId, parentId, "0", Concepts.IS_A,
+				characteristicTypeId, Concepts.EXISTENTIAL_RESTRICTION_MODIFIER);
+		for (int g = 0; g < groups.size(); g++) {
+			for (String[] attribute : groups.get(g)) {
+				writer.write(file, relationshipId(index, position++, inferred), effectiveTime, "1", CORE_MODULE, conceptId, attribute[1],
+						Integer.toString(g), attribute[0], characteristicTypeId, Concepts.EXISTENTIAL_RESTRICTION_MODIFIER);
+			}
+		}
+	}
+
+	private void writeOntologyRefset(ArchiveWriter writer) throws IOException {
+		writer.startEntry("sct2_sRefset_OWLOntology", EFFECTIVE_TIME, OWL_REFSET_HEADER);
+		String[] namespaces = {
+				"Prefix(:=<http://snomed.info/id/>)",
+				"Prefix(owl:=<http://www.w3.org/2002/07/owl#>)",
+				"Prefix(rdf:=<http://www.w3.org/1999/02/22-rdf-syntax-ns#>)",
+				"Prefix(xml:=<http://www.w3.org/XML/1998/namespace>)",
+				"Prefix(xsd:=<http://www.w3.org/2001/XMLSchema#>)",
+				"Prefix(rdfs:=<http://www.w3.org/2000/01/rdf-schema#>)"};
+		for (String namespace : namespaces) {
+			writer.row(memberId("namespace", namespace), EFFECTIVE_TIME, "1", MODEL_MODULE, Concepts.OWL_ONTOLOGY_REFERENCE_SET,
+					Concepts.OWL_ONTOLOGY_NAMESPACE, namespace);
+		}
+		writer.row(memberId("header", CORE_MODULE), EFFECTIVE_TIME, "1", MODEL_MODULE, Concepts.OWL_ONTOLOGY_REFERENCE_SET,
+				Concepts.OWL_ONTOLOGY_HEADER, "Ontology(<http://snomed.info/sct/" + CORE_MODULE + ">)");
+	}
+
+	private void writeMrcmAttributeDomain(ArchiveWriter writer) throws IOException {
+		writer.startEntry("der2_cissccRefset_MRCMAttributeDomain", EFFECTIVE_TIME, MRCM_ATTRIBUTE_DOMAIN_HEADER);
+		for (int a = 0; a < objectAttributes; a++) {
+			// The first attribute is never grouped, like laterality
+			boolean grouped = a > 0;
+			writer.row(memberId("mrcm", objectAttributeId(a)), EFFECTIVE_TIME, "1", MODEL_MODULE, Concepts.MRCM_ATTRIBUTE_DOMAIN_INTERNATIONAL_REFERENCE_SET,
+					objectAttributeId(a), Concepts.ROOT, grouped ? "1" : "0", "0..*", grouped ? "0..*" : "0..0", MANDATORY_CONCEPT_MODEL_RULE, ALL_SNOMED_CT_CONTENT);
+		}
+	}
+
+	private void writeDescriptions(ArchiveWriter writer, int from, int to, boolean includeModel, String effectiveTime) throws IOException {
+		writer.startEntry("sct2_Description", "-en_INT_" + effectiveTime, DESCRIPTION_HEADER);
+		writer.startEntry("der2_cRefset_Language", "-en_INT_" + effectiveTime, LANGUAGE_REFSET_HEADER);
+		if (includeModel) {
+			writeDescription(writer, modelItem++, Concepts.ROOT, "SNOMED CT Concept (SNOMED RT+CTV3)", effectiveTime);
+			for (String[] modelConcept : MODEL_CONCEPTS) {
+				writeDescription(writer, modelItem++, modelConcept[0], "Model concept " + modelConcept[0] + " (metadata)", effectiveTime);
+			}
+			for (int a = 0; a < objectAttributes; a++) {
+				writeDescription(writer, modelItem++, objectAttributeId(a), "Synthetic attribute " + a + " (attribute)", effectiveTime);
+			}
+			writeDescription(writer, modelItem++, dataAttributeId(), "Synthetic data attribute (attribute)", effectiveTime);
+		}
+		for (int i = from; i < to; i++) {
+			writeDescription(writer, FIRST_CONCEPT_ITEM + i, conceptId(i), "Synthetic concept " + i + " (finding)", effectiveTime);
+		}
+	}
+
+	private void writeDescription(ArchiveWriter writer, long descriptionItem, String conceptId, String term, String effectiveTime) throws IOException {
+		String descriptionId = sctid(descriptionItem, "01");
+		writer.write("sct2_Description", descriptionId, effectiveTime, "1", CORE_MODULE, conceptId, "en", Concepts.FSN, term, ENTIRE_TERM_CASE_SENSITIVE);
+		writer.write("der2_cRefset_Language", memberId("language", descriptionId), effectiveTime, "1", CORE_MODULE, US_ENGLISH_LANGUAGE_REFSET,
+				descriptionId, Concepts.PREFERRED);
+	}
+
+	private boolean isFullyDefined(int index) {
+		return index > 0 && new Random(seed * 17 + index).nextDouble() < fullyDefinedRatio;
+	}
+
+	/**
+	 * @return an attribute value, a concept earlier in the hierarchy so definitions do not form cycles.
+	 */
+	private String valueId(int index, Random random) {
+		return conceptId(random.nextInt(index));
+	}
+
+	/**
+	 * Upper bound of the relationships in a definition, the last position is used by the concrete value.
+	 */
+	private int maxRelationshipsPerConcept() {
+		return 4 + ((int) Math.ceil(roleGroupsPerConcept) + 1) * attributesPerGroup;
+	}
+
+	private String relationshipId(int index, int position, boolean inferred) {
+		return sctid(FIRST_CONCEPT_ITEM + ((long) index * maxRelationshipsPerConcept() + position) * 2 + (inferred ? 1 : 0), "02");
+	}
+
+	public static String conceptId(int index) {
+		return sctid(FIRST_CONCEPT_ITEM + index, "00");
+	}
+
+	private String objectAttributeId(int attribute) {
+		return sctid(FIRST_ATTRIBUTE_ITEM + attribute, "00");
+	}
+
+	private String dataAttributeId() {
+		return sctid(FIRST_ATTRIBUTE_ITEM + objectAttributes, "00");
+	}
+
+	/**
+	 * @return a refset member id which is the same for the same component in the snapshot and delta.
+	 */
+	private static String memberId(String kind, String componentId) {
+		return UUID.nameUUIDFromBytes((kind + ":" + componentId).getBytes(StandardCharsets.UTF_8)).toString();
+	}
+
+	/**
+	 * @return a short format SNOMED CT identifier with a Verhoeff check digit.
+	 */
+	static String sctid(long itemId, String partitionId) {
+		String withoutCheck = itemId + partitionId;
+		return withoutCheck + Verhoeff.checkDigit(withoutCheck);
+	}
+
+	public static void main(String[] args) throws IOException {
+		SyntheticRf2Generator generator = new SyntheticRf2Generator();
+		File snapshot = new File("synthetic-snapshot.zip");
+		File delta = null;
+		int newConcepts = 100;
+		int changedConcepts = 100;
+		for (String arg : args) {
+			String[] setting = arg.split("=", 2);
+			if (setting.length != 2) {
+				throw new IllegalArgumentException("Expected setting as name=value, got " + arg);
+			}
+			String value = setting[1];
+			switch (setting[0]) {
+				case "concepts" -> generator.setConcepts(Integer.parseInt(value));
+				case "depth" -> generator.setDepth(Integer.parseInt(value));
+				case "fanOut" -> generator.setFanOut(Integer.parseInt(value));
+				case "roleGroups" -> generator.setRoleGroupsPerConcept(Double.parseDouble(value));
+				case "attributesPerGroup" -> generator.setAttributesPerGroup(Integer.parseInt(value));
+				case "objectAttributes" -> generator.setObjectAttributes(Integer.parseInt(value));
+				case "propertyChains" -> generator.setPropertyChains(Integer.parseInt(value));
+				case "concreteValueRatio" -> generator.setConcreteValueRatio(Double.parseDouble(value));
+				case "fullyDefinedRatio" -> generator.setFullyDefinedRatio(Double.parseDouble(value));
+				case "descriptions" -> generator.setDescriptions(Boolean.parseBoolean(value));
+				case "statedRelationships" -> generator.setStatedRelationships(Boolean.parseBoolean(value));
+				case "seed" -> generator.setSeed(Long.parseLong(value));
+				case "snapshot" -> snapshot = new File(value);
+				case "delta" -> delta = new File(value);
+				case "newConcepts" -> newConcepts = Integer.parseInt(value);
+				case "changedConcepts" -> changedConcepts = Integer.parseInt(value);
+				default -> throw new IllegalArgumentException("Unknown setting " + setting[0]);
+			}
+		}
+		generator.writeSnapshotArchive(snapshot);
+		System.out.println("Snapshot written to " + snapshot.getAbsolutePath());
+		if (delta != null) {
+			generator.writeDeltaArchive(delta, newConcepts, changedConcepts);
+			System.out.println("Delta written to " + delta.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Writes each RF2 file to a temporary file first so rows of different files can be written in any order,
+	 * then copies them into the archive when closed.
+	 */
+	private static final class ArchiveWriter implements Closeable {
+
+		private final File archive;
+		private final String releaseType;
+		private final Map<String, File> files = new LinkedHashMap<>();
+		private final Map<String, BufferedWriter> writers = new HashMap<>();
+		private String currentFile;
+
+		private ArchiveWriter(File archive, String releaseType) {
+			this.archive = archive;
+			this.releaseType = releaseType;
+		}
+
+		/**
+		 * Starts a file if not already started and makes it the file for {@link #row}.
+		 * @param fileNameSuffix either the effective time or, for files with a language, "-en_INT_" and the effective time.
+		 */
+		private void startEntry(String filePrefix, String fileNameSuffix, String header) throws IOException {
+			currentFile = filePrefix;
+			if (!writers.containsKey(filePrefix)) {
+				String suffix = fileNameSuffix.startsWith("-") ? fileNameSuffix : "_INT_" + fileNameSuffix;
+				if (suffix.endsWith("_")) {
+					suffix += EFFECTIVE_TIME;
+				}
+				String folder = filePrefix.startsWith("der2_cissccRefset") ? "Refset/Metadata" : filePrefix.startsWith("der2") ? "Refset/Language" : "Terminology";
+				// Core component files separate the release type with an underscore, reference set files do not
+				String separator = filePrefix.contains("Refset") ? "" : "_";
+				String entryName = "SnomedCT_Synthetic/" + releaseType + "/" + folder + "/" + filePrefix + separator + releaseType + suffix + ".txt";
+				File file = File.createTempFile("synthetic-rf2", ".txt");
+				file.deleteOnExit();
+				files.put(entryName, file);
+				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+				writer.write(header);
+				writer.write("\r\n");
+				writers.put(filePrefix, writer);
+			}
+		}
+
+		private void row(String... values) throws IOException {
+			write(currentFile, values);
+		}
+
+		private void write(String filePrefix, String... values) throws IOException {
+			BufferedWriter writer = writers.get(filePrefix);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					writer.write('\t');
+				}
+				writer.write(values[i]);
+			}
+			writer.write("\r\n");
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (BufferedWriter writer : writers.values()) {
+				writer.close();
+			}
+			try (ZipOutputStream zipOutputStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive)))) {
+				for (Map.Entry<String, File> entry : files.entrySet()) {
+					zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+					try (InputStream inputStream = new FileInputStream(entry.getValue())) {
+						inputStream.transferTo(zipOutputStream);
+					}
+					zipOutputStream.closeEntry();
+				}
+			} finally {
+				for (File file : files.values()) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	private static final class Verhoeff {
+
+		private static final int[][] MULTIPLICATION = {
+				{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, {1, 2, 3, 4, 0, 6, 7, 8, 9, 5}, {2, 3, 4, 0, 1, 7, 8, 9, 5, 6},
+				{3, 4, 0, 1, 2, 8, 9, 5, 6, 7}, {4, 0, 1, 2, 3, 9, 5, 6, 7, 8}, {5, 9, 8, 7, 6, 0, 4, 3, 2, 1},
+				{6, 5, 9, 8, 7, 1, 0, 4, 3, 2}, {7, 6, 5, 9, 8, 2, 1, 0, 4, 3}, {8, 7, 6, 5, 9, 3, 2, 1, 0, 4},
+				{9, 8, 7, 6, 5, 4, 3, 2, 1, 0}};
+		private static final int[][] PERMUTATION = {
+				{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, {1, 5, 7, 6, 2, 8, 3, 0, 9, 4}, {5, 8, 0, 3, 7, 9, 6, 1, 4, 2},
+				{8, 9, 1, 6, 0, 4, 3, 5, 2, 7}, {9, 4, 5, 3, 1, 2, 6, 8, 7, 0}, {4, 2, 8, 6, 5, 7, 3, 9, 0, 1},
+				{2, 7, 9, 3, 8, 0, 6, 4, 1, 5}, {7, 0, 4, 6, 9, 1, 3, 2, 5, 8}};
+		private static final int[] INVERSE = {0, 4, 3, 2, 1, 5, 6, 7, 8, 9};
+
+		private static int checkDigit(String digits) {
+			int check = 0;
+			for (int i = 0; i < digits.length(); i++) {
+				int digit = digits.charAt(digits.length() - 1 - i) - '0';
+				check = MULTIPLICATION[check][PERMUTATION[(i + 1) % 8][digit]];
+			}
+			return INVERSE[check];
+		}
+	}
+}
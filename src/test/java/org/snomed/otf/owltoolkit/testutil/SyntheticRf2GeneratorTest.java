@@ -0,0 +1,64 @@
+package org.snomed.otf.owltoolkit.testutil;
+
+import org.junit.Test;
+import org.snomed.otf.owltoolkit.constants.Concepts;
+import org.snomed.otf.owltoolkit.service.SnomedReasonerService;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomy;
+import org.snomed.otf.owltoolkit.taxonomy.SnomedTaxonomyBuilder;
+import org.snomed.otf.owltoolkit.util.InputStreamSet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.List;
+
+import static java.lang.Long.parseLong;
+import static org.junit.Assert.*;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.newTemporaryFile;
+import static org.snomed.otf.owltoolkit.service.classification.TestFileUtil.readInferredRelationshipLinesTrim;
+
+public class SyntheticRf2GeneratorTest {
+
+	private static final int CONCEPTS = 200;
+	private static final int NEW_CONCEPTS = 10;
+
+	@Test
+	public void testSmallSnapshotAndDeltaLoadAndClassify() throws Exception {
+		SyntheticRf2Generator generator = new SyntheticRf2Generator()
+				.setConcepts(CONCEPTS)
+				.setDepth(4)
+				.setFanOut(5)
+				.setObjectAttributes(6)
+				.setConcreteValueRatio(0.2)
+				.setDescriptions(true);
+		File snapshot = newTemporaryFile();
+		File delta = newTemporaryFile();
+		generator.writeSnapshotArchive(snapshot);
+		generator.writeDeltaArchive(delta, NEW_CONCEPTS, 10);
+
+		SnomedTaxonomy snomedTaxonomy;
+		try (FileInputStream deltaStream = new FileInputStream(delta)) {
+			snomedTaxonomy = new SnomedTaxonomyBuilder().build(new InputStreamSet(new FileInputStream(snapshot)), deltaStream, true);
+		}
+		for (int i = 0; i < CONCEPTS + NEW_CONCEPTS; i++) {
+			long conceptId = parseLong(SyntheticRf2Generator.conceptId(i));
+			assertTrue(snomedTaxonomy.getAllConceptIds().contains(conceptId));
+			assertFalse("Axioms of concept " + i, snomedTaxonomy.getAxiomsForConcept(conceptId).isEmpty());
+			assertEquals(1, snomedTaxonomy.getConceptDescriptions(conceptId).size());
+		}
+		// Inferred relationships are only in the snapshot
+		assertFalse(snomedTaxonomy.getInferredRelationships(parseLong(SyntheticRf2Generator.conceptId(0))).isEmpty());
+		assertTrue(snomedTaxonomy.getInferredRelationships(parseLong(SyntheticRf2Generator.conceptId(CONCEPTS))).isEmpty());
+		assertFalse(snomedTaxonomy.getUngroupedRolesForContentTypeOrDefault(parseLong(Concepts.ALL_PRECOORDINATED_CONTENT)).isEmpty());
+
+		File results = newTemporaryFile();
+		new SnomedReasonerService().classify("synthetic", snapshot, delta, results, SnomedReasonerService.ELK_REASONER_FACTORY, false);
+
+		// Each new concept is given its inferred parent
+		List<String> lines = readInferredRelationshipLinesTrim(results);
+		for (int i = CONCEPTS; i < CONCEPTS + NEW_CONCEPTS; i++) {
+			String conceptId = SyntheticRf2Generator.conceptId(i);
+			assertTrue("Inferred parent of new concept " + i, lines.stream()
+					.anyMatch(line -> line.contains("\t" + conceptId + "\t") && line.contains("\t" + Concepts.IS_A + "\t")));
+		}
+	}
+}